@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.benchmark;
+
+import net.dreamlu.mica.net.server.cluster.message.ClusterDataMessage;
+import org.dromara.mica.mqtt.broker.cluster.message.ClusterMessageSerializer;
+import org.dromara.mica.mqtt.broker.cluster.message.PublishForwardMessage;
+import org.dromara.mica.mqtt.broker.cluster.message.SubscribeNotifyMessage;
+import org.dromara.mica.mqtt.core.server.enums.MessageType;
+import org.dromara.mica.mqtt.core.server.model.Message;
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
+import org.dromara.mica.mqtt.core.server.serializer.DefaultMessageSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息序列化（DefaultMessageSerializer）和集群消息序列化（ClusterMessageSerializer）基准测试，
+ * 需配合 -prof gc 查看每次操作的分配字节数（gc.alloc.rate.norm）。
+ *
+ * @author L.cm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageSerializerBenchmark {
+	private static final String SOURCE_NODE = "node-1";
+
+	@Param({"256", "4096"})
+	private int payloadSize;
+
+	private Message message;
+	private byte[] messageBytes;
+	private SubscribeNotifyMessage subscribeNotifyMessage;
+	private ClusterDataMessage publishForwardData;
+	private ClusterDataMessage subscribeNotifyData;
+
+	@Setup
+	public void setup() {
+		message = new Message();
+		message.setId(1);
+		message.setNode(SOURCE_NODE);
+		message.setFromClientId("client-1");
+		message.setFromUsername("mica");
+		message.setTopic("/device/123/456/data");
+		message.setMessageType(MessageType.UP_STREAM);
+		message.setQos(1);
+		message.setPayload(new byte[payloadSize]);
+		message.setPeerHost("127.0.0.1:50000");
+		message.setTimestamp(System.currentTimeMillis());
+		messageBytes = DefaultMessageSerializer.INSTANCE.serialize(message);
+
+		List<Subscribe> subscriptions = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			subscriptions.add(new Subscribe("/device/" + i + "/+/data", "client-1", 1));
+		}
+		subscribeNotifyMessage = new SubscribeNotifyMessage();
+		subscribeNotifyMessage.setClientId("client-1");
+		subscribeNotifyMessage.setNodeId(SOURCE_NODE);
+		subscribeNotifyMessage.setSubscriptions(subscriptions);
+		publishForwardData = ClusterMessageSerializer.toClusterData(newPublishForwardMessage(), SOURCE_NODE);
+		subscribeNotifyData = ClusterMessageSerializer.toClusterData(subscribeNotifyMessage, SOURCE_NODE);
+	}
+
+	private PublishForwardMessage newPublishForwardMessage() {
+		PublishForwardMessage forwardMessage = new PublishForwardMessage();
+		forwardMessage.setMessage(message);
+		return forwardMessage;
+	}
+
+	@Benchmark
+	public byte[] serialize() {
+		return DefaultMessageSerializer.INSTANCE.serialize(message);
+	}
+
+	@Benchmark
+	public Message deserialize() {
+		return DefaultMessageSerializer.INSTANCE.deserialize(messageBytes);
+	}
+
+	/**
+	 * PublishForwardMessage 会缓存序列化结果，每次新建以测量完整的序列化开销
+	 */
+	@Benchmark
+	public ClusterDataMessage publishForwardToClusterData() {
+		return ClusterMessageSerializer.toClusterData(newPublishForwardMessage(), SOURCE_NODE);
+	}
+
+	@Benchmark
+	public PublishForwardMessage publishForwardFromClusterData() {
+		return ClusterMessageSerializer.fromClusterData(publishForwardData);
+	}
+
+	@Benchmark
+	public ClusterDataMessage subscribeNotifyToClusterData() {
+		return ClusterMessageSerializer.toClusterData(subscribeNotifyMessage, SOURCE_NODE);
+	}
+
+	@Benchmark
+	public SubscribeNotifyMessage subscribeNotifyFromClusterData() {
+		return ClusterMessageSerializer.fromClusterData(subscribeNotifyData);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+			.include(MessageSerializerBenchmark.class.getSimpleName())
+			.addProfiler("gc")
+			.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.benchmark;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import net.dreamlu.mica.net.core.TioConfig;
+import net.dreamlu.mica.net.core.exception.TioDecodeException;
+import net.dreamlu.mica.net.core.intf.Packet;
+import net.dreamlu.mica.net.server.DefaultTioServerListener;
+import net.dreamlu.mica.net.server.ServerChannelContext;
+import net.dreamlu.mica.net.server.TioServerConfig;
+import net.dreamlu.mica.net.server.intf.TioServerHandler;
+import org.dromara.mica.mqtt.codec.MqttDecoder;
+import org.dromara.mica.mqtt.codec.MqttEncoder;
+import org.dromara.mica.mqtt.codec.MqttVersion;
+import org.dromara.mica.mqtt.codec.message.MqttConnectMessage;
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 基准测试用的虚拟连接，不建立网络连接，只用于编解码时读写 mqtt 协议版本等连接属性
+ *
+ * @author L.cm
+ */
+public final class MqttBenchmarkContext {
+	private static final MqttDecoder DECODER = new MqttDecoder();
+
+	private MqttBenchmarkContext() {
+	}
+
+	/**
+	 * 创建虚拟连接，并通过解码一个 CONNECT 报文设置协议版本
+	 *
+	 * @param mqttVersion MqttVersion
+	 * @return ChannelContext
+	 */
+	public static ChannelContext create(MqttVersion mqttVersion) {
+		TioServerConfig serverConfig = new TioServerConfig("mica-mqtt-benchmark", new CodecHandler(), new DefaultTioServerListener());
+		ServerChannelContext context = new ServerChannelContext(serverConfig);
+		MqttConnectMessage connectMessage = MqttConnectMessage.builder()
+			.protocolVersion(mqttVersion)
+			.clientId("mica-mqtt-benchmark")
+			.cleanStart(true)
+			.keepAlive(60)
+			.build();
+		ByteBuffer buffer = MqttEncoder.INSTANCE.doEncode(context, connectMessage);
+		buffer.flip();
+		DECODER.doDecode(context, buffer, buffer.remaining());
+		return context;
+	}
+
+	/**
+	 * 编码报文，返回报文字节
+	 *
+	 * @param context ChannelContext
+	 * @param message MqttMessage
+	 * @return 报文字节
+	 */
+	public static byte[] encode(ChannelContext context, MqttMessage message) {
+		ByteBuffer buffer = MqttEncoder.INSTANCE.doEncode(context, message);
+		byte[] bytes = new byte[buffer.position()];
+		buffer.flip();
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * 虚拟连接不处理收发，只提供编解码
+	 */
+	private static final class CodecHandler implements TioServerHandler {
+
+		@Override
+		public Packet decode(ByteBuffer buffer, int limit, int position, int readableLength, ChannelContext context) throws TioDecodeException {
+			return DECODER.doDecode(context, buffer, readableLength);
+		}
+
+		@Override
+		public ByteBuffer encode(Packet packet, TioConfig tioConfig, ChannelContext context) {
+			return MqttEncoder.INSTANCE.doEncode(context, (MqttMessage) packet);
+		}
+
+		@Override
+		public void handler(Packet packet, ChannelContext context) {
+			// 基准测试不处理报文
+		}
+	}
+
+}
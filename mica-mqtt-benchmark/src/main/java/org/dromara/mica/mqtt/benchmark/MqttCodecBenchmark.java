@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.benchmark;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import org.dromara.mica.mqtt.codec.MqttDecoder;
+import org.dromara.mica.mqtt.codec.MqttEncoder;
+import org.dromara.mica.mqtt.codec.MqttQoS;
+import org.dromara.mica.mqtt.codec.MqttVersion;
+import org.dromara.mica.mqtt.codec.message.MqttConnectMessage;
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPubAckMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
+import org.dromara.mica.mqtt.codec.message.MqttSubscribeMessage;
+import org.dromara.mica.mqtt.codec.message.MqttUnSubscribeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MqttEncoder、MqttDecoder 按报文类型和协议版本（3.1.1、5）的编解码基准测试，
+ * 需配合 -prof gc 查看每次操作的分配字节数（gc.alloc.rate.norm）。
+ *
+ * @author L.cm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MqttCodecBenchmark {
+
+	@Param({"MQTT_3_1_1", "MQTT_5"})
+	private MqttVersion mqttVersion;
+	@Param({"CONNECT", "PUBLISH", "PUBACK", "SUBSCRIBE", "UNSUBSCRIBE", "PINGREQ"})
+	private String packetType;
+	@Param({"256"})
+	private int payloadSize;
+
+	private final MqttDecoder decoder = new MqttDecoder();
+	private ChannelContext context;
+	private MqttMessage message;
+	private byte[] packetBytes;
+
+	@Setup
+	public void setup() {
+		context = MqttBenchmarkContext.create(mqttVersion);
+		message = createMessage();
+		packetBytes = MqttBenchmarkContext.encode(context, message);
+	}
+
+	private MqttMessage createMessage() {
+		boolean isMqtt5 = MqttVersion.MQTT_5 == mqttVersion;
+		switch (packetType) {
+			case "CONNECT":
+				return MqttConnectMessage.builder()
+					.protocolVersion(mqttVersion)
+					.clientId("mica-mqtt-benchmark")
+					.username("mica")
+					.password("mica".getBytes())
+					.cleanStart(true)
+					.keepAlive(60)
+					.build();
+			case "PUBLISH":
+				return MqttPublishMessage.builder()
+					.topicName("/device/sensor/123/data")
+					.qos(MqttQoS.QOS1)
+					.messageId(1)
+					.payload(new byte[payloadSize])
+					.properties(properties -> {
+						if (isMqtt5) {
+							properties.setMessageExpiryInterval(60)
+								.setContentType("application/json")
+								.addUserProperty("traceId", "1234567890");
+						}
+					})
+					.build();
+			case "PUBACK":
+				return MqttPubAckMessage.builder()
+					.packetId(1)
+					.build();
+			case "SUBSCRIBE":
+				return MqttSubscribeMessage.builder()
+					.messageId(1)
+					.addSubscription("/device/+/123/#", MqttQoS.QOS1)
+					.addSubscription("/device/sensor/+/data", MqttQoS.QOS0)
+					.build();
+			case "UNSUBSCRIBE":
+				return MqttUnSubscribeMessage.builder()
+					.messageId(1)
+					.addTopicFilter("/device/+/123/#")
+					.addTopicFilter("/device/sensor/+/data")
+					.build();
+			case "PINGREQ":
+				return MqttMessage.PINGREQ;
+			default:
+				throw new IllegalArgumentException("Unsupported packet type: " + packetType);
+		}
+	}
+
+	@Benchmark
+	public ByteBuffer encode() {
+		return MqttEncoder.INSTANCE.doEncode(context, message);
+	}
+
+	@Benchmark
+	public Object decode() {
+		ByteBuffer buffer = ByteBuffer.wrap(packetBytes);
+		return decoder.doDecode(context, buffer, packetBytes.length);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+			.include(MqttCodecBenchmark.class.getSimpleName())
+			.addProfiler("gc")
+			.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.benchmark;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import org.dromara.mica.mqtt.codec.*;
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
+import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
+import org.dromara.mica.mqtt.codec.message.header.MqttMessageIdVariableHeader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MqttEncoder 堆内存分配与池化分配对比，需配合 -prof gc 查看每次操作的分配字节数（gc.alloc.rate.norm）。
+ * <p>
+ * 每次编码后立即 release，模拟 onAfterSent 归还。
+ *
+ * @author L.cm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MqttEncoderAllocatorBenchmark {
+
+	@Param({"heap", "pooled-heap", "pooled-direct"})
+	private String allocatorType;
+	@Param({"16", "1024"})
+	private int payloadSize;
+
+	private MqttEncoder encoder;
+	private ChannelContext context;
+	private MqttMessage pubAck;
+	private MqttPublishMessage publish;
+
+	@Setup
+	public void setup() {
+		MqttBufferAllocator allocator;
+		if ("pooled-heap".equals(allocatorType)) {
+			allocator = new PooledMqttBufferAllocator(false, 64 * 1024, 64);
+		} else if ("pooled-direct".equals(allocatorType)) {
+			allocator = new PooledMqttBufferAllocator(true, 64 * 1024, 64);
+		} else {
+			allocator = MqttBufferAllocator.HEAP;
+		}
+		encoder = new MqttEncoder(allocator);
+		context = MqttBenchmarkContext.create(MqttVersion.MQTT_3_1_1);
+		pubAck = new MqttMessage(new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.QOS0, false, 0),
+			MqttMessageIdVariableHeader.from(1));
+		publish = MqttPublishMessage.builder()
+			.topicName("/device/sensor/123/data")
+			.qos(MqttQoS.QOS1)
+			.messageId(1)
+			.payload(new byte[payloadSize])
+			.build();
+	}
+
+	@Benchmark
+	public ByteBuffer encodePubAck() {
+		ByteBuffer buffer = encoder.doEncode(context, pubAck);
+		encoder.release(pubAck);
+		return buffer;
+	}
+
+	@Benchmark
+	public ByteBuffer encodePublish() {
+		ByteBuffer buffer = encoder.doEncode(context, publish);
+		encoder.release(publish);
+		return buffer;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+			.include(MqttEncoderAllocatorBenchmark.class.getSimpleName())
+			.addProfiler("gc")
+			.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.benchmark;
+
+import org.dromara.mica.mqtt.core.server.model.Message;
+import org.dromara.mica.mqtt.core.server.store.InMemoryMqttMessageStore;
+import org.dromara.mica.mqtt.core.util.TopicUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订阅时查找保留消息基准测试：前缀树索引（InMemoryMqttMessageStore）与逐个 TopicUtil.match 的线性扫描对比。
+ * <p>
+ * 保留消息：每个设备 {@code devices/{id}/state}、{@code devices/{id}/config} 两个 topic，另有 100 个 {@code rooms/{id}/temp}。
+ * 线性扫描的耗时与保留消息总数相关，索引只与匹配的数量相关，{@code rooms/+/temp} 最能体现差异。
+ *
+ * @author L.cm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class RetainMessageStoreBenchmark {
+	@Param({"10000", "1000000"})
+	private int retained;
+	@Param({"devices/123/state", "devices/123/+", "rooms/+/temp", "devices/+/state"})
+	private String topicFilter;
+
+	private InMemoryMqttMessageStore messageStore;
+	private ConcurrentMap<String, Message> retainStore;
+
+	@Setup
+	public void setup() {
+		messageStore = new InMemoryMqttMessageStore();
+		retainStore = new ConcurrentHashMap<>();
+		for (int i = 0; i < retained; i++) {
+			addRetainMessage("devices/" + (i >> 1) + ((i & 1) == 0 ? "/state" : "/config"));
+		}
+		for (int i = 0; i < 100; i++) {
+			addRetainMessage("rooms/" + i + "/temp");
+		}
+	}
+
+	private void addRetainMessage(String topic) {
+		Message message = new Message();
+		message.setTopic(topic);
+		message.setRetain(true);
+		message.setPayload(new byte[16]);
+		messageStore.addRetainMessage(topic, 0, message);
+		retainStore.put(topic, message);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		messageStore.clean();
+	}
+
+	@Benchmark
+	public List<Message> indexed() {
+		return messageStore.getRetainMessage(topicFilter);
+	}
+
+	/**
+	 * 原实现：遍历所有保留消息逐个匹配
+	 */
+	@Benchmark
+	public List<Message> linearScan() {
+		List<Message> retainMessageList = new ArrayList<>();
+		for (String topic : retainStore.keySet()) {
+			if (TopicUtil.match(topicFilter, topic)) {
+				retainMessageList.add(retainStore.get(topic));
+			}
+		}
+		return retainMessageList;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+			.include(RetainMessageStoreBenchmark.class.getSimpleName())
+			.addProfiler("gc")
+			.build();
+		new Runner(options).run();
+	}
+
+}
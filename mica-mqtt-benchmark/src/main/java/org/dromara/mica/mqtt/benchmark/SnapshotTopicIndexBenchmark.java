@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.benchmark;
+
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
+import org.dromara.mica.mqtt.core.server.session.SnapshotTopicIndex;
+import org.dromara.mica.mqtt.core.server.session.TrieTopicManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TrieTopicManager 与 SnapshotTopicIndex 匹配对比，数据与 {@link TrieTopicManagerBenchmark} 相同。
+ * <p>
+ * churn 组为 3 个匹配线程 + 1 个持续订阅、取消订阅的线程，用于观察写入对匹配的影响。
+ *
+ * @author L.cm
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class SnapshotTopicIndexBenchmark {
+	private static final int TOPIC_COUNT = 1024;
+
+	@State(Scope.Benchmark)
+	public static class IndexState {
+		@Param({"10000", "1000000"})
+		private int subscriptions;
+		/**
+		 * trie：TrieTopicManager，snapshot：SnapshotTopicIndex
+		 */
+		@Param({"trie", "snapshot"})
+		private String index;
+		/**
+		 * 快照一致性窗口，毫秒
+		 */
+		@Param({"0", "100"})
+		private long publishIntervalMillis;
+
+		private TrieTopicManager topicManager;
+		private SnapshotTopicIndex topicIndex;
+		private String[] topicNames;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			if ("trie".equals(index)) {
+				topicManager = new TrieTopicManager();
+			} else {
+				topicIndex = new SnapshotTopicIndex(publishIntervalMillis);
+			}
+			for (int i = 0; i < subscriptions; i++) {
+				addSubscribe(topicFilter(i), "client-" + i);
+			}
+			if (topicIndex != null) {
+				topicIndex.publish();
+			}
+			Random random = new Random(1);
+			topicNames = new String[TOPIC_COUNT];
+			for (int i = 0; i < TOPIC_COUNT; i++) {
+				int r = random.nextInt(subscriptions);
+				topicNames[i] = "/device/" + (r / 1000) + '/' + r + "/data";
+			}
+		}
+
+		private void addSubscribe(String topicFilter, String clientId) {
+			if (topicManager != null) {
+				topicManager.addSubscribe(topicFilter, clientId, 1);
+			} else {
+				topicIndex.addSubscribe(topicFilter, clientId, 1);
+			}
+		}
+
+		private void removeSubscribe(String topicFilter, String clientId) {
+			if (topicManager != null) {
+				topicManager.removeSubscribe(topicFilter, clientId);
+			} else {
+				topicIndex.removeSubscribe(topicFilter, clientId);
+			}
+		}
+
+		private List<Subscribe> search(String topicName) {
+			if (topicManager != null) {
+				return topicManager.searchSubscribe(topicName);
+			}
+			return topicIndex.searchSubscribe(topicName);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+		private int index;
+
+		String nextTopicName(IndexState state) {
+			return state.topicNames[index++ & (TOPIC_COUNT - 1)];
+		}
+	}
+
+	private static String topicFilter(int i) {
+		int group = i / 1000;
+		if (i % 10 == 0) {
+			return "/device/" + group + "/+/data";
+		}
+		return "/device/" + group + '/' + i + "/data";
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	public List<Subscribe> search(IndexState state, ThreadState threadState) {
+		return state.search(threadState.nextTopicName(state));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@Group("churn")
+	@GroupThreads(3)
+	public List<Subscribe> churnSearch(IndexState state, ThreadState threadState) {
+		return state.search(threadState.nextTopicName(state));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@Group("churn")
+	@GroupThreads(1)
+	public void churnSubscribe(IndexState state, ThreadState threadState) {
+		int i = threadState.index++ & 0xFFFF;
+		String topicFilter = (i & 1) == 0 ? "/device/0/" + i + "/data" : "/device/0/+/" + i;
+		state.addSubscribe(topicFilter, "churn-" + i);
+		state.removeSubscribe(topicFilter, "churn-" + i);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+			.include(SnapshotTopicIndexBenchmark.class.getSimpleName())
+			.addProfiler("gc")
+			.build();
+		new Runner(options).run();
+	}
+
+}
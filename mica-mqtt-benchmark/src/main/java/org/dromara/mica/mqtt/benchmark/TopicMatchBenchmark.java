@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.benchmark;
+
+import org.dromara.mica.mqtt.codec.MqttTopicView;
+import org.dromara.mica.mqtt.core.common.TopicFilterType;
+import org.dromara.mica.mqtt.core.common.TopicTemplate;
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
+import org.dromara.mica.mqtt.core.server.session.TrieTopicManager;
+import org.dromara.mica.mqtt.core.util.TopicUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * topic 切分与匹配基准测试（TopicUtil、TopicFilterType、TopicTemplate），需配合 -prof gc 查看每次操作的分配字节数（gc.alloc.rate.norm）。
+ * <p>
+ * getTopicParts 与 MqttTopicView 对比切分的分配；match 类方法应为 0 分配；
+ * searchSubscribe 只剩结果集合的分配，不再有 topic 子串。
+ *
+ * @author L.cm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TopicMatchBenchmark {
+	private static final String TOPIC_NAME = "/device/sensor/123/data";
+	private static final String TOPIC_FILTER = "/device/+/123/#";
+	private static final String SHARE_TOPIC_FILTER = "$share/group//device/+/123/#";
+	private static final String TOPIC_TEMPLATE = "/device/${productKey}/${deviceName}/data";
+
+	private final MqttTopicView topicView = new MqttTopicView();
+	private TrieTopicManager topicManager;
+	private TopicTemplate topicTemplate;
+
+	@Setup
+	public void setup() {
+		topicManager = new TrieTopicManager();
+		for (int i = 0; i < 100; i++) {
+			topicManager.addSubscribe("/device/sensor/" + i + "/data", "client-" + i, 0);
+		}
+		topicManager.addSubscribe(TOPIC_FILTER, "client-wildcard", 1);
+		topicTemplate = new TopicTemplate(TOPIC_TEMPLATE, TopicUtil.getTopicFilter(TOPIC_TEMPLATE));
+	}
+
+	@Benchmark
+	public String[] getTopicParts() {
+		return TopicUtil.getTopicParts(TOPIC_NAME);
+	}
+
+	@Benchmark
+	public MqttTopicView topicViewReset() {
+		return topicView.reset(TOPIC_NAME);
+	}
+
+	@Benchmark
+	public boolean topicUtilMatch() {
+		return TopicUtil.match(TOPIC_FILTER, TOPIC_NAME);
+	}
+
+	@Benchmark
+	public boolean shareTopicFilterMatch() {
+		return TopicFilterType.SHARE.match(SHARE_TOPIC_FILTER, TOPIC_NAME);
+	}
+
+	@Benchmark
+	public boolean topicTemplateMatch() {
+		return topicTemplate.match(TOPIC_NAME);
+	}
+
+	@Benchmark
+	public Map<String, String> topicTemplateVariables() {
+		return topicTemplate.getVariables(TOPIC_NAME);
+	}
+
+	@Benchmark
+	public List<Subscribe> searchSubscribe() {
+		return topicManager.searchSubscribe(TOPIC_NAME, topicView.reset(TOPIC_NAME));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+			.include(TopicMatchBenchmark.class.getSimpleName())
+			.addProfiler("gc")
+			.build();
+		new Runner(options).run();
+	}
+
+}
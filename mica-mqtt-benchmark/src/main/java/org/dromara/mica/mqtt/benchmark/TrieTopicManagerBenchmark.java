@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.benchmark;
+
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
+import org.dromara.mica.mqtt.core.server.session.TrieTopicManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TrieTopicManager 订阅、匹配、取消订阅基准测试，需配合 -prof gc 查看每次操作的分配字节数（gc.alloc.rate.norm）。
+ * <p>
+ * 订阅数据：每 1000 个客户端一组，组内 1/10 订阅 {@code /device/{group}/+/data}，其余订阅精确 topic，
+ * 每次匹配命中 1 个精确订阅和约 100 个通配订阅。1000 万订阅需要较大的堆内存，
+ * 可通过 {@code -p subscriptions=10000} 只跑小规模。
+ *
+ * @author L.cm
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx12g"})
+public class TrieTopicManagerBenchmark {
+	/**
+	 * 订阅、取消订阅时每轮迭代的操作次数
+	 */
+	private static final int BATCH_SIZE = 10000;
+	private static final int TOPIC_COUNT = 1024;
+	/**
+	 * 集群同步时每轮迭代同步的客户端数，每个客户端 SYNC_FILTERS 个订阅
+	 */
+	private static final int SYNC_BATCH_SIZE = 1000;
+	private static final int SYNC_FILTERS = 64;
+
+	@State(Scope.Benchmark)
+	public static class TrieState {
+		@Param({"10000", "1000000", "10000000"})
+		private int subscriptions;
+		/**
+		 * 热点 topic 匹配结果缓存大小，0 为不开启
+		 */
+		@Param({"0", "4096"})
+		private int matchCacheSize;
+		/**
+		 * 是否使用紧凑订阅存储
+		 */
+		@Param({"false", "true"})
+		private boolean compactStorage;
+
+		private TrieTopicManager topicManager;
+		private String[] topicNames;
+		private int index;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			topicManager = new TrieTopicManager(matchCacheSize, compactStorage);
+			for (int i = 0; i < subscriptions; i++) {
+				topicManager.addSubscribe(topicFilter(i), "client-" + i, i % 3);
+			}
+			Random random = new Random(1);
+			topicNames = new String[TOPIC_COUNT];
+			for (int i = 0; i < TOPIC_COUNT; i++) {
+				int r = random.nextInt(subscriptions);
+				topicNames[i] = "/device/" + (r / 1000) + '/' + r + "/data";
+			}
+		}
+
+		String nextTopicName() {
+			return topicNames[index++ & (TOPIC_COUNT - 1)];
+		}
+	}
+
+	/**
+	 * 订阅：每轮迭代新增 BATCH_SIZE 个订阅，迭代结束后移除，不计入耗时
+	 */
+	@State(Scope.Thread)
+	public static class SubscribeState {
+		private int index;
+
+		@Setup(Level.Iteration)
+		public void setup() {
+			index = 0;
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown(TrieState trieState) {
+			for (int i = 0; i < index; i++) {
+				trieState.topicManager.removeSubscribe(benchTopicFilter(i), benchClientId(i));
+			}
+		}
+	}
+
+	/**
+	 * 取消订阅：每轮迭代前新增 BATCH_SIZE 个订阅，不计入耗时
+	 */
+	@State(Scope.Thread)
+	public static class UnsubscribeState {
+		private int index;
+
+		@Setup(Level.Iteration)
+		public void setup(TrieState trieState) {
+			index = 0;
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				trieState.topicManager.addSubscribe(benchTopicFilter(i), benchClientId(i), 1);
+			}
+		}
+	}
+
+	/**
+	 * 集群同步：每个客户端一次写入 SYNC_FILTERS 个前缀相同的订阅，迭代结束后移除，不计入耗时
+	 */
+	@State(Scope.Thread)
+	public static class SyncState {
+		private final List<Subscribe> subscriptions = new ArrayList<>(SYNC_FILTERS);
+		private int index;
+
+		@Setup(Level.Trial)
+		public void setupSubscriptions() {
+			for (int i = 0; i < SYNC_FILTERS; i++) {
+				subscriptions.add(new Subscribe("/sync/" + (i & 7) + "/+/" + i, null, 1));
+			}
+		}
+
+		@Setup(Level.Iteration)
+		public void setup() {
+			index = 0;
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown(TrieState trieState) {
+			for (int i = 0; i < index; i++) {
+				trieState.topicManager.removeSubscribe(syncClientId(i));
+			}
+		}
+	}
+
+	private static String topicFilter(int i) {
+		int group = i / 1000;
+		if (i % 10 == 0) {
+			return "/device/" + group + "/+/data";
+		}
+		return "/device/" + group + '/' + i + "/data";
+	}
+
+	private static String benchTopicFilter(int i) {
+		return (i & 1) == 0 ? "/bench/" + i + "/data" : "/bench/+/" + i;
+	}
+
+	private static String benchClientId(int i) {
+		return "bench-" + i;
+	}
+
+	private static String syncClientId(int i) {
+		return "sync-" + i;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public List<Subscribe> search(TrieState trieState) {
+		return trieState.topicManager.searchSubscribe(trieState.nextTopicName());
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public void forEachSubscriber(TrieState trieState, Blackhole blackhole) {
+		trieState.topicManager.forEachSubscriber(trieState.nextTopicName(), (clientId, mqttQoS, noLocal) -> blackhole.consume(clientId));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 3, batchSize = BATCH_SIZE)
+	@Measurement(iterations = 5, batchSize = BATCH_SIZE)
+	public void subscribe(TrieState trieState, SubscribeState state) {
+		int i = state.index++;
+		trieState.topicManager.addSubscribe(benchTopicFilter(i), benchClientId(i), 1);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 3, batchSize = BATCH_SIZE)
+	@Measurement(iterations = 5, batchSize = BATCH_SIZE)
+	public void unsubscribe(TrieState trieState, UnsubscribeState state) {
+		int i = state.index++;
+		trieState.topicManager.removeSubscribe(benchTopicFilter(i), benchClientId(i));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 3, batchSize = SYNC_BATCH_SIZE)
+	@Measurement(iterations = 5, batchSize = SYNC_BATCH_SIZE)
+	public void syncSubscribeEach(TrieState trieState, SyncState state) {
+		String clientId = syncClientId(state.index++);
+		for (Subscribe subscribe : state.subscriptions) {
+			trieState.topicManager.addSubscribe(subscribe.getTopicFilter(), clientId, subscribe.getMqttQoS());
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 3, batchSize = SYNC_BATCH_SIZE)
+	@Measurement(iterations = 5, batchSize = SYNC_BATCH_SIZE)
+	public void syncSubscribes(TrieState trieState, SyncState state) {
+		trieState.topicManager.addSubscribes(syncClientId(state.index++), state.subscriptions);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+			.include(TrieTopicManagerBenchmark.class.getSimpleName())
+			.addProfiler("gc")
+			.build();
+		new Runner(options).run();
+	}
+
+}
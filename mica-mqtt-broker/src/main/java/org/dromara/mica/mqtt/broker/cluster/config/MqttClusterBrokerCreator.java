@@ -117,7 +117,8 @@ public class MqttClusterBrokerCreator {
 
 		IMqttSessionManager delegateSessionManager = serverCreator.getSessionManager();
 		if (delegateSessionManager == null) {
-			delegateSessionManager = new InMemoryMqttSessionManager();
+			delegateSessionManager = new InMemoryMqttSessionManager(serverCreator.getTopicMatchCacheSize(),
+				serverCreator.isCompactSubscriptionStore());
 		}
 
 		clusterSessionManager = new ClusterMqttSessionManager(delegateSessionManager, clusterManager);
@@ -111,6 +111,15 @@ public class MqttStorageConfig {
 	 */
 	private boolean persistRetain = true;
 
+	/**
+	 * Estimated memory budget in bytes for the retain index, {@code 0} for unlimited.
+	 * <p>
+	 * Once reached, retain messages on new topics are rejected; updates to
+	 * topics already retained are still accepted.
+	 * </p>
+	 */
+	private long retainMaxBytes = 0L;
+
 	public boolean isEnabled() {
 		return enabled;
 	}
@@ -211,4 +220,17 @@ public class MqttStorageConfig {
 		this.persistRetain = persistRetain;
 		return this;
 	}
-}
\ No newline at end of file
+
+	public long getRetainMaxBytes() {
+		return retainMaxBytes;
+	}
+
+	public void setRetainMaxBytes(long retainMaxBytes) {
+		this.retainMaxBytes = retainMaxBytes;
+	}
+
+	public MqttStorageConfig retainMaxBytes(long retainMaxBytes) {
+		this.retainMaxBytes = retainMaxBytes;
+		return this;
+	}
+}
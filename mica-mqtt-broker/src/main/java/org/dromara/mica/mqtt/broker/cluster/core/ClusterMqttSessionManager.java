@@ -20,12 +20,14 @@ import org.dromara.mica.mqtt.broker.cluster.message.SubscribeNotifyMessage;
 import org.dromara.mica.mqtt.broker.cluster.message.UnsubscribeNotifyMessage;
 import org.dromara.mica.mqtt.broker.cluster.store.SessionStore;
 import org.dromara.mica.mqtt.broker.cluster.store.SharedSubStore;
+import org.dromara.mica.mqtt.codec.MqttTopicView;
 import org.dromara.mica.mqtt.core.common.MqttPendingPublish;
 import org.dromara.mica.mqtt.core.common.MqttPendingQos2Publish;
 import org.dromara.mica.mqtt.core.common.TopicFilter;
 import org.dromara.mica.mqtt.core.common.TopicFilterType;
 import org.dromara.mica.mqtt.core.server.model.Subscribe;
 import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
+import org.dromara.mica.mqtt.core.server.session.SubscriberVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -133,10 +135,13 @@ public class ClusterMqttSessionManager implements IMqttSessionManager {
 		if (subscriptions == null || subscriptions.isEmpty()) {
 			return;
 		}
-		for (Subscribe sub : subscriptions) {
-			delegate.addSubscribe(new TopicFilter(sub.getTopicFilter()), clientId, sub.getMqttQoS(), sub.isNoLocal());
-			logger.debug("[Cluster] Synced remote subscription: client={}, topic={}, node={}",
-				clientId, sub.getTopicFilter(), nodeId);
+		// 同一 client 的订阅批量写入，共享前缀的 filter 复用路径遍历
+		delegate.addSubscribes(clientId, subscriptions);
+		if (logger.isDebugEnabled()) {
+			for (Subscribe sub : subscriptions) {
+				logger.debug("[Cluster] Synced remote subscription: client={}, topic={}, node={}",
+					clientId, sub.getTopicFilter(), nodeId);
+			}
 		}
 	}
 
@@ -147,9 +152,11 @@ public class ClusterMqttSessionManager implements IMqttSessionManager {
 	 * @param topics the list of topics to unsubscribe from
 	 */
 	public void removeRemoteSubscriptions(String clientId, List<String> topics) {
-		for (String topic : topics) {
-			delegate.removeSubscribe(topic, clientId);
-			logger.debug("[Cluster] Removed remote subscription: client={}, topic={}", clientId, topic);
+		delegate.removeSubscribes(clientId, topics);
+		if (logger.isDebugEnabled()) {
+			for (String topic : topics) {
+				logger.debug("[Cluster] Removed remote subscription: client={}, topic={}", clientId, topic);
+			}
 		}
 	}
 
@@ -179,6 +186,36 @@ public class ClusterMqttSessionManager implements IMqttSessionManager {
 		persistSession(clientId);
 	}
 
+	@Override
+	public void addSubscribes(String clientId, List<Subscribe> subscriptions) {
+		if (subscriptions.isEmpty()) {
+			return;
+		}
+		delegate.addSubscribes(clientId, subscriptions);
+
+		if (clusterManager.isClusterEnabled()) {
+			// 一次 SUBSCRIBE 的多个 filter 合并为一条通知，对端同样批量写入
+			List<Subscribe> notifySubscriptions = new ArrayList<>(subscriptions.size());
+			for (Subscribe sub : subscriptions) {
+				notifySubscriptions.add(new Subscribe(sub.getTopicFilter(), clientId, sub.getMqttQoS(), sub.isNoLocal()));
+			}
+			SubscribeNotifyMessage notifyMessage = new SubscribeNotifyMessage();
+			notifyMessage.setClientId(clientId);
+			notifyMessage.setNodeId(clusterManager.getLocalNodeId());
+			notifyMessage.setSubscriptions(notifySubscriptions);
+
+			logger.debug("[Cluster] Broadcasting subscriptions: client={}, size={}, node={}",
+				clientId, subscriptions.size(), clusterManager.getLocalNodeId());
+
+			clusterManager.broadcast(notifyMessage);
+		}
+
+		for (Subscribe sub : subscriptions) {
+			updateSharedGroupOnSubscribe(sub.getTopicFilter(), clientId);
+		}
+		persistSession(clientId);
+	}
+
 	@Override
 	public void removeSubscribe(String topicFilter, String clientId) {
 		delegate.removeSubscribe(topicFilter, clientId);
@@ -388,6 +425,14 @@ public class ClusterMqttSessionManager implements IMqttSessionManager {
 		return localSubscribers;
 	}
 
+	@Override
+	public int forEachSubscriber(String fromClientId, String topicName, MqttTopicView topicView, SubscriberVisitor visitor) {
+		// 同 searchSubscribe(String)，只回调本节点的订阅者
+		LocalSubscriberVisitor localVisitor = new LocalSubscriberVisitor(clusterManager.getLocalNodeId(), visitor);
+		delegate.forEachSubscriber(fromClientId, topicName, topicView, localVisitor);
+		return localVisitor.count;
+	}
+
 	/**
 	 * Returns all subscriptions for a topic, including those from remote cluster nodes.
 	 * <p>
@@ -446,9 +491,7 @@ public class ClusterMqttSessionManager implements IMqttSessionManager {
 			if (entry.getValue() == null) {
 				continue;
 			}
-			for (Subscribe sub : entry.getValue()) {
-				delegate.addSubscribe(new TopicFilter(sub.getTopicFilter()), entry.getKey(), sub.getMqttQoS(), sub.isNoLocal());
-			}
+			delegate.addSubscribes(entry.getKey(), entry.getValue());
 		}
 	}
 
@@ -522,4 +565,34 @@ public class ClusterMqttSessionManager implements IMqttSessionManager {
 		delegate.clean();
 		clientNodeMap.clear();
 	}
+
+	/**
+	 * 过滤出本节点订阅者的 visitor
+	 */
+	private final class LocalSubscriberVisitor implements SubscriberVisitor {
+		private final String localNodeId;
+		private final SubscriberVisitor visitor;
+		private int count;
+
+		private LocalSubscriberVisitor(String localNodeId, SubscriberVisitor visitor) {
+			this.localNodeId = localNodeId;
+			this.visitor = visitor;
+		}
+
+		@Override
+		public void begin(int maxSize) {
+			// 节点过滤在 accept 中进行，这里只能传递上限
+			visitor.begin(maxSize);
+		}
+
+		@Override
+		public void accept(String clientId, int mqttQoS, boolean noLocal) {
+			String node = clientNodeMap.get(clientId);
+			if (node == null || node.equals(localNodeId)) {
+				count++;
+				visitor.accept(clientId, mqttQoS, noLocal);
+			}
+		}
+	}
+
 }
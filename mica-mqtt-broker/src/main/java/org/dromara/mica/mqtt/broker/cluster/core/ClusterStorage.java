@@ -93,7 +93,7 @@ public class ClusterStorage {
 			inflightCleaner.start();
 			sessionStore = new H2SessionStore(engine);
 			sharedSubStore = new H2SharedSubStore(engine);
-			retainIndex = new RetainIndex(engine);
+			retainIndex = new RetainIndex(engine, RetainIndex.DEFAULT_MAX_PAYLOAD_BYTES, config.getRetainMaxBytes());
 			retainIndex.loadFromStore();
 			logger.info("[Storage] V3 persistence started at {}", dataDir.toAbsolutePath());
 			return true;
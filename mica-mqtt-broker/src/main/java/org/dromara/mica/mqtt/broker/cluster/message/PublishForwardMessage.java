@@ -39,6 +39,10 @@ public class PublishForwardMessage implements ClusterMessage {
 	 * The MQTT message payload to be forwarded to remote subscribers.
 	 */
 	private Message message;
+	/**
+	 * Cached serialized form, so forwarding the same message to several nodes serializes the payload once.
+	 */
+	private byte[] serialized;
 
 	@Override
 	public ClusterMessageType getType() {
@@ -54,7 +58,12 @@ public class PublishForwardMessage implements ClusterMessage {
 		if (message == null) {
 			return new byte[0];
 		}
-		return DefaultMessageSerializer.INSTANCE.serialize(message);
+		byte[] bytes = this.serialized;
+		if (bytes == null) {
+			bytes = DefaultMessageSerializer.INSTANCE.serialize(message);
+			this.serialized = bytes;
+		}
+		return bytes;
 	}
 
 	@Override
@@ -71,5 +80,6 @@ public class PublishForwardMessage implements ClusterMessage {
 
 	public void setMessage(Message message) {
 		this.message = message;
+		this.serialized = null;
 	}
 }
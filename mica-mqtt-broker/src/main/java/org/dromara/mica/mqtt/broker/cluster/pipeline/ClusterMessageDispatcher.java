@@ -177,10 +177,11 @@ public class ClusterMessageDispatcher extends BaseMessageHandler {
 				remoteNodes.add(nodeId);
 			}
 		}
+		// One forward message for all nodes, the payload is serialized only once
+		PublishForwardMessage forward = new PublishForwardMessage();
+		forward.setMessage(message);
 		for (String nodeId : remoteNodes) {
 			logger.debug("[Cluster] Forwarding normal publish on topic: {} to remote node: {}", topic, nodeId);
-			PublishForwardMessage forward = new PublishForwardMessage();
-			forward.setMessage(message);
 			clusterManager.sendToNode(nodeId, forward);
 		}
 	}
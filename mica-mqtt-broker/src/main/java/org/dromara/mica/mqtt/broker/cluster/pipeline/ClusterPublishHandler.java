@@ -67,16 +67,17 @@ public class ClusterPublishHandler implements MqttPublishPipelineHandler {
 		}
 
 		logger.debug("[Cluster] Forwarding message on topic: {} to remote nodes: {}", topic, remoteNodes);
+		// One forward message for all nodes, the payload is serialized only once
+		PublishForwardMessage clusterMsg = buildForwardMessage(context);
 		for (String nodeId : remoteNodes) {
-			forwardToNode(nodeId, context);
+			logger.debug("[Cluster] Forwarding to node: {}, topic: {}", nodeId, topic);
+			clusterManager.sendToNode(nodeId, clusterMsg);
 		}
 
 		return true; // continue to local delivery
 	}
 
-	private void forwardToNode(String nodeId, PublishContext context) {
-		logger.debug("[Cluster] Forwarding to node: {}, topic: {}", nodeId, context.getTopic());
-
+	private static PublishForwardMessage buildForwardMessage(PublishContext context) {
 		Message message = new Message();
 		message.setMessageType(MessageType.UP_STREAM);
 		message.setFromClientId(context.getClientId());
@@ -90,8 +91,7 @@ public class ClusterPublishHandler implements MqttPublishPipelineHandler {
 
 		PublishForwardMessage clusterMsg = new PublishForwardMessage();
 		clusterMsg.setMessage(message);
-
-		clusterManager.sendToNode(nodeId, clusterMsg);
+		return clusterMsg;
 	}
 
 	@Override
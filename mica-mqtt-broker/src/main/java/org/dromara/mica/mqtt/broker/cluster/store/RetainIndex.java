@@ -18,6 +18,7 @@ package org.dromara.mica.mqtt.broker.cluster.store;
 
 import org.dromara.mica.mqtt.core.common.TopicFilter;
 import org.dromara.mica.mqtt.core.server.model.Message;
+import org.dromara.mica.mqtt.core.server.store.RetainTopicIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +27,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * In-memory index over retained MQTT messages, backed by a {@link LocalKvStore}
@@ -41,9 +44,26 @@ import java.util.concurrent.ConcurrentSkipListMap;
  * the in-memory index and the durable store.
  * </p>
  * <p>
+ * Wildcard lookups avoid scanning the whole index: any filter with a
+ * {@code +} level ({@code a/b/+}, {@code sensors/+/temperature}) walks a
+ * level-aware {@link RetainTopicIndex} that visits only matching branches and
+ * follows the same matching rules as the subscription trie.  A filter whose
+ * only wildcard is a trailing {@code #} ({@code a/b/#}) scans the sorted key
+ * range of its literal prefix, every key of which matches.  Either way the
+ * cost scales with the number of matches rather than the number of retained
+ * topics.
+ * </p>
+ * <p>
  * Memory budget: each entry occupies roughly the topic string + payload + a
  * 100-byte envelope.  At 100 000 retained messages with 1 KB payloads this is
- * approximately 100 MB — acceptable for the target IoT use cases.  Operators
+ * approximately 100 MB — acceptable for the target IoT use cases.  A total
+ * byte budget ({@code maxTotalBytes}) is a reject-only hard cap: the bytes a
+ * put adds (a new topic, or the growth of an update) are reserved with a CAS
+ * on the byte counter before the message is written, so concurrent puts never
+ * exceed the budget, and a put that does not fit is rejected while the
+ * previously retained message for its topic, if any, is kept.  Unlike the
+ * server-side {@code RetainMessageStore}, nothing is evicted: evicting here
+ * would silently delete durable state replicated from other nodes.  Operators
  * with more aggressive workloads should consider the optional sharding mode
  * (P2.5).
  * </p>
@@ -59,24 +79,60 @@ public class RetainIndex {
 	 * are rejected to keep the in-memory index bounded.
 	 */
 	public static final int DEFAULT_MAX_PAYLOAD_BYTES = 1024 * 1024;
+	private static final int LOCK_STRIPES = 64;
+	/**
+	 * Estimated per-entry overhead: skiplist node, level index leaf, message envelope.
+	 */
+	private static final int ENTRY_OVERHEAD = 100;
 
 	private final LocalKvStore store;
 	private final int maxPayloadBytes;
+	private final long maxTotalBytes;
+	private final AtomicLong totalBytes = new AtomicLong();
+	private final LongAdder rejectedCount = new LongAdder();
 
 	/**
 	 * Sorted in-memory index: topic → message.  Empty topic never appears as a
-	 * retained key.  Use {@link ConcurrentSkipListMap#subMap} for prefix ranges
-	 * when answering wildcard queries.
+	 * retained key.  Wildcard queries scan the literal prefix range via
+	 * {@link ConcurrentSkipListMap#tailMap}.
 	 */
 	private final ConcurrentSkipListMap<String, Message> index = new ConcurrentSkipListMap<>();
+	/**
+	 * Level-aware topic index for filters with a {@code +} level.
+	 */
+	private final RetainTopicIndex topicIndex = new RetainTopicIndex();
+	/**
+	 * Striped locks keeping {@link #index} and {@link #topicIndex} consistent
+	 * for concurrent writes to the same topic.
+	 */
+	private final Object[] locks = new Object[LOCK_STRIPES];
 
 	public RetainIndex(LocalKvStore store) {
 		this(store, DEFAULT_MAX_PAYLOAD_BYTES);
 	}
 
 	public RetainIndex(LocalKvStore store, int maxPayloadBytes) {
+		this(store, maxPayloadBytes, 0L);
+	}
+
+	/**
+	 * Creates a retain index with a total memory budget.
+	 *
+	 * @param store           the durable store
+	 * @param maxPayloadBytes the maximum payload size of a single retained message
+	 * @param maxTotalBytes   the estimated total size of all retained messages,
+	 *                        {@code 0} for unlimited
+	 */
+	public RetainIndex(LocalKvStore store, int maxPayloadBytes, long maxTotalBytes) {
+		if (maxTotalBytes < 0) {
+			throw new IllegalArgumentException("maxTotalBytes must be greater than or equal to zero.");
+		}
 		this.store = store;
 		this.maxPayloadBytes = maxPayloadBytes;
+		this.maxTotalBytes = maxTotalBytes;
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
 	}
 
 	/**
@@ -90,7 +146,7 @@ public class RetainIndex {
 			String topic = kv.getKey().substring("retain:".length());
 			Message msg = deserializeMessage(topic, kv.getValue());
 			if (msg != null) {
-				index.put(topic, msg);
+				putIndex(topic, msg);
 				count++;
 			}
 		}
@@ -103,7 +159,8 @@ public class RetainIndex {
 	 * @param topic   the topic under which the message is retained
 	 * @param message the message body
 	 * @return {@code true} if accepted; {@code false} if the payload exceeds
-	 *         {@link #maxPayloadBytes}
+	 *         {@link #maxPayloadBytes} or the message does not fit the total
+	 *         byte budget
 	 */
 	public boolean put(String topic, Message message) {
 		if (topic == null || topic.isEmpty() || message == null) {
@@ -115,15 +172,57 @@ public class RetainIndex {
 			return false;
 		}
 		byte[] bytes = serializeMessage(message);
-		// Order: write durable store first, then update in-memory index.  If the
-		// in-memory update fails (e.g. JVM crash between the two), we may serve
-		// stale data on next startup — but the durable store remains the truth
-		// and will be re-loaded by {@link #loadFromStore()}.
-		store.put(buildKey(topic), bytes);
-		index.put(topic, message);
+		long size = estimateSize(topic, message);
+		synchronized (lockFor(topic)) {
+			Message old = index.get(topic);
+			long delta = old == null ? size : size - estimateSize(topic, old);
+			if (!reserve(delta)) {
+				rejectedCount.increment();
+				logger.warn("[RetainIndex] Rejecting retain message on {}: retained bytes {} + {} exceeds limit {}",
+					topic, totalBytes.get(), delta, maxTotalBytes);
+				return false;
+			}
+			// Order: write durable store first, then update in-memory index.  If the
+			// in-memory update fails (e.g. JVM crash between the two), we may serve
+			// stale data on next startup — but the durable store remains the truth
+			// and will be re-loaded by {@link #loadFromStore()}.
+			try {
+				store.put(buildKey(topic), bytes);
+			} catch (RuntimeException e) {
+				totalBytes.addAndGet(-delta);
+				throw e;
+			}
+			index.put(topic, message);
+			if (old == null) {
+				topicIndex.add(topic);
+			}
+		}
 		return true;
 	}
 
+	/**
+	 * Reserves bytes against the total budget; shrinking updates and an
+	 * unlimited budget always succeed.
+	 *
+	 * @param delta the bytes to add, may be negative
+	 * @return {@code true} if the bytes were added to the counter
+	 */
+	private boolean reserve(long delta) {
+		if (maxTotalBytes <= 0 || delta <= 0) {
+			totalBytes.addAndGet(delta);
+			return true;
+		}
+		for (;;) {
+			long current = totalBytes.get();
+			if (current + delta > maxTotalBytes) {
+				return false;
+			}
+			if (totalBytes.compareAndSet(current, current + delta)) {
+				return true;
+			}
+		}
+	}
+
 	/**
 	 * Removes a retained message both in memory and in the durable store.
 	 *
@@ -133,8 +232,38 @@ public class RetainIndex {
 		if (topic == null || topic.isEmpty()) {
 			return;
 		}
-		store.delete(buildKey(topic));
-		index.remove(topic);
+		synchronized (lockFor(topic)) {
+			store.delete(buildKey(topic));
+			Message old = index.remove(topic);
+			if (old != null) {
+				topicIndex.remove(topic);
+				totalBytes.addAndGet(-estimateSize(topic, old));
+			}
+		}
+	}
+
+	/**
+	 * Indexes a message loaded from the durable store, without the budget check.
+	 */
+	private void putIndex(String topic, Message message) {
+		synchronized (lockFor(topic)) {
+			Message old = index.put(topic, message);
+			if (old == null) {
+				topicIndex.add(topic);
+				totalBytes.addAndGet(estimateSize(topic, message));
+			} else {
+				totalBytes.addAndGet(estimateSize(topic, message) - estimateSize(topic, old));
+			}
+		}
+	}
+
+	private static long estimateSize(String topic, Message message) {
+		byte[] payload = message.getPayload();
+		return ENTRY_OVERHEAD + 2L * topic.length() + (payload == null ? 0 : payload.length);
+	}
+
+	private Object lockFor(String topic) {
+		return locks[topic.hashCode() & (LOCK_STRIPES - 1)];
 	}
 
 	/**
@@ -154,8 +283,38 @@ public class RetainIndex {
 		}
 		List<Message> result = new ArrayList<>();
 		TopicFilter filter = new TopicFilter(topicFilter);
-		for (Map.Entry<String, Message> entry : index.entrySet()) {
-			if (filter.match(entry.getKey())) {
+		// $share/{group}/ and $queue/ prefixes are not part of the topic name
+		int offset = filter.getType().getPrefixLength(topicFilter);
+		if (topicFilter.indexOf('+', offset) >= 0) {
+			// + level: only walk the matching branches of the level index, which
+			// matches exactly like the subscription trie used for live publishes;
+			// a prefix range scan would visit every deeper topic under a/ for a/+
+			topicIndex.match(topicFilter.substring(offset), topic -> {
+				Message msg = index.get(topic);
+				if (msg != null) {
+					result.add(msg);
+				}
+			});
+			return result;
+		}
+		// Only a trailing #: scan the literal prefix range
+		int wildcard = topicFilter.indexOf('#', offset);
+		String prefix = topicFilter.substring(offset, wildcard);
+		if (prefix.length() > 1) {
+			// a/# also matches the parent level a
+			String parent = prefix.substring(0, prefix.length() - 1);
+			Message msg = index.get(parent);
+			if (msg != null && filter.match(parent)) {
+				result.add(msg);
+			}
+		}
+		Map<String, Message> range = prefix.isEmpty() ? index : index.tailMap(prefix);
+		for (Map.Entry<String, Message> entry : range.entrySet()) {
+			String topic = entry.getKey();
+			if (!topic.startsWith(prefix)) {
+				break;
+			}
+			if (filter.match(topic)) {
 				result.add(entry.getValue());
 			}
 		}
@@ -171,6 +330,24 @@ public class RetainIndex {
 		return index.size();
 	}
 
+	/**
+	 * Returns the estimated memory held by retained messages.
+	 *
+	 * @return the estimated bytes of all indexed retained messages
+	 */
+	public long getTotalBytes() {
+		return totalBytes.get();
+	}
+
+	/**
+	 * Returns the number of retained messages rejected by the total byte budget.
+	 *
+	 * @return the rejected count
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
 	private static String buildKey(String topic) {
 		return "retain:" + topic;
 	}
@@ -17,6 +17,7 @@
 package org.dromara.mica.mqtt.broker.cluster.store;
 
 import org.dromara.mica.mqtt.core.server.model.Message;
+import org.dromara.mica.mqtt.core.server.session.TrieTopicManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -24,7 +25,12 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -97,6 +103,122 @@ class RetainIndexTest {
 		assertEquals(3, result.size());
 	}
 
+	@Test
+	void wildcardPrefixRange() {
+		retainIndex.put("a", msg("a", "p", 0));
+		retainIndex.put("a/1", msg("a/1", "x", 0));
+		retainIndex.put("a/1/b", msg("a/1/b", "y", 0));
+		retainIndex.put("ab/1", msg("ab/1", "z", 0));
+		retainIndex.put("b/1", msg("b/1", "w", 0));
+		assertEquals(3, retainIndex.match("a/#").size());
+		assertEquals(1, retainIndex.match("a/+").size());
+		assertEquals(5, retainIndex.match("#").size());
+		assertEquals(1, retainIndex.match("$share/g/a/+").size());
+		assertEquals(3, retainIndex.match("$queue/+/1").size());
+	}
+
+	@Test
+	void innerPlusLevel() {
+		retainIndex.put("sensors/room1/temp", msg("sensors/room1/temp", "21", 0));
+		retainIndex.put("sensors/room2/temp", msg("sensors/room2/temp", "22", 0));
+		retainIndex.put("sensors/room2/temp/raw", msg("sensors/room2/temp/raw", "22.1", 0));
+		assertEquals(2, retainIndex.match("sensors/+/temp").size());
+		assertEquals(3, retainIndex.match("sensors/+/temp/#").size());
+		assertEquals(1, retainIndex.match("+/+/+/raw").size());
+		retainIndex.remove("sensors/room1/temp");
+		assertEquals(1, retainIndex.match("sensors/+/temp").size());
+		// 覆盖写入不重复
+		retainIndex.put("sensors/room2/temp", msg("sensors/room2/temp", "23", 0));
+		List<Message> result = retainIndex.match("sensors/+/temp");
+		assertEquals(1, result.size());
+		assertEquals("23", new String(result.get(0).getPayload(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void trailingPlusMatchesLikeSubscriptionTrie() {
+		String[] topics = {"a", "a/", "a/1", "a/1/b", "a/2/b/c", "ab/1", "/a", "/a/1", "b/1"};
+		for (String topic : topics) {
+			retainIndex.put(topic, msg(topic, "v", 0));
+		}
+		String[] filters = {"a/+", "+", "+/+", "/+", "/+/+", "a/+/b", "+/1", "a/+/#", "$share/g/a/+", "$queue/+/1"};
+		for (String topicFilter : filters) {
+			TrieTopicManager topicManager = new TrieTopicManager();
+			topicManager.addSubscribe(topicFilter, "c1", 0);
+			Set<String> expected = new HashSet<>();
+			for (String topic : topics) {
+				if (!topicManager.searchSubscribe(topic).isEmpty()) {
+					expected.add(topic);
+				}
+			}
+			Set<String> actual = new HashSet<>();
+			for (Message message : retainIndex.match(topicFilter)) {
+				actual.add(message.getTopic());
+			}
+			assertEquals(expected, actual, topicFilter);
+		}
+	}
+
+	@Test
+	void totalBytesLimit() {
+		// 100 overhead + 2 * 3 topic chars + 2 payload bytes per entry
+		RetainIndex limited = new RetainIndex(engine, RetainIndex.DEFAULT_MAX_PAYLOAD_BYTES, 2 * 108);
+		assertTrue(limited.put("t/1", msg("t/1", "v1", 0)));
+		assertTrue(limited.put("t/2", msg("t/2", "v2", 0)));
+		assertEquals(216, limited.getTotalBytes());
+		assertFalse(limited.put("t/3", msg("t/3", "v3", 0)));
+		assertEquals(1, limited.getRejectedCount());
+		// same-size updates to retained topics are still accepted
+		assertTrue(limited.put("t/1", msg("t/1", "v9", 0)));
+		assertEquals("v9", new String(limited.match("t/1").get(0).getPayload(), StandardCharsets.UTF_8));
+		// a growing update that does not fit is rejected and keeps the old message
+		assertFalse(limited.put("t/1", msg("t/1", "v10", 0)));
+		assertEquals(2, limited.getRejectedCount());
+		assertEquals("v9", new String(limited.match("t/1").get(0).getPayload(), StandardCharsets.UTF_8));
+		assertEquals(216, limited.getTotalBytes());
+		limited.remove("t/2");
+		assertEquals(108, limited.getTotalBytes());
+		assertTrue(limited.put("t/3", msg("t/3", "v3", 0)));
+		assertEquals(2, limited.match("t/+").size());
+	}
+
+	@Test
+	void totalBytesLimitConcurrent() throws InterruptedException {
+		int entries = 50;
+		RetainIndex limited = new RetainIndex(engine, RetainIndex.DEFAULT_MAX_PAYLOAD_BYTES, entries * 108L);
+		int threads = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger accepted = new AtomicInteger();
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			Thread worker = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				// distinct 3-char topics, every entry estimates 108 bytes
+				for (int i = 0; i < entries; i++) {
+					String topic = Character.toString((char) ('a' + thread)) + "/" + (char) ('0' + i);
+					if (limited.put(topic, msg(topic, "v1", 0))) {
+						accepted.incrementAndGet();
+					}
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		assertEquals(entries, accepted.get());
+		assertEquals(entries, limited.size());
+		assertEquals(entries * 108L, limited.getTotalBytes());
+		assertEquals((long) threads * entries - entries, limited.getRejectedCount());
+	}
+
 	@Test
 	void remove() {
 		retainIndex.put("t", msg("t", "v", 0));
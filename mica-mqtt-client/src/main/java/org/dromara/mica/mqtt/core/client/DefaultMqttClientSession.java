@@ -30,7 +30,6 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 /**
  * 客户端 session 管理，包括 sub 和 pub
@@ -145,10 +144,16 @@ public class DefaultMqttClientSession implements IMqttClientSession {
 
 	@Override
 	public List<MqttClientSubscription> getMatchedSubscription(String topicName) {
-		return subscriptions.values().stream()
-			.flatMap(Collection::stream)
-			.filter(subscription -> subscription.matches(topicName))
-			.collect(Collectors.toList());
+		// 收消息热路径，不使用 stream，匹配按字符偏移比较，不切分 topic
+		List<MqttClientSubscription> subscriptionList = new ArrayList<>();
+		for (Set<MqttClientSubscription> mqttSubscriptions : subscriptions.values()) {
+			for (MqttClientSubscription subscription : mqttSubscriptions) {
+				if (subscription.matches(topicName)) {
+					subscriptionList.add(subscription);
+				}
+			}
+		}
+		return subscriptionList;
 	}
 
 	@Override
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MqttEncoder 编码输出 ByteBuffer 分配器
+ * <p>
+ * 编码时通过 {@link #allocate(int)} 获取 buffer，报文发送完成后（onAfterSent）由 {@link MqttEncoder#release} 归还；
+ * 同一消息同时发给多个连接或重发时，buffer 在所有在途的发送完成后才归还。
+ * 默认 {@link #HEAP} 每次新建堆内存 buffer，不做回收。
+ *
+ * @author L.cm
+ */
+@FunctionalInterface
+public interface MqttBufferAllocator {
+
+	/**
+	 * 堆内存分配器，默认
+	 */
+	MqttBufferAllocator HEAP = ByteBuffer::allocate;
+
+	/**
+	 * 分配 buffer，position 为 0，limit 为 capacity
+	 *
+	 * @param capacity 需要的字节数
+	 * @return ByteBuffer
+	 */
+	ByteBuffer allocate(int capacity);
+
+	/**
+	 * 归还 buffer，归还后不能再使用
+	 *
+	 * @param buffer ByteBuffer
+	 */
+	default void release(ByteBuffer buffer) {
+	}
+
+}
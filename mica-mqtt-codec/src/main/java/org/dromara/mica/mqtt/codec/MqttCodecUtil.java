@@ -21,6 +21,9 @@ import org.dromara.mica.mqtt.codec.exception.MqttUnacceptableProtocolVersionExce
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 编解码工具
  *
@@ -32,6 +35,7 @@ public final class MqttCodecUtil {
 	public static final char TOPIC_LAYER = '/';
 	public static final char TOPIC_WILDCARDS_ONE = '+';
 	public static final char TOPIC_WILDCARDS_MORE = '#';
+	private static final String TOPIC_LAYER_STR = "/";
 	private static final String MQTT_VERSION_KEY = "MQTT_V";
 
 	private MqttCodecUtil() {
@@ -116,4 +120,43 @@ public final class MqttCodecUtil {
 		}
 	}
 
+	/**
+	 * 以 / 切分 topic，如果以 / 开头和 / 结尾会多一级，比 split 性能要好
+	 *
+	 * @param topic topic
+	 * @return part 数组
+	 */
+	public static String[] getTopicParts(String topic) {
+		// 大部分 topic 层级都在 10 以内
+		List<String> tokenList = new ArrayList<>(10);
+		char[] topicChars = topic.toCharArray();
+		int topicLength = topicChars.length;
+		int topicIdxEnd = topicLength - 1;
+		char ch;
+		// 前一个位置
+		int prev = 0;
+		for (int i = 0; i < topicLength; i++) {
+			ch = topicChars[i];
+			if (TOPIC_LAYER == ch) {
+				// 如果 / 为起始和最后的位置，添加 / 进 topic part
+				if (i == 0) {
+					tokenList.add(TOPIC_LAYER_STR);
+					prev++;
+				} else {
+					tokenList.add(new String(topicChars, prev, i - prev));
+					prev = i;
+					prev++;
+					if (i == topicIdxEnd) {
+						tokenList.add(TOPIC_LAYER_STR);
+					}
+				}
+			} else {
+				if (i == topicIdxEnd) {
+					tokenList.add(new String(topicChars, prev, topicLength - prev));
+				}
+			}
+		}
+		return tokenList.toArray(new String[0]);
+	}
+
 }
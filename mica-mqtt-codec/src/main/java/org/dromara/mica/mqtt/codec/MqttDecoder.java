@@ -23,6 +23,7 @@ import org.dromara.mica.mqtt.codec.codes.MqttConnectReasonCode;
 import org.dromara.mica.mqtt.codec.exception.DecoderException;
 import org.dromara.mica.mqtt.codec.exception.MqttIdentifierRejectedException;
 import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPublishChunkMessage;
 import org.dromara.mica.mqtt.codec.message.builder.MqttSubscriptionOption;
 import org.dromara.mica.mqtt.codec.message.builder.MqttTopicSubscription;
 import org.dromara.mica.mqtt.codec.message.header.*;
@@ -47,9 +48,23 @@ import java.util.List;
  */
 public final class MqttDecoder {
 	private static final String MQTT_FIXED_HEADER_KEY = "MQTT_F_H_K";
+	private static final String MQTT_PUBLISH_STREAM_KEY = "MQTT_P_S_K";
 	private static final int PACKET_ID_BYTES = 2;
 	private final int maxBytesInMessage;
 	private final int maxClientIdLength;
+	/**
+	 * PUBLISH payload 零拷贝解码，payload 为读缓冲区的只读切片。
+	 * 仅当传入的 ByteBuffer 解码后不再被复用时才能开启（如 mica-net 开启 useQueueDecode，每次读取都会拷贝成独立的 ByteBuffer）
+	 */
+	private final boolean payloadZeroCopy;
+	/**
+	 * PUBLISH topic name 解码缓存，可为 null
+	 */
+	private final MqttTopicCache topicCache;
+	/**
+	 * PUBLISH 流式解码过滤器，可为 null
+	 */
+	private final MqttPublishStreamFilter publishStreamFilter;
 
 	public MqttDecoder() {
 		this(MqttConstant.DEFAULT_MAX_BYTES_IN_MESSAGE);
@@ -60,8 +75,24 @@ public final class MqttDecoder {
 	}
 
 	public MqttDecoder(int maxBytesInMessage, int maxClientIdLength) {
+		this(maxBytesInMessage, maxClientIdLength, false);
+	}
+
+	public MqttDecoder(int maxBytesInMessage, int maxClientIdLength, boolean payloadZeroCopy) {
+		this(maxBytesInMessage, maxClientIdLength, payloadZeroCopy, null);
+	}
+
+	public MqttDecoder(int maxBytesInMessage, int maxClientIdLength, boolean payloadZeroCopy, MqttTopicCache topicCache) {
+		this(maxBytesInMessage, maxClientIdLength, payloadZeroCopy, topicCache, null);
+	}
+
+	public MqttDecoder(int maxBytesInMessage, int maxClientIdLength, boolean payloadZeroCopy,
+					   MqttTopicCache topicCache, MqttPublishStreamFilter publishStreamFilter) {
 		this.maxBytesInMessage = maxBytesInMessage;
 		this.maxClientIdLength = maxClientIdLength;
+		this.payloadZeroCopy = payloadZeroCopy;
+		this.topicCache = topicCache;
+		this.publishStreamFilter = publishStreamFilter;
 	}
 
 	/**
@@ -73,11 +104,21 @@ public final class MqttDecoder {
 	 * @return MqttMessage
 	 */
 	public Packet doDecode(ChannelContext ctx, ByteBuffer buffer, int readableLength) {
+		// 0. 流式解码中的 PUBLISH，本次读取的数据为 payload 分片
+		if (publishStreamFilter != null) {
+			PublishStream publishStream = ctx.get(MQTT_PUBLISH_STREAM_KEY);
+			if (publishStream != null) {
+				return decodePublishChunk(ctx, buffer, publishStream);
+			}
+		}
 		// 1. 解析消息头
 		MqttFixedHeader mqttFixedHeader = getOrDecodeMqttFixedHeader(ctx, buffer, readableLength);
 		if (mqttFixedHeader == null) {
 			return null;
 		}
+		if (isPublishStreamCandidate(mqttFixedHeader)) {
+			return decodePublishStream(ctx, buffer, readableLength, mqttFixedHeader);
+		}
 		// 2. 判断消息长度
 		int messageLength = mqttFixedHeader.getMessageLength();
 		if (readableLength < messageLength) {
@@ -95,6 +136,133 @@ public final class MqttDecoder {
 		return decodeMqttMessage(ctx, buffer, messageType, mqttFixedHeader);
 	}
 
+	/**
+	 * 是否可能流式解码，topic 需读完可变头后再判断
+	 *
+	 * @param mqttFixedHeader MqttFixedHeader
+	 * @return boolean
+	 */
+	private boolean isPublishStreamCandidate(MqttFixedHeader mqttFixedHeader) {
+		return publishStreamFilter != null
+			&& MqttMessageType.PUBLISH == mqttFixedHeader.messageType()
+			&& publishStreamFilter.isCandidate(mqttFixedHeader.getMessageLength());
+	}
+
+	/**
+	 * 解码可能流式处理的 PUBLISH，可变头读完即可判断 topic，匹配时开始流式解码，否则按普通报文处理
+	 *
+	 * @param ctx             ChannelContext
+	 * @param buffer          ByteBuffer，position 位于可变头起始处
+	 * @param readableLength  可读长度
+	 * @param mqttFixedHeader MqttFixedHeader
+	 * @return Packet
+	 */
+	private Packet decodePublishStream(ChannelContext ctx, ByteBuffer buffer, int readableLength, MqttFixedHeader mqttFixedHeader) {
+		// 1. 可变头不完整，继续读取
+		if (peekPublishVariableHeaderLength(ctx, buffer, mqttFixedHeader) < 0) {
+			return null;
+		}
+		int variableHeaderPosition = buffer.position();
+		int messageLength = mqttFixedHeader.getMessageLength();
+		// 2. 解析可变头
+		IntValue bytesConsumed = new IntValue();
+		MqttPublishVariableHeader variableHeader;
+		try {
+			variableHeader = decodePublishVariableHeader(ctx, buffer, mqttFixedHeader, bytesConsumed);
+		} catch (Exception cause) {
+			throw new DecoderException(cause);
+		}
+		// 3. topic 不匹配，按普通报文处理
+		if (!publishStreamFilter.matches(variableHeader.topicName())) {
+			if (messageLength > maxBytesInMessage) {
+				throw new DecoderException("too large message: " + messageLength + " bytes but maxBytesInMessage is " + maxBytesInMessage);
+			}
+			if (readableLength < messageLength) {
+				ctx.setPacketNeededLength(messageLength);
+				return null;
+			}
+			ctx.remove(MQTT_FIXED_HEADER_KEY);
+			buffer.position(variableHeaderPosition);
+			return decodeMqttMessage(ctx, buffer, MqttMessageType.PUBLISH, mqttFixedHeader);
+		}
+		// 4. 开始流式解码
+		int payloadLength = mqttFixedHeader.remainingLength() - bytesConsumed.value;
+		if (payloadLength < 0) {
+			throw new DecoderException("non-zero remaining payload bytes: " + payloadLength + " (PUBLISH)");
+		}
+		ctx.remove(MQTT_FIXED_HEADER_KEY);
+		PublishStream publishStream = new PublishStream(mqttFixedHeader, variableHeader, payloadLength);
+		ctx.set(MQTT_PUBLISH_STREAM_KEY, publishStream);
+		return decodePublishChunk(ctx, buffer, publishStream);
+	}
+
+	/**
+	 * 解码 payload 分片，读取本次可读的全部 payload
+	 *
+	 * @param ctx           ChannelContext
+	 * @param buffer        ByteBuffer
+	 * @param publishStream PublishStream
+	 * @return MqttPublishChunkMessage
+	 */
+	private MqttPublishChunkMessage decodePublishChunk(ChannelContext ctx, ByteBuffer buffer, PublishStream publishStream) {
+		int offset = publishStream.offset;
+		int chunkLength = Math.min(buffer.remaining(), publishStream.payloadLength - offset);
+		ByteBuffer chunk;
+		if (payloadZeroCopy) {
+			chunk = slicePublishPayload(buffer, chunkLength);
+		} else {
+			chunk = ByteBuffer.wrap(decodePublishPayload(buffer, chunkLength));
+		}
+		publishStream.offset = offset + chunkLength;
+		if (publishStream.offset == publishStream.payloadLength) {
+			ctx.remove(MQTT_PUBLISH_STREAM_KEY);
+		}
+		return new MqttPublishChunkMessage(publishStream.fixedHeader, publishStream.variableHeader, chunk, publishStream.payloadLength, offset);
+	}
+
+	/**
+	 * 不移动 position 计算 PUBLISH 可变头长度
+	 *
+	 * @param ctx             ChannelContext
+	 * @param buffer          ByteBuffer，position 位于可变头起始处
+	 * @param mqttFixedHeader MqttFixedHeader
+	 * @return 可变头长度，可读数据不足时返回 -1
+	 * @throws DecoderException 属性长度超过 4 字节
+	 */
+	private static int peekPublishVariableHeaderLength(ChannelContext ctx, ByteBuffer buffer, MqttFixedHeader mqttFixedHeader) {
+		int position = buffer.position();
+		int remaining = buffer.remaining();
+		if (remaining < 2) {
+			return -1;
+		}
+		// topic name
+		int length = 2 + (((buffer.get(position) & 0xFF) << 8) | (buffer.get(position + 1) & 0xFF));
+		if (mqttFixedHeader.qosLevel().value() > 0) {
+			length += PACKET_ID_BYTES;
+		}
+		if (MqttVersion.MQTT_5 == MqttCodecUtil.getMqttVersion(ctx)) {
+			// 属性长度，变长整数
+			int propertiesLength = 0;
+			int multiplier = 1;
+			int loops = 0;
+			byte digit;
+			do {
+				if (length + loops >= remaining) {
+					return -1;
+				}
+				digit = buffer.get(position + length + loops);
+				propertiesLength += (digit & 127) * multiplier;
+				multiplier *= 128;
+				loops++;
+			} while ((digit & 128) != 0 && loops < 4);
+			if (loops == 4 && (digit & 128) != 0) {
+				throw new DecoderException("MQTT protocol limits Properties Length to 4 bytes");
+			}
+			length += loops + propertiesLength;
+		}
+		return length <= remaining ? length : -1;
+	}
+
 	private MqttMessage decodeMqttMessage(ChannelContext ctx, ByteBuffer buffer, MqttMessageType messageType,
 										  MqttFixedHeader mqttFixedHeader) {
 		// 1. 消息体长度
@@ -110,7 +278,7 @@ public final class MqttDecoder {
 			throw new DecoderException(cause);
 		}
 		// 4. 解析消息体
-		final Object payload = decodePayload(buffer, maxClientIdLength, messageType, bytesRemainingInVariablePart, variableHeader);
+		final Object payload = decodePayload(buffer, maxClientIdLength, payloadZeroCopy, messageType, bytesRemainingInVariablePart, variableHeader);
 		return MqttMessageFactory.newMessage(mqttFixedHeader, variableHeader, payload);
 	}
 
@@ -378,7 +546,7 @@ public final class MqttDecoder {
 	 * @param variableHeader               variable header of the same message
 	 * @return the payload
 	 */
-	private static Object decodePayload(ByteBuffer buffer, int maxClientIdLength,
+	private static Object decodePayload(ByteBuffer buffer, int maxClientIdLength, boolean payloadZeroCopy,
 										MqttMessageType messageType, int bytesRemainingInVariablePart,
 										Object variableHeader) {
 		switch (messageType) {
@@ -394,7 +562,7 @@ public final class MqttDecoder {
 			case UNSUBACK:
 				return decodeUnSubAckPayload(buffer, bytesRemainingInVariablePart);
 			case PUBLISH:
-				return decodePublishPayload(buffer, bytesRemainingInVariablePart);
+				return payloadZeroCopy ? slicePublishPayload(buffer, bytesRemainingInVariablePart) : decodePublishPayload(buffer, bytesRemainingInVariablePart);
 			default:
 				// unknown payload , no byte consumed
 				return null;
@@ -508,6 +676,13 @@ public final class MqttDecoder {
 		}
 	}
 
+	private static ByteBuffer slicePublishPayload(ByteBuffer buffer, int bytesRemainingInVariablePart) {
+		ByteBuffer payload = buffer.slice();
+		payload.limit(bytesRemainingInVariablePart);
+		buffer.position(buffer.position() + bytesRemainingInVariablePart);
+		return payload.asReadOnlyBuffer();
+	}
+
 	private static void validateNoBytesRemain(int bytesRemainingInVariablePart,
 											  int numberOfBytesConsumed,
 											  MqttMessageType mqttMessageType) {
@@ -601,6 +776,35 @@ public final class MqttDecoder {
 		return decodeProperties(buffer, bytesConsumed);
 	}
 
+	/**
+	 * 拷贝原始属性字节并校验结构，延迟解码
+	 *
+	 * @param buffer        ByteBuffer
+	 * @param bytesConsumed bytesConsumed
+	 * @return MqttProperties
+	 */
+	private static MqttProperties decodeRawProperties(ByteBuffer buffer, IntValue bytesConsumed) {
+		final int start = buffer.position();
+		final long propertiesLengthVBI = decodeVariableByteInteger(buffer);
+		int totalPropertiesLength = unpackA(propertiesLengthVBI);
+		int lengthFieldBytes = unpackB(propertiesLengthVBI);
+		bytesConsumed.value = lengthFieldBytes + totalPropertiesLength;
+		// 没有属性时，直接返回空属性
+		if (totalPropertiesLength == 0) {
+			return MqttProperties.NO_PROPERTIES;
+		}
+		if (totalPropertiesLength > buffer.remaining()) {
+			throw new DecoderException("properties length " + totalPropertiesLength + " exceeds remaining " + buffer.remaining());
+		}
+		byte[] rawBytes = new byte[lengthFieldBytes + totalPropertiesLength];
+		buffer.position(start);
+		buffer.get(rawBytes);
+		if (!MqttRawProperties.isValid(rawBytes)) {
+			throw new DecoderException("Malformed properties");
+		}
+		return MqttProperties.fromRawBytes(rawBytes);
+	}
+
 	private static MqttProperties decodeProperties(ByteBuffer buffer, IntValue bytesConsumed) {
 		final long propertiesLengthVBI = decodeVariableByteInteger(buffer);
 		int totalPropertiesLength = unpackA(propertiesLengthVBI);
@@ -632,7 +836,7 @@ public final class MqttDecoder {
 				case SHARED_SUBSCRIPTION_AVAILABLE: {
 					final int b1 = ByteBufferUtil.readUnsignedByte(buffer);
 					consumedWithinProperties += 1;
-					decodedProperties.add(new IntegerProperty(propertyIdValue, b1));
+					decodedProperties.addInt(propertyIdValue, b1);
 					break;
 				}
 				case SERVER_KEEP_ALIVE:
@@ -641,7 +845,7 @@ public final class MqttDecoder {
 				case TOPIC_ALIAS: {
 					final int int2BytesResult = decodeMsbLsb(buffer);
 					consumedWithinProperties += 2;
-					decodedProperties.add(new IntegerProperty(propertyIdValue, int2BytesResult));
+					decodedProperties.addInt(propertyIdValue, int2BytesResult);
 					break;
 				}
 				case MESSAGE_EXPIRY_INTERVAL:
@@ -650,7 +854,7 @@ public final class MqttDecoder {
 				case MAXIMUM_PACKET_SIZE: {
 					final int maxPacketSize = buffer.getInt();
 					consumedWithinProperties += 4;
-					decodedProperties.add(new IntegerProperty(propertyIdValue, maxPacketSize));
+					decodedProperties.addInt(propertyIdValue, maxPacketSize);
 					break;
 				}
 				case SUBSCRIPTION_IDENTIFIER: {
@@ -763,13 +967,17 @@ public final class MqttDecoder {
 			buffer.reset();
 			return null;
 		}
+		// 存储固定头，避免重复解析
+		ctx.set(MQTT_FIXED_HEADER_KEY, mqttFixedHeader);
+		// 可能流式解码的 PUBLISH，读完可变头确定 topic 后再判断长度
+		if (isPublishStreamCandidate(mqttFixedHeader)) {
+			return mqttFixedHeader;
+		}
 		int messageLength = mqttFixedHeader.getMessageLength();
 		// 超过最大包
 		if (messageLength > maxBytesInMessage) {
 			throw new DecoderException("too large message: " + messageLength + " bytes but maxBytesInMessage is " + maxBytesInMessage);
 		}
-		// 存储固定头，避免重复解析
-		ctx.set(MQTT_FIXED_HEADER_KEY, mqttFixedHeader);
 		// 4. 长度不够，直接返回 null
 		if (readableLength < messageLength) {
 			ctx.setPacketNeededLength(messageLength);
@@ -783,10 +991,16 @@ public final class MqttDecoder {
 		MqttFixedHeader mqttFixedHeader, IntValue bytesConsumed) {
 		final MqttVersion mqttVersion = MqttCodecUtil.getMqttVersion(ctx);
 		IntValue tempBytesConsumed = new IntValue();
-		final String decodedTopic = decodeString(buffer, tempBytesConsumed);
-		// 校验发布的 topic name，不能包含通配符
-		if (MqttCodecUtil.isTopicFilter(decodedTopic)) {
-			throw new DecoderException("invalid publish topic name: " + decodedTopic + " (contains wildcards)");
+		final String decodedTopic;
+		final MqttTopicView topicView;
+		if (topicCache == null) {
+			decodedTopic = decodeString(buffer, tempBytesConsumed);
+			validatePublishTopicName(decodedTopic);
+			topicView = null;
+		} else {
+			MqttTopicCache.Entry topicEntry = decodeTopicWithCache(buffer, tempBytesConsumed);
+			decodedTopic = topicEntry.getTopic();
+			topicView = topicEntry.getTopicView();
 		}
 		int numberOfBytesConsumed = tempBytesConsumed.value;
 
@@ -798,17 +1012,66 @@ public final class MqttDecoder {
 
 		final MqttProperties properties;
 		if (mqttVersion == MqttVersion.MQTT_5) {
-			properties = decodeProperties(buffer, tempBytesConsumed);
+			// PUBLISH 属性只校验结构，首次读取时才解码，转发时原样写出
+			properties = decodeRawProperties(buffer, tempBytesConsumed);
 			numberOfBytesConsumed += tempBytesConsumed.value;
 		} else {
 			properties = MqttProperties.NO_PROPERTIES;
 		}
 
 		bytesConsumed.value = numberOfBytesConsumed;
-		return new MqttPublishVariableHeader(decodedTopic, packetId, properties);
+		return new MqttPublishVariableHeader(decodedTopic, packetId, properties, topicView);
+	}
+
+	/**
+	 * 通过缓存解码 topic name，命中时不分配任何对象
+	 *
+	 * @param buffer        ByteBuffer
+	 * @param bytesConsumed bytesConsumed
+	 * @return MqttTopicCache.Entry
+	 */
+	private MqttTopicCache.Entry decodeTopicWithCache(ByteBuffer buffer, IntValue bytesConsumed) {
+		int size = decodeMsbLsb(buffer);
+		// 先校验长度，避免缓存按错误的长度读取
+		if (size > buffer.remaining()) {
+			throw new DecoderException("invalid publish topic name length: " + size + " (remaining bytes: " + buffer.remaining() + ')');
+		}
+		bytesConsumed.value = 2 + size;
+		MqttTopicCache.Entry topicEntry = topicCache.get(buffer, size);
+		if (topicEntry != null) {
+			return topicEntry;
+		}
+		byte[] topicBytes = ByteBufferUtil.readBytes(buffer, size);
+		String topic = new String(topicBytes, StandardCharsets.UTF_8);
+		// 只缓存校验通过的 topic，命中时无需再次校验
+		validatePublishTopicName(topic);
+		return topicCache.put(topicBytes, topic);
+	}
+
+	private static void validatePublishTopicName(String topicName) {
+		// 校验发布的 topic name，不能包含通配符
+		if (MqttCodecUtil.isTopicFilter(topicName)) {
+			throw new DecoderException("invalid publish topic name: " + topicName + " (contains wildcards)");
+		}
 	}
 
 	private static final class IntValue {
 		private int value;
 	}
+
+	/**
+	 * 流式解码中的 PUBLISH
+	 */
+	private static final class PublishStream {
+		private final MqttFixedHeader fixedHeader;
+		private final MqttPublishVariableHeader variableHeader;
+		private final int payloadLength;
+		private int offset;
+
+		private PublishStream(MqttFixedHeader fixedHeader, MqttPublishVariableHeader variableHeader, int payloadLength) {
+			this.fixedHeader = fixedHeader;
+			this.variableHeader = variableHeader;
+			this.payloadLength = payloadLength;
+		}
+	}
 }
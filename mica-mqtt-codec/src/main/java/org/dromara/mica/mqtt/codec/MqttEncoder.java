@@ -33,8 +33,8 @@ import org.dromara.mica.mqtt.codec.properties.*;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Encodes Mqtt messages into bytes following the protocol specification v3.1
@@ -46,12 +46,54 @@ import java.util.List;
  * @author L.cm
  */
 public final class MqttEncoder {
-	public static final MqttEncoder INSTANCE = new MqttEncoder();
+	public static final MqttEncoder INSTANCE = new MqttEncoder(MqttBufferAllocator.HEAP);
+	private final MqttBufferAllocator allocator;
 
-	private MqttEncoder() {
+	/**
+	 * 使用自定义的 buffer 分配器，池化分配器需在报文发送完成后调用 {@link #release(MqttMessage)} 归还
+	 *
+	 * @param allocator MqttBufferAllocator
+	 */
+	public MqttEncoder(MqttBufferAllocator allocator) {
+		this.allocator = Objects.requireNonNull(allocator, "MqttBufferAllocator is null.");
 	}
 
-	private static ByteBuffer encodeConnectMessage(ChannelContext ctx, MqttConnectMessage message) {
+	public MqttBufferAllocator getAllocator() {
+		return allocator;
+	}
+
+	/**
+	 * 报文发送完成后归还编码 buffer，每次 {@link #doEncode} 都必须对应一次调用
+	 *
+	 * @param message MqttMessage
+	 */
+	public void release(MqttMessage message) {
+		if (allocator == MqttBufferAllocator.HEAP) {
+			return;
+		}
+		ByteBuffer buffer = message.endEncode();
+		if (buffer != null) {
+			allocator.release(buffer);
+		}
+	}
+
+	/**
+	 * 分配编码 buffer，池化分配的 buffer 绑定到消息上，该消息所有在途的发送都完成后归还
+	 */
+	private static ByteBuffer allocate(MqttBufferAllocator allocator, MqttMessage message, int capacity) {
+		if (allocator == MqttBufferAllocator.HEAP) {
+			return ByteBuffer.allocate(capacity);
+		}
+		ByteBuffer buffer = allocator.allocate(capacity);
+		if (message.bindEncodedBuffer(buffer)) {
+			return buffer;
+		}
+		// 上一轮的 buffer 尚未归还
+		allocator.release(buffer);
+		return ByteBuffer.allocate(capacity);
+	}
+
+	private static ByteBuffer encodeConnectMessage(ChannelContext ctx, MqttConnectMessage message, MqttBufferAllocator allocator) {
 		int payloadBufferSize = 0;
 
 		MqttFixedHeader mqttFixedHeader = message.fixedHeader();
@@ -115,7 +157,7 @@ public final class MqttEncoder {
 		int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
 		int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
 		// 申请 ByteBuffer
-		ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variablePartSize);
+		ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variablePartSize);
 		buf.put(getFixedHeaderByte1(mqttFixedHeader));
 		writeVariableLengthInt(buf, variablePartSize);
 		buf.putShort((short) protocolNameBytes.length);
@@ -168,12 +210,12 @@ public final class MqttEncoder {
 		return flagByte;
 	}
 
-	private static ByteBuffer encodeConnAckMessage(ChannelContext ctx, MqttConnAckMessage message) {
+	private static ByteBuffer encodeConnAckMessage(ChannelContext ctx, MqttConnAckMessage message, MqttBufferAllocator allocator) {
 		final MqttVersion mqttVersion = MqttCodecUtil.getMqttVersion(ctx);
 		byte[] propertiesBytes = encodePropertiesIfNeeded(mqttVersion, message.variableHeader().properties());
 		int variablePartSize = 2 + propertiesBytes.length;
 		int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
-		ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variablePartSize);
+		ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variablePartSize);
 		buf.put(getFixedHeaderByte1(message.fixedHeader()));
 		writeVariableLengthInt(buf, variablePartSize);
 		buf.put((byte) (message.variableHeader().isSessionPresent() ? 0x01 : 0x00));
@@ -182,7 +224,7 @@ public final class MqttEncoder {
 		return buf;
 	}
 
-	private static ByteBuffer encodeSubscribeMessage(ChannelContext ctx, MqttSubscribeMessage message) {
+	private static ByteBuffer encodeSubscribeMessage(ChannelContext ctx, MqttSubscribeMessage message, MqttBufferAllocator allocator) {
 		MqttVersion mqttVersion = MqttCodecUtil.getMqttVersion(ctx);
 		byte[] propertiesBytes = encodePropertiesIfNeeded(mqttVersion,
 			message.variableHeader().properties());
@@ -208,7 +250,7 @@ public final class MqttEncoder {
 		int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
 		int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
 
-		ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variablePartSize);
+		ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variablePartSize);
 		buf.put(getFixedHeaderByte1(mqttFixedHeader));
 		writeVariableLengthInt(buf, variablePartSize);
 
@@ -242,7 +284,7 @@ public final class MqttEncoder {
 		return buf;
 	}
 
-	private static ByteBuffer encodeUnSubscribeMessage(ChannelContext ctx, MqttUnSubscribeMessage message) {
+	private static ByteBuffer encodeUnSubscribeMessage(ChannelContext ctx, MqttUnSubscribeMessage message, MqttBufferAllocator allocator) {
 		MqttVersion mqttVersion = MqttCodecUtil.getMqttVersion(ctx);
 		byte[] propertiesBytes = encodePropertiesIfNeeded(mqttVersion,
 			message.variableHeader().properties());
@@ -268,7 +310,7 @@ public final class MqttEncoder {
 		int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
 		int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
 
-		ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variablePartSize);
+		ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variablePartSize);
 		buf.put(getFixedHeaderByte1(mqttFixedHeader));
 		writeVariableLengthInt(buf, variablePartSize);
 
@@ -286,7 +328,7 @@ public final class MqttEncoder {
 		return buf;
 	}
 
-	private static ByteBuffer encodeSubAckMessage(ChannelContext ctx, MqttSubAckMessage message) {
+	private static ByteBuffer encodeSubAckMessage(ChannelContext ctx, MqttSubAckMessage message, MqttBufferAllocator allocator) {
 		MqttVersion mqttVersion = MqttCodecUtil.getMqttVersion(ctx);
 		byte[] propertiesBytes = encodePropertiesIfNeeded(mqttVersion,
 			message.variableHeader().properties());
@@ -294,7 +336,7 @@ public final class MqttEncoder {
 		int payloadBufferSize = message.payload().grantedQoSLevels().size();
 		int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
 		int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
-		ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variablePartSize);
+		ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variablePartSize);
 		buf.put(getFixedHeaderByte1(message.fixedHeader()));
 		writeVariableLengthInt(buf, variablePartSize);
 		buf.putShort((short) message.variableHeader().messageId());
@@ -305,12 +347,16 @@ public final class MqttEncoder {
 		return buf;
 	}
 
-	private static ByteBuffer encodeUnSubAckMessage(ChannelContext ctx, MqttUnSubAckMessage message) {
+	private static ByteBuffer encodeUnSubAckMessage(ChannelContext ctx, MqttUnSubAckMessage message, MqttBufferAllocator allocator) {
 		MqttVersion mqttVersion = MqttCodecUtil.getMqttVersion(ctx);
-		return encodeUnSubAckMessage(mqttVersion, message);
+		return encodeUnSubAckMessage(mqttVersion, message, allocator);
 	}
 
 	static ByteBuffer encodeUnSubAckMessage(MqttVersion mqttVersion, MqttUnSubAckMessage message) {
+		return encodeUnSubAckMessage(mqttVersion, message, MqttBufferAllocator.HEAP);
+	}
+
+	private static ByteBuffer encodeUnSubAckMessage(MqttVersion mqttVersion, MqttUnSubAckMessage message, MqttBufferAllocator allocator) {
 		MqttMessageIdVariableHeader variableHeader = message.variableHeader();
 		byte[] propertiesBytes = encodePropertiesIfNeeded(mqttVersion, variableHeader.properties());
 
@@ -321,7 +367,7 @@ public final class MqttEncoder {
 		int payloadBufferSize = needIncludePayload ? payload.unsubscribeReasonCodes().size() : 0;
 		int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
 		int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
-		ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variablePartSize);
+		ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variablePartSize);
 		buf.put(getFixedHeaderByte1(message.fixedHeader()));
 		writeVariableLengthInt(buf, variablePartSize);
 		buf.putShort((short) variableHeader.messageId());
@@ -335,11 +381,26 @@ public final class MqttEncoder {
 		return buf;
 	}
 
-	private static ByteBuffer encodePublishMessage(ChannelContext ctx, MqttPublishMessage message) {
+	private static ByteBuffer encodePublishMessage(ChannelContext ctx, MqttPublishMessage message, MqttBufferAllocator allocator) {
 		MqttVersion mqttVersion = MqttCodecUtil.getMqttVersion(ctx);
+		MqttFixedHeader mqttFixedHeader = message.fixedHeader();
+		// 订阅转发时复用预编码的帧，只改写 DUP 位和 packetId
+		MqttPublishFrame frame = message.frame();
+		if (frame != null && frame.isCompatible(mqttVersion, mqttFixedHeader)) {
+			return frame.toByteBuffer(mqttFixedHeader.isDup(), message.variableHeader().packetId());
+		}
+		return encodePublishMessage(mqttVersion, message, allocator);
+	}
+
+	static ByteBuffer encodePublishMessage(MqttVersion mqttVersion, MqttPublishMessage message) {
+		return encodePublishMessage(mqttVersion, message, MqttBufferAllocator.HEAP);
+	}
+
+	static ByteBuffer encodePublishMessage(MqttVersion mqttVersion, MqttPublishMessage message, MqttBufferAllocator allocator) {
 		MqttFixedHeader mqttFixedHeader = message.fixedHeader();
 		MqttPublishVariableHeader variableHeader = message.variableHeader();
-		byte[] payload = message.payload() == null ? ByteBufferUtil.EMPTY_BYTES : message.payload();
+		// 使用只读视图，零拷贝解码的 payload 不会生成中间 byte[]
+		ByteBuffer payload = message.payloadBuffer();
 
 		String topicName = variableHeader.topicName();
 		byte[] topicNameBytes = encodeStringUtf8(topicName);
@@ -349,11 +410,11 @@ public final class MqttEncoder {
 
 		int variableHeaderBufferSize = 2 + topicNameBytes.length +
 			(mqttFixedHeader.qosLevel().value() > 0 ? 2 : 0) + propertiesBytes.length;
-		int payloadBufferSize = payload.length;
+		int payloadBufferSize = payload == null ? 0 : payload.remaining();
 		int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
 		int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
 
-		ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variablePartSize);
+		ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variablePartSize);
 		buf.put(getFixedHeaderByte1(mqttFixedHeader));
 		writeVariableLengthInt(buf, variablePartSize);
 		buf.putShort((short) topicNameBytes.length);
@@ -362,11 +423,46 @@ public final class MqttEncoder {
 			buf.putShort((short) variableHeader.packetId());
 		}
 		buf.put(propertiesBytes);
-		buf.put(payload);
+		if (payload != null) {
+			buf.put(payload);
+		}
 		return buf;
 	}
 
-	private static ByteBuffer encodePubReplyMessage(ChannelContext ctx, MqttMessage message) {
+	/**
+	 * 预编码 PUBLISH 帧，用于订阅转发时多个订阅者共享 topic、properties 和 payload 的编码结果。
+	 * <p>
+	 * 帧中 DUP 位固定为 0，packetId 由 {@link MqttPublishFrame#toByteBuffer(boolean, int)} 按订阅者写入。
+	 *
+	 * @param mqttVersion MqttVersion
+	 * @param message     MqttPublishMessage，packetId 会被忽略
+	 * @return MqttPublishFrame
+	 */
+	public static MqttPublishFrame encodePublishFrame(MqttVersion mqttVersion, MqttPublishMessage message) {
+		MqttFixedHeader mqttFixedHeader = message.fixedHeader();
+		MqttQoS qos = mqttFixedHeader.qosLevel();
+		boolean retain = mqttFixedHeader.isRetain();
+		MqttPublishMessage frameMessage = new MqttPublishMessage(
+			new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, retain, 0),
+			message.variableHeader(),
+			message.payloadBuffer(),
+			null
+		);
+		byte[] bytes = encodePublishMessage(mqttVersion, frameMessage).array();
+		int packetIdIndex = -1;
+		if (qos.value() > 0) {
+			// 固定头 1 字节 + 剩余长度（变长） + topic 长度 2 字节 + topic
+			int index = 1;
+			while ((bytes[index++] & 0x80) != 0) {
+				// 跳过剩余长度
+			}
+			int topicLength = ((bytes[index] & 0xFF) << 8) | (bytes[index + 1] & 0xFF);
+			packetIdIndex = index + 2 + topicLength;
+		}
+		return new MqttPublishFrame(mqttVersion, qos, retain, bytes, packetIdIndex);
+	}
+
+	private static ByteBuffer encodePubReplyMessage(ChannelContext ctx, MqttMessage message, MqttBufferAllocator allocator) {
 		if (message.variableHeader() instanceof MqttPubReplyMessageVariableHeader) {
 			MqttFixedHeader mqttFixedHeader = message.fixedHeader();
 			MqttPubReplyMessageVariableHeader variableHeader =
@@ -388,7 +484,7 @@ public final class MqttEncoder {
 			}
 
 			final int fixedHeaderBufferSize = 1 + getVariableLengthInt(variableHeaderBufferSize);
-			ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variableHeaderBufferSize);
+			ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variableHeaderBufferSize);
 			buf.put(getFixedHeaderByte1(mqttFixedHeader));
 			writeVariableLengthInt(buf, variableHeaderBufferSize);
 			buf.putShort((short) variableHeader.messageId());
@@ -398,24 +494,24 @@ public final class MqttEncoder {
 			buf.put(propertiesBytes);
 			return buf;
 		} else {
-			return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(message);
+			return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(message, allocator);
 		}
 	}
 
-	private static ByteBuffer encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(MqttMessage message) {
+	static ByteBuffer encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(MqttMessage message, MqttBufferAllocator allocator) {
 		MqttFixedHeader mqttFixedHeader = message.fixedHeader();
 		MqttMessageIdVariableHeader variableHeader = (MqttMessageIdVariableHeader) message.variableHeader();
 		// variable part only has a message id
 		int variableHeaderBufferSize = 2;
 		int fixedHeaderBufferSize = 1 + getVariableLengthInt(variableHeaderBufferSize);
-		ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variableHeaderBufferSize);
+		ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variableHeaderBufferSize);
 		buf.put(getFixedHeaderByte1(mqttFixedHeader));
 		writeVariableLengthInt(buf, variableHeaderBufferSize);
 		buf.putShort((short) variableHeader.messageId());
 		return buf;
 	}
 
-	private static ByteBuffer encodeReasonCodePlusPropertiesMessage(ChannelContext ctx, MqttMessage message) {
+	private static ByteBuffer encodeReasonCodePlusPropertiesMessage(ChannelContext ctx, MqttMessage message, MqttBufferAllocator allocator) {
 		if (message.variableHeader() instanceof MqttReasonCodeAndPropertiesVariableHeader) {
 			MqttVersion mqttVersion = MqttCodecUtil.getMqttVersion(ctx);
 			MqttFixedHeader mqttFixedHeader = message.fixedHeader();
@@ -437,7 +533,7 @@ public final class MqttEncoder {
 				variableHeaderBufferSize = 0;
 			}
 			final int fixedHeaderBufferSize = 1 + getVariableLengthInt(variableHeaderBufferSize);
-			ByteBuffer buf = ByteBuffer.allocate(fixedHeaderBufferSize + variableHeaderBufferSize);
+			ByteBuffer buf = allocate(allocator, message, fixedHeaderBufferSize + variableHeaderBufferSize);
 			buf.put(getFixedHeaderByte1(mqttFixedHeader));
 			writeVariableLengthInt(buf, variableHeaderBufferSize);
 			if (includeReasonCode) {
@@ -452,6 +548,7 @@ public final class MqttEncoder {
 
 	private static ByteBuffer encodeMessageWithOnlySingleByteFixedHeader(MqttMessage message) {
 		MqttFixedHeader mqttFixedHeader = message.fixedHeader();
+		// PINGREQ、PINGRESP 等为共享的常量消息，不走池化分配
 		ByteBuffer buf = ByteBuffer.allocate(2);
 		buf.put(getFixedHeaderByte1(mqttFixedHeader));
 		buf.put((byte) 0);
@@ -467,13 +564,17 @@ public final class MqttEncoder {
 	}
 
 	public static byte[] encodeProperties(MqttProperties mqttProperties) {
-		Collection<? extends MqttProperty> properties = mqttProperties.listAll();
-		// 根据属性数量动态计算缓冲区初始容量，避免过度分配或不足分配
-		int propCount = properties.size();
-		int initialCapacity = Math.min(1024, Math.max(64, propCount * 12));
-		FastByteBuffer writeBuffer = new FastByteBuffer(initialCapacity);
-		for (MqttProperty<?> property : properties) {
-			int propertyId = property.propertyId();
+		// 延迟解码且未被修改的属性，原样写出
+		byte[] rawBytes = mqttProperties.rawBytes();
+		if (rawBytes != null) {
+			return rawBytes;
+		}
+		FastByteBuffer writeBuffer = new FastByteBuffer(64);
+		// 按属性 id 遍历，整数类属性直接读取 int 值，不创建属性对象
+		for (int propertyId = 1; propertyId <= MqttProperties.MAX_PROPERTY_ID; propertyId++) {
+			if (!mqttProperties.contains(propertyId)) {
+				continue;
+			}
 			MqttPropertyType propertyType = MqttPropertyType.valueOf(propertyId);
 			switch (propertyType) {
 				case PAYLOAD_FORMAT_INDICATOR:
@@ -485,30 +586,27 @@ public final class MqttEncoder {
 				case SUBSCRIPTION_IDENTIFIER_AVAILABLE:
 				case SHARED_SUBSCRIPTION_AVAILABLE:
 					writeBuffer.writeVarLengthInt(propertyId);
-					final byte bytePropValue = ((IntegerProperty) property).value().byteValue();
-					writeBuffer.writeByte(bytePropValue);
+					writeBuffer.writeByte((byte) mqttProperties.getInt(propertyType));
 					break;
 				case SERVER_KEEP_ALIVE:
 				case RECEIVE_MAXIMUM:
 				case TOPIC_ALIAS_MAXIMUM:
 				case TOPIC_ALIAS:
 					writeBuffer.writeVarLengthInt(propertyId);
-					final short twoBytesInPropValue =
-						((IntegerProperty) property).value().shortValue();
-					writeBuffer.writeShortBE(twoBytesInPropValue);
+					writeBuffer.writeShortBE((short) mqttProperties.getInt(propertyType));
 					break;
 				case MESSAGE_EXPIRY_INTERVAL:
 				case SESSION_EXPIRY_INTERVAL:
 				case WILL_DELAY_INTERVAL:
 				case MAXIMUM_PACKET_SIZE:
 					writeBuffer.writeVarLengthInt(propertyId);
-					final int fourBytesIntPropValue = ((IntegerProperty) property).value();
-					writeBuffer.writeIntBE(fourBytesIntPropValue);
+					writeBuffer.writeIntBE(mqttProperties.getInt(propertyType));
 					break;
 				case SUBSCRIPTION_IDENTIFIER:
-					writeBuffer.writeVarLengthInt(propertyId);
-					final int vbi = ((IntegerProperty) property).value();
-					writeBuffer.writeVarLengthInt(vbi);
+					for (MqttProperty<?> property : mqttProperties.getProperties(propertyId)) {
+						writeBuffer.writeVarLengthInt(propertyId);
+						writeBuffer.writeVarLengthInt(((IntegerProperty) property).value());
+					}
 					break;
 				case CONTENT_TYPE:
 				case RESPONSE_TOPIC:
@@ -518,12 +616,11 @@ public final class MqttEncoder {
 				case SERVER_REFERENCE:
 				case REASON_STRING:
 					writeBuffer.writeVarLengthInt(propertyId);
-					writeEagerUTF8String(writeBuffer, ((StringProperty) property).value());
+					writeEagerUTF8String(writeBuffer, ((StringProperty) mqttProperties.getProperty(propertyId)).value());
 					break;
 				case USER_PROPERTY:
-					final List<StringPair> pairs =
-						((UserProperties) property).value();
-					for (StringPair pair : pairs) {
+					for (MqttProperty<?> property : mqttProperties.getProperties(propertyId)) {
+						StringPair pair = ((UserProperty) property).value();
 						writeBuffer.writeVarLengthInt(propertyId);
 						writeEagerUTF8String(writeBuffer, pair.key);
 						writeEagerUTF8String(writeBuffer, pair.value);
@@ -532,7 +629,7 @@ public final class MqttEncoder {
 				case CORRELATION_DATA:
 				case AUTHENTICATION_DATA:
 					writeBuffer.writeVarLengthInt(propertyId);
-					final byte[] binaryPropValue = ((BinaryProperty) property).value();
+					final byte[] binaryPropValue = ((BinaryProperty) mqttProperties.getProperty(propertyId)).value();
 					writeBuffer.writeShortBE((short) binaryPropValue.length);
 					writeBuffer.writeBytes(binaryPropValue, 0, binaryPropValue.length);
 					break;
@@ -604,32 +701,37 @@ public final class MqttEncoder {
 	 * @return ByteBuf with encoded bytes
 	 */
 	public ByteBuffer doEncode(ChannelContext ctx, MqttMessage message) {
+		MqttBufferAllocator allocator = this.allocator;
+		// 同一消息可能同时发给多个连接或重发，只有没有其他在途的发送时才走池，避免 buffer 被其他发送提前归还
+		if (allocator != MqttBufferAllocator.HEAP && !message.beginEncode()) {
+			allocator = MqttBufferAllocator.HEAP;
+		}
 		switch (message.fixedHeader().messageType()) {
 			case CONNECT:
-				return encodeConnectMessage(ctx, (MqttConnectMessage) message);
+				return encodeConnectMessage(ctx, (MqttConnectMessage) message, allocator);
 			case CONNACK:
-				return encodeConnAckMessage(ctx, (MqttConnAckMessage) message);
+				return encodeConnAckMessage(ctx, (MqttConnAckMessage) message, allocator);
 			case PUBLISH:
-				return encodePublishMessage(ctx, (MqttPublishMessage) message);
+				return encodePublishMessage(ctx, (MqttPublishMessage) message, allocator);
 			case SUBSCRIBE:
-				return encodeSubscribeMessage(ctx, (MqttSubscribeMessage) message);
+				return encodeSubscribeMessage(ctx, (MqttSubscribeMessage) message, allocator);
 			case UNSUBSCRIBE:
-				return encodeUnSubscribeMessage(ctx, (MqttUnSubscribeMessage) message);
+				return encodeUnSubscribeMessage(ctx, (MqttUnSubscribeMessage) message, allocator);
 			case SUBACK:
-				return encodeSubAckMessage(ctx, (MqttSubAckMessage) message);
+				return encodeSubAckMessage(ctx, (MqttSubAckMessage) message, allocator);
 			case UNSUBACK:
 				if (message instanceof MqttUnSubAckMessage) {
-					return encodeUnSubAckMessage(ctx, (MqttUnSubAckMessage) message);
+					return encodeUnSubAckMessage(ctx, (MqttUnSubAckMessage) message, allocator);
 				}
-				return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(message);
+				return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(message, allocator);
 			case PUBACK:
 			case PUBREC:
 			case PUBREL:
 			case PUBCOMP:
-				return encodePubReplyMessage(ctx, message);
+				return encodePubReplyMessage(ctx, message, allocator);
 			case DISCONNECT:
 			case AUTH:
-				return encodeReasonCodePlusPropertiesMessage(ctx, message);
+				return encodeReasonCodePlusPropertiesMessage(ctx, message, allocator);
 			case PINGREQ:
 			case PINGRESP:
 				return encodeMessageWithOnlySingleByteFixedHeader(message);
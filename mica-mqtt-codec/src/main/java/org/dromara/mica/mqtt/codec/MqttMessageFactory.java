@@ -20,6 +20,8 @@ import org.dromara.mica.mqtt.codec.message.*;
 import org.dromara.mica.mqtt.codec.message.header.*;
 import org.dromara.mica.mqtt.codec.message.payload.*;
 
+import java.nio.ByteBuffer;
+
 /**
  * Utility class with factory methods to create different types of MQTT messages.
  *
@@ -60,6 +62,13 @@ public final class MqttMessageFactory {
 					(MqttMessageIdVariableHeader) variableHeader,
 					(MqttUnsubscribePayload) payload);
 			case PUBLISH:
+				if (payload instanceof ByteBuffer) {
+					return new MqttPublishMessage(
+						mqttFixedHeader,
+						(MqttPublishVariableHeader) variableHeader,
+						(ByteBuffer) payload,
+						null);
+				}
 				return new MqttPublishMessage(
 					mqttFixedHeader,
 					(MqttPublishVariableHeader) variableHeader,
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import java.util.Arrays;
+
+/**
+ * PUBLISH 流式解码过滤器，报文长度达到 minMessageLength 且 topic 匹配前缀的 PUBLISH 按分片解码。
+ * <p>
+ * 流式解码时不再等待整个报文读完，可变头读完后即产出分片报文，每个分片为当次读取到的 payload，
+ * 单连接内存占用与 payload 大小无关，适合固件、图片等大文件上传。流式报文不受 maxBytesInMessage 限制。
+ *
+ * @author L.cm
+ */
+public final class MqttPublishStreamFilter {
+	private final int minMessageLength;
+	private final String[] topicPrefixes;
+
+	/**
+	 * 创建流式解码过滤器
+	 *
+	 * @param minMessageLength 流式解码的最小报文长度
+	 * @param topicPrefixes    topic 前缀
+	 */
+	public MqttPublishStreamFilter(int minMessageLength, String... topicPrefixes) {
+		if (minMessageLength < 0) {
+			throw new IllegalArgumentException("minMessageLength must be greater than or equal to zero.");
+		}
+		if (topicPrefixes == null || topicPrefixes.length == 0) {
+			throw new IllegalArgumentException("topicPrefixes must not be empty.");
+		}
+		for (String topicPrefix : topicPrefixes) {
+			if (topicPrefix == null || topicPrefix.isEmpty()) {
+				throw new IllegalArgumentException("topicPrefix must not be empty.");
+			}
+		}
+		this.minMessageLength = minMessageLength;
+		this.topicPrefixes = topicPrefixes.clone();
+	}
+
+	/**
+	 * 报文长度是否达到流式解码的最小长度
+	 *
+	 * @param messageLength 报文长度
+	 * @return 是否达到
+	 */
+	public boolean isCandidate(int messageLength) {
+		return messageLength >= minMessageLength;
+	}
+
+	/**
+	 * topic 是否匹配流式解码的前缀
+	 *
+	 * @param topic topic name
+	 * @return 是否匹配
+	 */
+	public boolean matches(String topic) {
+		for (String topicPrefix : topicPrefixes) {
+			if (topic.startsWith(topicPrefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getMinMessageLength() {
+		return minMessageLength;
+	}
+
+	public String[] getTopicPrefixes() {
+		return topicPrefixes.clone();
+	}
+
+	@Override
+	public String toString() {
+		return "MqttPublishStreamFilter{" +
+			"minMessageLength=" + minMessageLength +
+			", topicPrefixes=" + Arrays.toString(topicPrefixes) +
+			'}';
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PUBLISH topic name 解码缓存，以原始 topic 字节为 key，缓存解码后的 String 和切分好的 topic parts。
+ * <p>
+ * 设备 topic 数量有限时，稳态下 PUBLISH 解码 topic 不再分配 byte[]、String 和 parts 数组。
+ * 采用直接映射的定长数组，hash 冲突时直接覆盖旧条目，无锁、命中时零分配，容量上限即数组长度。
+ *
+ * @author L.cm
+ */
+public final class MqttTopicCache {
+	private final Entry[] table;
+	private final int mask;
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+
+	/**
+	 * 创建 topic 缓存
+	 *
+	 * @param maxSize 最大条目数，会向上取整为 2 的幂
+	 */
+	public MqttTopicCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("topic cache maxSize must be greater than zero.");
+		}
+		int capacity = tableSizeFor(maxSize);
+		this.table = new Entry[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * 查找缓存，命中时 buffer 的 position 前移 length，未命中时不改变 position
+	 *
+	 * @param buffer ByteBuffer，position 位于 topic 字节起始处
+	 * @param length topic 字节长度
+	 * @return Entry，未命中返回 null
+	 */
+	public Entry get(ByteBuffer buffer, int length) {
+		int position = buffer.position();
+		int hash = hash(buffer, position, length);
+		Entry entry = table[hash & mask];
+		if (entry != null && entry.hash == hash && entry.bytesEquals(buffer, position, length)) {
+			hitCount.increment();
+			buffer.position(position + length);
+			return entry;
+		}
+		missCount.increment();
+		return null;
+	}
+
+	/**
+	 * 放入缓存，调用方需保证 topic 已经过校验
+	 *
+	 * @param bytes topic 原始字节
+	 * @param topic 解码后的 topic
+	 * @return Entry
+	 */
+	public Entry put(byte[] bytes, String topic) {
+		int hash = hash(bytes);
+		Entry entry = new Entry(hash, bytes, topic, MqttTopicView.of(topic));
+		table[hash & mask] = entry;
+		return entry;
+	}
+
+	/**
+	 * 命中次数
+	 *
+	 * @return 命中次数
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * 未命中次数
+	 *
+	 * @return 未命中次数
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * 缓存容量
+	 *
+	 * @return 容量
+	 */
+	public int capacity() {
+		return table.length;
+	}
+
+	/**
+	 * 清空缓存和统计
+	 */
+	public void clear() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = null;
+		}
+		hitCount.reset();
+		missCount.reset();
+	}
+
+	private static int hash(ByteBuffer buffer, int position, int length) {
+		int h = 1;
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + buffer.get(position + i);
+		}
+		return spread(h);
+	}
+
+	private static int hash(byte[] bytes) {
+		int h = 1;
+		for (byte b : bytes) {
+			h = 31 * h + b;
+		}
+		return spread(h);
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	private static int tableSizeFor(int size) {
+		int n = -1 >>> Integer.numberOfLeadingZeros(size - 1);
+		return (n < 0) ? 1 : (n >= (1 << 30)) ? (1 << 30) : n + 1;
+	}
+
+	/**
+	 * 缓存条目，字段均为 final，可安全地跨线程共享
+	 */
+	public static final class Entry {
+		private final int hash;
+		private final byte[] bytes;
+		private final String topic;
+		private final MqttTopicView topicView;
+
+		Entry(int hash, byte[] bytes, String topic, MqttTopicView topicView) {
+			this.hash = hash;
+			this.bytes = bytes;
+			this.topic = topic;
+			this.topicView = topicView;
+		}
+
+		public String getTopic() {
+			return topic;
+		}
+
+		/**
+		 * topic 层级视图，多个消息共享，不可 reset
+		 *
+		 * @return MqttTopicView
+		 */
+		public MqttTopicView getTopicView() {
+			return topicView;
+		}
+
+		private boolean bytesEquals(ByteBuffer buffer, int position, int length) {
+			if (bytes.length != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (bytes[i] != buffer.get(position + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+/**
+ * topic 层级视图，只记录每一层在原 topic 中的起止位置，不切分子串。
+ * <p>
+ * 层级切分规则与 {@link MqttCodecUtil#getTopicParts(String)} 一致：以 / 开头和以 / 结尾会多一层 "/"。
+ * 可通过 {@link #reset(String)} 复用，复用时不分配对象（层级数超过数组容量时才扩容）。
+ * 未复用的实例创建后不可变，可在多线程间共享。
+ *
+ * @author L.cm
+ */
+public final class MqttTopicView {
+	/**
+	 * 大部分 topic 层级都在 8 以内
+	 */
+	private static final int DEFAULT_LEVELS = 8;
+	private String topic;
+	/**
+	 * 每层的起止位置，[start0, end0, start1, end1, ...]
+	 */
+	private int[] offsets;
+	private int levels;
+
+	public MqttTopicView() {
+		this.offsets = new int[DEFAULT_LEVELS << 1];
+	}
+
+	/**
+	 * 创建 topic 视图
+	 *
+	 * @param topic topic
+	 * @return MqttTopicView
+	 */
+	public static MqttTopicView of(String topic) {
+		return new MqttTopicView().reset(topic);
+	}
+
+	/**
+	 * 重置为新的 topic
+	 *
+	 * @param topic topic
+	 * @return MqttTopicView
+	 */
+	public MqttTopicView reset(String topic) {
+		this.topic = topic;
+		this.levels = 0;
+		int topicLength = topic.length();
+		int topicIdxEnd = topicLength - 1;
+		// 前一个位置
+		int prev = 0;
+		for (int i = 0; i < topicLength; i++) {
+			if (MqttCodecUtil.TOPIC_LAYER == topic.charAt(i)) {
+				// 如果 / 为起始和最后的位置，添加 / 作为一层
+				if (i == 0) {
+					addLevel(0, 1);
+					prev++;
+				} else {
+					addLevel(prev, i);
+					prev = i + 1;
+					if (i == topicIdxEnd) {
+						addLevel(i, topicLength);
+					}
+				}
+			} else if (i == topicIdxEnd) {
+				addLevel(prev, topicLength);
+			}
+		}
+		return this;
+	}
+
+	private void addLevel(int start, int end) {
+		int index = levels << 1;
+		if (index == offsets.length) {
+			int[] newOffsets = new int[offsets.length << 1];
+			System.arraycopy(offsets, 0, newOffsets, 0, offsets.length);
+			offsets = newOffsets;
+		}
+		offsets[index] = start;
+		offsets[index + 1] = end;
+		levels++;
+	}
+
+	public String getTopic() {
+		return topic;
+	}
+
+	/**
+	 * 层级数
+	 *
+	 * @return 层级数
+	 */
+	public int levels() {
+		return levels;
+	}
+
+	/**
+	 * 层级在 topic 中的起始位置
+	 *
+	 * @param level 层级
+	 * @return 起始位置
+	 */
+	public int levelStart(int level) {
+		return offsets[level << 1];
+	}
+
+	/**
+	 * 层级在 topic 中的结束位置（不包含）
+	 *
+	 * @param level 层级
+	 * @return 结束位置
+	 */
+	public int levelEnd(int level) {
+		return offsets[(level << 1) + 1];
+	}
+
+	/**
+	 * 层级是否与 part 相同，不创建子串
+	 *
+	 * @param level 层级
+	 * @param part  part
+	 * @return 是否相同
+	 */
+	public boolean levelEquals(int level, String part) {
+		int start = offsets[level << 1];
+		int length = offsets[(level << 1) + 1] - start;
+		return part.length() == length && topic.regionMatches(start, part, 0, length);
+	}
+
+	/**
+	 * 获取层级字符串，会创建子串，仅用于非热点路径
+	 *
+	 * @param level 层级
+	 * @return 层级字符串
+	 */
+	public String level(int level) {
+		return topic.substring(offsets[level << 1], offsets[(level << 1) + 1]);
+	}
+
+	/**
+	 * 转换为 part 数组，同 {@link MqttCodecUtil#getTopicParts(String)}
+	 *
+	 * @return part 数组
+	 */
+	public String[] toParts() {
+		String[] parts = new String[levels];
+		for (int i = 0; i < levels; i++) {
+			parts[i] = level(i);
+		}
+		return parts;
+	}
+
+	@Override
+	public String toString() {
+		return "MqttTopicView{" +
+			"topic='" + topic + '\'' +
+			", levels=" + levels +
+			'}';
+	}
+
+	/**
+	 * 层级查找 key，用于以层级字符串为 key 的 Map 查找，避免创建子串。
+	 * <p>
+	 * hashCode 与层级字符串的 {@link String#hashCode()} 相同，equals 与 String 比较，
+	 * 仅用于 {@code Map<String, ?>} 的 get，可复用但非线程安全。
+	 * <p>
+	 * 注意：equals 不对称，{@code levelKey.equals(part)} 可能为 true，而 {@code part.equals(levelKey)} 始终为 false。
+	 * 查找依赖 {@link java.util.Map#get(Object)} 约定的 {@code key.equals(k)} 比较方向（JDK 的 HashMap、ConcurrentHashMap 均如此），
+	 * 不能放入 Map 或 Set，也不能用于比较方向不同的自定义容器，这类容器请使用 {@link #matches(String)}。
+	 */
+	public static final class LevelKey {
+		private String topic;
+		private int start;
+		private int length;
+		private int hash;
+
+		/**
+		 * 定位到视图的某一层
+		 *
+		 * @param view  MqttTopicView
+		 * @param level 层级
+		 * @return LevelKey
+		 */
+		public LevelKey set(MqttTopicView view, int level) {
+			String topic = view.topic;
+			int start = view.offsets[level << 1];
+			int end = view.offsets[(level << 1) + 1];
+			int h = 0;
+			for (int i = start; i < end; i++) {
+				h = 31 * h + topic.charAt(i);
+			}
+			this.topic = topic;
+			this.start = start;
+			this.length = end - start;
+			this.hash = h;
+			return this;
+		}
+
+		/**
+		 * 是否与层级字符串相同
+		 *
+		 * @param part 层级字符串
+		 * @return 是否相同
+		 */
+		public boolean matches(String part) {
+			return part.length() == length && topic.regionMatches(start, part, 0, length);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o instanceof String) {
+				return matches((String) o);
+			}
+			return o == this;
+		}
+
+		@Override
+		public String toString() {
+			return topic.substring(start, start + length);
+		}
+	}
+}
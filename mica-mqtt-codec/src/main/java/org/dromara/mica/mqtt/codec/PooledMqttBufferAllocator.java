@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按容量分级的共享 ByteBuffer 池
+ * <p>
+ * 容量按 2 的幂分级（最小 16 字节），超过 maxPooledCapacity 的 buffer 不入池。
+ * 编码线程分配、写完成线程归还，不是同一个线程，所以每个级别使用所有线程共享的无锁队列，最多缓存 maxCachedPerClass 个。
+ *
+ * @author L.cm
+ */
+public final class PooledMqttBufferAllocator implements MqttBufferAllocator {
+	private static final int MIN_SHIFT = 4;
+	private final boolean direct;
+	private final int maxPooledCapacity;
+	private final int maxCachedPerClass;
+	private final int classCount;
+	private final ConcurrentLinkedQueue<ByteBuffer>[] pools;
+	/**
+	 * 各级别缓存数，ConcurrentLinkedQueue#size 为 O(n)
+	 */
+	private final AtomicInteger[] pooledCounts;
+	private final LongAdder allocateCount = new LongAdder();
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder releaseCount = new LongAdder();
+
+	/**
+	 * 创建 buffer 池
+	 *
+	 * @param direct            是否使用堆外内存
+	 * @param maxPooledCapacity 入池的最大容量，会向上取整为 2 的幂
+	 * @param maxCachedPerClass 每个级别的最大缓存数
+	 */
+	public PooledMqttBufferAllocator(boolean direct, int maxPooledCapacity, int maxCachedPerClass) {
+		if (maxPooledCapacity < (1 << MIN_SHIFT)) {
+			throw new IllegalArgumentException("maxPooledCapacity must be greater than or equal to " + (1 << MIN_SHIFT));
+		}
+		if (maxPooledCapacity > (1 << 30)) {
+			throw new IllegalArgumentException("maxPooledCapacity must be less than or equal to " + (1 << 30));
+		}
+		if (maxCachedPerClass <= 0) {
+			throw new IllegalArgumentException("maxCachedPerClass must be greater than zero.");
+		}
+		this.direct = direct;
+		this.classCount = sizeClass(maxPooledCapacity) + 1;
+		this.maxPooledCapacity = 1 << (classCount - 1 + MIN_SHIFT);
+		this.maxCachedPerClass = maxCachedPerClass;
+		this.pools = newPools(classCount);
+		this.pooledCounts = new AtomicInteger[classCount];
+		for (int i = 0; i < classCount; i++) {
+			pooledCounts[i] = new AtomicInteger();
+		}
+	}
+
+	@Override
+	public ByteBuffer allocate(int capacity) {
+		allocateCount.increment();
+		if (capacity > maxPooledCapacity) {
+			return newBuffer(capacity);
+		}
+		int sizeClass = sizeClass(capacity);
+		ByteBuffer buffer = pools[sizeClass].poll();
+		if (buffer == null) {
+			buffer = newBuffer(1 << (sizeClass + MIN_SHIFT));
+		} else {
+			pooledCounts[sizeClass].decrementAndGet();
+			hitCount.increment();
+			buffer.clear();
+		}
+		buffer.limit(capacity);
+		return buffer;
+	}
+
+	@Override
+	public void release(ByteBuffer buffer) {
+		int capacity = buffer.capacity();
+		// 只回收池中分配的规格
+		if (buffer.isDirect() != direct || capacity > maxPooledCapacity
+			|| capacity < (1 << MIN_SHIFT) || Integer.bitCount(capacity) != 1) {
+			return;
+		}
+		int sizeClass = sizeClass(capacity);
+		AtomicInteger pooledCount = pooledCounts[sizeClass];
+		// 先占位再入队，并发归还时不超过上限
+		if (pooledCount.incrementAndGet() > maxCachedPerClass) {
+			pooledCount.decrementAndGet();
+			return;
+		}
+		pools[sizeClass].offer(buffer);
+		releaseCount.increment();
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * 分配次数
+	 *
+	 * @return 分配次数
+	 */
+	public long getAllocateCount() {
+		return allocateCount.sum();
+	}
+
+	/**
+	 * 从池中复用的次数
+	 *
+	 * @return 复用次数
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * 归还入池的次数
+	 *
+	 * @return 归还次数
+	 */
+	public long getReleaseCount() {
+		return releaseCount.sum();
+	}
+
+	private ByteBuffer newBuffer(int capacity) {
+		return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ConcurrentLinkedQueue<ByteBuffer>[] newPools(int classCount) {
+		ConcurrentLinkedQueue<ByteBuffer>[] pools = new ConcurrentLinkedQueue[classCount];
+		for (int i = 0; i < classCount; i++) {
+			pools[i] = new ConcurrentLinkedQueue<>();
+		}
+		return pools;
+	}
+
+	private static int sizeClass(int capacity) {
+		if (capacity <= (1 << MIN_SHIFT)) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+	}
+
+}
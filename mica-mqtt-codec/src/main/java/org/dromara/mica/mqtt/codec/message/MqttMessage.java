@@ -21,6 +21,10 @@ import org.dromara.mica.mqtt.codec.MqttMessageType;
 import org.dromara.mica.mqtt.codec.MqttQoS;
 import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
  * Base class for all MQTT message types.
  *
@@ -35,10 +39,22 @@ public class MqttMessage extends Packet {
 		MqttQoS.QOS0, false, 0));
 	public static final MqttMessage DISCONNECT = new MqttMessage(new MqttFixedHeader(MqttMessageType.DISCONNECT, false,
 		MqttQoS.QOS0, false, 0));
+	private static final AtomicReferenceFieldUpdater<MqttMessage, ByteBuffer> ENCODED_BUFFER_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(MqttMessage.class, ByteBuffer.class, "encodedBuffer");
+	private static final AtomicIntegerFieldUpdater<MqttMessage> PENDING_ENCODES_UPDATER =
+		AtomicIntegerFieldUpdater.newUpdater(MqttMessage.class, "pendingEncodes");
 
 	private final MqttFixedHeader mqttFixedHeader;
 	private final Object variableHeader;
 	private final Object payload;
+	/**
+	 * 编码时从池中分配的 buffer，所有在途的发送完成后归还
+	 */
+	private transient volatile ByteBuffer encodedBuffer;
+	/**
+	 * 已编码、尚未发送完成的次数，同一消息可能发给多个连接或重发
+	 */
+	private transient volatile int pendingEncodes;
 
 	public MqttMessage(MqttFixedHeader mqttFixedHeader) {
 		this(mqttFixedHeader, null, null);
@@ -66,6 +82,41 @@ public class MqttMessage extends Packet {
 		return payload;
 	}
 
+	/**
+	 * 开始一次编码，和 {@link #endEncode()} 成对调用，内部使用
+	 *
+	 * @return 是否为唯一在途的发送，只有此时才能绑定池化的 buffer
+	 */
+	public boolean beginEncode() {
+		return PENDING_ENCODES_UPDATER.incrementAndGet(this) == 1;
+	}
+
+	/**
+	 * 绑定编码时从池中分配的 buffer，上一个 buffer 尚未归还时返回 false，内部使用
+	 *
+	 * @param buffer ByteBuffer
+	 * @return 是否绑定成功
+	 */
+	public boolean bindEncodedBuffer(ByteBuffer buffer) {
+		return ENCODED_BUFFER_UPDATER.compareAndSet(this, null, buffer);
+	}
+
+	/**
+	 * 结束一次编码（发送完成），所有在途的发送都完成后解绑编码 buffer，内部使用
+	 * <p>
+	 * 先读取 buffer 再递减计数：读取时本次发送仍在途，期间不会绑定新的 buffer，所以只会解绑本轮的 buffer。
+	 *
+	 * @return 可以归还的 ByteBuffer，仍有在途的发送或未绑定时返回 null
+	 */
+	public ByteBuffer endEncode() {
+		ByteBuffer buffer = encodedBuffer;
+		if (PENDING_ENCODES_UPDATER.decrementAndGet(this) == 0 && buffer != null
+			&& ENCODED_BUFFER_UPDATER.compareAndSet(this, buffer, null)) {
+			return buffer;
+		}
+		return null;
+	}
+
 	@Override
 	public String toString() {
 		return "MqttMessage[" +
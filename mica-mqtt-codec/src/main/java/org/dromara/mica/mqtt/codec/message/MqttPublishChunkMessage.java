@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec.message;
+
+import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
+import org.dromara.mica.mqtt.codec.message.header.MqttPublishVariableHeader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 流式解码的 PUBLISH 分片，固定头和可变头为整个 PUBLISH 的头，payload 为本次读取到的部分 payload。
+ * <p>
+ * 同一个 PUBLISH 的分片按 offset 顺序产出，第一个分片可能为空（只读完了可变头）。
+ *
+ * @author L.cm
+ * @see org.dromara.mica.mqtt.codec.MqttPublishStreamFilter
+ */
+public final class MqttPublishChunkMessage extends MqttMessage {
+	private final int payloadLength;
+	private final int offset;
+	private final int chunkLength;
+
+	public MqttPublishChunkMessage(MqttFixedHeader mqttFixedHeader,
+								   MqttPublishVariableHeader variableHeader,
+								   ByteBuffer chunk,
+								   int payloadLength,
+								   int offset) {
+		super(mqttFixedHeader, variableHeader, chunk);
+		this.payloadLength = payloadLength;
+		this.offset = offset;
+		this.chunkLength = chunk.remaining();
+	}
+
+	@Override
+	public MqttPublishVariableHeader variableHeader() {
+		return (MqttPublishVariableHeader) super.variableHeader();
+	}
+
+	/**
+	 * 本次分片
+	 *
+	 * @return ByteBuffer
+	 */
+	@Override
+	public ByteBuffer payload() {
+		return (ByteBuffer) super.payload();
+	}
+
+	/**
+	 * 整个 PUBLISH 的 payload 长度
+	 *
+	 * @return payload 长度
+	 */
+	public int getPayloadLength() {
+		return payloadLength;
+	}
+
+	/**
+	 * 本次分片在 payload 中的偏移量
+	 *
+	 * @return 偏移量
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * 本次分片长度
+	 *
+	 * @return 分片长度
+	 */
+	public int getChunkLength() {
+		return chunkLength;
+	}
+
+	/**
+	 * 是否为第一个分片
+	 *
+	 * @return boolean
+	 */
+	public boolean isFirst() {
+		return offset == 0;
+	}
+
+	/**
+	 * 是否为最后一个分片
+	 *
+	 * @return boolean
+	 */
+	public boolean isLast() {
+		return offset + chunkLength == payloadLength;
+	}
+
+	@Override
+	public String toString() {
+		return "MqttPublishChunkMessage[" +
+			"fixedHeader=" + fixedHeader() +
+			", variableHeader=" + variableHeader() +
+			", payloadLength=" + payloadLength +
+			", offset=" + offset +
+			", chunkLength=" + chunkLength +
+			']';
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec.message;
+
+import org.dromara.mica.mqtt.codec.MqttQoS;
+import org.dromara.mica.mqtt.codec.MqttVersion;
+import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 预编码的 PUBLISH 帧，用于订阅转发时"一次编码，多次发送"。
+ * <p>
+ * topic、properties、payload 只编码一次，发送给每个订阅者时只改写固定头 DUP 位和 packetId：
+ * <ul>
+ *   <li>QoS0：没有 packetId，所有订阅者共享同一个字节数组，不再拷贝</li>
+ *   <li>QoS1/QoS2：拷贝一次整帧，再原地写入 DUP 位和 packetId</li>
+ * </ul>
+ * MQTT 3.1 和 3.1.1 的 PUBLISH 字节布局完全一致，可共用同一个帧；MQTT 5.0 多了 properties，需要单独编码。
+ *
+ * @author L.cm
+ */
+public final class MqttPublishFrame {
+	private final MqttVersion mqttVersion;
+	private final MqttQoS qos;
+	private final boolean retain;
+	/**
+	 * 完整的 PUBLISH 帧字节，DUP 位为 0
+	 */
+	private final byte[] frame;
+	/**
+	 * packetId 在帧中的下标，QoS0 时为 -1
+	 */
+	private final int packetIdIndex;
+
+	public MqttPublishFrame(MqttVersion mqttVersion, MqttQoS qos, boolean retain, byte[] frame, int packetIdIndex) {
+		this.mqttVersion = mqttVersion;
+		this.qos = qos;
+		this.retain = retain;
+		this.frame = frame;
+		this.packetIdIndex = packetIdIndex;
+	}
+
+	public MqttVersion getMqttVersion() {
+		return mqttVersion;
+	}
+
+	public MqttQoS getQos() {
+		return qos;
+	}
+
+	public boolean isRetain() {
+		return retain;
+	}
+
+	/**
+	 * 帧长度
+	 *
+	 * @return 帧长度
+	 */
+	public int length() {
+		return frame.length;
+	}
+
+	/**
+	 * 判断该帧能否用于发送指定版本、固定头的消息
+	 *
+	 * @param version     连接的 mqtt 版本
+	 * @param fixedHeader 待发送消息的固定头
+	 * @return 是否可复用
+	 */
+	public boolean isCompatible(MqttVersion version, MqttFixedHeader fixedHeader) {
+		return isMqtt5(mqttVersion) == isMqtt5(version)
+			&& qos == fixedHeader.qosLevel()
+			&& retain == fixedHeader.isRetain();
+	}
+
+	/**
+	 * 生成发送用的 ByteBuffer，position 位于帧末尾（与 MqttEncoder 的返回约定一致，由框架 flip）
+	 *
+	 * @param dup      DUP 标识
+	 * @param packetId packetId，QoS0 时忽略
+	 * @return ByteBuffer
+	 */
+	public ByteBuffer toByteBuffer(boolean dup, int packetId) {
+		final byte[] bytes;
+		if (packetIdIndex < 0) {
+			// QoS0 不允许设置 DUP，直接共享字节数组
+			bytes = frame;
+		} else {
+			bytes = frame.clone();
+			if (dup) {
+				bytes[0] |= 0x08;
+			}
+			bytes[packetIdIndex] = (byte) (packetId >>> 8);
+			bytes[packetIdIndex + 1] = (byte) packetId;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.position(bytes.length);
+		return buffer;
+	}
+
+	private static boolean isMqtt5(MqttVersion version) {
+		return MqttVersion.MQTT_5 == version;
+	}
+
+}
@@ -21,17 +21,49 @@ import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
 import org.dromara.mica.mqtt.codec.message.header.MqttPublishVariableHeader;
 import org.dromara.mica.mqtt.codec.message.properties.MqttPublishProperties;
 
+import java.nio.ByteBuffer;
+
 /**
  * See <a href="https://public.dhe.ibm.com/software/dw/webservices/ws-mqtt/mqtt-v3r1.html#publish">MQTTV3.1/publish</a>
+ * <p>
+ * payload 可以是 byte[]，也可以是只读的 ByteBuffer（零拷贝解码时为读缓冲区的切片），
+ * ByteBuffer 形式仅在调用 {@link #payload()} 时才生成 byte[]，纯转发场景可用 {@link #payloadBuffer()} 避免拷贝。
  *
  * @author netty
  */
 public class MqttPublishMessage extends MqttMessage {
+	/**
+	 * 预编码的帧，订阅转发时复用，可为 null
+	 */
+	private final MqttPublishFrame frame;
+	/**
+	 * ByteBuffer 形式 payload 按需生成的 byte[]
+	 */
+	private byte[] payloadBytes;
+
 	public MqttPublishMessage(
 		MqttFixedHeader mqttFixedHeader,
 		MqttPublishVariableHeader variableHeader,
 		byte[] payload) {
+		this(mqttFixedHeader, variableHeader, payload, null);
+	}
+
+	public MqttPublishMessage(
+		MqttFixedHeader mqttFixedHeader,
+		MqttPublishVariableHeader variableHeader,
+		byte[] payload,
+		MqttPublishFrame frame) {
+		super(mqttFixedHeader, variableHeader, payload);
+		this.frame = frame;
+	}
+
+	public MqttPublishMessage(
+		MqttFixedHeader mqttFixedHeader,
+		MqttPublishVariableHeader variableHeader,
+		ByteBuffer payload,
+		MqttPublishFrame frame) {
 		super(mqttFixedHeader, variableHeader, payload);
+		this.frame = frame;
 	}
 
 	@Override
@@ -41,11 +73,57 @@ public class MqttPublishMessage extends MqttMessage {
 
 	@Override
 	public byte[] payload() {
-		return (byte[]) super.payload();
+		Object payload = super.payload();
+		if (payload instanceof ByteBuffer) {
+			byte[] bytes = this.payloadBytes;
+			if (bytes == null) {
+				ByteBuffer buffer = ((ByteBuffer) payload).duplicate();
+				bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				this.payloadBytes = bytes;
+			}
+			return bytes;
+		}
+		return (byte[]) payload;
 	}
 
 	public byte[] getPayload() {
-		return (byte[]) super.payload();
+		return payload();
+	}
+
+	/**
+	 * 获取 payload 的只读视图，不会拷贝数据，每次返回独立的 position
+	 *
+	 * @return ByteBuffer，payload 为 null 时返回 null
+	 */
+	public ByteBuffer payloadBuffer() {
+		Object payload = super.payload();
+		if (payload instanceof ByteBuffer) {
+			return ((ByteBuffer) payload).duplicate();
+		}
+		return payload == null ? null : ByteBuffer.wrap((byte[]) payload).asReadOnlyBuffer();
+	}
+
+	/**
+	 * payload 长度
+	 *
+	 * @return payload 长度
+	 */
+	public int payloadLength() {
+		Object payload = super.payload();
+		if (payload instanceof ByteBuffer) {
+			return ((ByteBuffer) payload).remaining();
+		}
+		return payload == null ? 0 : ((byte[]) payload).length;
+	}
+
+	/**
+	 * 预编码的帧，编码时若版本、qos、retain 一致则直接复用
+	 *
+	 * @return MqttPublishFrame，可为 null
+	 */
+	public MqttPublishFrame frame() {
+		return frame;
 	}
 
 	public MqttPublishProperties getProperties() {
@@ -18,12 +18,14 @@ package org.dromara.mica.mqtt.codec.message.builder;
 
 import org.dromara.mica.mqtt.codec.MqttMessageType;
 import org.dromara.mica.mqtt.codec.MqttQoS;
+import org.dromara.mica.mqtt.codec.message.MqttPublishFrame;
 import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
 import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
 import org.dromara.mica.mqtt.codec.message.header.MqttPublishVariableHeader;
 import org.dromara.mica.mqtt.codec.message.properties.MqttPublishProperties;
 import org.dromara.mica.mqtt.codec.properties.MqttProperties;
 
+import java.nio.ByteBuffer;
 import java.util.function.Consumer;
 
 /**
@@ -37,8 +39,10 @@ public final class MqttPublishBuilder {
 	private boolean retained;
 	private MqttQoS qos;
 	private byte[] payload;
+	private ByteBuffer payloadBuffer;
 	private int messageId;
 	private MqttProperties properties = MqttProperties.NO_PROPERTIES;
+	private MqttPublishFrame frame;
 
 	public MqttPublishBuilder() {
 	}
@@ -65,6 +69,19 @@ public final class MqttPublishBuilder {
 
 	public MqttPublishBuilder payload(byte[] payload) {
 		this.payload = payload;
+		this.payloadBuffer = null;
+		return this;
+	}
+
+	/**
+	 * 设置 ByteBuffer 形式的 payload，不拷贝数据，仅在需要 byte[] 时才生成
+	 *
+	 * @param payload ByteBuffer，读取 position 到 limit 之间的数据
+	 * @return MqttPublishBuilder
+	 */
+	public MqttPublishBuilder payload(ByteBuffer payload) {
+		this.payloadBuffer = payload == null ? null : payload.asReadOnlyBuffer();
+		this.payload = null;
 		return this;
 	}
 
@@ -86,6 +103,17 @@ public final class MqttPublishBuilder {
 		return properties(publishProperties.getProperties());
 	}
 
+	/**
+	 * 设置预编码的帧，订阅转发时复用，避免每个订阅者重复编码 topic、properties 和 payload
+	 *
+	 * @param frame MqttPublishFrame
+	 * @return MqttPublishBuilder
+	 */
+	public MqttPublishBuilder frame(MqttPublishFrame frame) {
+		this.frame = frame;
+		return this;
+	}
+
 	public String getTopicName() {
 		return topic;
 	}
@@ -99,6 +127,12 @@ public final class MqttPublishBuilder {
 	}
 
 	public byte[] getPayload() {
+		if (payload == null && payloadBuffer != null) {
+			ByteBuffer buffer = payloadBuffer.duplicate();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			return bytes;
+		}
 		return payload;
 	}
 
@@ -117,6 +151,9 @@ public final class MqttPublishBuilder {
 		MqttFixedHeader mqttFixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, isDup, qos, retained, 0);
 		MqttPublishVariableHeader mqttVariableHeader =
 			new MqttPublishVariableHeader(topic, messageId, properties);
-		return new MqttPublishMessage(mqttFixedHeader, mqttVariableHeader, payload);
+		if (payloadBuffer != null) {
+			return new MqttPublishMessage(mqttFixedHeader, mqttVariableHeader, payloadBuffer, frame);
+		}
+		return new MqttPublishMessage(mqttFixedHeader, mqttVariableHeader, payload, frame);
 	}
 }
@@ -16,6 +16,7 @@
 
 package org.dromara.mica.mqtt.codec.message.header;
 
+import org.dromara.mica.mqtt.codec.MqttTopicView;
 import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
 import org.dromara.mica.mqtt.codec.properties.MqttProperties;
 
@@ -28,15 +29,24 @@ public final class MqttPublishVariableHeader {
 	private final String topicName;
 	private final int packetId;
 	private final MqttProperties properties;
+	/**
+	 * topic 层级视图，开启 topic 解码缓存时由缓存提供，可为 null
+	 */
+	private final MqttTopicView topicView;
 
 	public MqttPublishVariableHeader(String topicName, int packetId) {
 		this(topicName, packetId, MqttProperties.NO_PROPERTIES);
 	}
 
 	public MqttPublishVariableHeader(String topicName, int packetId, MqttProperties properties) {
+		this(topicName, packetId, properties, null);
+	}
+
+	public MqttPublishVariableHeader(String topicName, int packetId, MqttProperties properties, MqttTopicView topicView) {
 		this.topicName = topicName;
 		this.packetId = packetId;
 		this.properties = MqttProperties.withEmptyDefaults(properties);
+		this.topicView = topicView;
 	}
 
 	public String topicName() {
@@ -51,6 +61,15 @@ public final class MqttPublishVariableHeader {
 		return properties;
 	}
 
+	/**
+	 * topic 层级视图，多个消息共享，不可 reset
+	 *
+	 * @return MqttTopicView，未开启 topic 解码缓存时为 null
+	 */
+	public MqttTopicView topicView() {
+		return topicView;
+	}
+
 	@Override
 	public String toString() {
 		return "MqttPublishVariableHeader[" +
@@ -16,19 +16,53 @@
 
 package org.dromara.mica.mqtt.codec.properties;
 
+import org.dromara.mica.mqtt.codec.MqttDecoder;
+
 import java.util.*;
 
 /**
  * MQTT Properties container
+ * <p>
+ * 属性 id 都小于 0x2B，普通属性按 id 存放在数组中；整数类属性另存一份 int 值，
+ * 通过 {@link #getInt(MqttPropertyType)} 读取时不装箱，解码时也只写入 int 值，读取 {@link MqttProperty} 时才创建对象。
+ * 可多次出现的用户属性和订阅标识符仍使用列表。
+ * <p>
+ * 通过 {@link #fromRawBytes(byte[])} 创建时只持有原始属性字节，首次读取时才解码；
+ * 未被修改前 {@link #rawBytes()} 可供编码器原样写出，转发时无需重新编码。
  *
  * @author netty
  */
 public final class MqttProperties {
 	public static final MqttProperties NO_PROPERTIES = new MqttProperties(false);
+	/**
+	 * 最大的属性 id
+	 */
+	public static final int MAX_PROPERTY_ID = 0x2A;
 	private final boolean canModify;
-	private Map<Integer, MqttProperty> props;
+	/**
+	 * 按属性 id 存放的属性对象，整数类属性通过 {@link #addInt(int, int)} 添加时为 null
+	 */
+	private MqttProperty[] props;
+	/**
+	 * 按属性 id 存放的整数类属性值
+	 */
+	private int[] intValues;
+	/**
+	 * 整数类属性是否存在，第 n 位对应属性 id n
+	 */
+	private long intMask;
+	/**
+	 * 普通属性是否存在，第 n 位对应属性 id n
+	 */
+	private long propMask;
 	private List<UserProperty> userProperties;
 	private List<IntegerProperty> subscriptionIds;
+	/**
+	 * 原始属性字节（含长度字段），修改属性后置为 null
+	 */
+	private volatile byte[] rawBytes;
+	private volatile boolean decoded = true;
+
 	public MqttProperties() {
 		this(true);
 	}
@@ -43,11 +77,65 @@ public final class MqttProperties {
 		return properties;
 	}
 
-	public void add(MqttProperty property) {
+	/**
+	 * 基于原始属性字节创建，延迟解码
+	 *
+	 * @param rawBytes 原始属性字节，属性长度（变长整数） + 属性列表，调用方需保证已校验且之后不再修改
+	 * @return MqttProperties
+	 */
+	public static MqttProperties fromRawBytes(byte[] rawBytes) {
+		if (MqttRawProperties.propertiesLength(rawBytes) == 0) {
+			return MqttProperties.NO_PROPERTIES;
+		}
+		MqttProperties properties = new MqttProperties(true);
+		properties.rawBytes = rawBytes;
+		properties.decoded = false;
+		return properties;
+	}
+
+	/**
+	 * 原始属性字节，仅由 {@link #fromRawBytes(byte[])} 创建且未被修改时存在，不可修改
+	 *
+	 * @return 原始属性字节，不存在时返回 null
+	 */
+	public byte[] rawBytes() {
+		return rawBytes;
+	}
+
+	private void ensureDecoded() {
+		if (decoded) {
+			return;
+		}
+		synchronized (this) {
+			if (!decoded) {
+				MqttProperties properties = MqttDecoder.decodeProperties(rawBytes);
+				this.props = properties.props;
+				this.intValues = properties.intValues;
+				this.intMask = properties.intMask;
+				this.propMask = properties.propMask;
+				this.userProperties = properties.userProperties;
+				this.subscriptionIds = properties.subscriptionIds;
+				this.decoded = true;
+			}
+		}
+	}
+
+	private void checkModify() {
 		if (!canModify) {
 			throw new UnsupportedOperationException("adding property isn't allowed");
 		}
-		Map<Integer, MqttProperty> props = this.props;
+		ensureDecoded();
+		this.rawBytes = null;
+	}
+
+	private static void checkPropertyId(int propertyId) {
+		if (propertyId < 1 || propertyId > MAX_PROPERTY_ID) {
+			throw new IllegalArgumentException("unknown property type: " + propertyId);
+		}
+	}
+
+	public void add(MqttProperty property) {
+		checkModify();
 		int propertyId = property.propertyId();
 		if (propertyId == MqttPropertyType.USER_PROPERTY.value()) {
 			List<UserProperty> userProperties = this.userProperties;
@@ -65,42 +153,101 @@ public final class MqttProperties {
 				throw new IllegalArgumentException("User property must be of UserProperty or UserProperties type");
 			}
 		} else if (propertyId == MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value()) {
-			List<IntegerProperty> subscriptionIds = this.subscriptionIds;
-			if (subscriptionIds == null) {
-				subscriptionIds = new ArrayList<>(1);
-				this.subscriptionIds = subscriptionIds;
-			}
 			if (property instanceof IntegerProperty) {
-				subscriptionIds.add((IntegerProperty) property);
+				addSubscriptionId((IntegerProperty) property);
 			} else {
 				throw new IllegalArgumentException("Subscription ID must be an integer property");
 			}
 		} else {
+			checkPropertyId(propertyId);
+			MqttProperty[] props = this.props;
 			if (props == null) {
-				props = new HashMap<>();
+				props = new MqttProperty[MAX_PROPERTY_ID + 1];
 				this.props = props;
 			}
-			props.put(propertyId, property);
+			props[propertyId] = property;
+			long bit = 1L << propertyId;
+			propMask |= bit;
+			if (property instanceof IntegerProperty) {
+				Integer value = ((IntegerProperty) property).value();
+				if (value != null) {
+					intValues()[propertyId] = value;
+					intMask |= bit;
+					return;
+				}
+			}
+			intMask &= ~bit;
 		}
 	}
 
-	public Collection<? extends MqttProperty> listAll() {
-		Map<Integer, MqttProperty> props = this.props;
-		if (props == null && subscriptionIds == null && userProperties == null) {
-			return Collections.emptyList();
-		}
-		if (props == null && userProperties == null) {
-			return subscriptionIds;
+	/**
+	 * 添加整数类属性，只存 int 值，不创建属性对象
+	 *
+	 * @param propertyId 属性 id
+	 * @param value      属性值
+	 */
+	public void addInt(int propertyId, int value) {
+		checkModify();
+		if (propertyId == MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value()) {
+			addSubscriptionId(new IntegerProperty(propertyId, value));
+			return;
 		}
-		if (subscriptionIds == null && userProperties == null) {
-			return props.values();
+		if (propertyId == MqttPropertyType.USER_PROPERTY.value()) {
+			throw new IllegalArgumentException("User property must be of UserProperty or UserProperties type");
 		}
-		List<MqttProperty> propValues = new ArrayList<>(
-			(props != null ? props.size() : 0)
-				+ (subscriptionIds != null ? subscriptionIds.size() : 0)
-				+ (userProperties != null ? 1 : 0));
+		checkPropertyId(propertyId);
+		MqttProperty[] props = this.props;
 		if (props != null) {
-			propValues.addAll(props.values());
+			props[propertyId] = null;
+		}
+		intValues()[propertyId] = value;
+		long bit = 1L << propertyId;
+		intMask |= bit;
+		propMask |= bit;
+	}
+
+	/**
+	 * 添加整数类属性，只存 int 值，不创建属性对象
+	 *
+	 * @param mqttPropertyType 属性类型
+	 * @param value            属性值
+	 */
+	public void addInt(MqttPropertyType mqttPropertyType, int value) {
+		addInt(mqttPropertyType.value(), value);
+	}
+
+	private void addSubscriptionId(IntegerProperty property) {
+		List<IntegerProperty> subscriptionIds = this.subscriptionIds;
+		if (subscriptionIds == null) {
+			subscriptionIds = new ArrayList<>(1);
+			this.subscriptionIds = subscriptionIds;
+		}
+		subscriptionIds.add(property);
+	}
+
+	private int[] intValues() {
+		int[] intValues = this.intValues;
+		if (intValues == null) {
+			intValues = new int[MAX_PROPERTY_ID + 1];
+			this.intValues = intValues;
+		}
+		return intValues;
+	}
+
+	public Collection<? extends MqttProperty> listAll() {
+		ensureDecoded();
+		long propMask = this.propMask;
+		List<IntegerProperty> subscriptionIds = this.subscriptionIds;
+		List<UserProperty> userProperties = this.userProperties;
+		if (propMask == 0L && userProperties == null) {
+			return subscriptionIds == null ? Collections.emptyList() : subscriptionIds;
+		}
+		List<MqttProperty> propValues = new ArrayList<>(Long.bitCount(propMask)
+			+ (subscriptionIds != null ? subscriptionIds.size() : 0)
+			+ (userProperties != null ? 1 : 0));
+		// 按属性 id 顺序
+		for (long mask = propMask; mask != 0L; mask &= mask - 1) {
+			propValues.add(propertyAt(Long.numberOfTrailingZeros(mask)));
 		}
 		if (subscriptionIds != null) {
 			propValues.addAll(subscriptionIds);
@@ -111,13 +258,87 @@ public final class MqttProperties {
 		return propValues;
 	}
 
+	/**
+	 * 读取普通属性，整数类属性只存了 int 值时创建属性对象
+	 */
+	private MqttProperty propertyAt(int propertyId) {
+		MqttProperty[] props = this.props;
+		MqttProperty property = props == null ? null : props[propertyId];
+		if (property == null && (intMask & (1L << propertyId)) != 0L) {
+			property = new IntegerProperty(propertyId, intValues[propertyId]);
+		}
+		return property;
+	}
+
 	public boolean isEmpty() {
-		Map<Integer, MqttProperty> props = this.props;
-		return (props == null || props.isEmpty())
+		if (!decoded) {
+			// 原始字节非空才会延迟解码
+			return false;
+		}
+		return propMask == 0L
 			&& (subscriptionIds == null || subscriptionIds.isEmpty())
 			&& (userProperties == null || userProperties.isEmpty());
 	}
 
+	/**
+	 * 是否存在该属性
+	 *
+	 * @param propertyId 属性 id
+	 * @return 是否存在
+	 */
+	public boolean contains(int propertyId) {
+		ensureDecoded();
+		if (MqttPropertyType.USER_PROPERTY.value() == propertyId) {
+			return userProperties != null && !userProperties.isEmpty();
+		}
+		if (MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value() == propertyId) {
+			return subscriptionIds != null && !subscriptionIds.isEmpty();
+		}
+		return propertyId > 0 && propertyId <= MAX_PROPERTY_ID && (propMask & (1L << propertyId)) != 0L;
+	}
+
+	/**
+	 * 是否存在该属性
+	 *
+	 * @param mqttPropertyType 属性类型
+	 * @return 是否存在
+	 */
+	public boolean contains(MqttPropertyType mqttPropertyType) {
+		return contains(mqttPropertyType.value());
+	}
+
+	/**
+	 * 读取整数类属性，不装箱；订阅标识符取第一个
+	 *
+	 * @param mqttPropertyType 属性类型
+	 * @param defaultValue     不存在时的默认值
+	 * @return 属性值
+	 */
+	public int getInt(MqttPropertyType mqttPropertyType, int defaultValue) {
+		ensureDecoded();
+		int propertyId = mqttPropertyType.value();
+		if ((intMask & (1L << propertyId)) != 0L) {
+			return intValues[propertyId];
+		}
+		if (MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value() == propertyId) {
+			List<IntegerProperty> subscriptionIds = this.subscriptionIds;
+			if (subscriptionIds != null && !subscriptionIds.isEmpty()) {
+				return subscriptionIds.get(0).value();
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * 读取整数类属性，不装箱，不存在时返回 0，需要区分时先使用 {@link #contains(MqttPropertyType)} 判断
+	 *
+	 * @param mqttPropertyType 属性类型
+	 * @return 属性值
+	 */
+	public int getInt(MqttPropertyType mqttPropertyType) {
+		return getInt(mqttPropertyType, 0);
+	}
+
 	/**
 	 * Get property by ID. If there are multiple properties of this type (can be with Subscription ID)
 	 * then return the first one.
@@ -126,6 +347,7 @@ public final class MqttProperties {
 	 * @return a property if it is set, null otherwise
 	 */
 	public MqttProperty getProperty(int propertyId) {
+		ensureDecoded();
 		if (MqttPropertyType.USER_PROPERTY.value() == propertyId) {
 			//special handling to keep compatibility with earlier versions
 			List<UserProperty> userProperties = this.userProperties;
@@ -141,8 +363,10 @@ public final class MqttProperties {
 			}
 			return subscriptionIds.get(0);
 		}
-		Map<Integer, MqttProperty> props = this.props;
-		return props == null ? null : props.get(propertyId);
+		if (propertyId < 1 || propertyId > MAX_PROPERTY_ID) {
+			return null;
+		}
+		return propertyAt(propertyId);
 	}
 
 	/**
@@ -165,7 +389,14 @@ public final class MqttProperties {
 	 * @return a property value if it is set, null otherwise
 	 */
 	public <T> T getPropertyValue(MqttPropertyType mqttPropertyType) {
-		MqttProperty property = getProperty(mqttPropertyType.value());
+		ensureDecoded();
+		int propertyId = mqttPropertyType.value();
+		// 只存了 int 值的属性，不创建属性对象
+		MqttProperty[] props = this.props;
+		if ((intMask & (1L << propertyId)) != 0L && (props == null || props[propertyId] == null)) {
+			return (T) Integer.valueOf(intValues[propertyId]);
+		}
+		MqttProperty property = getProperty(propertyId);
 		if (property == null) {
 			return null;
 		}
@@ -180,8 +411,10 @@ public final class MqttProperties {
 	 * @return a property value if it is set, null otherwise
 	 */
 	public Boolean getBooleanPropertyValue(MqttPropertyType mqttPropertyType) {
-		Integer value = getPropertyValue(mqttPropertyType);
-		return value == null ? null : value != 0;
+		if (!contains(mqttPropertyType)) {
+			return null;
+		}
+		return getInt(mqttPropertyType) != 0;
 	}
 
 	/**
@@ -193,15 +426,14 @@ public final class MqttProperties {
 	 * @return all properties having specified ID
 	 */
 	public List<? extends MqttProperty> getProperties(int propertyId) {
+		ensureDecoded();
 		if (propertyId == MqttPropertyType.USER_PROPERTY.value()) {
 			return userProperties == null ? Collections.emptyList() : userProperties;
 		}
 		if (propertyId == MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value()) {
 			return subscriptionIds == null ? Collections.emptyList() : subscriptionIds;
 		}
-		Map<Integer, MqttProperty> props = this.props;
-		return (props == null || !props.containsKey(propertyId)) ?
-			Collections.emptyList() :
-			Collections.singletonList(props.get(propertyId));
+		MqttProperty property = getProperty(propertyId);
+		return property == null ? Collections.emptyList() : Collections.singletonList(property);
 	}
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec.properties;
+
+/**
+ * 原始 MQTT 5.0 属性字节工具，直接在编码后的字节上查找、改写属性，不解码成 {@link MqttProperties}。
+ * <p>
+ * 原始字节格式与报文中一致：属性长度（变长整数） + 属性列表。
+ *
+ * @author L.cm
+ */
+public final class MqttRawProperties {
+
+	private MqttRawProperties() {
+	}
+
+	/**
+	 * 属性列表长度，不含长度字段本身
+	 *
+	 * @param rawBytes 原始属性字节
+	 * @return 属性列表长度
+	 */
+	public static int propertiesLength(byte[] rawBytes) {
+		return unpackA(readVarLengthInt(rawBytes, 0));
+	}
+
+	/**
+	 * 校验原始属性字节的结构：属性 ID 合法，每个属性的长度不越界，且总长度与长度字段一致
+	 *
+	 * @param rawBytes 原始属性字节
+	 * @return 是否合法
+	 */
+	public static boolean isValid(byte[] rawBytes) {
+		long lengthVBI = readVarLengthInt(rawBytes, 0);
+		if (lengthVBI < 0) {
+			return false;
+		}
+		int offset = unpackB(lengthVBI);
+		if (offset + unpackA(lengthVBI) != rawBytes.length) {
+			return false;
+		}
+		while (offset < rawBytes.length) {
+			long idVBI = readVarLengthInt(rawBytes, offset);
+			if (idVBI < 0) {
+				return false;
+			}
+			offset += unpackB(idVBI);
+			int valueLength = valueLength(rawBytes, offset, unpackA(idVBI));
+			if (valueLength < 0) {
+				return false;
+			}
+			offset += valueLength;
+		}
+		return offset == rawBytes.length;
+	}
+
+	/**
+	 * 查找属性值的下标，有多个同类属性时返回第一个
+	 *
+	 * @param rawBytes 原始属性字节，需已校验
+	 * @param type     属性类型
+	 * @return 属性值在字节中的下标，不存在时返回 -1
+	 */
+	public static int indexOf(byte[] rawBytes, MqttPropertyType type) {
+		int offset = unpackB(readVarLengthInt(rawBytes, 0));
+		int propertyId = type.value();
+		while (offset < rawBytes.length) {
+			long idVBI = readVarLengthInt(rawBytes, offset);
+			offset += unpackB(idVBI);
+			int id = unpackA(idVBI);
+			if (id == propertyId) {
+				return offset;
+			}
+			offset += valueLength(rawBytes, offset, id);
+		}
+		return -1;
+	}
+
+	/**
+	 * 读取定长整数属性值（1、2、4 字节）或变长整数属性值
+	 *
+	 * @param rawBytes 原始属性字节
+	 * @param index    属性值下标，见 {@link #indexOf(byte[], MqttPropertyType)}
+	 * @param type     属性类型
+	 * @return 属性值
+	 */
+	public static int readInt(byte[] rawBytes, int index, MqttPropertyType type) {
+		if (MqttPropertyType.SUBSCRIPTION_IDENTIFIER == type) {
+			return unpackA(readVarLengthInt(rawBytes, index));
+		}
+		int width = fixedWidth(type);
+		if (width <= 0) {
+			throw new IllegalArgumentException("Property " + type + " is not an integer property");
+		}
+		int value = 0;
+		for (int i = 0; i < width; i++) {
+			value = (value << 8) | (rawBytes[index + i] & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * 改写属性：移除指定类型的属性，并覆盖一个定长整数属性的值，其余属性字节原样拷贝
+	 *
+	 * @param rawBytes    原始属性字节，需已校验
+	 * @param patchType   需要覆盖值的定长整数属性类型，为 null 时不覆盖
+	 * @param patchValue  新的属性值
+	 * @param removeTypes 需要移除的属性类型
+	 * @return 新的原始属性字节
+	 */
+	public static byte[] rewrite(byte[] rawBytes, MqttPropertyType patchType, int patchValue,
+								 MqttPropertyType... removeTypes) {
+		int patchWidth = patchType == null ? 0 : fixedWidth(patchType);
+		if (patchType != null && patchWidth <= 0) {
+			throw new IllegalArgumentException("Property " + patchType + " is not a fixed width integer property");
+		}
+		int start = unpackB(readVarLengthInt(rawBytes, 0));
+		byte[] body = new byte[rawBytes.length - start];
+		int length = 0;
+		int offset = start;
+		while (offset < rawBytes.length) {
+			int entryStart = offset;
+			long idVBI = readVarLengthInt(rawBytes, offset);
+			offset += unpackB(idVBI);
+			int id = unpackA(idVBI);
+			int valueIndex = offset;
+			offset += valueLength(rawBytes, offset, id);
+			if (contains(removeTypes, id)) {
+				continue;
+			}
+			int entryLength = offset - entryStart;
+			System.arraycopy(rawBytes, entryStart, body, length, entryLength);
+			if (patchType != null && patchType.value() == id) {
+				int patchIndex = length + (valueIndex - entryStart);
+				for (int i = patchWidth - 1; i >= 0; i--) {
+					body[patchIndex + i] = (byte) (patchValue >>> (8 * (patchWidth - 1 - i)));
+				}
+			}
+			length += entryLength;
+		}
+		int lengthFieldBytes = varLengthIntSize(length);
+		byte[] result = new byte[lengthFieldBytes + length];
+		int index = 0;
+		int num = length;
+		do {
+			int digit = num % 128;
+			num /= 128;
+			if (num > 0) {
+				digit |= 0x80;
+			}
+			result[index++] = (byte) digit;
+		} while (num > 0);
+		System.arraycopy(body, 0, result, lengthFieldBytes, length);
+		return result;
+	}
+
+	/**
+	 * 属性值的字节长度
+	 *
+	 * @return 长度，非法属性或越界时返回 -1
+	 */
+	private static int valueLength(byte[] rawBytes, int offset, int propertyId) {
+		final MqttPropertyType type;
+		try {
+			type = MqttPropertyType.valueOf(propertyId);
+		} catch (IllegalArgumentException e) {
+			return -1;
+		}
+		int length;
+		switch (type) {
+			case SUBSCRIPTION_IDENTIFIER: {
+				long vbi = readVarLengthInt(rawBytes, offset);
+				length = vbi < 0 ? -1 : unpackB(vbi);
+				break;
+			}
+			case CONTENT_TYPE:
+			case RESPONSE_TOPIC:
+			case ASSIGNED_CLIENT_IDENTIFIER:
+			case AUTHENTICATION_METHOD:
+			case RESPONSE_INFORMATION:
+			case SERVER_REFERENCE:
+			case REASON_STRING:
+			case CORRELATION_DATA:
+			case AUTHENTICATION_DATA:
+				length = prefixedLength(rawBytes, offset);
+				break;
+			case USER_PROPERTY: {
+				int keyLength = prefixedLength(rawBytes, offset);
+				length = keyLength < 0 ? -1 : keyLength + prefixedLength(rawBytes, offset + keyLength);
+				if (length < keyLength) {
+					length = -1;
+				}
+				break;
+			}
+			default:
+				length = fixedWidth(type);
+		}
+		if (length < 0 || offset + length > rawBytes.length) {
+			return -1;
+		}
+		return length;
+	}
+
+	private static int fixedWidth(MqttPropertyType type) {
+		switch (type) {
+			case PAYLOAD_FORMAT_INDICATOR:
+			case REQUEST_PROBLEM_INFORMATION:
+			case REQUEST_RESPONSE_INFORMATION:
+			case MAXIMUM_QOS:
+			case RETAIN_AVAILABLE:
+			case WILDCARD_SUBSCRIPTION_AVAILABLE:
+			case SUBSCRIPTION_IDENTIFIER_AVAILABLE:
+			case SHARED_SUBSCRIPTION_AVAILABLE:
+				return 1;
+			case SERVER_KEEP_ALIVE:
+			case RECEIVE_MAXIMUM:
+			case TOPIC_ALIAS_MAXIMUM:
+			case TOPIC_ALIAS:
+				return 2;
+			case MESSAGE_EXPIRY_INTERVAL:
+			case SESSION_EXPIRY_INTERVAL:
+			case WILL_DELAY_INTERVAL:
+			case MAXIMUM_PACKET_SIZE:
+				return 4;
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * 2 字节长度前缀 + 内容的总长度
+	 */
+	private static int prefixedLength(byte[] rawBytes, int offset) {
+		if (offset + 2 > rawBytes.length) {
+			return -1;
+		}
+		return 2 + ((rawBytes[offset] & 0xFF) << 8 | (rawBytes[offset + 1] & 0xFF));
+	}
+
+	private static boolean contains(MqttPropertyType[] types, int propertyId) {
+		for (MqttPropertyType type : types) {
+			if (type.value() == propertyId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 读取变长整数
+	 *
+	 * @return 高 32 位为值，低 32 位为占用字节数；越界或超过 4 字节时返回 -1
+	 */
+	private static long readVarLengthInt(byte[] rawBytes, int offset) {
+		int value = 0;
+		int multiplier = 1;
+		int loops = 0;
+		int digit;
+		do {
+			if (offset + loops >= rawBytes.length || loops == 4) {
+				return -1;
+			}
+			digit = rawBytes[offset + loops] & 0xFF;
+			value += (digit & 127) * multiplier;
+			multiplier *= 128;
+			loops++;
+		} while ((digit & 128) != 0);
+		return (((long) value) << 32) | loops;
+	}
+
+	private static int varLengthIntSize(int num) {
+		int count = 0;
+		do {
+			num /= 128;
+			count++;
+		} while (num > 0);
+		return count;
+	}
+
+	private static int unpackA(long ints) {
+		return (int) (ints >> 32);
+	}
+
+	private static int unpackB(long ints) {
+		return (int) ints;
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import org.dromara.mica.mqtt.codec.message.MqttPublishFrame;
+import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
+import org.dromara.mica.mqtt.codec.properties.IntegerProperty;
+import org.dromara.mica.mqtt.codec.properties.MqttProperties;
+import org.dromara.mica.mqtt.codec.properties.MqttPropertyType;
+import org.dromara.mica.mqtt.codec.properties.UserProperty;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 预编码 PUBLISH 帧测试，帧输出必须与逐条编码字节一致。
+ */
+class MqttPublishFrameTest {
+
+	@Test
+	void frameMatchesEncoder() {
+		for (MqttVersion version : new MqttVersion[]{MqttVersion.MQTT_3_1_1, MqttVersion.MQTT_5}) {
+			for (MqttQoS qos : new MqttQoS[]{MqttQoS.QOS0, MqttQoS.QOS1, MqttQoS.QOS2}) {
+				MqttPublishFrame frame = MqttEncoder.encodePublishFrame(version, message(qos, false, 0, new byte[16]));
+				for (boolean dup : new boolean[]{false, true}) {
+					boolean expectedDup = dup && qos != MqttQoS.QOS0;
+					MqttPublishMessage expected = message(qos, expectedDup, 0x1234, new byte[16]);
+					assertArrayEquals(encode(version, expected), toBytes(frame.toByteBuffer(dup, 0x1234)));
+				}
+			}
+		}
+	}
+
+	@Test
+	void frameWithLargePayload() {
+		// 剩余长度为多字节 VBI
+		byte[] payload = new byte[20000];
+		Arrays.fill(payload, (byte) 'x');
+		MqttPublishFrame frame = MqttEncoder.encodePublishFrame(MqttVersion.MQTT_5, message(MqttQoS.QOS1, false, 0, payload));
+		assertArrayEquals(encode(MqttVersion.MQTT_5, message(MqttQoS.QOS1, false, 65535, payload)),
+			toBytes(frame.toByteBuffer(false, 65535)));
+	}
+
+	@Test
+	void qos0FrameIsShared() {
+		MqttPublishFrame frame = MqttEncoder.encodePublishFrame(MqttVersion.MQTT_3_1_1, message(MqttQoS.QOS0, false, 0, new byte[8]));
+		ByteBuffer buffer1 = frame.toByteBuffer(false, 1);
+		ByteBuffer buffer2 = frame.toByteBuffer(false, 2);
+		assertSame(buffer1.array(), buffer2.array());
+		assertEquals(frame.length(), buffer1.position());
+	}
+
+	@Test
+	void qos1FrameIsCopied() {
+		MqttPublishFrame frame = MqttEncoder.encodePublishFrame(MqttVersion.MQTT_3_1_1, message(MqttQoS.QOS1, false, 0, new byte[8]));
+		ByteBuffer buffer1 = frame.toByteBuffer(false, 1);
+		ByteBuffer buffer2 = frame.toByteBuffer(true, 2);
+		assertNotSame(buffer1.array(), buffer2.array());
+		assertFalse(Arrays.equals(buffer1.array(), buffer2.array()));
+	}
+
+	@Test
+	void compatible() {
+		MqttPublishFrame frame = MqttEncoder.encodePublishFrame(MqttVersion.MQTT_3_1_1, message(MqttQoS.QOS1, false, 0, new byte[0]));
+		MqttPublishMessage message = message(MqttQoS.QOS1, true, 1, new byte[0]);
+		assertTrue(frame.isCompatible(MqttVersion.MQTT_3_1, message.fixedHeader()));
+		assertTrue(frame.isCompatible(MqttVersion.MQTT_3_1_1, message.fixedHeader()));
+		assertFalse(frame.isCompatible(MqttVersion.MQTT_5, message.fixedHeader()));
+		assertFalse(frame.isCompatible(MqttVersion.MQTT_3_1_1, message(MqttQoS.QOS0, false, 0, new byte[0]).fixedHeader()));
+	}
+
+	private static MqttPublishMessage message(MqttQoS qos, boolean dup, int packetId, byte[] payload) {
+		MqttProperties properties = new MqttProperties();
+		properties.add(new IntegerProperty(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL, 60));
+		properties.add(new UserProperty("k1", "v1"));
+		return MqttPublishMessage.builder()
+			.topicName("/test/主题/123")
+			.qos(qos)
+			.isDup(dup)
+			.messageId(packetId)
+			.properties(properties)
+			.payload(payload)
+			.build();
+	}
+
+	private static byte[] encode(MqttVersion version, MqttPublishMessage message) {
+		return MqttEncoder.encodePublishMessage(version, message).array();
+	}
+
+	private static byte[] toBytes(ByteBuffer buffer) {
+		assertEquals(buffer.limit(), buffer.position());
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PUBLISH payload 零拷贝测试。
+ */
+class MqttPublishPayloadTest {
+
+	@Test
+	void zeroCopyDecode() {
+		ChannelContext context = MqttTestContext.create(MqttVersion.MQTT_3_1_1);
+		MqttPublishMessage message = MqttPublishMessage.builder()
+			.topicName("/test")
+			.qos(MqttQoS.QOS1)
+			.messageId(1)
+			.payload("payload".getBytes(StandardCharsets.UTF_8))
+			.build();
+		ByteBuffer encoded = MqttEncoder.INSTANCE.doEncode(context, message);
+		encoded.flip();
+		// useQueueDecode 时每次读取的数据为独立的 buffer，追加一个 PINGREQ 模拟同一次读取的后续报文
+		byte[] bytes = new byte[encoded.remaining() + 2];
+		encoded.get(bytes, 0, encoded.remaining());
+		bytes[bytes.length - 2] = (byte) 0xC0;
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+		MqttDecoder decoder = new MqttDecoder(8092, 23, true);
+		MqttPublishMessage decoded = (MqttPublishMessage) decoder.doDecode(context, buffer, buffer.remaining());
+		assertEquals("/test", decoded.variableHeader().topicName());
+		assertEquals(1, decoded.variableHeader().packetId());
+		// payload 之后的数据留给下一个报文
+		assertEquals(2, buffer.remaining());
+		assertSame(MqttMessage.PINGREQ, decoder.doDecode(context, buffer, buffer.remaining()));
+
+		ByteBuffer payload = decoded.payloadBuffer();
+		assertTrue(payload.isReadOnly());
+		assertEquals(7, payload.remaining());
+		// 零拷贝：payload 是读缓冲区的视图
+		int payloadOffset = bytes.length - 2 - 7;
+		bytes[payloadOffset] = 'P';
+		assertEquals("Payload", StandardCharsets.UTF_8.decode(decoded.payloadBuffer()).toString());
+		// 需要 byte[] 时才拷贝
+		assertArrayEquals("Payload".getBytes(StandardCharsets.UTF_8), decoded.payload());
+	}
+
+	@Test
+	void copyDecode() {
+		ChannelContext context = MqttTestContext.create(MqttVersion.MQTT_3_1_1);
+		MqttPublishMessage message = MqttPublishMessage.builder()
+			.topicName("/test")
+			.qos(MqttQoS.QOS0)
+			.payload("payload".getBytes(StandardCharsets.UTF_8))
+			.build();
+		ByteBuffer buffer = MqttEncoder.INSTANCE.doEncode(context, message);
+		buffer.flip();
+		MqttPublishMessage decoded = (MqttPublishMessage) new MqttDecoder().doDecode(context, buffer, buffer.remaining());
+		buffer.put(buffer.limit() - 7, (byte) 'P');
+		assertEquals("payload", new String(decoded.payload(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void bufferPayloadIsMaterializedLazily() {
+		ByteBuffer buffer = ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+		MqttPublishMessage message = MqttPublishMessage.builder()
+			.topicName("/test")
+			.qos(MqttQoS.QOS0)
+			.payload(buffer)
+			.build();
+
+		assertEquals(5, message.payloadLength());
+		// 视图相互独立，读取不影响原 payload
+		ByteBuffer view = message.payloadBuffer();
+		view.get(new byte[5]);
+		assertEquals(5, message.payloadBuffer().remaining());
+		byte[] payload = message.payload();
+		assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), payload);
+		assertSame(payload, message.payload());
+	}
+
+	@Test
+	void bufferPayloadEncodesSameAsBytes() {
+		byte[] bytes = "hello".getBytes(StandardCharsets.UTF_8);
+		MqttPublishMessage bytesMessage = MqttPublishMessage.builder()
+			.topicName("/test")
+			.qos(MqttQoS.QOS1)
+			.messageId(1)
+			.payload(bytes)
+			.build();
+		MqttPublishMessage bufferMessage = MqttPublishMessage.builder()
+			.topicName("/test")
+			.qos(MqttQoS.QOS1)
+			.messageId(1)
+			.payload(ByteBuffer.wrap(bytes))
+			.build();
+
+		for (MqttVersion version : new MqttVersion[]{MqttVersion.MQTT_3_1_1, MqttVersion.MQTT_5}) {
+			assertArrayEquals(MqttEncoder.encodePublishMessage(version, bytesMessage).array(),
+				MqttEncoder.encodePublishMessage(version, bufferMessage).array());
+		}
+	}
+}
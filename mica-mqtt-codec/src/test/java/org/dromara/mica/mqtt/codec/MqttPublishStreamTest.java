@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.dromara.mica.mqtt.codec;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import org.dromara.mica.mqtt.codec.exception.DecoderException;
+import org.dromara.mica.mqtt.codec.message.MqttPublishChunkMessage;
+import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
+import org.dromara.mica.mqtt.codec.message.header.MqttPublishVariableHeader;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PUBLISH 流式解码测试。
+ */
+class MqttPublishStreamTest {
+
+	@Test
+	void filter() {
+		MqttPublishStreamFilter filter = new MqttPublishStreamFilter(1024, "/ota/", "/image/");
+		assertFalse(filter.isCandidate(1023));
+		assertTrue(filter.isCandidate(1024));
+		assertTrue(filter.matches("/ota/device1/firmware"));
+		assertTrue(filter.matches("/image/device1"));
+		assertFalse(filter.matches("/sensor/device1"));
+		assertThrows(IllegalArgumentException.class, () -> new MqttPublishStreamFilter(1024));
+		assertThrows(IllegalArgumentException.class, () -> new MqttPublishStreamFilter(-1, "/ota/"));
+	}
+
+	@Test
+	void chunk() {
+		MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.QOS1, false, 0);
+		MqttPublishVariableHeader variableHeader = new MqttPublishVariableHeader("/ota/device1", 1);
+		MqttPublishChunkMessage first = new MqttPublishChunkMessage(fixedHeader, variableHeader, ByteBuffer.allocate(0), 100, 0);
+		assertTrue(first.isFirst());
+		assertFalse(first.isLast());
+		MqttPublishChunkMessage middle = new MqttPublishChunkMessage(fixedHeader, variableHeader, ByteBuffer.allocate(60), 100, 0);
+		assertTrue(middle.isFirst());
+		assertFalse(middle.isLast());
+		MqttPublishChunkMessage last = new MqttPublishChunkMessage(fixedHeader, variableHeader, ByteBuffer.allocate(40), 100, 60);
+		assertFalse(last.isFirst());
+		assertTrue(last.isLast());
+		assertEquals(40, last.getChunkLength());
+		assertEquals("/ota/device1", last.variableHeader().topicName());
+	}
+
+	@Test
+	void malformedPropertiesLength() {
+		MqttDecoder decoder = new MqttDecoder(8092, 23, false, null, new MqttPublishStreamFilter(16, "/ota"));
+		ChannelContext context = MqttTestContext.create(MqttVersion.MQTT_5);
+		// 属性长度的第 4 个字节仍有继续位
+		byte[] bytes = {0x30, 20, 0, 4, '/', 'o', 't', 'a', (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1,
+			1, 2, 3, 4, 5, 6, 7, 8, 9};
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		DecoderException exception = assertThrows(DecoderException.class, () -> decoder.doDecode(context, buffer, buffer.remaining()));
+		assertTrue(exception.getMessage().contains("Properties Length"));
+	}
+
+}
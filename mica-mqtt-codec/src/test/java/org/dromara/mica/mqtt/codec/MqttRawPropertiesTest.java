@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import org.dromara.mica.mqtt.codec.properties.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 原始属性字节延迟解码和改写测试。
+ */
+class MqttRawPropertiesTest {
+
+	@Test
+	void lazyDecodeAndPassThrough() {
+		byte[] rawBytes = MqttEncoder.encodeProperties(properties(60, true));
+		assertTrue(MqttRawProperties.isValid(rawBytes));
+
+		MqttProperties lazy = MqttProperties.fromRawBytes(rawBytes);
+		assertFalse(lazy.isEmpty());
+		// 未修改时原样写出
+		assertSame(rawBytes, MqttEncoder.encodeProperties(lazy));
+		assertEquals("v1", ((UserProperties) lazy.getProperty(MqttPropertyType.USER_PROPERTY)).value().get(0).value);
+		assertEquals(Integer.valueOf(60), lazy.getPropertyValue(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL));
+		// 读取后依旧可原样写出
+		assertSame(rawBytes, MqttEncoder.encodeProperties(lazy));
+		// 修改后重新编码
+		lazy.add(new StringProperty(MqttPropertyType.CONTENT_TYPE, "json"));
+		assertNull(lazy.rawBytes());
+		assertNotNull(lazy.getProperty(MqttPropertyType.CONTENT_TYPE));
+	}
+
+	@Test
+	void emptyRawBytes() {
+		assertSame(MqttProperties.NO_PROPERTIES, MqttProperties.fromRawBytes(new byte[]{0}));
+	}
+
+	@Test
+	void indexOfAndReadInt() {
+		byte[] rawBytes = MqttEncoder.encodeProperties(properties(300, true));
+		int index = MqttRawProperties.indexOf(rawBytes, MqttPropertyType.MESSAGE_EXPIRY_INTERVAL);
+		assertTrue(index > 0);
+		assertEquals(300, MqttRawProperties.readInt(rawBytes, index, MqttPropertyType.MESSAGE_EXPIRY_INTERVAL));
+		index = MqttRawProperties.indexOf(rawBytes, MqttPropertyType.SUBSCRIPTION_IDENTIFIER);
+		assertEquals(1000, MqttRawProperties.readInt(rawBytes, index, MqttPropertyType.SUBSCRIPTION_IDENTIFIER));
+		assertEquals(-1, MqttRawProperties.indexOf(rawBytes, MqttPropertyType.CONTENT_TYPE));
+	}
+
+	@Test
+	void rewriteMatchesEncoder() {
+		byte[] rawBytes = MqttEncoder.encodeProperties(properties(300, true));
+		byte[] rewritten = MqttRawProperties.rewrite(rawBytes, MqttPropertyType.MESSAGE_EXPIRY_INTERVAL, 100,
+			MqttPropertyType.TOPIC_ALIAS, MqttPropertyType.SUBSCRIPTION_IDENTIFIER);
+		assertTrue(MqttRawProperties.isValid(rewritten));
+		MqttProperties decoded = MqttDecoder.decodeProperties(rewritten);
+		assertEquals(Integer.valueOf(100), decoded.getPropertyValue(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL));
+		assertNull(decoded.getProperty(MqttPropertyType.TOPIC_ALIAS));
+		assertNull(decoded.getProperty(MqttPropertyType.SUBSCRIPTION_IDENTIFIER));
+		assertArrayEquals(MqttEncoder.encodeProperties(properties(100, false)), rewritten);
+	}
+
+	@Test
+	void invalid() {
+		byte[] rawBytes = MqttEncoder.encodeProperties(properties(60, true));
+		// 长度不一致
+		assertFalse(MqttRawProperties.isValid(Arrays.copyOf(rawBytes, rawBytes.length - 1)));
+		// 未知属性 ID
+		assertFalse(MqttRawProperties.isValid(new byte[]{2, 0x7F, 0}));
+	}
+
+	private static MqttProperties properties(int expiryInterval, boolean withForwardOnly) {
+		MqttProperties properties = new MqttProperties();
+		properties.add(new IntegerProperty(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL, expiryInterval));
+		if (withForwardOnly) {
+			properties.add(new IntegerProperty(MqttPropertyType.TOPIC_ALIAS, 5));
+			properties.add(new IntegerProperty(MqttPropertyType.SUBSCRIPTION_IDENTIFIER, 1000));
+		}
+		properties.add(new UserProperty("k1", "v1"));
+		return properties;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import net.dreamlu.mica.net.core.TioConfig;
+import net.dreamlu.mica.net.core.exception.TioDecodeException;
+import net.dreamlu.mica.net.core.intf.Packet;
+import net.dreamlu.mica.net.server.DefaultTioServerListener;
+import net.dreamlu.mica.net.server.ServerChannelContext;
+import net.dreamlu.mica.net.server.TioServerConfig;
+import net.dreamlu.mica.net.server.intf.TioServerHandler;
+import org.dromara.mica.mqtt.codec.message.MqttConnectMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 测试用的虚拟连接，不建立网络连接，只用于编解码。
+ */
+final class MqttTestContext {
+
+	private MqttTestContext() {
+	}
+
+	/**
+	 * 开启 useQueueDecode 的虚拟连接，解码一个 CONNECT 报文设置协议版本
+	 *
+	 * @param mqttVersion MqttVersion
+	 * @return ChannelContext
+	 */
+	static ChannelContext create(MqttVersion mqttVersion) {
+		TioServerConfig serverConfig = new TioServerConfig("mica-mqtt-codec-test", new CodecHandler(), new DefaultTioServerListener());
+		serverConfig.setUseQueueDecode(true);
+		ServerChannelContext context = new ServerChannelContext(serverConfig);
+		MqttConnectMessage connectMessage = MqttConnectMessage.builder()
+			.protocolVersion(mqttVersion)
+			.clientId("mica-mqtt-codec-test")
+			.cleanStart(true)
+			.keepAlive(60)
+			.build();
+		ByteBuffer buffer = MqttEncoder.INSTANCE.doEncode(context, connectMessage);
+		buffer.flip();
+		new MqttDecoder().doDecode(context, buffer, buffer.remaining());
+		return context;
+	}
+
+	/**
+	 * 虚拟连接不处理收发
+	 */
+	private static final class CodecHandler implements TioServerHandler {
+
+		@Override
+		public Packet decode(ByteBuffer buffer, int limit, int position, int readableLength, ChannelContext context) throws TioDecodeException {
+			return null;
+		}
+
+		@Override
+		public ByteBuffer encode(Packet packet, TioConfig tioConfig, ChannelContext context) {
+			return null;
+		}
+
+		@Override
+		public void handler(Packet packet, ChannelContext context) {
+			// 不处理报文
+		}
+	}
+
+}
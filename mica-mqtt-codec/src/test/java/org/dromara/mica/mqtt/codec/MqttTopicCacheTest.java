@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import org.dromara.mica.mqtt.codec.exception.DecoderException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * topic 解码缓存测试。
+ */
+class MqttTopicCacheTest {
+
+	@Test
+	void invalidTopicLength() {
+		MqttTopicCache cache = new MqttTopicCache(16);
+		MqttDecoder decoder = new MqttDecoder(8092, 23, false, cache);
+		ChannelContext context = MqttTestContext.create(MqttVersion.MQTT_3_1_1);
+		// PUBLISH 剩余长度 4，topic 长度为 16，实际只有 2 个字节
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0x30, 4, 0, 16, 'a', 'b'});
+		DecoderException exception = assertThrows(DecoderException.class, () -> decoder.doDecode(context, buffer, buffer.remaining()));
+		assertTrue(exception.getMessage().contains("invalid publish topic name length: 16"));
+		assertEquals(0, cache.getMissCount());
+	}
+
+	@Test
+	void missThenHit() {
+		MqttTopicCache cache = new MqttTopicCache(16);
+		byte[] bytes = "/a/b/c".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+		assertNull(cache.get(buffer, bytes.length));
+		// 未命中不改变 position
+		assertEquals(0, buffer.position());
+		MqttTopicCache.Entry entry = cache.put(bytes.clone(), "/a/b/c");
+		assertArrayEquals(new String[]{"/", "a", "b", "c"}, entry.getTopicView().toParts());
+
+		MqttTopicCache.Entry cached = cache.get(buffer, bytes.length);
+		assertSame(entry, cached);
+		assertEquals(bytes.length, buffer.position());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	void hitWithOffset() {
+		MqttTopicCache cache = new MqttTopicCache(16);
+		cache.put("t/1".getBytes(StandardCharsets.UTF_8), "t/1");
+		ByteBuffer buffer = ByteBuffer.wrap("xxt/1yy".getBytes(StandardCharsets.UTF_8));
+		buffer.position(2);
+		MqttTopicCache.Entry entry = cache.get(buffer, 3);
+		assertNotNull(entry);
+		assertEquals("t/1", entry.getTopic());
+		assertEquals(5, buffer.position());
+		// 前缀相同长度不同不能命中
+		buffer.position(2);
+		assertNull(cache.get(buffer, 2));
+	}
+
+	@Test
+	void bounded() {
+		MqttTopicCache cache = new MqttTopicCache(3);
+		assertEquals(4, cache.capacity());
+		for (int i = 0; i < 100; i++) {
+			String topic = "t/" + i;
+			cache.put(topic.getBytes(StandardCharsets.UTF_8), topic);
+		}
+		int hits = 0;
+		for (int i = 0; i < 100; i++) {
+			byte[] bytes = ("t/" + i).getBytes(StandardCharsets.UTF_8);
+			if (cache.get(ByteBuffer.wrap(bytes), bytes.length) != null) {
+				hits++;
+			}
+		}
+		assertTrue(hits <= cache.capacity());
+		cache.clear();
+		assertEquals(0, cache.getHitCount());
+	}
+}
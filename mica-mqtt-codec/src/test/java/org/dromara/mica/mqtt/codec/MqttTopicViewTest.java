@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * topic 层级视图测试。
+ */
+class MqttTopicViewTest {
+
+	@Test
+	void sameAsTopicParts() {
+		String[] topics = {"a", "/", "/a", "a/", "/a/b/", "a//b", "//", "a/b/c/d/e/f/g/h/i/j", ""};
+		MqttTopicView view = new MqttTopicView();
+		for (String topic : topics) {
+			assertArrayEquals(MqttCodecUtil.getTopicParts(topic), view.reset(topic).toParts(), topic);
+		}
+	}
+
+	@Test
+	void levelKeyLookup() {
+		Map<String, Integer> map = new HashMap<>();
+		map.put("device", 1);
+		map.put("", 2);
+		map.put("/", 3);
+		MqttTopicView view = MqttTopicView.of("/device//data");
+		MqttTopicView.LevelKey key = new MqttTopicView.LevelKey();
+		assertEquals(4, view.levels());
+		assertEquals(3, map.get(key.set(view, 0)));
+		assertEquals(1, map.get(key.set(view, 1)));
+		assertEquals(2, map.get(key.set(view, 2)));
+		assertNull(map.get(key.set(view, 3)));
+		assertTrue(view.levelEquals(3, "data"));
+		assertFalse(view.levelEquals(3, "dat"));
+	}
+
+	@Test
+	void levelKeyEqualsDirection() {
+		MqttTopicView view = MqttTopicView.of("a/device");
+		MqttTopicView.LevelKey key = new MqttTopicView.LevelKey().set(view, 1);
+		// equals 不对称，查找依赖 Map#get 约定的 key.equals(k) 方向
+		assertTrue(key.equals("device"));
+		assertFalse("device".equals(key));
+		assertTrue(key.matches("device"));
+		assertFalse(key.matches("devic"));
+		assertEquals("device".hashCode(), key.hashCode());
+		Map<String, Integer> hashMap = new HashMap<>();
+		Map<String, Integer> concurrentMap = new ConcurrentHashMap<>();
+		// 写入足够多的 key，覆盖扩容后的查找
+		for (int i = 0; i < 1000; i++) {
+			hashMap.put("level" + i, i);
+			concurrentMap.put("level" + i, i);
+		}
+		hashMap.put("device", -1);
+		concurrentMap.put("device", -1);
+		assertEquals(-1, hashMap.get(key));
+		assertEquals(-1, concurrentMap.get(key));
+		assertTrue(hashMap.containsKey(key));
+		assertTrue(concurrentMap.containsKey(key));
+		MqttTopicView levels = MqttTopicView.of("level7/level999");
+		assertEquals(7, hashMap.get(key.set(levels, 0)));
+		assertEquals(999, concurrentMap.get(key.set(levels, 1)));
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.codec;
+
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
+import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
+import org.dromara.mica.mqtt.codec.message.header.MqttMessageIdVariableHeader;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 池化编码 buffer 测试。
+ */
+class PooledMqttBufferAllocatorTest {
+
+	@Test
+	void allocateAndReuse() {
+		PooledMqttBufferAllocator allocator = new PooledMqttBufferAllocator(false, 1024, 4);
+		ByteBuffer buffer = allocator.allocate(20);
+		assertEquals(32, buffer.capacity());
+		assertEquals(20, buffer.limit());
+		assertEquals(0, buffer.position());
+		buffer.put(new byte[20]);
+		allocator.release(buffer);
+
+		ByteBuffer reused = allocator.allocate(30);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(30, reused.limit());
+		assertEquals(1, allocator.getHitCount());
+		assertEquals(2, allocator.getAllocateCount());
+	}
+
+	@Test
+	void releaseFromAnotherThread() throws Exception {
+		PooledMqttBufferAllocator allocator = new PooledMqttBufferAllocator(false, 1024, 2);
+		ByteBuffer first = allocator.allocate(20);
+		ByteBuffer second = allocator.allocate(20);
+		ByteBuffer third = allocator.allocate(20);
+		// 写完成线程归还，编码线程复用
+		Thread thread = new Thread(() -> {
+			allocator.release(first);
+			allocator.release(second);
+			allocator.release(third);
+		});
+		thread.start();
+		thread.join();
+		assertEquals(2, allocator.getReleaseCount());
+		assertSame(first, allocator.allocate(20));
+		assertSame(second, allocator.allocate(20));
+		assertNotSame(third, allocator.allocate(20));
+		assertEquals(2, allocator.getHitCount());
+	}
+
+	@Test
+	void largeAndForeignBufferNotPooled() {
+		PooledMqttBufferAllocator allocator = new PooledMqttBufferAllocator(true, 1000, 4);
+		ByteBuffer large = allocator.allocate(2000);
+		assertTrue(large.isDirect());
+		assertEquals(2000, large.capacity());
+		allocator.release(large);
+		allocator.release(ByteBuffer.allocate(64));
+		assertEquals(0, allocator.getReleaseCount());
+	}
+
+	@Test
+	void encodeWithPool() {
+		PooledMqttBufferAllocator allocator = new PooledMqttBufferAllocator(false, 4096, 4);
+		MqttPublishMessage message = MqttPublishMessage.builder()
+			.topicName("/test/123")
+			.qos(MqttQoS.QOS1)
+			.messageId(1)
+			.payload(new byte[100])
+			.build();
+		ByteBuffer expected = MqttEncoder.encodePublishMessage(MqttVersion.MQTT_5, message);
+		ByteBuffer pooled = MqttEncoder.encodePublishMessage(MqttVersion.MQTT_5, message, allocator);
+		assertTrue(pooled.capacity() > expected.capacity());
+		assertArrayEquals(expected.array(), Arrays.copyOf(pooled.array(), pooled.position()));
+		// 同一消息未发送完成时再次编码，不走池
+		ByteBuffer again = MqttEncoder.encodePublishMessage(MqttVersion.MQTT_5, message, allocator);
+		assertEquals(expected.capacity(), again.capacity());
+
+		// 绑定失败的 buffer 已直接归还
+		assertEquals(1, allocator.getReleaseCount());
+	}
+
+	@Test
+	void releaseAfterAllPendingSends() {
+		PooledMqttBufferAllocator allocator = new PooledMqttBufferAllocator(false, 4096, 4);
+		MqttEncoder encoder = new MqttEncoder(allocator);
+		MqttMessage ack = new MqttMessage(new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.QOS0, false, 0),
+			MqttMessageIdVariableHeader.from(12));
+		// 同一消息发给两个连接：第一次走池，第二次不走池
+		ByteBuffer first = encoder.doEncode(null, ack);
+		assertEquals(16, first.capacity());
+		ByteBuffer second = encoder.doEncode(null, ack);
+		assertEquals(4, second.capacity());
+		// 第一次发送完成，第二次仍在途，不归还；期间再次编码（如重发）也不走池
+		encoder.release(ack);
+		assertEquals(0, allocator.getReleaseCount());
+		ByteBuffer third = encoder.doEncode(null, ack);
+		assertEquals(4, third.capacity());
+		encoder.release(ack);
+		assertEquals(0, allocator.getReleaseCount());
+		// 所有在途的发送完成后归还，下一次编码复用
+		encoder.release(ack);
+		assertEquals(1, allocator.getReleaseCount());
+		assertSame(first, encoder.doEncode(null, ack));
+		encoder.release(ack);
+		assertEquals(2, allocator.getReleaseCount());
+		// 不分配 buffer 的共享常量消息同样成对计数
+		encoder.doEncode(null, MqttMessage.PINGREQ);
+		encoder.release(MqttMessage.PINGREQ);
+		assertEquals(2, allocator.getReleaseCount());
+	}
+
+	@Test
+	void encodeAck() {
+		PooledMqttBufferAllocator allocator = new PooledMqttBufferAllocator(false, 4096, 4);
+		MqttMessage ack = new MqttMessage(new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.QOS0, false, 0),
+			MqttMessageIdVariableHeader.from(12));
+		ByteBuffer buffer = MqttEncoder.encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(ack, allocator);
+		assertEquals(4, buffer.position());
+		assertEquals(16, buffer.capacity());
+		byte[] bytes = Arrays.copyOf(buffer.array(), 4);
+		assertArrayEquals(new byte[]{0x40, 2, 0, 12}, bytes);
+	}
+
+}
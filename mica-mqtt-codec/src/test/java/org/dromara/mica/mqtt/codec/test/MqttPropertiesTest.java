@@ -302,4 +302,47 @@ class MqttPropertiesTest {
 		assertNull(properties.getProperty(UNKNOWN_PROPERTY_ID));
 		assertTrue(properties.getProperties(UNKNOWN_PROPERTY_ID).isEmpty());
 	}
-}
\ No newline at end of file
+
+	// ----------------- 整数类属性：不装箱读写 -----------------
+
+	@Test
+	void addIntReadsBackWithoutPropertyObject() {
+		MqttProperties properties = new MqttProperties();
+		properties.addInt(MqttPropertyType.TOPIC_ALIAS, 3);
+		properties.addInt(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL, 60);
+		assertTrue(properties.contains(MqttPropertyType.TOPIC_ALIAS));
+		assertFalse(properties.contains(MqttPropertyType.RECEIVE_MAXIMUM));
+		assertEquals(3, properties.getInt(MqttPropertyType.TOPIC_ALIAS));
+		assertEquals(-1, properties.getInt(MqttPropertyType.RECEIVE_MAXIMUM, -1));
+		// 门面 API 按需创建属性对象，且按属性 id 顺序列出
+		assertEquals(new IntegerProperty(MqttPropertyType.TOPIC_ALIAS, 3), properties.getProperty(MqttPropertyType.TOPIC_ALIAS));
+		List<? extends MqttProperty> all = (List<? extends MqttProperty>) properties.listAll();
+		assertEquals(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL.value(), all.get(0).propertyId());
+		assertEquals(MqttPropertyType.TOPIC_ALIAS.value(), all.get(1).propertyId());
+	}
+
+	@Test
+	void addReplacesAddIntAndViceVersa() {
+		MqttProperties properties = new MqttProperties();
+		properties.addInt(MqttPropertyType.RECEIVE_MAXIMUM, 10);
+		properties.add(new IntegerProperty(MqttPropertyType.RECEIVE_MAXIMUM, 20));
+		assertEquals(20, properties.getInt(MqttPropertyType.RECEIVE_MAXIMUM));
+		properties.addInt(MqttPropertyType.RECEIVE_MAXIMUM, 30);
+		assertEquals(30, properties.getProperty(MqttPropertyType.RECEIVE_MAXIMUM).value());
+		assertEquals(1, properties.listAll().size());
+		// 订阅标识符可重复，getInt 取第一个
+		properties.addInt(MqttPropertyType.SUBSCRIPTION_IDENTIFIER, 7);
+		properties.addInt(MqttPropertyType.SUBSCRIPTION_IDENTIFIER, 8);
+		assertEquals(7, properties.getInt(MqttPropertyType.SUBSCRIPTION_IDENTIFIER));
+		assertEquals(2, properties.getProperties(MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value()).size());
+	}
+
+	@Test
+	void addIntRejectsUserPropertyAndUnknownId() {
+		MqttProperties properties = new MqttProperties();
+		assertThrows(IllegalArgumentException.class, () -> properties.addInt(MqttPropertyType.USER_PROPERTY, 1));
+		assertThrows(IllegalArgumentException.class, () -> properties.addInt(UNKNOWN_PROPERTY_ID, 1));
+		assertThrows(UnsupportedOperationException.class,
+			() -> MqttProperties.NO_PROPERTIES.addInt(MqttPropertyType.TOPIC_ALIAS, 1));
+	}
+}
@@ -78,12 +78,8 @@ public enum TopicFilterType {
 	 * @return 是否匹配
 	 */
 	public boolean match(String topicFilter, String topicName) {
-		int prefixLength = getPrefixLength(topicFilter);
-		if (prefixLength > 0) {
-			return TopicUtil.match(topicFilter.substring(prefixLength), topicName);
-		} else {
-			return TopicUtil.match(topicFilter, topicName);
-		}
+		// 跳过共享订阅前缀，直接按偏移匹配，不截取子串
+		return TopicUtil.match(topicFilter, getPrefixLength(topicFilter), topicName);
 	}
 
 	/**
@@ -25,7 +25,6 @@ import org.dromara.mica.mqtt.core.common.TopicTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -148,10 +147,20 @@ public final class TopicUtil {
 	 * @return 是否匹配
 	 */
 	public static boolean match(String topicFilter, String topicName) {
-		char[] topicFilterChars = topicFilter.toCharArray();
-		char[] topicNameChars = topicName.toCharArray();
-		int topicFilterLength = topicFilterChars.length;
-		int topicNameLength = topicNameChars.length;
+		return match(topicFilter, 0, topicName);
+	}
+
+	/**
+	 * 判断 topicFilter 从 filterOffset 开始的部分与 topicName 是否匹配，直接按下标比较字符，不创建子串和字符数组
+	 *
+	 * @param topicFilter  topicFilter
+	 * @param filterOffset topicFilter 起始位置，例如跳过共享订阅前缀
+	 * @param topicName    topicName
+	 * @return 是否匹配
+	 */
+	public static boolean match(String topicFilter, int filterOffset, String topicName) {
+		int topicFilterLength = topicFilter.length() - filterOffset;
+		int topicNameLength = topicName.length();
 		int topicFilterIdxEnd = topicFilterLength - 1;
 		int topicNameIdxEnd = topicNameLength - 1;
 		char ch;
@@ -160,7 +169,7 @@ public final class TopicUtil {
 		int wildcardCharLen = 0;
 		topicFilterLoop:
 		for (int i = 0; i < topicFilterLength; i++) {
-			ch = topicFilterChars[i];
+			ch = topicFilter.charAt(filterOffset + i);
 			if (ch == MqttCodecUtil.TOPIC_WILDCARDS_MORE) {
 				// 校验: # 通配符只能在最后一位
 				if (i < topicFilterIdxEnd) {
@@ -169,7 +178,7 @@ public final class TopicUtil {
 				return true;
 			} else if (ch == MqttCodecUtil.TOPIC_WILDCARDS_ONE) {
 				// 校验: 单独 + 是允许的，判断 + 号前一位是否为 /，如果有后一位也必须为 /
-				if ((i > 0 && topicFilterChars[i - 1] != MqttCodecUtil.TOPIC_LAYER) || (i < topicFilterIdxEnd && topicFilterChars[i + 1] != MqttCodecUtil.TOPIC_LAYER)) {
+				if ((i > 0 && topicFilter.charAt(filterOffset + i - 1) != MqttCodecUtil.TOPIC_LAYER) || (i < topicFilterIdxEnd && topicFilter.charAt(filterOffset + i + 1) != MqttCodecUtil.TOPIC_LAYER)) {
 					throw new IllegalArgumentException("Mqtt subscribe topicFilter illegal:" + topicFilter);
 				}
 				// 如果 + 是最后一位，判断 topicName 中是否还存在层级 /
@@ -177,7 +186,7 @@ public final class TopicUtil {
 				int topicNameIdx = i + wildcardCharLen;
 				if (i == topicFilterIdxEnd && topicNameLength > topicNameIdx) {
 					for (int j = topicNameIdx; j < topicNameLength; j++) {
-						if (topicNameChars[j] == MqttCodecUtil.TOPIC_LAYER) {
+						if (topicName.charAt(j) == MqttCodecUtil.TOPIC_LAYER) {
 							return false;
 						}
 					}
@@ -190,7 +199,7 @@ public final class TopicUtil {
 				}
 				// 预读下一位，如果是 #，并且 topicName 位数已经不足
 				int next = i + 1;
-				if ((topicFilterLength > next) && topicFilterChars[next] == MqttCodecUtil.TOPIC_WILDCARDS_MORE && topicNameLength < next) {
+				if ((topicFilterLength > next) && topicFilter.charAt(filterOffset + next) == MqttCodecUtil.TOPIC_WILDCARDS_MORE && topicNameLength < next) {
 					return true;
 				}
 			}
@@ -201,7 +210,7 @@ public final class TopicUtil {
 			// 进入通配符
 			if (inLayerWildcard) {
 				for (int j = i + wildcardCharLen; j < topicNameLength; j++) {
-					if (topicNameChars[j] == MqttCodecUtil.TOPIC_LAYER) {
+					if (topicName.charAt(j) == MqttCodecUtil.TOPIC_LAYER) {
 						wildcardCharLen--;
 						continue topicFilterLoop;
 					} else {
@@ -215,7 +224,7 @@ public final class TopicUtil {
 			if (topicNameIdx > topicNameIdxEnd) {
 				return false;
 			}
-			if (ch != topicNameChars[topicNameIdx]) {
+			if (ch != topicName.charAt(topicNameIdx)) {
 				return false;
 			}
 		}
@@ -313,36 +322,7 @@ public final class TopicUtil {
 	 * @return part 数组
 	 */
 	public static String[] getTopicParts(String topic) {
-		// 大部分 topic 层级都在 10 以内
-		List<String> tokenList = new ArrayList<>(10);
-		char[] topicChars = topic.toCharArray();
-		int topicLength = topicChars.length;
-		int topicIdxEnd = topicLength - 1;
-		char ch;
-		// 前一个位置
-		int prev = 0;
-		for (int i = 0; i < topicLength; i++) {
-			ch = topicChars[i];
-			if (MqttCodecUtil.TOPIC_LAYER == ch) {
-				// 如果 / 为起始和最后的位置，添加 / 进 topic part
-				if (i == 0) {
-					tokenList.add(TOPIC_LAYER);
-					prev++;
-				} else {
-					tokenList.add(new String(topicChars, prev, i - prev));
-					prev = i;
-					prev++;
-					if (i == topicIdxEnd) {
-						tokenList.add(TOPIC_LAYER);
-					}
-				}
-			} else {
-				if (i == topicIdxEnd) {
-					tokenList.add(new String(topicChars, prev, topicLength - prev));
-				}
-			}
-		}
-		return tokenList.toArray(new String[0]);
+		return MqttCodecUtil.getTopicParts(topic);
 	}
 
 	/**
@@ -33,8 +33,10 @@ import org.dromara.mica.mqtt.codec.MqttCodecUtil;
 import org.dromara.mica.mqtt.codec.MqttQoS;
 import org.dromara.mica.mqtt.codec.codes.MqttDisconnectReasonCode;
 import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPublishFrame;
 import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
 import org.dromara.mica.mqtt.codec.message.builder.MqttDisconnectBuilder;
+import org.dromara.mica.mqtt.codec.message.builder.MqttPublishBuilder;
 import org.dromara.mica.mqtt.codec.message.properties.MqttDisconnectProperties;
 import org.dromara.mica.mqtt.codec.properties.MqttProperties;
 import org.dromara.mica.mqtt.core.common.MqttPendingPublish;
@@ -45,11 +47,16 @@ import org.dromara.mica.mqtt.core.server.model.ClientInfo;
 import org.dromara.mica.mqtt.core.server.model.Message;
 import org.dromara.mica.mqtt.core.server.model.Subscribe;
 import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
+import org.dromara.mica.mqtt.core.server.session.SharedSubscriptionGroups;
 import org.dromara.mica.mqtt.core.server.store.IMqttMessageStore;
+import org.dromara.mica.mqtt.core.server.store.InMemoryMqttMessageStore;
+import org.dromara.mica.mqtt.core.server.store.RetainMessageStore;
+import org.dromara.mica.mqtt.core.server.support.MqttFanOutExecutor;
 import org.dromara.mica.mqtt.core.util.TopicUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -82,6 +89,25 @@ public final class MqttServer {
 		this.sessionManager = serverCreator.getSessionManager();
 		this.messageStore = serverCreator.getMessageStore();
 		this.mqttSerializer = serverCreator.getMqttSerializer();
+		// 共享订阅负载感知策略使用客户端出站队列深度
+		SharedSubscriptionGroups sharedGroups = this.sessionManager.getSharedSubscriptionGroups();
+		if (sharedGroups != null) {
+			sharedGroups.setLoadFunction(this::getSendQueueSize);
+		}
+	}
+
+	/**
+	 * 客户端出站队列深度，未连接时为 Integer.MAX_VALUE
+	 *
+	 * @param clientId clientId
+	 * @return 出站队列深度
+	 */
+	private int getSendQueueSize(String clientId) {
+		ChannelContext context = Tio.getByBsId(this.serverConfig, clientId);
+		if (context == null || context.isClosed()) {
+			return Integer.MAX_VALUE;
+		}
+		return context.getSendQueueSize();
 	}
 
 	public static MqttServerCreator create() {
@@ -197,6 +223,27 @@ public final class MqttServer {
 	 */
 	public boolean publish(ChannelContext context, String clientId, String topic, Object payload,
 	                       MqttQoS qos, int subMqttQoS, boolean retain, MqttProperties properties
+	) {
+		return publish(context, clientId, topic, payload, qos, subMqttQoS, retain, properties, null);
+	}
+
+	/**
+	 * 直接发布消息，复用预编码的 PUBLISH 帧
+	 *
+	 * @param context    ChannelContext
+	 * @param clientId   clientId
+	 * @param topic      topic
+	 * @param payload    消息体，支持 byte[]、ByteBuffer（不拷贝）或待序列化的对象
+	 * @param qos        MqttQoS
+	 * @param subMqttQoS MqttQoS
+	 * @param retain     是否在服务器上保留消息
+	 * @param properties MqttProperties
+	 * @param frame      预编码的帧，版本或 qos 不一致时编码器会忽略，可为 null
+	 * @return 是否发送成功
+	 */
+	public boolean publish(ChannelContext context, String clientId, String topic, Object payload,
+	                       MqttQoS qos, int subMqttQoS, boolean retain, MqttProperties properties,
+	                       MqttPublishFrame frame
 	) {
 		// qos 降级处理，按订阅降级
 		MqttQoS mqttQoS = qos.value() > subMqttQoS ? MqttQoS.valueOf(subMqttQoS) : qos;
@@ -204,15 +251,20 @@ public final class MqttServer {
 		boolean isHighLevelQoS = MqttQoS.QOS1 == mqttQoS || MqttQoS.QOS2 == mqttQoS;
 		// 消息id
 		int messageId = isHighLevelQoS ? sessionManager.getPacketId(clientId) : -1;
-		byte[] newPayload = payload instanceof byte[] ? (byte[]) payload : mqttSerializer.serialize(payload);
-		MqttPublishMessage message = MqttPublishMessage.builder()
+		MqttPublishBuilder publishBuilder = MqttPublishMessage.builder()
 			.topicName(topic)
-			.payload(newPayload)
 			.qos(mqttQoS)
 			.retained(retain)
 			.messageId(messageId)
 			.properties(properties)
-			.build();
+			.frame(frame);
+		if (payload instanceof ByteBuffer) {
+			// 零拷贝解码的 payload 直接转发
+			publishBuilder.payload((ByteBuffer) payload);
+		} else {
+			publishBuilder.payload(payload instanceof byte[] ? (byte[]) payload : mqttSerializer.serialize(payload));
+		}
+		MqttPublishMessage message = publishBuilder.build();
 		// 先启动高 qos 的重试
 		if (isHighLevelQoS) {
 			MqttPendingPublish pendingPublish = new MqttPendingPublish(message, qos);
@@ -283,20 +335,19 @@ public final class MqttServer {
 			topic = retainPair.getValue();
 			this.saveRetainMessage(topic, timeOut, qos, payload);
 		}
-		// 查找订阅该 topic 的客户端
-		List<Subscribe> subscribeList = sessionManager.searchSubscribe(topic);
-		if (subscribeList.isEmpty()) {
-			logger.debug("Mqtt Topic:{} publishAll but subscribe client list is empty.", topic);
-			return false;
-		}
-		for (Subscribe subscribe : subscribeList) {
-			String clientId = subscribe.getClientId();
+		// 遍历订阅该 topic 的客户端，不创建订阅列表
+		String topicName = topic;
+		int count = sessionManager.forEachSubscriber(topicName, (clientId, subMqttQoS, noLocal) -> {
 			ChannelContext context = Tio.getByBsId(getServerConfig(), clientId);
 			if (context == null || context.isClosed()) {
-				logger.warn("Mqtt Topic:{} publish to clientId:{} channel is null may be disconnected.", topic, clientId);
-				continue;
+				logger.warn("Mqtt Topic:{} publish to clientId:{} channel is null may be disconnected.", topicName, clientId);
+				return;
 			}
-			publish(context, clientId, topic, payload, qos, subscribe.getMqttQoS(), false, null);
+			publish(context, clientId, topicName, payload, qos, subMqttQoS, false, null);
+		});
+		if (count == 0) {
+			logger.debug("Mqtt Topic:{} publishAll but subscribe client list is empty.", topicName);
+			return false;
 		}
 		return true;
 	}
@@ -590,7 +641,12 @@ public final class MqttServer {
 		this.taskService.start();
 		// 2. 启动心跳检测
 		this.taskService.addTask(systemTimer -> new ServerHeartbeatTask(systemTimer, serverConfig));
-		// 3. 启动监听器
+		// 3. 定时清理过期的保留消息
+		if (messageStore instanceof InMemoryMqttMessageStore) {
+			RetainMessageStore retainStore = ((InMemoryMqttMessageStore) messageStore).getRetainStore();
+			this.schedule(retainStore::expire, TimeUnit.SECONDS.toMillis(1));
+		}
+		// 4. 启动监听器
 		listeners.start();
 		return true;
 	}
@@ -606,6 +662,11 @@ public final class MqttServer {
 		// 优雅停止 mqtt 工作线程
 		ExecutorService mqttExecutor = serverCreator.getMqttExecutor();
 		result &= ThreadUtils.shutdownExecutor(mqttExecutor, serverCreator.getShutdownTimeoutSec(), "mqttExecutor");
+		// 等待已提交的大扇出转发完成
+		MqttFanOutExecutor fanOutExecutor = serverCreator.getFanOutExecutor();
+		if (fanOutExecutor != null) {
+			result &= fanOutExecutor.shutdown(serverCreator.getShutdownTimeoutSec());
+		}
 		try {
 			sessionManager.clean();
 		} catch (Throwable e) {
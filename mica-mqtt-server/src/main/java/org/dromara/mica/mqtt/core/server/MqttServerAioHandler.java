@@ -31,10 +31,13 @@ import org.dromara.mica.mqtt.codec.exception.MqttIdentifierRejectedException;
 import org.dromara.mica.mqtt.codec.exception.MqttUnacceptableProtocolVersionException;
 import org.dromara.mica.mqtt.codec.message.MqttConnAckMessage;
 import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.dromara.mica.mqtt.core.server.support.MqttAckBatchMessage;
+import org.dromara.mica.mqtt.core.server.support.MqttAckCoalescer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * @author L.cm
@@ -44,11 +47,13 @@ public class MqttServerAioHandler implements TioServerHandler {
 	private final MqttDecoder mqttDecoder;
 	private final MqttEncoder mqttEncoder;
 	private final MqttServerProcessor processor;
+	private final MqttAckCoalescer ackCoalescer;
 
 	public MqttServerAioHandler(MqttServerCreator serverCreator, MqttServerProcessor processor) {
-		this.mqttDecoder = new MqttDecoder(serverCreator.getMaxBytesInMessage(), serverCreator.getMaxClientIdLength());
-		this.mqttEncoder = MqttEncoder.INSTANCE;
+		this.mqttDecoder = new MqttDecoder(serverCreator.getMaxBytesInMessage(), serverCreator.getMaxClientIdLength(), serverCreator.isPayloadZeroCopy(), serverCreator.getTopicCache(), serverCreator.getPublishStreamFilter());
+		this.mqttEncoder = serverCreator.getMqttEncoder();
 		this.processor = processor;
+		this.ackCoalescer = serverCreator.getAckCoalescer();
 	}
 
 	/**
@@ -65,7 +70,17 @@ public class MqttServerAioHandler implements TioServerHandler {
 	@Override
 	public Packet decode(ByteBuffer buffer, int limit, int position, int readableLength, ChannelContext context) throws TioDecodeException {
 		try {
-			return mqttDecoder.doDecode(context, buffer, readableLength);
+			Packet message = mqttDecoder.doDecode(context, buffer, readableLength);
+			if (ackCoalescer != null) {
+				if (message == null) {
+					// 剩余半包，等待下次读取前刷出已暂存的 ack
+					ackCoalescer.flush(context);
+				} else if (!buffer.hasRemaining()) {
+					// 本次读取的最后一个报文，处理完成后刷出
+					ackCoalescer.markEndOfRead(context, (MqttMessage) message);
+				}
+			}
+			return message;
 		} catch (DecoderException e) {
 			processFailure(context, e);
 			throw new TioDecodeException(e);
@@ -82,9 +97,40 @@ public class MqttServerAioHandler implements TioServerHandler {
 	 */
 	@Override
 	public ByteBuffer encode(Packet packet, TioConfig tioConfig, ChannelContext context) {
+		if (packet instanceof MqttAckBatchMessage) {
+			return encodeBatch(context, (MqttAckBatchMessage) packet);
+		}
 		return mqttEncoder.doEncode(context, (MqttMessage) packet);
 	}
 
+	/**
+	 * 合并的 ack 编码到同一个 buffer 中
+	 *
+	 * @param context ChannelContext
+	 * @param batch   MqttAckBatchMessage
+	 * @return ByteBuffer
+	 */
+	private ByteBuffer encodeBatch(ChannelContext context, MqttAckBatchMessage batch) {
+		List<MqttMessage> messages = batch.getMessages();
+		int size = messages.size();
+		ByteBuffer[] buffers = new ByteBuffer[size];
+		int length = 0;
+		for (int i = 0; i < size; i++) {
+			ByteBuffer buffer = mqttEncoder.doEncode(context, messages.get(i));
+			buffers[i] = buffer;
+			length += buffer.position();
+		}
+		ByteBuffer allBuffer = ByteBuffer.allocate(length);
+		for (int i = 0; i < size; i++) {
+			ByteBuffer buffer = buffers[i];
+			buffer.flip();
+			allBuffer.put(buffer);
+			// 已拷贝，池化的 buffer 直接归还
+			mqttEncoder.release(messages.get(i));
+		}
+		return allBuffer;
+	}
+
 	/**
 	 * 处理消息包
 	 *
@@ -99,6 +145,7 @@ public class MqttServerAioHandler implements TioServerHandler {
 		// 2. 单独处理 CONNECT 的消息
 		if (MqttMessageType.CONNECT == messageType) {
 			processor.processDispatch(messageType, context, mqttMessage);
+			afterHandled(context, mqttMessage);
 			return;
 		}
 		// 3. 判定是否认证成功
@@ -108,6 +155,19 @@ public class MqttServerAioHandler implements TioServerHandler {
 		}
 		// 4. 按类型的消息处理
 		processor.processDispatch(messageType, context, mqttMessage);
+		afterHandled(context, mqttMessage);
+	}
+
+	/**
+	 * 本次读取的最后一个报文处理完成，刷出合并的 ack
+	 *
+	 * @param context ChannelContext
+	 * @param message MqttMessage
+	 */
+	private void afterHandled(ChannelContext context, MqttMessage message) {
+		if (ackCoalescer != null) {
+			ackCoalescer.afterHandled(context, message);
+		}
 	}
 
 	/**
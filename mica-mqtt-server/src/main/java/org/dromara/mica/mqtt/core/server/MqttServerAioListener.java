@@ -20,12 +20,17 @@ import net.dreamlu.mica.net.core.ChannelContext;
 import net.dreamlu.mica.net.core.intf.Packet;
 import net.dreamlu.mica.net.server.DefaultTioServerListener;
 import net.dreamlu.mica.net.utils.hutool.StrUtil;
+import org.dromara.mica.mqtt.codec.MqttEncoder;
 import org.dromara.mica.mqtt.codec.message.MqttMessage;
 import org.dromara.mica.mqtt.core.server.event.IMqttConnectStatusListener;
+import org.dromara.mica.mqtt.core.server.event.IMqttMessageChunkListener;
+import org.dromara.mica.mqtt.core.server.handler.MqttPublishChunkHandler;
 import org.dromara.mica.mqtt.core.server.model.Message;
 import org.dromara.mica.mqtt.core.server.pipeline.IMqttMessagePipeline;
 import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
 import org.dromara.mica.mqtt.core.server.store.IMqttMessageStore;
+import org.dromara.mica.mqtt.core.server.support.MqttAckBatchMessage;
+import org.dromara.mica.mqtt.core.server.support.MqttRetainDeliverer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +50,9 @@ public class MqttServerAioListener extends DefaultTioServerListener {
 	private final IMqttMessagePipeline messagePipeline;
 	private final IMqttConnectStatusListener connectStatusListener;
 	private final MqttMessageInterceptors messageInterceptors;
+	private final MqttEncoder mqttEncoder;
+	private final IMqttMessageChunkListener messageChunkListener;
+	private final MqttRetainDeliverer retainDeliverer;
 
 	public MqttServerAioListener(MqttServerCreator serverCreator) {
 		this.executor = serverCreator.getMqttExecutor();
@@ -53,6 +61,9 @@ public class MqttServerAioListener extends DefaultTioServerListener {
 		this.messagePipeline = serverCreator.getMessagePipeline();
 		this.connectStatusListener = serverCreator.getConnectStatusListener();
 		this.messageInterceptors = serverCreator.getMessageInterceptors();
+		this.mqttEncoder = serverCreator.getMqttEncoder();
+		this.messageChunkListener = serverCreator.getPublishStreamFilter() == null ? null : serverCreator.getMessageChunkListener();
+		this.retainDeliverer = serverCreator.getRetainDeliverer();
 	}
 
 	@Override
@@ -73,6 +84,16 @@ public class MqttServerAioListener extends DefaultTioServerListener {
 		context.setAccepted(false);
 		// 1. 业务 id
 		String clientId = context.getBsId();
+		// 未接收完成的流式消息
+		if (messageChunkListener != null) {
+			try {
+				MqttPublishChunkHandler.abort(context, messageChunkListener);
+			} catch (Throwable e) {
+				logger.error("Mqtt server clientId:{} publish chunk abort error.", clientId, e);
+			}
+		}
+		// 未下发完成的保留消息
+		retainDeliverer.cancel(context);
 		// 2. 判断是否正常断开
 		boolean isNotNormalDisconnect = !context.isBizStatus();
 		context.setBizStatus(false);
@@ -145,8 +166,16 @@ public class MqttServerAioListener extends DefaultTioServerListener {
 
 	@Override
 	public void onAfterSent(ChannelContext context, Packet packet, boolean isSentSuccess) throws Exception {
-		if (packet instanceof MqttMessage) {
-			messageInterceptors.onAfterSent(context, (MqttMessage) packet, isSentSuccess);
+		if (packet instanceof MqttAckBatchMessage) {
+			// 合并的 ack，编码时已归还 buffer
+			for (MqttMessage message : ((MqttAckBatchMessage) packet).getMessages()) {
+				messageInterceptors.onAfterSent(context, message, isSentSuccess);
+			}
+		} else if (packet instanceof MqttMessage) {
+			MqttMessage message = (MqttMessage) packet;
+			// 结束本次编码，该消息所有在途的发送完成后归还池化的编码 buffer
+			mqttEncoder.release(message);
+			messageInterceptors.onAfterSent(context, message, isSentSuccess);
 		}
 	}
 
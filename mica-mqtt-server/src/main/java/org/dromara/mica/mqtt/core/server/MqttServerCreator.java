@@ -29,7 +29,11 @@ import net.dreamlu.mica.net.utils.thread.ThreadUtils;
 import net.dreamlu.mica.net.utils.thread.pool.SynThreadPoolExecutor;
 import net.dreamlu.mica.net.utils.timer.DefaultTimerTaskService;
 import net.dreamlu.mica.net.utils.timer.TimerTaskService;
+import org.dromara.mica.mqtt.codec.MqttBufferAllocator;
 import org.dromara.mica.mqtt.codec.MqttConstant;
+import org.dromara.mica.mqtt.codec.MqttEncoder;
+import org.dromara.mica.mqtt.codec.MqttPublishStreamFilter;
+import org.dromara.mica.mqtt.codec.MqttTopicCache;
 import org.dromara.mica.mqtt.core.serializer.MqttJsonSerializer;
 import org.dromara.mica.mqtt.core.serializer.MqttSerializer;
 import org.dromara.mica.mqtt.core.server.auth.IMqttServerAuthHandler;
@@ -37,6 +41,7 @@ import org.dromara.mica.mqtt.core.server.auth.IMqttServerPublishPermission;
 import org.dromara.mica.mqtt.core.server.auth.IMqttServerSubscribeValidator;
 import org.dromara.mica.mqtt.core.server.auth.IMqttServerUniqueIdService;
 import org.dromara.mica.mqtt.core.server.event.IMqttConnectStatusListener;
+import org.dromara.mica.mqtt.core.server.event.IMqttMessageChunkListener;
 import org.dromara.mica.mqtt.core.server.event.IMqttMessageListener;
 import org.dromara.mica.mqtt.core.server.event.IMqttSessionListener;
 import org.dromara.mica.mqtt.core.server.interceptor.IMqttMessageInterceptor;
@@ -50,19 +55,30 @@ import org.dromara.mica.mqtt.core.server.pipeline.handler.RetainMessageHandler;
 import org.dromara.mica.mqtt.core.server.pipeline.handler.SubscriptionForwardHandler;
 import org.dromara.mica.mqtt.core.server.pipeline.message.*;
 import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
+import org.dromara.mica.mqtt.core.server.session.ISharedSubscriptionStrategy;
 import org.dromara.mica.mqtt.core.server.session.InMemoryMqttSessionManager;
+import org.dromara.mica.mqtt.core.server.session.SharedStrategy;
+import org.dromara.mica.mqtt.core.server.session.SharedSubscriptionGroups;
 import org.dromara.mica.mqtt.core.server.store.IMqttMessageStore;
 import org.dromara.mica.mqtt.core.server.store.InMemoryMqttMessageStore;
+import org.dromara.mica.mqtt.core.server.store.RetainEvictionPolicy;
 import org.dromara.mica.mqtt.core.server.support.DefaultMqttConnectStatusListener;
 import org.dromara.mica.mqtt.core.server.support.DefaultMqttServerAuthHandler;
 import org.dromara.mica.mqtt.core.server.support.DefaultMqttServerProcessor;
+import org.dromara.mica.mqtt.core.server.support.MqttAckCoalescer;
+import org.dromara.mica.mqtt.core.server.support.MqttFanOutExecutor;
+import org.dromara.mica.mqtt.core.server.support.MqttRetainDeliverer;
 import org.dromara.mica.mqtt.core.server.support.DefaultMqttServerUniqueIdServiceImpl;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * mqtt 服务端参数构造
@@ -162,6 +178,125 @@ public class MqttServerCreator {
 	 * 是否用队列解码（系统初始化时确定该值，中途不要变更此值，否则在切换的时候可能导致消息丢失）
 	 */
 	private boolean useQueueDecode = false;
+	/**
+	 * PUBLISH payload 零拷贝解码，需同时开启 useQueueDecode（每次读取的数据为独立的 ByteBuffer，解码后不会被复用），默认：false
+	 * <p>
+	 * 开启后 payload 为读缓冲区的只读切片，仅在监听器等需要 byte[] 时才拷贝，订阅转发和集群转发不再拷贝 payload。
+	 * 注意：切片会持有整个读缓冲区，直到消息处理完成。
+	 */
+	private boolean payloadZeroCopy = false;
+	/**
+	 * PUBLISH topic name 解码缓存大小，缓存解码后的 topic 和切分好的 topic parts，适合 topic 数量有限的场景，默认：0 不开启
+	 */
+	private int topicCacheSize = 0;
+	/**
+	 * topic 解码缓存，build 时根据 topicCacheSize 创建
+	 */
+	private MqttTopicCache topicCache;
+	/**
+	 * 编码 buffer 分配器，默认：堆内存，每次新建；可使用 {@link org.dromara.mica.mqtt.codec.PooledMqttBufferAllocator} 池化复用，报文发送完成后归还
+	 */
+	private MqttBufferAllocator bufferAllocator = MqttBufferAllocator.HEAP;
+	/**
+	 * 编码器，build 时根据 bufferAllocator 创建
+	 */
+	private MqttEncoder mqttEncoder;
+	/**
+	 * 流式解码的 PUBLISH topic 前缀，报文长度达到 publishStreamMinBytes 时按分片交给 messageChunkListener，默认：不开启
+	 */
+	private String[] publishStreamTopicPrefixes;
+	/**
+	 * 流式解码的最小报文长度，默认：64k
+	 */
+	private int publishStreamMinBytes = 64 * 1024;
+	/**
+	 * 流式消息分片监听器
+	 */
+	private IMqttMessageChunkListener messageChunkListener;
+	/**
+	 * PUBLISH 流式解码过滤器，build 时根据 publishStreamTopicPrefixes 创建
+	 */
+	private MqttPublishStreamFilter publishStreamFilter;
+	/**
+	 * 是否合并发送 PUBACK、PUBREC、PUBCOMP、PINGRESP，同一次读取产生的 ack 合并成一次写出，适合客户端流水线发送 QoS1/QoS2 消息的场景，默认：false
+	 */
+	private boolean ackCoalesceEnable = false;
+	/**
+	 * ack 合并的最大等待时间（毫秒），兜底刷出，实际精度受 taskService 刻度影响，默认：5
+	 */
+	private long ackCoalesceLingerMillis = 5L;
+	/**
+	 * 单次合并的最大 ack 数，达到后立即刷出，默认：64
+	 */
+	private int ackCoalesceMaxBatch = 64;
+	/**
+	 * ack 合并发送器，build 时根据 ackCoalesceEnable 创建
+	 */
+	private MqttAckCoalescer ackCoalescer;
+	/**
+	 * 大扇出并行转发的订阅者数阈值，达到后按订阅者分通道并行发送，默认：0（不开启）
+	 */
+	private int fanOutThreshold = 0;
+	/**
+	 * 大扇出并行转发的通道（线程）数，默认：cpu 核数
+	 */
+	private int fanOutParallelism = Runtime.getRuntime().availableProcessors();
+	/**
+	 * 大扇出并行转发每条通道的队列容量，满了在当前线程发送，默认：10000
+	 */
+	private int fanOutQueueCapacity = MqttFanOutExecutor.DEFAULT_QUEUE_CAPACITY;
+	/**
+	 * 大扇出并行转发，build 时根据 fanOutThreshold 创建
+	 */
+	private MqttFanOutExecutor fanOutExecutor;
+	/**
+	 * 热点 topic 匹配结果缓存大小，默认 session 管理使用，订阅变更时自动失效，默认：0（不开启）
+	 */
+	private int topicMatchCacheSize = 0;
+	/**
+	 * 是否使用紧凑订阅存储，clientId 转为 int 句柄，订阅叶子使用 int 数组，适合海量订阅，默认：false
+	 */
+	private boolean compactSubscriptionStore = false;
+	/**
+	 * 保留消息内存预算（字节），默认 messageStore 使用，超出后按淘汰策略淘汰，默认：0（不限制）
+	 */
+	private long retainMaxBytes = 0L;
+	/**
+	 * 保留消息超出内存预算时的淘汰策略，默认：LRU
+	 */
+	private RetainEvictionPolicy retainEvictionPolicy = RetainEvictionPolicy.LRU;
+	/**
+	 * 保留消息 payload 是否存放在堆外，默认：false
+	 */
+	private boolean retainOffHeap = false;
+	/**
+	 * 订阅时保留消息每批下发的条数，默认：100
+	 */
+	private int retainDeliverBatchSize = 100;
+	/**
+	 * 订阅时 QoS1/QoS2 保留消息的最大在途数，同时受客户端 Receive Maximum 限制，默认：32
+	 */
+	private int retainDeliverMaxInflight = 32;
+	/**
+	 * 连接发送队列达到该长度时暂停下发保留消息，默认：256
+	 */
+	private int retainDeliverMaxSendQueue = 256;
+	/**
+	 * 保留消息暂停下发后的重试间隔（毫秒），实际精度受 taskService 刻度影响，默认：100
+	 */
+	private long retainDeliverIntervalMillis = 100L;
+	/**
+	 * 保留消息分批下发，build 时创建
+	 */
+	private MqttRetainDeliverer retainDeliverer;
+	/**
+	 * 共享订阅默认策略，为 null 时使用 sessionManager 的默认策略（随机）
+	 */
+	private Supplier<? extends ISharedSubscriptionStrategy> sharedStrategy;
+	/**
+	 * 共享订阅分组策略 groupName: strategy
+	 */
+	private final Map<String, Supplier<? extends ISharedSubscriptionStrategy>> sharedGroupStrategies = new LinkedHashMap<>();
 	/**
 	 * 是否开启监控，不开启可节省内存，默认：true
 	 */
@@ -214,6 +349,10 @@ public class MqttServerCreator {
 	 * （如 k8s terminationGracePeriodSeconds）调到不小于此值。
 	 */
 	private int shutdownTimeoutSec = TioConfig.DEFAULT_SHUTDOWN_TIMEOUT_SEC;
+	/**
+	 * 订阅转发时按（mqtt 版本，降级后 qos）预编码 PUBLISH 帧，多个订阅者共享 topic、properties 和 payload 的编码结果，默认：true
+	 */
+	private boolean publishFrameShareEnable = true;
 
 	public String getName() {
 		return name;
@@ -415,6 +554,457 @@ public class MqttServerCreator {
 		return this;
 	}
 
+	public boolean isPayloadZeroCopy() {
+		return payloadZeroCopy;
+	}
+
+	/**
+	 * PUBLISH payload 零拷贝解码，需同时开启 useQueueDecode
+	 *
+	 * @param payloadZeroCopy 是否开启
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator payloadZeroCopy(boolean payloadZeroCopy) {
+		this.payloadZeroCopy = payloadZeroCopy;
+		return this;
+	}
+
+	public int getTopicCacheSize() {
+		return topicCacheSize;
+	}
+
+	/**
+	 * PUBLISH topic name 解码缓存大小，会向上取整为 2 的幂，0 表示不开启
+	 *
+	 * @param topicCacheSize 缓存大小
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator topicCacheSize(int topicCacheSize) {
+		if (topicCacheSize < 0) {
+			throw new IllegalArgumentException("topicCacheSize must be greater than or equal to zero.");
+		}
+		this.topicCacheSize = topicCacheSize;
+		return this;
+	}
+
+	/**
+	 * topic 解码缓存，可获取命中、未命中次数
+	 *
+	 * @return MqttTopicCache，未开启时为 null
+	 */
+	public MqttTopicCache getTopicCache() {
+		return topicCache;
+	}
+
+	public MqttBufferAllocator getBufferAllocator() {
+		return bufferAllocator;
+	}
+
+	/**
+	 * 编码 buffer 分配器
+	 *
+	 * @param bufferAllocator MqttBufferAllocator
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator bufferAllocator(MqttBufferAllocator bufferAllocator) {
+		this.bufferAllocator = Objects.requireNonNull(bufferAllocator, "bufferAllocator is null.");
+		return this;
+	}
+
+	/**
+	 * 编码器
+	 *
+	 * @return MqttEncoder，build 后可用
+	 */
+	public MqttEncoder getMqttEncoder() {
+		return mqttEncoder;
+	}
+
+	public String[] getPublishStreamTopicPrefixes() {
+		return publishStreamTopicPrefixes;
+	}
+
+	/**
+	 * 流式解码的 PUBLISH topic 前缀，需同时配置 messageChunkListener
+	 *
+	 * @param topicPrefixes topic 前缀
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator publishStreamTopicPrefixes(String... topicPrefixes) {
+		this.publishStreamTopicPrefixes = topicPrefixes;
+		return this;
+	}
+
+	public int getPublishStreamMinBytes() {
+		return publishStreamMinBytes;
+	}
+
+	/**
+	 * 流式解码的最小报文长度
+	 *
+	 * @param publishStreamMinBytes 最小报文长度
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator publishStreamMinBytes(int publishStreamMinBytes) {
+		if (publishStreamMinBytes < 0) {
+			throw new IllegalArgumentException("publishStreamMinBytes must be greater than or equal to zero.");
+		}
+		this.publishStreamMinBytes = publishStreamMinBytes;
+		return this;
+	}
+
+	public IMqttMessageChunkListener getMessageChunkListener() {
+		return messageChunkListener;
+	}
+
+	/**
+	 * 流式消息分片监听器
+	 *
+	 * @param messageChunkListener IMqttMessageChunkListener
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator messageChunkListener(IMqttMessageChunkListener messageChunkListener) {
+		this.messageChunkListener = messageChunkListener;
+		return this;
+	}
+
+	/**
+	 * PUBLISH 流式解码过滤器
+	 *
+	 * @return MqttPublishStreamFilter，未开启时为 null
+	 */
+	public MqttPublishStreamFilter getPublishStreamFilter() {
+		return publishStreamFilter;
+	}
+
+	public boolean isAckCoalesceEnable() {
+		return ackCoalesceEnable;
+	}
+
+	/**
+	 * 开启 ack 合并发送
+	 *
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator ackCoalesceEnable() {
+		return ackCoalesceEnable(true);
+	}
+
+	public MqttServerCreator ackCoalesceEnable(boolean ackCoalesceEnable) {
+		this.ackCoalesceEnable = ackCoalesceEnable;
+		return this;
+	}
+
+	public long getAckCoalesceLingerMillis() {
+		return ackCoalesceLingerMillis;
+	}
+
+	/**
+	 * ack 合并的最大等待时间
+	 *
+	 * @param ackCoalesceLingerMillis 毫秒
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator ackCoalesceLingerMillis(long ackCoalesceLingerMillis) {
+		if (ackCoalesceLingerMillis < 1) {
+			throw new IllegalArgumentException("ackCoalesceLingerMillis must be greater than zero.");
+		}
+		this.ackCoalesceLingerMillis = ackCoalesceLingerMillis;
+		return this;
+	}
+
+	public int getAckCoalesceMaxBatch() {
+		return ackCoalesceMaxBatch;
+	}
+
+	/**
+	 * 单次合并的最大 ack 数
+	 *
+	 * @param ackCoalesceMaxBatch 最大 ack 数
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator ackCoalesceMaxBatch(int ackCoalesceMaxBatch) {
+		if (ackCoalesceMaxBatch < 1) {
+			throw new IllegalArgumentException("ackCoalesceMaxBatch must be greater than zero.");
+		}
+		this.ackCoalesceMaxBatch = ackCoalesceMaxBatch;
+		return this;
+	}
+
+	public int getFanOutThreshold() {
+		return fanOutThreshold;
+	}
+
+	/**
+	 * 大扇出并行转发：订阅者数达到阈值的消息按订阅者分通道并行发送，同一订阅者的消息保持顺序
+	 *
+	 * @param fanOutThreshold 订阅者数阈值，0 为不开启
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator fanOutThreshold(int fanOutThreshold) {
+		if (fanOutThreshold < 0) {
+			throw new IllegalArgumentException("fanOutThreshold must be greater than or equal to zero.");
+		}
+		this.fanOutThreshold = fanOutThreshold;
+		return this;
+	}
+
+	public int getFanOutParallelism() {
+		return fanOutParallelism;
+	}
+
+	/**
+	 * 大扇出并行转发的通道（线程）数
+	 *
+	 * @param fanOutParallelism 通道数
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator fanOutParallelism(int fanOutParallelism) {
+		if (fanOutParallelism < 1) {
+			throw new IllegalArgumentException("fanOutParallelism must be greater than zero.");
+		}
+		this.fanOutParallelism = fanOutParallelism;
+		return this;
+	}
+
+	public int getFanOutQueueCapacity() {
+		return fanOutQueueCapacity;
+	}
+
+	/**
+	 * 大扇出并行转发每条通道的队列容量，慢订阅者导致通道积压满时，新任务在当前线程发送
+	 *
+	 * @param fanOutQueueCapacity 队列容量
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator fanOutQueueCapacity(int fanOutQueueCapacity) {
+		if (fanOutQueueCapacity < 1) {
+			throw new IllegalArgumentException("fanOutQueueCapacity must be greater than zero.");
+		}
+		this.fanOutQueueCapacity = fanOutQueueCapacity;
+		return this;
+	}
+
+	public int getTopicMatchCacheSize() {
+		return topicMatchCacheSize;
+	}
+
+	/**
+	 * 热点 topic 匹配结果缓存大小，适合大部分消息发往少量 topic 的场景，自定义 sessionManager 时无效
+	 *
+	 * @param topicMatchCacheSize 缓存大小，向上取 2 的幂次，0 为不开启
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator topicMatchCacheSize(int topicMatchCacheSize) {
+		if (topicMatchCacheSize < 0) {
+			throw new IllegalArgumentException("topicMatchCacheSize must be greater than or equal to zero.");
+		}
+		this.topicMatchCacheSize = topicMatchCacheSize;
+		return this;
+	}
+
+	public boolean isCompactSubscriptionStore() {
+		return compactSubscriptionStore;
+	}
+
+	/**
+	 * 开启紧凑订阅存储，默认 sessionManager 使用，自定义 sessionManager 时无效
+	 *
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator compactSubscriptionStore() {
+		return compactSubscriptionStore(true);
+	}
+
+	public MqttServerCreator compactSubscriptionStore(boolean compactSubscriptionStore) {
+		this.compactSubscriptionStore = compactSubscriptionStore;
+		return this;
+	}
+
+	public long getRetainMaxBytes() {
+		return retainMaxBytes;
+	}
+
+	/**
+	 * 保留消息内存预算，按 payload、topic 和固定开销估算，超出后按淘汰策略淘汰，自定义 messageStore 时无效
+	 *
+	 * @param retainMaxBytes 内存预算（字节），0 为不限制
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator retainMaxBytes(long retainMaxBytes) {
+		if (retainMaxBytes < 0) {
+			throw new IllegalArgumentException("retainMaxBytes must be greater than or equal to zero.");
+		}
+		this.retainMaxBytes = retainMaxBytes;
+		return this;
+	}
+
+	public RetainEvictionPolicy getRetainEvictionPolicy() {
+		return retainEvictionPolicy;
+	}
+
+	/**
+	 * 保留消息超出内存预算时的淘汰策略，自定义 messageStore 时无效
+	 *
+	 * @param retainEvictionPolicy 淘汰策略
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator retainEvictionPolicy(RetainEvictionPolicy retainEvictionPolicy) {
+		this.retainEvictionPolicy = Objects.requireNonNull(retainEvictionPolicy, "retainEvictionPolicy is null.");
+		return this;
+	}
+
+	public boolean isRetainOffHeap() {
+		return retainOffHeap;
+	}
+
+	/**
+	 * 保留消息 payload 存放在堆外，自定义 messageStore 时无效
+	 *
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator retainOffHeap() {
+		return retainOffHeap(true);
+	}
+
+	public MqttServerCreator retainOffHeap(boolean retainOffHeap) {
+		this.retainOffHeap = retainOffHeap;
+		return this;
+	}
+
+	public int getRetainDeliverBatchSize() {
+		return retainDeliverBatchSize;
+	}
+
+	/**
+	 * 订阅时保留消息每批下发的条数，发完一批后重新提交到业务线程池
+	 *
+	 * @param retainDeliverBatchSize 每批条数
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator retainDeliverBatchSize(int retainDeliverBatchSize) {
+		if (retainDeliverBatchSize < 1) {
+			throw new IllegalArgumentException("retainDeliverBatchSize must be greater than zero.");
+		}
+		this.retainDeliverBatchSize = retainDeliverBatchSize;
+		return this;
+	}
+
+	public int getRetainDeliverMaxInflight() {
+		return retainDeliverMaxInflight;
+	}
+
+	/**
+	 * 订阅时 QoS1/QoS2 保留消息的最大在途数，同时受客户端 Receive Maximum 限制
+	 *
+	 * @param retainDeliverMaxInflight 最大在途数
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator retainDeliverMaxInflight(int retainDeliverMaxInflight) {
+		if (retainDeliverMaxInflight < 1) {
+			throw new IllegalArgumentException("retainDeliverMaxInflight must be greater than zero.");
+		}
+		this.retainDeliverMaxInflight = retainDeliverMaxInflight;
+		return this;
+	}
+
+	public int getRetainDeliverMaxSendQueue() {
+		return retainDeliverMaxSendQueue;
+	}
+
+	/**
+	 * 连接发送队列达到该长度时暂停下发保留消息
+	 *
+	 * @param retainDeliverMaxSendQueue 发送队列长度
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator retainDeliverMaxSendQueue(int retainDeliverMaxSendQueue) {
+		if (retainDeliverMaxSendQueue < 1) {
+			throw new IllegalArgumentException("retainDeliverMaxSendQueue must be greater than zero.");
+		}
+		this.retainDeliverMaxSendQueue = retainDeliverMaxSendQueue;
+		return this;
+	}
+
+	public long getRetainDeliverIntervalMillis() {
+		return retainDeliverIntervalMillis;
+	}
+
+	/**
+	 * 保留消息暂停下发后的重试间隔
+	 *
+	 * @param retainDeliverIntervalMillis 毫秒
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator retainDeliverIntervalMillis(long retainDeliverIntervalMillis) {
+		if (retainDeliverIntervalMillis < 1) {
+			throw new IllegalArgumentException("retainDeliverIntervalMillis must be greater than zero.");
+		}
+		this.retainDeliverIntervalMillis = retainDeliverIntervalMillis;
+		return this;
+	}
+
+	public Supplier<? extends ISharedSubscriptionStrategy> getSharedStrategy() {
+		return sharedStrategy;
+	}
+
+	/**
+	 * 共享订阅（$share、$queue）默认策略，每个分组使用独立的策略实例
+	 *
+	 * @param sharedStrategy 策略，如 {@link SharedStrategy#round_robin}
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator sharedStrategy(Supplier<? extends ISharedSubscriptionStrategy> sharedStrategy) {
+		this.sharedStrategy = Objects.requireNonNull(sharedStrategy, "sharedStrategy is null.");
+		return this;
+	}
+
+	public Map<String, Supplier<? extends ISharedSubscriptionStrategy>> getSharedGroupStrategies() {
+		return sharedGroupStrategies;
+	}
+
+	/**
+	 * 共享订阅分组策略，$queue 的分组名为 {@link SharedSubscriptionGroups#QUEUE_GROUP}
+	 *
+	 * @param groupName      分组名
+	 * @param sharedStrategy 策略，如 {@link SharedStrategy#least_queued}
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator sharedStrategy(String groupName, Supplier<? extends ISharedSubscriptionStrategy> sharedStrategy) {
+		if (StrUtil.isBlank(groupName)) {
+			throw new IllegalArgumentException("shared subscription groupName is blank.");
+		}
+		this.sharedGroupStrategies.put(groupName, Objects.requireNonNull(sharedStrategy, "sharedStrategy is null."));
+		return this;
+	}
+
+	/**
+	 * ack 合并发送器，可获取每次刷出的 ack 数等指标
+	 *
+	 * @return MqttAckCoalescer，未开启时为 null
+	 */
+	public MqttAckCoalescer getAckCoalescer() {
+		return ackCoalescer;
+	}
+
+	/**
+	 * 保留消息分批下发，可获取暂停次数等指标
+	 *
+	 * @return MqttRetainDeliverer
+	 */
+	public MqttRetainDeliverer getRetainDeliverer() {
+		return retainDeliverer;
+	}
+
+	/**
+	 * 大扇出并行转发，可获取并行转发次数等指标
+	 *
+	 * @return MqttFanOutExecutor，未开启时为 null
+	 */
+	public MqttFanOutExecutor getFanOutExecutor() {
+		return fanOutExecutor;
+	}
+
 	public boolean isStatEnable() {
 		return statEnable;
 	}
@@ -559,6 +1149,21 @@ public class MqttServerCreator {
 		return this;
 	}
 
+	public boolean isPublishFrameShareEnable() {
+		return publishFrameShareEnable;
+	}
+
+	/**
+	 * 订阅转发时是否共享预编码的 PUBLISH 帧，关闭后每个订阅者单独编码
+	 *
+	 * @param enable 是否开启
+	 * @return MqttServerCreator
+	 */
+	public MqttServerCreator publishFrameShareEnable(boolean enable) {
+		this.publishFrameShareEnable = enable;
+		return this;
+	}
+
 	public MqttServerCreator enableMqtt() {
 		return enableMqtt(MqttProtocolListener.Builder::build);
 	}
@@ -615,6 +1220,10 @@ public class MqttServerCreator {
 	}
 
 	public MqttServer build() {
+		// 零拷贝解码依赖 useQueueDecode，否则读缓冲区会被下一次读取覆盖
+		if (this.payloadZeroCopy && !this.useQueueDecode) {
+			throw new IllegalArgumentException("payloadZeroCopy requires useQueueDecode to be enabled.");
+		}
 		// 默认的节点名称，用于集群
 		if (StrUtil.isBlank(this.nodeName)) {
 			this.nodeName = StrUtil.getNanoId();
@@ -623,14 +1232,38 @@ public class MqttServerCreator {
 			this.uniqueIdService = new DefaultMqttServerUniqueIdServiceImpl();
 		}
 		if (this.sessionManager == null) {
-			this.sessionManager = new InMemoryMqttSessionManager();
+			this.sessionManager = new InMemoryMqttSessionManager(this.topicMatchCacheSize, this.compactSubscriptionStore);
+		}
+		// 共享订阅策略
+		if (this.sharedStrategy != null || !this.sharedGroupStrategies.isEmpty()) {
+			SharedSubscriptionGroups sharedGroups = this.sessionManager.getSharedSubscriptionGroups();
+			if (sharedGroups == null) {
+				throw new IllegalArgumentException("sharedStrategy is not supported by sessionManager:" + this.sessionManager.getClass().getName());
+			}
+			if (this.sharedStrategy != null) {
+				sharedGroups.setDefaultStrategy(this.sharedStrategy);
+			}
+			this.sharedGroupStrategies.forEach(sharedGroups::setStrategy);
 		}
 		if (this.messageStore == null) {
-			this.messageStore = new InMemoryMqttMessageStore();
+			this.messageStore = new InMemoryMqttMessageStore(this.retainMaxBytes, this.retainEvictionPolicy, this.retainOffHeap);
 		}
 		if (this.connectStatusListener == null) {
 			this.connectStatusListener = new DefaultMqttConnectStatusListener();
 		}
+		// topic 解码缓存
+		if (this.topicCacheSize > 0 && this.topicCache == null) {
+			this.topicCache = new MqttTopicCache(this.topicCacheSize);
+		}
+		// PUBLISH 流式解码
+		if (this.publishStreamTopicPrefixes != null && this.publishStreamTopicPrefixes.length > 0) {
+			if (this.messageChunkListener == null) {
+				throw new IllegalArgumentException("publishStreamTopicPrefixes requires messageChunkListener.");
+			}
+			this.publishStreamFilter = new MqttPublishStreamFilter(this.publishStreamMinBytes, this.publishStreamTopicPrefixes);
+		}
+		// 编码器
+		this.mqttEncoder = this.bufferAllocator == MqttBufferAllocator.HEAP ? MqttEncoder.INSTANCE : new MqttEncoder(this.bufferAllocator);
 		// tioExecutor
 		if (this.tioExecutor == null) {
 			this.tioExecutor = ThreadUtils.getTioExecutor();
@@ -647,6 +1280,17 @@ public class MqttServerCreator {
 		if (this.taskService == null) {
 			this.taskService = new DefaultTimerTaskService(200L, 60);
 		}
+		// ack 合并发送
+		if (this.ackCoalesceEnable) {
+			this.ackCoalescer = new MqttAckCoalescer(this.taskService, this.ackCoalesceMaxBatch, this.ackCoalesceLingerMillis);
+		}
+		// 保留消息分批下发
+		this.retainDeliverer = new MqttRetainDeliverer(this.sessionManager, this.taskService, this.mqttExecutor,
+			this.retainDeliverBatchSize, this.retainDeliverMaxInflight, this.retainDeliverMaxSendQueue, this.retainDeliverIntervalMillis);
+		// 大扇出并行转发
+		if (this.fanOutThreshold > 0 && this.fanOutExecutor == null) {
+			this.fanOutExecutor = new MqttFanOutExecutor(this.fanOutThreshold, this.fanOutParallelism, this.fanOutQueueCapacity);
+		}
 		// 序列化
 		if (this.mqttSerializer == null) {
 			this.mqttSerializer = new MqttJsonSerializer();
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.event;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import org.dromara.mica.mqtt.codec.MqttQoS;
+import org.dromara.mica.mqtt.codec.message.MqttPublishChunkMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 流式解码的大 PUBLISH 消息分片处理，先回调消息头，再按顺序回调 payload 分片。
+ * <p>
+ * 回调在连接的解码线程中同步执行以保证分片顺序，请勿阻塞（如写文件可以，远程调用请异步）。
+ * 流式消息只交给该监听器，不走订阅转发、保留消息等 publish 流程。
+ *
+ * @author L.cm
+ */
+public interface IMqttMessageChunkListener {
+
+	/**
+	 * 收到消息头
+	 *
+	 * @param context  ChannelContext
+	 * @param clientId clientId
+	 * @param topic    topic
+	 * @param qoS      MqttQoS
+	 * @param message  第一个分片，可获取可变头、payload 总长度
+	 */
+	void onHeader(ChannelContext context, String clientId, String topic, MqttQoS qoS, MqttPublishChunkMessage message);
+
+	/**
+	 * 收到 payload 分片
+	 *
+	 * @param context  ChannelContext
+	 * @param clientId clientId
+	 * @param topic    topic
+	 * @param chunk    payload 分片，仅在回调内有效
+	 * @param offset   分片在 payload 中的偏移量
+	 * @param last     是否最后一个分片
+	 */
+	void onChunk(ChannelContext context, String clientId, String topic, ByteBuffer chunk, int offset, boolean last);
+
+	/**
+	 * 连接断开，消息未接收完成
+	 *
+	 * @param context  ChannelContext
+	 * @param clientId clientId
+	 * @param topic    topic
+	 * @param received 已接收的 payload 长度
+	 */
+	default void onAbort(ChannelContext context, String clientId, String topic, int received) {
+	}
+
+}
@@ -17,6 +17,7 @@
 package org.dromara.mica.mqtt.core.server.func;
 
 import net.dreamlu.mica.net.utils.hutool.CollUtil;
+import org.dromara.mica.mqtt.codec.MqttTopicView;
 import org.dromara.mica.mqtt.core.util.TopicUtil;
 
 import java.util.ArrayList;
@@ -32,6 +33,11 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * @author L.cm
  */
 public class MqttFunctionManager {
+	/**
+	 * 查找时复用的 topic 视图和层级 key，匹配时不切分子串
+	 */
+	private static final ThreadLocal<MqttTopicView> TOPIC_VIEW = ThreadLocal.withInitial(MqttTopicView::new);
+	private static final ThreadLocal<MqttTopicView.LevelKey> LEVEL_KEY = ThreadLocal.withInitial(MqttTopicView.LevelKey::new);
 	/**
 	 * root 节点
 	 */
@@ -81,6 +87,11 @@ public class MqttFunctionManager {
 			return children.get(nodePart);
 		}
 
+		protected Node findNodeByLevel(MqttTopicView.LevelKey levelKey) {
+			assert children != null;
+			return children.get(levelKey);
+		}
+
 		@Override
 		public boolean equals(Object o) {
 			if (this == o) {
@@ -147,9 +158,9 @@ public class MqttFunctionManager {
 	 */
 	public List<IMqttFunctionMessageListener> get(String topic) {
 		List<IMqttFunctionMessageListener> listenerList = new ArrayList<>();
-		// 这里都是完整的 topic，利用完整的 topic 获取到匹配的监听器
-		String[] topicParts = TopicUtil.getTopicParts(topic);
-		searchListenerRecursively(root, listenerList, topicParts, 0);
+		// 这里都是完整的 topic，利用完整的 topic 获取到匹配的监听器，按层级偏移查找，不切分子串
+		MqttTopicView topicView = TOPIC_VIEW.get().reset(topic);
+		searchListenerRecursively(root, listenerList, topicView, LEVEL_KEY.get(), 0);
 		return listenerList;
 	}
 
@@ -158,12 +169,15 @@ public class MqttFunctionManager {
 	 *
 	 * @param node         node
 	 * @param listenerList listener list
-	 * @param topicParts   topic parts
+	 * @param topicView    topic 层级视图
+	 * @param levelKey     层级查找 key
 	 * @param index        index
 	 */
-	private static void searchListenerRecursively(Node node, List<IMqttFunctionMessageListener> listenerList, String[] topicParts, int index) {
+	private static void searchListenerRecursively(Node node, List<IMqttFunctionMessageListener> listenerList,
+												  MqttTopicView topicView, MqttTopicView.LevelKey levelKey, int index) {
+		int levels = topicView.levels();
 		// 层级已经超过，跳出
-		if (index >= topicParts.length) {
+		if (index >= levels) {
 			return;
 		}
 		// # 单独处理
@@ -171,7 +185,7 @@ public class MqttFunctionManager {
 		if (nodeMore != null) {
 			listenerList.addAll(nodeMore.listeners);
 		}
-		int topicPartLen = topicParts.length - 1;
+		int topicPartLen = levels - 1;
 		// + 处理
 		Node nodeOne = node.findNodeByPart(TopicUtil.TOPIC_WILDCARDS_ONE);
 		if (nodeOne != null) {
@@ -179,11 +193,10 @@ public class MqttFunctionManager {
 			if (index == topicPartLen) {
 				listenerList.addAll(nodeOne.listeners);
 			} else {
-				searchListenerRecursively(nodeOne, listenerList, topicParts, index + 1);
+				searchListenerRecursively(nodeOne, listenerList, topicView, levelKey, index + 1);
 			}
 		}
-		String topicPart = topicParts[index];
-		Node nodePart = node.findNodeByPart(topicPart);
+		Node nodePart = node.findNodeByLevel(levelKey.set(topicView, index));
 		if (nodePart != null) {
 			// 跳出循环
 			if (index == topicPartLen) {
@@ -194,7 +207,7 @@ public class MqttFunctionManager {
 					listenerList.addAll(nodePartMore.listeners);
 				}
 			} else {
-				searchListenerRecursively(nodePart, listenerList, topicParts, index + 1);
+				searchListenerRecursively(nodePart, listenerList, topicView, levelKey, index + 1);
 			}
 		}
 	}
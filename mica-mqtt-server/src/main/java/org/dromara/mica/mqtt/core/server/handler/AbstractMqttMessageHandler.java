@@ -16,8 +16,12 @@
 
 package org.dromara.mica.mqtt.core.server.handler;
 
+import net.dreamlu.mica.net.core.ChannelContext;
+import net.dreamlu.mica.net.core.Tio;
 import net.dreamlu.mica.net.utils.timer.TimerTaskService;
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
 import org.dromara.mica.mqtt.core.server.MqttServerCreator;
+import org.dromara.mica.mqtt.core.server.support.MqttAckCoalescer;
 
 import java.util.concurrent.ExecutorService;
 
@@ -39,4 +43,19 @@ public abstract class AbstractMqttMessageHandler implements IMqttMessageHandler
 		this.executor = executor;
 		this.taskService = taskService;
 	}
+
+	/**
+	 * 发送 PUBACK、PUBREC、PUBREL、PUBCOMP、PINGRESP 等 ack，开启 ack 合并时暂存合并发送
+	 *
+	 * @param context ChannelContext
+	 * @param message ack 报文
+	 * @return 是否成功；开启 ack 合并时暂存即返回 true，之后的写出失败不会反映到返回值，只可用于日志，不能作为 ack 已送达的依据
+	 */
+	protected boolean sendAck(ChannelContext context, MqttMessage message) {
+		MqttAckCoalescer ackCoalescer = serverCreator.getAckCoalescer();
+		if (ackCoalescer == null) {
+			return Tio.send(context, message);
+		}
+		return ackCoalescer.send(context, message);
+	}
 }
@@ -42,6 +42,7 @@ import org.dromara.mica.mqtt.core.server.model.Message;
 import org.dromara.mica.mqtt.core.server.pipeline.IMqttMessagePipeline;
 import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
 import org.dromara.mica.mqtt.core.server.store.IMqttMessageStore;
+import org.dromara.mica.mqtt.core.server.support.MqttRetainDeliverer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -150,6 +151,13 @@ public class MqttConnectHandler extends AbstractMqttMessageHandler {
 		if (serverKeepAliveSeconds > 0) {
 			context.setHeartbeatTimeout(serverKeepAliveSeconds * KEEP_ALIVE_UNIT);
 		}
+		// mqtt 5.0 Receive Maximum：限制订阅时下发保留消息的在途数
+		if (MqttCodecUtil.isMqtt5(context)) {
+			Integer receiveMaximum = new MqttConnectProperties(variableHeader.properties()).getReceiveMaximum();
+			if (receiveMaximum != null) {
+				MqttRetainDeliverer.setReceiveMaximum(context, receiveMaximum);
+			}
+		}
 		// 7. session 处理，先默认全部连接关闭时清除，mqtt5 为 CleanStart，
 		// 按照 mqtt 协议的规则是下一次连接时清除，emq 是添加了全局 session 超时，关闭时激活 session 有效期倒计时
 //		boolean cleanSession = variableHeader.isCleanSession();
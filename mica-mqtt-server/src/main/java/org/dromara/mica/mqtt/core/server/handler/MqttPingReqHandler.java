@@ -17,7 +17,6 @@
 package org.dromara.mica.mqtt.core.server.handler;
 
 import net.dreamlu.mica.net.core.ChannelContext;
-import net.dreamlu.mica.net.core.Tio;
 import net.dreamlu.mica.net.utils.timer.TimerTaskService;
 import org.dromara.mica.mqtt.codec.message.MqttMessage;
 import org.dromara.mica.mqtt.codec.MqttMessageType;
@@ -49,7 +48,7 @@ public class MqttPingReqHandler extends AbstractMqttMessageHandler {
 	@Override
 	public void handle(ChannelContext context, MqttMessage message) {
 		String clientId = context.getBsId();
-		boolean result = Tio.send(context, MqttMessage.PINGRESP);
+		boolean result = sendAck(context, MqttMessage.PINGRESP);
 		logger.debug("PingReq - PingResp send clientId:{} result:{}", clientId, result);
 	}
 }
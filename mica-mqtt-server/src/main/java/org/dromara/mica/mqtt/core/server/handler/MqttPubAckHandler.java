@@ -26,6 +26,7 @@ import org.dromara.mica.mqtt.codec.message.header.MqttPubReplyMessageVariableHea
 import org.dromara.mica.mqtt.core.common.MqttPendingPublish;
 import org.dromara.mica.mqtt.core.server.MqttServerCreator;
 import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
+import org.dromara.mica.mqtt.core.server.support.MqttRetainDeliverer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,12 +41,14 @@ public class MqttPubAckHandler extends AbstractMqttMessageHandler {
 	private static final Logger logger = LoggerFactory.getLogger(MqttPubAckHandler.class);
 
 	private final IMqttSessionManager sessionManager;
+	private final MqttRetainDeliverer retainDeliverer;
 
 	public MqttPubAckHandler(MqttServerCreator serverCreator,
 						 ExecutorService executor,
 						 TimerTaskService taskService) {
 		super(serverCreator, executor, taskService);
 		this.sessionManager = serverCreator.getSessionManager();
+		this.retainDeliverer = serverCreator.getRetainDeliverer();
 	}
 
 	@Override
@@ -69,6 +72,8 @@ public class MqttPubAckHandler extends AbstractMqttMessageHandler {
 		}
 		pendingPublish.onPubAckReceived();
 		sessionManager.removePendingPublish(clientId, packetId);
+		// 订阅时的保留消息等待在途数释放后继续下发
+		retainDeliverer.onAck(context, pendingPublish);
 	}
 
 	private byte getReasonCode(MqttMessageIdVariableHeader variableHeader) {
@@ -17,7 +17,6 @@
 package org.dromara.mica.mqtt.core.server.handler;
 
 import net.dreamlu.mica.net.core.ChannelContext;
-import net.dreamlu.mica.net.core.Tio;
 import net.dreamlu.mica.net.utils.timer.TimerTaskService;
 import org.dromara.mica.mqtt.codec.MqttMessageType;
 import org.dromara.mica.mqtt.codec.MqttQoS;
@@ -86,7 +85,7 @@ public class MqttPubRecHandler extends AbstractMqttMessageHandler {
 		pendingPublish.setPubRelMessage(pubRelMessage);
 		pendingPublish.startPubRelRetransmissionTimer(taskService, context);
 
-		boolean result = Tio.send(context, pubRelMessage);
+		boolean result = sendAck(context, pubRelMessage);
 		logger.debug("Publish - PubRel send clientId:{} packetId:{} result:{}", clientId, packetId, result);
 	}
 
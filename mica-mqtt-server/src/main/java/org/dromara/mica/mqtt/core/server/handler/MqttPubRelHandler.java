@@ -17,7 +17,6 @@
 package org.dromara.mica.mqtt.core.server.handler;
 
 import net.dreamlu.mica.net.core.ChannelContext;
-import net.dreamlu.mica.net.core.Tio;
 import net.dreamlu.mica.net.utils.timer.TimerTaskService;
 import org.dromara.mica.mqtt.codec.MqttMessageFactory;
 import org.dromara.mica.mqtt.codec.MqttMessageType;
@@ -83,7 +82,10 @@ public class MqttPubRelHandler extends AbstractMqttMessageHandler {
 			}
 		} else if (pendingQos2Publish != null) {
 			MqttPublishMessage incomingPublish = pendingQos2Publish.getIncomingPublish();
-			publishHandler.invokeListenerForPublish(context, incomingPublish);
+			// 流式接收的消息 payload 已交给分片监听器，不保留消息
+			if (incomingPublish != null) {
+				publishHandler.invokeListenerForPublish(context, incomingPublish);
+			}
 			pendingQos2Publish.onPubRelReceived();
 			sessionManager.removePendingQos2Publish(clientId, packetId);
 		}
@@ -93,7 +95,7 @@ public class MqttPubRelHandler extends AbstractMqttMessageHandler {
 		MqttMessage message = MqttMessageFactory.newMessage(
 			new MqttFixedHeader(MqttMessageType.PUBCOMP, false, MqttQoS.QOS0, false, 0),
 			pubCompVariableHeader, null);
-		boolean result = Tio.send(context, message);
+		boolean result = sendAck(context, message);
 		logger.debug("Publish - PubComp send clientId:{} packetId:{} result:{}", clientId, packetId, result);
 	}
 
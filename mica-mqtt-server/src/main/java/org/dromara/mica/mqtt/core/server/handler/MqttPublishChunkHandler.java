@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.dromara.mica.mqtt.core.server.handler;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import net.dreamlu.mica.net.utils.timer.TimerTaskService;
+import org.dromara.mica.mqtt.codec.MqttMessageType;
+import org.dromara.mica.mqtt.codec.MqttQoS;
+import org.dromara.mica.mqtt.codec.codes.MqttPubAckReasonCode;
+import org.dromara.mica.mqtt.codec.codes.MqttPubRecReasonCode;
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPubAckMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPublishChunkMessage;
+import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
+import org.dromara.mica.mqtt.codec.message.header.MqttPubReplyMessageVariableHeader;
+import org.dromara.mica.mqtt.codec.message.header.MqttPublishVariableHeader;
+import org.dromara.mica.mqtt.codec.properties.MqttProperties;
+import org.dromara.mica.mqtt.core.common.MqttPendingQos2Publish;
+import org.dromara.mica.mqtt.core.server.MqttServerCreator;
+import org.dromara.mica.mqtt.core.server.auth.IMqttServerPublishPermission;
+import org.dromara.mica.mqtt.core.server.event.IMqttMessageChunkListener;
+import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 流式解码的 PUBLISH 分片处理器，由 {@link MqttPublishHandler} 委托。
+ * <p>
+ * 第一个分片时校验发布权限并回调消息头，之后按顺序回调分片，最后一个分片处理完成后回复 PUBACK / PUBREC。
+ * QoS2 的 payload 在接收时已交给监听器，收到 PUBREL 时只回复 PUBCOMP。
+ *
+ * @author L.cm
+ */
+public class MqttPublishChunkHandler extends AbstractMqttMessageHandler {
+	private static final Logger logger = LoggerFactory.getLogger(MqttPublishChunkHandler.class);
+	private static final String PUBLISH_CHUNK_KEY = "MQTT_PUBLISH_CHUNK_KEY";
+
+	private final IMqttServerPublishPermission publishPermission;
+	private final IMqttSessionManager sessionManager;
+	private final IMqttMessageChunkListener chunkListener;
+
+	public MqttPublishChunkHandler(MqttServerCreator serverCreator,
+								   ExecutorService executor,
+								   TimerTaskService taskService) {
+		super(serverCreator, executor, taskService);
+		this.publishPermission = serverCreator.getPublishPermission();
+		this.sessionManager = serverCreator.getSessionManager();
+		this.chunkListener = serverCreator.getMessageChunkListener();
+	}
+
+	@Override
+	public MqttMessageType[] messageTypes() {
+		return new MqttMessageType[]{MqttMessageType.PUBLISH};
+	}
+
+	@Override
+	public void handle(ChannelContext context, MqttMessage rawMessage) {
+		MqttPublishChunkMessage message = (MqttPublishChunkMessage) rawMessage;
+		String clientId = context.getBsId();
+		ChunkState state;
+		if (message.isFirst()) {
+			state = onHeader(context, clientId, message);
+			if (!message.isLast()) {
+				context.set(PUBLISH_CHUNK_KEY, state);
+			}
+		} else {
+			state = context.get(PUBLISH_CHUNK_KEY);
+			if (state == null) {
+				logger.error("Mqtt clientId:{} publish chunk without header, offset:{}", clientId, message.getOffset());
+				return;
+			}
+		}
+		boolean last = message.isLast();
+		if (state.authorized && (message.getChunkLength() > 0 || last)) {
+			try {
+				chunkListener.onChunk(context, clientId, state.topic, message.payload(), message.getOffset(), last);
+			} catch (Throwable e) {
+				logger.error("Mqtt server clientId:{} topic:{} publish chunk listener error.", clientId, state.topic, e);
+			}
+		}
+		state.received += message.getChunkLength();
+		if (last) {
+			context.remove(PUBLISH_CHUNK_KEY);
+			sendPublishAck(context, clientId, message, state.authorized);
+		}
+	}
+
+	private ChunkState onHeader(ChannelContext context, String clientId, MqttPublishChunkMessage message) {
+		MqttFixedHeader fixedHeader = message.fixedHeader();
+		MqttQoS mqttQoS = fixedHeader.qosLevel();
+		String topicName = message.variableHeader().topicName();
+		// 1. 权限判断，无权限时丢弃后续分片，接收完成后回复 NOT_AUTHORIZED
+		if (publishPermission != null && !publishPermission.verifyPermission(context, clientId, topicName, mqttQoS, fixedHeader.isRetain())) {
+			logger.error("Mqtt clientId:{} username:{} topic:{} 没有发布权限。", clientId, context.getUserId(), topicName);
+			return new ChunkState(topicName, false);
+		}
+		logger.debug("Publish chunk - clientId:{} topicName:{} mqttQoS:{} payloadLength:{}", clientId, topicName, mqttQoS, message.getPayloadLength());
+		try {
+			chunkListener.onHeader(context, clientId, topicName, mqttQoS, message);
+		} catch (Throwable e) {
+			logger.error("Mqtt server clientId:{} topic:{} publish chunk listener error.", clientId, topicName, e);
+		}
+		return new ChunkState(topicName, true);
+	}
+
+	private void sendPublishAck(ChannelContext context, String clientId, MqttPublishChunkMessage message, boolean authorized) {
+		MqttQoS mqttQoS = message.fixedHeader().qosLevel();
+		MqttPublishVariableHeader variableHeader = message.variableHeader();
+		int packetId = variableHeader.packetId();
+		if (packetId == -1) {
+			return;
+		}
+		if (MqttQoS.QOS1 == mqttQoS) {
+			MqttMessage messageAck = MqttPubAckMessage.builder()
+				.packetId(packetId)
+				.reasonCode(authorized ? MqttPubAckReasonCode.SUCCESS : MqttPubAckReasonCode.NOT_AUTHORIZED)
+				.build();
+			boolean result = sendAck(context, messageAck);
+			logger.debug("Publish chunk - PubAck send clientId:{} topicName:{} packetId:{} result:{}", clientId, variableHeader.topicName(), packetId, result);
+		} else if (MqttQoS.QOS2 == mqttQoS) {
+			MqttFixedHeader pubRecFixedHeader = new MqttFixedHeader(MqttMessageType.PUBREC, false, MqttQoS.QOS0, false, 0);
+			MqttPubRecReasonCode reasonCode = authorized ? MqttPubRecReasonCode.SUCCESS : MqttPubRecReasonCode.NOT_AUTHORIZED;
+			MqttPubReplyMessageVariableHeader pubRecVariableHeader = new MqttPubReplyMessageVariableHeader(
+				packetId, reasonCode.value(), MqttProperties.NO_PROPERTIES);
+			MqttMessage pubRecMessage = new MqttMessage(pubRecFixedHeader, pubRecVariableHeader);
+			// payload 已交给监听器，不再保留消息，PUBREL 时只回复 PUBCOMP
+			MqttPendingQos2Publish pendingQos2Publish = new MqttPendingQos2Publish(null, pubRecMessage);
+			sessionManager.addPendingQos2Publish(clientId, packetId, pendingQos2Publish);
+			pendingQos2Publish.startPubRecRetransmitTimer(taskService, context);
+			boolean result = sendAck(context, pubRecMessage);
+			logger.debug("Publish chunk - PubRec send clientId:{} topicName:{} packetId:{} result:{}", clientId, variableHeader.topicName(), packetId, result);
+		}
+	}
+
+	/**
+	 * 连接断开时，通知未接收完成的流式消息
+	 *
+	 * @param context       ChannelContext
+	 * @param chunkListener IMqttMessageChunkListener
+	 */
+	public static void abort(ChannelContext context, IMqttMessageChunkListener chunkListener) {
+		ChunkState state = context.get(PUBLISH_CHUNK_KEY);
+		if (state == null) {
+			return;
+		}
+		context.remove(PUBLISH_CHUNK_KEY);
+		if (state.authorized) {
+			chunkListener.onAbort(context, context.getBsId(), state.topic, state.received);
+		}
+	}
+
+	private static final class ChunkState {
+		private final String topic;
+		private final boolean authorized;
+		private int received;
+
+		private ChunkState(String topic, boolean authorized) {
+			this.topic = topic;
+			this.authorized = authorized;
+		}
+	}
+}
@@ -18,7 +18,6 @@ package org.dromara.mica.mqtt.core.server.handler;
 
 import net.dreamlu.mica.net.core.ChannelContext;
 import net.dreamlu.mica.net.core.Node;
-import net.dreamlu.mica.net.core.Tio;
 import net.dreamlu.mica.net.utils.mica.IntPair;
 import net.dreamlu.mica.net.utils.timer.TimerTaskService;
 import org.dromara.mica.mqtt.codec.MqttMessageFactory;
@@ -28,6 +27,7 @@ import org.dromara.mica.mqtt.codec.codes.MqttPubAckReasonCode;
 import org.dromara.mica.mqtt.codec.codes.MqttPubRecReasonCode;
 import org.dromara.mica.mqtt.codec.message.MqttMessage;
 import org.dromara.mica.mqtt.codec.message.MqttPubAckMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPublishChunkMessage;
 import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
 import org.dromara.mica.mqtt.codec.message.header.MqttFixedHeader;
 import org.dromara.mica.mqtt.codec.message.header.MqttMessageIdVariableHeader;
@@ -57,6 +57,7 @@ public class MqttPublishHandler extends AbstractMqttMessageHandler {
 	private final IMqttServerPublishPermission publishPermission;
 	private final IMqttSessionManager sessionManager;
 	private final IMqttPublishPipeline publishPipeline;
+	private final MqttPublishChunkHandler chunkHandler;
 
 	public MqttPublishHandler(MqttServerCreator serverCreator,
 						  ExecutorService executor,
@@ -65,6 +66,7 @@ public class MqttPublishHandler extends AbstractMqttMessageHandler {
 		this.publishPermission = serverCreator.getPublishPermission();
 		this.sessionManager = serverCreator.getSessionManager();
 		this.publishPipeline = serverCreator.getPublishPipeline();
+		this.chunkHandler = serverCreator.getPublishStreamFilter() == null ? null : new MqttPublishChunkHandler(serverCreator, executor, taskService);
 	}
 
 	@Override
@@ -74,6 +76,11 @@ public class MqttPublishHandler extends AbstractMqttMessageHandler {
 
 	@Override
 	public void handle(ChannelContext context, MqttMessage rawMessage) {
+		// 流式解码的大消息分片
+		if (rawMessage instanceof MqttPublishChunkMessage) {
+			chunkHandler.handle(context, rawMessage);
+			return;
+		}
 		MqttPublishMessage message = (MqttPublishMessage) rawMessage;
 		String clientId = context.getBsId();
 		MqttFixedHeader fixedHeader = message.fixedHeader();
@@ -100,7 +107,7 @@ public class MqttPublishHandler extends AbstractMqttMessageHandler {
 						.packetId(packetId)
 						.reasonCode(MqttPubAckReasonCode.SUCCESS)
 						.build();
-					boolean resultPubAck = Tio.send(context, messageAck);
+					boolean resultPubAck = sendAck(context, messageAck);
 					logger.debug("Publish - PubAck send clientId:{} topicName:{} mqttQoS:{} packetId:{} result:{}", clientId, topicName, mqttQoS, packetId, resultPubAck);
 				}
 				break;
@@ -114,7 +121,7 @@ public class MqttPublishHandler extends AbstractMqttMessageHandler {
 					MqttPendingQos2Publish pendingQos2Publish = new MqttPendingQos2Publish(message, pubRecMessage);
 					sessionManager.addPendingQos2Publish(clientId, packetId, pendingQos2Publish);
 					pendingQos2Publish.startPubRecRetransmitTimer(taskService, context);
-					boolean resultPubRec = Tio.send(context, pubRecMessage);
+					boolean resultPubRec = sendAck(context, pubRecMessage);
 					logger.debug("Publish - PubRec send clientId:{} topicName:{} mqttQoS:{} packetId:{} result:{}", clientId, topicName, mqttQoS, packetId, resultPubRec);
 				}
 				break;
@@ -133,7 +140,7 @@ public class MqttPublishHandler extends AbstractMqttMessageHandler {
 				.packetId(packetId)
 				.reasonCode(MqttPubAckReasonCode.NOT_AUTHORIZED)
 				.build();
-			boolean result = Tio.send(context, messageAck);
+			boolean result = sendAck(context, messageAck);
 			logger.debug("Publish - PubAck rejected clientId:{} topicName:{} packetId:{} result:{}", clientId, topicName, packetId, result);
 		} else if (MqttQoS.QOS2 == mqttQoS) {
 			MqttFixedHeader pubRecFixedHeader = new MqttFixedHeader(MqttMessageType.PUBREC, false, MqttQoS.QOS0, false, 0);
@@ -145,7 +152,7 @@ public class MqttPublishHandler extends AbstractMqttMessageHandler {
 			MqttPendingQos2Publish pendingQos2Publish = new MqttPendingQos2Publish(message, pubRecMessage);
 			sessionManager.addPendingQos2Publish(clientId, packetId, pendingQos2Publish);
 			pendingQos2Publish.startPubRecRetransmitTimer(taskService, context);
-			boolean result = Tio.send(context, pubRecMessage);
+			boolean result = sendAck(context, pubRecMessage);
 			logger.debug("Publish - PubRec rejected clientId:{} topicName:{} packetId:{} result:{}", clientId, topicName, packetId, result);
 		}
 	}
@@ -170,7 +177,6 @@ public class MqttPublishHandler extends AbstractMqttMessageHandler {
 		MqttPublishVariableHeader variableHeader = publishMessage.variableHeader();
 		Node clientNode = context.getClientNode();
 		boolean isRetain = fixedHeader.isRetain();
-		byte[] payload = publishMessage.payload();
 		String username = context.getUserId();
 		String actualTopic = topicName;
 		if (isRetain) {
@@ -191,7 +197,7 @@ public class MqttPublishHandler extends AbstractMqttMessageHandler {
 			.qos(mqttQoS)
 			.dup(fixedHeader.isDup())
 			.retain(isRetain)
-			.payload(payload)
+			// payload 由 publishMessage 按需获取，纯转发时不生成 byte[]
 			.messageId(variableHeader.packetId() != -1 ? variableHeader.packetId() : null)
 			.properties(variableHeader.properties())
 			.peerHost(clientNode.getPeerHost())
@@ -23,18 +23,18 @@ import org.dromara.mica.mqtt.codec.MqttMessageType;
 import org.dromara.mica.mqtt.codec.MqttQoS;
 import org.dromara.mica.mqtt.codec.codes.MqttSubAckReasonCode;
 import org.dromara.mica.mqtt.codec.message.MqttMessage;
-import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
 import org.dromara.mica.mqtt.codec.message.MqttSubAckMessage;
 import org.dromara.mica.mqtt.codec.message.MqttSubscribeMessage;
 import org.dromara.mica.mqtt.codec.message.builder.MqttTopicSubscription;
-import org.dromara.mica.mqtt.core.common.MqttPendingPublish;
 import org.dromara.mica.mqtt.core.common.TopicFilter;
 import org.dromara.mica.mqtt.core.server.MqttServerCreator;
 import org.dromara.mica.mqtt.core.server.auth.IMqttServerSubscribeValidator;
 import org.dromara.mica.mqtt.core.server.event.IMqttSessionListener;
 import org.dromara.mica.mqtt.core.server.model.Message;
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
 import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
 import org.dromara.mica.mqtt.core.server.store.IMqttMessageStore;
+import org.dromara.mica.mqtt.core.server.support.MqttRetainDeliverer;
 import org.dromara.mica.mqtt.core.util.TopicUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +55,7 @@ public class MqttSubscribeHandler extends AbstractMqttMessageHandler {
 	private final IMqttSessionManager sessionManager;
 	private final IMqttSessionListener sessionListener;
 	private final IMqttMessageStore messageStore;
+	private final MqttRetainDeliverer retainDeliverer;
 
 	public MqttSubscribeHandler(MqttServerCreator serverCreator,
 							ExecutorService executor,
@@ -64,6 +65,7 @@ public class MqttSubscribeHandler extends AbstractMqttMessageHandler {
 		this.sessionManager = serverCreator.getSessionManager();
 		this.sessionListener = serverCreator.getSessionListener();
 		this.messageStore = serverCreator.getMessageStore();
+		this.retainDeliverer = serverCreator.getRetainDeliverer();
 	}
 
 	@Override
@@ -79,6 +81,7 @@ public class MqttSubscribeHandler extends AbstractMqttMessageHandler {
 		List<MqttTopicSubscription> topicSubscriptionList = message.payload().topicSubscriptions();
 		List<MqttSubAckReasonCode> reasonCodeList = new ArrayList<>();
 		List<String> subscribedTopicList = new ArrayList<>();
+		List<Subscribe> subscribeList = new ArrayList<>();
 		boolean enableSubscribeValidator = subscribeValidator != null;
 		for (MqttTopicSubscription subscription : topicSubscriptionList) {
 			String topicFilter = subscription.topicFilter();
@@ -99,11 +102,22 @@ public class MqttSubscribeHandler extends AbstractMqttMessageHandler {
 			} else {
 				reasonCodeList.add(MqttSubAckReasonCode.qosGranted(mqttQoS));
 				subscribedTopicList.add(topicFilter);
-				sessionManager.addSubscribe(new TopicFilter(topicFilter), clientId, mqttQoS.value(), noLocal);
-				logger.info("Subscribe - clientId:{} topicFilter:{} mqttQoS:{} noLocal:{} packetId:{}", clientId, topicFilter, mqttQoS, noLocal, packetId);
-				publishSubscribedEvent(context, clientId, topicFilter, mqttQoS);
+				subscribeList.add(new Subscribe(topicFilter, clientId, mqttQoS.value(), noLocal));
 			}
 		}
+		// 多个 topic filter 一次批量写入 session，减少订阅存储的路径遍历和加锁
+		if (subscribeList.size() == 1) {
+			Subscribe subscribe = subscribeList.get(0);
+			sessionManager.addSubscribe(new TopicFilter(subscribe.getTopicFilter()), clientId, subscribe.getMqttQoS(), subscribe.isNoLocal());
+		} else if (!subscribeList.isEmpty()) {
+			sessionManager.addSubscribes(clientId, subscribeList);
+		}
+		for (Subscribe subscribe : subscribeList) {
+			String topicFilter = subscribe.getTopicFilter();
+			MqttQoS mqttQoS = MqttQoS.valueOf(subscribe.getMqttQoS());
+			logger.info("Subscribe - clientId:{} topicFilter:{} mqttQoS:{} noLocal:{} packetId:{}", clientId, topicFilter, mqttQoS, subscribe.isNoLocal(), packetId);
+			publishSubscribedEvent(context, clientId, topicFilter, mqttQoS);
+		}
 		MqttSubAckMessage subAckMessage = MqttSubAckMessage.builder()
 			.addReasonCodes(reasonCodeList.toArray(new MqttSubAckReasonCode[0]))
 			.packetId(packetId)
@@ -118,31 +132,8 @@ public class MqttSubscribeHandler extends AbstractMqttMessageHandler {
 
 	private void sendRetainMessage(ChannelContext context, String topic) {
 		List<Message> retainMessageList = messageStore.getRetainMessage(topic);
-		if (retainMessageList == null || retainMessageList.isEmpty()) {
-			return;
-		}
-		String clientId = context.getBsId();
-		for (Message retainMessage : retainMessageList) {
-			MqttQoS mqttQoS = MqttQoS.valueOf(retainMessage.getQos());
-			boolean isHighLevelQoS = MqttQoS.QOS1 == mqttQoS || MqttQoS.QOS2 == mqttQoS;
-			int messageId = isHighLevelQoS ? sessionManager.getPacketId(clientId) : -1;
-			MqttPublishMessage publishMessage = MqttPublishMessage.builder()
-				.topicName(retainMessage.getTopic())
-				.payload(retainMessage.getPayload())
-				.qos(mqttQoS)
-				.retained(true)
-				.messageId(messageId)
-				.properties(retainMessage.getProperties())
-				.build();
-			if (isHighLevelQoS) {
-				MqttPendingPublish pendingPublish = new MqttPendingPublish(publishMessage, mqttQoS);
-				sessionManager.addPendingPublish(clientId, messageId, pendingPublish);
-				pendingPublish.startPublishRetransmissionTimer(taskService, context);
-			}
-			boolean result = Tio.send(context, publishMessage);
-			logger.debug("Subscribe - RetainMessage send clientId:{} topic:{} qos:{} messageId:{} result:{}",
-				clientId, retainMessage.getTopic(), mqttQoS, messageId, result);
-		}
+		// 分批下发，受发送队列和在途数限制，连接断开时取消
+		retainDeliverer.deliver(context, retainMessageList);
 	}
 
 	private void publishSubscribedEvent(ChannelContext context, String clientId, String topicFilter, MqttQoS mqttQoS) {
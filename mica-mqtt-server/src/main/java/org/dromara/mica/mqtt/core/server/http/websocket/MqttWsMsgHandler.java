@@ -27,6 +27,8 @@ import net.dreamlu.mica.net.utils.hutool.FastByteBuffer;
 import net.dreamlu.mica.net.websocket.common.WsRequest;
 import net.dreamlu.mica.net.websocket.common.WsResponse;
 import net.dreamlu.mica.net.websocket.server.handler.IWsMsgHandler;
+import org.dromara.mica.mqtt.codec.MqttBufferAllocator;
+import org.dromara.mica.mqtt.codec.MqttEncoder;
 import org.dromara.mica.mqtt.codec.message.MqttMessage;
 import org.dromara.mica.mqtt.core.server.MqttMessageInterceptors;
 import org.dromara.mica.mqtt.core.server.MqttServerCreator;
@@ -53,6 +55,7 @@ public class MqttWsMsgHandler implements IWsMsgHandler {
 	private final String[] supportedSubProtocols;
 	private final TcpHandler mqttServerAioHandler;
 	private final MqttMessageInterceptors messageInterceptors;
+	private final MqttEncoder mqttEncoder;
 
 	public MqttWsMsgHandler(MqttServerCreator serverCreator, TcpHandler handler) {
 		this(serverCreator, new String[]{"mqtt", "mqttv3.1", "mqttv3.1.1"}, handler);
@@ -64,6 +67,7 @@ public class MqttWsMsgHandler implements IWsMsgHandler {
 		this.supportedSubProtocols = supportedSubProtocols;
 		this.mqttServerAioHandler = handler;
 		this.messageInterceptors = serverCreator.getMessageInterceptors();
+		this.mqttEncoder = serverCreator.getMqttEncoder();
 	}
 
 	@Override
@@ -132,7 +136,14 @@ public class MqttWsMsgHandler implements IWsMsgHandler {
 	public WsResponse encodeSubProtocol(Packet packet, TioConfig tioConfig, ChannelContext context) {
 		if (packet instanceof MqttMessage) {
 			ByteBuffer buffer = mqttServerAioHandler.encode(packet, null, context);
-			return WsResponse.fromBytes(buffer.array());
+			if (mqttEncoder.getAllocator() == MqttBufferAllocator.HEAP) {
+				return WsResponse.fromBytes(buffer.array());
+			}
+			// 池化的 buffer 容量大于报文长度（也可能是堆外内存），拷贝后由 onAfterSent 归还，和编码成对
+			byte[] bytes = new byte[buffer.position()];
+			buffer.flip();
+			buffer.get(bytes);
+			return WsResponse.fromBytes(bytes);
 		}
 		return null;
 	}
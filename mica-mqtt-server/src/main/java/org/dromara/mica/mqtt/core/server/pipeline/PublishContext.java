@@ -18,10 +18,13 @@ package org.dromara.mica.mqtt.core.server.pipeline;
 
 import net.dreamlu.mica.net.core.ChannelContext;
 import org.dromara.mica.mqtt.codec.MqttQoS;
+import org.dromara.mica.mqtt.codec.MqttTopicView;
 import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
+import org.dromara.mica.mqtt.codec.message.header.MqttPublishVariableHeader;
 import org.dromara.mica.mqtt.codec.properties.MqttProperties;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 /**
  * 发布消息上下文，承载完整的发布消息信息（包括 MQTT5 properties）
@@ -64,7 +67,7 @@ public class PublishContext implements Serializable {
 	 */
 	private final boolean retain;
 	/**
-	 * 消息内容
+	 * 消息内容，为 null 时按需从 publishMessage 中获取
 	 */
 	private final byte[] payload;
 	/**
@@ -161,9 +164,38 @@ public class PublishContext implements Serializable {
 	}
 
 	public byte[] getPayload() {
+		if (payload == null && publishMessage != null) {
+			return publishMessage.payload();
+		}
 		return payload;
 	}
 
+	/**
+	 * 获取消息内容的只读视图，零拷贝解码时不会生成 byte[]，适合纯转发场景
+	 *
+	 * @return ByteBuffer，可能为 null
+	 */
+	public ByteBuffer getPayloadBuffer() {
+		if (payload == null && publishMessage != null) {
+			return publishMessage.payloadBuffer();
+		}
+		return payload == null ? null : ByteBuffer.wrap(payload).asReadOnlyBuffer();
+	}
+
+	/**
+	 * 解码时缓存的 topic 层级视图，仅当 topic 与原始 PUBLISH topic 一致时有效
+	 *
+	 * @return MqttTopicView，未开启 topic 解码缓存时为 null
+	 */
+	public MqttTopicView getTopicView() {
+		if (publishMessage == null) {
+			return null;
+		}
+		MqttPublishVariableHeader variableHeader = publishMessage.variableHeader();
+		// $retain 等 topic 会被改写，此时缓存的视图不可用
+		return topic != null && topic.equals(variableHeader.topicName()) ? variableHeader.topicView() : null;
+	}
+
 	public Integer getMessageId() {
 		return messageId;
 	}
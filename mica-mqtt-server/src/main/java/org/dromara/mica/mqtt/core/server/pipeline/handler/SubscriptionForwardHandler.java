@@ -19,59 +19,75 @@ package org.dromara.mica.mqtt.core.server.pipeline.handler;
 import net.dreamlu.mica.net.core.ChannelContext;
 import net.dreamlu.mica.net.core.Tio;
 import net.dreamlu.mica.net.core.TioConfig;
-import org.dromara.mica.mqtt.codec.properties.IntegerProperty;
+import org.dromara.mica.mqtt.codec.MqttCodecUtil;
+import org.dromara.mica.mqtt.codec.MqttEncoder;
+import org.dromara.mica.mqtt.codec.MqttQoS;
+import org.dromara.mica.mqtt.codec.MqttVersion;
+import org.dromara.mica.mqtt.codec.message.MqttPublishFrame;
+import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
 import org.dromara.mica.mqtt.codec.properties.MqttProperties;
 import org.dromara.mica.mqtt.codec.properties.MqttProperty;
 import org.dromara.mica.mqtt.codec.properties.MqttPropertyType;
+import org.dromara.mica.mqtt.codec.properties.MqttRawProperties;
 import org.dromara.mica.mqtt.core.server.MqttServer;
 import org.dromara.mica.mqtt.core.server.MqttServerCreator;
-import org.dromara.mica.mqtt.core.server.model.Subscribe;
 import org.dromara.mica.mqtt.core.server.pipeline.MqttPublishPipelineHandler;
 import org.dromara.mica.mqtt.core.server.pipeline.PublishContext;
 import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
+import org.dromara.mica.mqtt.core.server.session.SubscriberVisitor;
+import org.dromara.mica.mqtt.core.server.support.MqttFanOutExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * 订阅转发处理器 - 将发布消息转发给所有匹配的订阅客户端
  * <p>
  * 处理流程：
  * <ol>
- *   <li>查找所有匹配 topic 的订阅</li>
- *   <li>MQTT 5.0 属性处理（过期检查、属性重写）</li>
+ *   <li>遍历匹配 topic 的订阅者（{@link IMqttSessionManager#forEachSubscriber}），不创建订阅列表</li>
+ *   <li>有订阅者时处理 MQTT 5.0 属性（过期检查、属性重写），延迟解码的属性直接改写原始字节</li>
  *   <li>逐一转发给订阅者（遵循 No Local、QoS 降级等规范）</li>
  * </ol>
- * 同步执行，避免二次 submit 到线程池，减少队列积压和内存占用
+ * 多个订阅者时按（mqtt 版本，降级后 qos）预编码 PUBLISH 帧，topic、properties 和 payload 只编码一次。
+ * 同步执行，避免二次 submit 到线程池，减少队列积压和内存占用；开启大扇出并行转发（{@link MqttFanOutExecutor}）时，
+ * 订阅者达到阈值的消息按通道分批并行发送
  *
  * @author L.cm
  */
 public class SubscriptionForwardHandler implements MqttPublishPipelineHandler {
 	private static final Logger logger = LoggerFactory.getLogger(SubscriptionForwardHandler.class);
+	/**
+	 * 预编码帧分组数：mqtt 3.x / 5.0 × qos 0~2
+	 */
+	private static final int FRAME_GROUP_SIZE = 6;
 	private final IMqttSessionManager sessionManager;
 	private final MqttServer mqttServer;
+	private final boolean publishFrameShareEnable;
+	/**
+	 * 大扇出并行转发，未开启时为 null
+	 */
+	private final MqttFanOutExecutor fanOutExecutor;
 
 	public SubscriptionForwardHandler(MqttServerCreator serverCreator, MqttServer mqttServer) {
 		this.sessionManager = serverCreator.getSessionManager();
 		this.mqttServer = mqttServer;
+		this.publishFrameShareEnable = serverCreator.isPublishFrameShareEnable();
+		this.fanOutExecutor = serverCreator.getFanOutExecutor();
 	}
 
 	@Override
 	public boolean handle(PublishContext context) {
-		List<Subscribe> subscribeList = sessionManager.searchSubscribe(context.getTopic());
-		if (subscribeList == null || subscribeList.isEmpty()) {
-			return true;
-		}
-		// MQTT 5.0 才有 properties，MQTT 3.x 消息直接跳过属性处理
-		MqttProperties properties = context.getProperties();
-		if (properties == null || properties.isEmpty()) {
-			forwardToSubscribers(context, subscribeList, properties);
-		} else {
-			properties = rewriteProperties(context, properties);
-			if (properties != null) {
-				forwardToSubscribers(context, subscribeList, properties);
-			}
+		try {
+			// 开启 topic 解码缓存时复用切分好的 topic parts，匹配到的订阅者直接转发，不创建订阅列表
+			SubscriberForwarder forwarder = new SubscriberForwarder(context);
+			sessionManager.forEachSubscriber(context.getClientId(), context.getTopic(), context.getTopicView(), forwarder);
+			// 大扇出：按通道分批并行发送
+			forwarder.flush();
+		} catch (Throwable e) {
+			logger.error("Subscription forward error", e);
 		}
 		return true;
 	}
@@ -95,10 +111,17 @@ public class SubscriptionForwardHandler implements MqttPublishPipelineHandler {
 			receivedAt = context.getTimestamp();
 		}
 		long elapsedSeconds = (System.currentTimeMillis() - receivedAt) / 1000;
-		// 检查消息过期
-		Integer expiryInterval = properties.getPropertyValue(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL);
+		// 延迟解码的属性直接在原始字节上改写，不触发解码
+		byte[] rawBytes = properties.rawBytes();
+		if (rawBytes != null) {
+			return rewriteRawProperties(context, properties, rawBytes, elapsedSeconds);
+		}
+		// 检查消息过期，整数属性按 int 读取，不装箱
+		boolean hasExpiry = properties.contains(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL);
 		long remaining = -1;
-		if (expiryInterval != null) {
+		if (hasExpiry) {
+			// 4 字节无符号整数
+			long expiryInterval = properties.getInt(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL) & 0xFFFFFFFFL;
 			remaining = expiryInterval - elapsedSeconds;
 			if (remaining <= 0) {
 				logger.debug("Mqtt Topic:{} message expired, skip forwarding", context.getTopic());
@@ -106,9 +129,9 @@ public class SubscriptionForwardHandler implements MqttPublishPipelineHandler {
 			}
 		}
 		// O(1) 属性查找判断是否需要重写，避免不必要的遍历和对象分配
-		boolean needsRewrite = properties.getProperty(MqttPropertyType.TOPIC_ALIAS) != null
-			|| properties.getProperty(MqttPropertyType.SUBSCRIPTION_IDENTIFIER) != null
-			|| (expiryInterval != null && elapsedSeconds > 0);
+		boolean needsRewrite = properties.contains(MqttPropertyType.TOPIC_ALIAS)
+			|| properties.contains(MqttPropertyType.SUBSCRIPTION_IDENTIFIER)
+			|| (hasExpiry && elapsedSeconds > 0);
 		if (!needsRewrite) {
 			return properties;
 		}
@@ -120,10 +143,9 @@ public class SubscriptionForwardHandler implements MqttPublishPipelineHandler {
 				|| propertyId == MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value()) {
 				continue;
 			}
-			if (propertyId == MqttPropertyType.MESSAGE_EXPIRY_INTERVAL.value()
-				&& expiryInterval != null && elapsedSeconds > 0) {
+			if (propertyId == MqttPropertyType.MESSAGE_EXPIRY_INTERVAL.value() && elapsedSeconds > 0) {
 				// remaining 已在上方计算且保证 > 0
-				newProperties.add(new IntegerProperty(propertyId, (int) remaining));
+				newProperties.addInt(propertyId, (int) remaining);
 			} else {
 				newProperties.add(property);
 			}
@@ -132,36 +154,212 @@ public class SubscriptionForwardHandler implements MqttPublishPipelineHandler {
 	}
 
 	/**
-	 * 将消息转发给所有匹配的订阅者
+	 * 在原始属性字节上重写，规则同 {@link #rewriteProperties(PublishContext, MqttProperties)}，
+	 * 只拷贝一次属性字节并原地改写 Message Expiry Interval
 	 *
-	 * @param context       发布上下文
-	 * @param subscribeList 匹配的订阅列表
-	 * @param properties    重写后的 MQTT 5.0 属性
+	 * @param context        发布上下文
+	 * @param properties     原始 MQTT 5.0 属性
+	 * @param rawBytes       原始属性字节
+	 * @param elapsedSeconds 消息已经过的秒数
+	 * @return 重写后的属性；null 表示消息已过期，应丢弃
 	 */
-	private void forwardToSubscribers(PublishContext context, List<Subscribe> subscribeList, MqttProperties properties) {
-		TioConfig tioConfig = context.getContext().getTioConfig();
-		String publisherClientId = context.getClientId();
-		try {
-			for (Subscribe subscribe : subscribeList) {
-				String topic = context.getTopic();
-				String clientId = subscribe.getClientId();
-				// MQTT 5.0 No Local（规范 3.8.3.1）: 订阅者即发布者时跳过
-				if (subscribe.isNoLocal() && clientId.equals(publisherClientId)) {
-					logger.debug("Mqtt Topic:{} skip forwarding to clientId:{} due to No Local flag", topic, clientId);
-					continue;
+	private static MqttProperties rewriteRawProperties(PublishContext context, MqttProperties properties,
+													   byte[] rawBytes, long elapsedSeconds) {
+		int expiryIndex = MqttRawProperties.indexOf(rawBytes, MqttPropertyType.MESSAGE_EXPIRY_INTERVAL);
+		long remaining = -1;
+		if (expiryIndex >= 0) {
+			// 4 字节无符号整数
+			long expiryInterval = MqttRawProperties.readInt(rawBytes, expiryIndex, MqttPropertyType.MESSAGE_EXPIRY_INTERVAL) & 0xFFFFFFFFL;
+			remaining = expiryInterval - elapsedSeconds;
+			if (remaining <= 0) {
+				logger.debug("Mqtt Topic:{} message expired, skip forwarding", context.getTopic());
+				return null;
+			}
+		}
+		boolean patchExpiry = expiryIndex >= 0 && elapsedSeconds > 0;
+		boolean needsRewrite = patchExpiry
+			|| MqttRawProperties.indexOf(rawBytes, MqttPropertyType.TOPIC_ALIAS) >= 0
+			|| MqttRawProperties.indexOf(rawBytes, MqttPropertyType.SUBSCRIPTION_IDENTIFIER) >= 0;
+		if (!needsRewrite) {
+			return properties;
+		}
+		byte[] newRawBytes = MqttRawProperties.rewrite(rawBytes,
+			patchExpiry ? MqttPropertyType.MESSAGE_EXPIRY_INTERVAL : null, (int) remaining,
+			MqttPropertyType.TOPIC_ALIAS, MqttPropertyType.SUBSCRIPTION_IDENTIFIER);
+		return MqttProperties.fromRawBytes(newRawBytes);
+	}
+
+	/**
+	 * 将消息转发给匹配的订阅者，每条消息一个实例
+	 */
+	private final class SubscriberForwarder implements SubscriberVisitor {
+		private final PublishContext context;
+		private final TioConfig tioConfig;
+		private final String publisherClientId;
+		private final String topic;
+		/**
+		 * 只读视图，零拷贝解码时转发全程不生成 byte[]
+		 */
+		private final ByteBuffer payload;
+		private final MqttQoS qos;
+		private MqttProperties properties;
+		private MqttPublishFrame[] frames;
+		/**
+		 * 并行转发时按通道分批，当前线程发送时为 null
+		 */
+		private FanOutBatch[] batches;
+		private boolean expired;
+
+		private SubscriberForwarder(PublishContext context) {
+			this.context = context;
+			this.tioConfig = context.getContext().getTioConfig();
+			this.publisherClientId = context.getClientId();
+			this.topic = context.getTopic();
+			this.payload = context.getPayloadBuffer();
+			this.qos = context.getQos();
+		}
+
+		@Override
+		public void begin(int maxSize) {
+			// MQTT 5.0 才有 properties，有订阅者时才处理，MQTT 3.x 消息直接跳过
+			MqttProperties properties = context.getProperties();
+			if (properties != null && !properties.isEmpty()) {
+				properties = rewriteProperties(context, properties);
+				this.expired = properties == null;
+			}
+			this.properties = properties;
+			// maxSize 为未经 No Local 等过滤的上限，只用于选择转发方式
+			if (fanOutExecutor != null && fanOutExecutor.isFanOut(maxSize)) {
+				this.batches = new FanOutBatch[fanOutExecutor.getParallelism()];
+			} else if (publishFrameShareEnable && maxSize > 1) {
+				// 单个订阅者时预编码没有收益
+				this.frames = new MqttPublishFrame[FRAME_GROUP_SIZE];
+			}
+		}
+
+		@Override
+		public void accept(String clientId, int subMqttQoS, boolean noLocal) {
+			if (expired) {
+				return;
+			}
+			// MQTT 5.0 No Local（规范 3.8.3.1）: 订阅者即发布者时跳过
+			if (noLocal && clientId.equals(publisherClientId)) {
+				logger.debug("Mqtt Topic:{} skip forwarding to clientId:{} due to No Local flag", topic, clientId);
+				return;
+			}
+			if (fanOutExecutor == null) {
+				send(clientId, subMqttQoS, payload, frames);
+				return;
+			}
+			int lane = fanOutExecutor.laneOf(clientId);
+			if (batches != null) {
+				FanOutBatch batch = batches[lane];
+				if (batch == null) {
+					batch = new FanOutBatch();
+					batches[lane] = batch;
 				}
-				ChannelContext clientContext = Tio.getByBsId(tioConfig, clientId);
-				if (clientContext == null || clientContext.isClosed()) {
-					logger.warn("Mqtt Topic:{} publish to clientId:{} ChannelContext is null may be disconnected.", topic, clientId);
-					continue;
+				batch.add(clientId, subMqttQoS);
+			} else if (fanOutExecutor.isBusy(lane)) {
+				// 订阅者所在通道还有未发送完的消息，排到其后发送，保证该订阅者收到消息的顺序
+				FanOutBatch batch = new FanOutBatch();
+				batch.add(clientId, subMqttQoS);
+				submit(lane, batch, true);
+			} else {
+				send(clientId, subMqttQoS, payload, frames);
+			}
+		}
+
+		/**
+		 * 提交并行转发的分批
+		 */
+		private void flush() {
+			if (batches == null) {
+				return;
+			}
+			int subscriberCount = 0;
+			for (int lane = 0; lane < batches.length; lane++) {
+				FanOutBatch batch = batches[lane];
+				if (batch != null) {
+					subscriberCount += batch.size;
+					submit(lane, batch, false);
 				}
-				// 发送消息
-				mqttServer.publish(clientContext, clientId, topic, context.getPayload(),
-					context.getQos(), subscribe.getMqttQoS(), false, properties);
 			}
-		} catch (Throwable e) {
-			logger.error("Subscription forward error", e);
+			fanOutExecutor.onFanOut(subscriberCount);
+		}
+
+		private void submit(int lane, FanOutBatch batch, boolean deferred) {
+			// 零拷贝解码要求 useQueueDecode，读缓冲区不会被复用，通道线程直接共享只读视图
+			fanOutExecutor.execute(lane, () -> {
+				// 每个通道独立的 buffer 视图和预编码帧
+				ByteBuffer lanePayload = payload == null ? null : payload.duplicate();
+				MqttPublishFrame[] laneFrames = publishFrameShareEnable && batch.size > 1 ? new MqttPublishFrame[FRAME_GROUP_SIZE] : null;
+				for (int i = 0; i < batch.size; i++) {
+					send(batch.clientIds[i], batch.qos[i], lanePayload, laneFrames);
+				}
+			}, deferred);
+		}
+
+		private void send(String clientId, int subMqttQoS, ByteBuffer payload, MqttPublishFrame[] frames) {
+			ChannelContext clientContext = Tio.getByBsId(tioConfig, clientId);
+			if (clientContext == null || clientContext.isClosed()) {
+				logger.warn("Mqtt Topic:{} publish to clientId:{} ChannelContext is null may be disconnected.", topic, clientId);
+				return;
+			}
+			MqttPublishFrame frame = frames == null ? null : getPublishFrame(frames, clientContext, topic, payload, qos, subMqttQoS, properties);
+			// 发送消息
+			mqttServer.publish(clientContext, clientId, topic, payload, qos, subMqttQoS, false, properties, frame);
+		}
+	}
+
+	/**
+	 * 同一通道的订阅者
+	 */
+	private static final class FanOutBatch {
+		private String[] clientIds = new String[16];
+		private byte[] qos = new byte[16];
+		private int size;
+
+		private void add(String clientId, int subMqttQoS) {
+			if (size == clientIds.length) {
+				clientIds = Arrays.copyOf(clientIds, size << 1);
+				qos = Arrays.copyOf(qos, size << 1);
+			}
+			clientIds[size] = clientId;
+			qos[size++] = (byte) subMqttQoS;
+		}
+	}
+
+	/**
+	 * 获取或创建（mqtt 版本，降级后 qos）分组的预编码帧
+	 *
+	 * @param frames        帧分组缓存
+	 * @param clientContext 订阅者 ChannelContext
+	 * @param topic         topic
+	 * @param payload       消息体
+	 * @param qos           发布者 qos
+	 * @param subMqttQoS    订阅 qos
+	 * @param properties    重写后的 MQTT 5.0 属性
+	 * @return MqttPublishFrame
+	 */
+	private static MqttPublishFrame getPublishFrame(MqttPublishFrame[] frames, ChannelContext clientContext,
+													String topic, ByteBuffer payload, MqttQoS qos, int subMqttQoS,
+													MqttProperties properties) {
+		MqttQoS mqttQoS = qos.value() > subMqttQoS ? MqttQoS.valueOf(subMqttQoS) : qos;
+		MqttVersion mqttVersion = MqttCodecUtil.getMqttVersion(clientContext);
+		// mqtt 3.1 和 3.1.1 的 PUBLISH 编码一致，共用一组
+		int index = (MqttVersion.MQTT_5 == mqttVersion ? 3 : 0) + mqttQoS.value();
+		MqttPublishFrame frame = frames[index];
+		if (frame == null) {
+			MqttPublishMessage message = MqttPublishMessage.builder()
+				.topicName(topic)
+				.payload(payload)
+				.qos(mqttQoS)
+				.properties(properties)
+				.build();
+			frame = MqttEncoder.encodePublishFrame(mqttVersion, message);
+			frames[index] = frame;
 		}
+		return frame;
 	}
 
 	@Override
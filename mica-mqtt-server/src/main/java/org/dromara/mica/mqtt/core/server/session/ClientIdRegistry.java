@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * clientId 与 int 句柄的映射，紧凑订阅存储中以句柄代替 clientId 字符串引用
+ * <p>
+ * 客户端首次订阅时分配句柄，所有订阅取消后回收，回收的句柄按先进先出复用。
+ * 句柄回收前已从所有订阅存储中移除，并发匹配读到复用后的 clientId 时由 {@link CompactSubscribers#forEach}
+ * 按当前订阅数组再次确认，读写 clientId 均为 volatile 语义，保证确认时能看到移除后的数组。
+ *
+ * @author L.cm
+ */
+final class ClientIdRegistry {
+	/**
+	 * 句柄占 packed int 的高 29 位，低 3 位为编码后的订阅数据
+	 */
+	static final int MAX_HANDLE = (1 << 29) - 1;
+	private static final int INITIAL_CAPACITY = 1024;
+	private final ArrayDeque<Integer> freeHandles = new ArrayDeque<>();
+	/**
+	 * 句柄 -> clientId，扩容时写时复制，读无锁
+	 */
+	private volatile AtomicReferenceArray<String> clientIds = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+	private int nextHandle;
+
+	/**
+	 * 分配句柄
+	 *
+	 * @param clientId clientId
+	 * @return 句柄
+	 */
+	synchronized int register(String clientId) {
+		Integer free = freeHandles.poll();
+		int handle;
+		if (free != null) {
+			handle = free;
+		} else {
+			if (nextHandle > MAX_HANDLE) {
+				throw new IllegalStateException("Too many subscribed clients, max:" + MAX_HANDLE);
+			}
+			handle = nextHandle++;
+		}
+		AtomicReferenceArray<String> ids = this.clientIds;
+		if (handle >= ids.length()) {
+			AtomicReferenceArray<String> grown = new AtomicReferenceArray<>(Math.min(ids.length() << 1, MAX_HANDLE + 1));
+			for (int i = 0; i < ids.length(); i++) {
+				grown.lazySet(i, ids.get(i));
+			}
+			grown.set(handle, clientId);
+			this.clientIds = grown;
+		} else {
+			ids.set(handle, clientId);
+		}
+		return handle;
+	}
+
+	/**
+	 * 回收句柄
+	 *
+	 * @param handle 句柄
+	 */
+	synchronized void release(int handle) {
+		this.clientIds.set(handle, null);
+		freeHandles.offer(handle);
+	}
+
+	/**
+	 * 获取句柄对应的 clientId
+	 *
+	 * @param handle 句柄
+	 * @return clientId
+	 */
+	String get(int handle) {
+		AtomicReferenceArray<String> ids = this.clientIds;
+		return handle < ids.length() ? ids.get(handle) : null;
+	}
+
+	/**
+	 * 清理
+	 */
+	synchronized void clear() {
+		freeHandles.clear();
+		this.clientIds = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+		this.nextHandle = 0;
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+/**
+ * 紧凑订阅存储：每个订阅只占一个 int（handle &lt;&lt; 3 | encoded），按 handle 升序存放
+ * <p>
+ * 写时复制，读（匹配）时直接遍历 int 数组，无 Map Entry、装箱和迭代器开销；
+ * 订阅者很多的叶子（如大量 client 的共享订阅）每次写入复制整个数组，代价为 O(n)。
+ *
+ * @author L.cm
+ */
+final class CompactSubscribers implements Subscribers {
+	private static final int[] EMPTY = new int[0];
+	private final ClientIdRegistry registry;
+	private volatile int[] packed = EMPTY;
+
+	CompactSubscribers(ClientIdRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public synchronized void add(String clientId, int handle, byte mqttQoS, boolean noLocal) {
+		int[] current = this.packed;
+		int index = indexOf(current, handle);
+		if (index >= 0) {
+			byte encoded = Subscribers.merge((byte) (current[index] & 0x07), mqttQoS, noLocal);
+			int[] copy = current.clone();
+			copy[index] = pack(handle, encoded);
+			this.packed = copy;
+		} else {
+			int insert = -(index + 1);
+			int[] copy = new int[current.length + 1];
+			System.arraycopy(current, 0, copy, 0, insert);
+			copy[insert] = pack(handle, SubscribeData.of(mqttQoS, noLocal).encoded);
+			System.arraycopy(current, insert, copy, insert + 1, current.length - insert);
+			this.packed = copy;
+		}
+	}
+
+	@Override
+	public synchronized void remove(String clientId, int handle) {
+		int[] current = this.packed;
+		int index = indexOf(current, handle);
+		if (index < 0) {
+			return;
+		}
+		if (current.length == 1) {
+			this.packed = EMPTY;
+			return;
+		}
+		int[] copy = new int[current.length - 1];
+		System.arraycopy(current, 0, copy, 0, index);
+		System.arraycopy(current, index + 1, copy, index, current.length - index - 1);
+		this.packed = copy;
+	}
+
+	@Override
+	public int get(String clientId, int handle) {
+		int[] current = this.packed;
+		int index = indexOf(current, handle);
+		return index < 0 ? -1 : current[index] & 0x07;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.packed.length == 0;
+	}
+
+	@Override
+	public void forEach(SubscriberConsumer consumer) {
+		int[] snapshot = this.packed;
+		for (int value : snapshot) {
+			int handle = value >>> 3;
+			String clientId = registry.get(handle);
+			// 并发取消订阅时句柄可能已回收
+			if (clientId == null) {
+				continue;
+			}
+			// 句柄回收前已从所有订阅中移除，读到复用后的 clientId 时数组必定已变更；
+			// 数组变更后按当前数组确认该句柄仍在本订阅中，避免把消息发给复用句柄的其他 client
+			int[] current = this.packed;
+			if (current != snapshot) {
+				int index = indexOf(current, handle);
+				if (index < 0) {
+					continue;
+				}
+				value = current[index];
+			}
+			consumer.accept(clientId, (byte) (value & 0x07));
+		}
+	}
+
+	private static int pack(int handle, byte encoded) {
+		return (handle << 3) | encoded;
+	}
+
+	/**
+	 * 二分查找 handle，packed 值按 handle 升序，handle 不超过 29 位所以值非负
+	 *
+	 * @param packed packed 数组
+	 * @param handle handle
+	 * @return 下标，未找到时为 -(插入点 + 1)
+	 */
+	private static int indexOf(int[] packed, int handle) {
+		int low = 0;
+		int high = packed.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midHandle = packed[mid] >>> 3;
+			if (midHandle < handle) {
+				low = mid + 1;
+			} else if (midHandle > handle) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	@Override
+	public String toString() {
+		return "CompactSubscribers[size=" + packed.length + ']';
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+import org.dromara.mica.mqtt.codec.MqttTopicView;
+
+import java.util.Arrays;
+
+/**
+ * 不可变的 String key 哈希数组映射前缀树（HAMT），用于 {@link SnapshotTopicIndex} 快照
+ * <p>
+ * 每层 32 路，节点内用 bitmap + 紧凑数组存储 [key, value] 对（key 为 null 时 value 为下一层节点），
+ * 写入时路径复制；同一批次（edit 相同）内创建的节点原地修改，发布快照后更换 edit，已发布的节点不再修改。
+ * 查找不加锁，无 volatile 读，也可以用 {@link MqttTopicView.LevelKey} 查找，不创建层级子串。
+ *
+ * @author L.cm
+ */
+final class HashArrayMappedTrie {
+	private static final int BITS = 5;
+	private static final int MASK = 0x1F;
+	/**
+	 * 32 位 hash 用完后，同 hash 的 key 线性存储
+	 */
+	private static final int MAX_SHIFT = 30;
+	private final Object edit;
+	private int bitmap;
+	private Object[] array;
+	private final boolean collision;
+
+	private HashArrayMappedTrie(Object edit, int bitmap, Object[] array, boolean collision) {
+		this.edit = edit;
+		this.bitmap = bitmap;
+		this.array = array;
+		this.collision = collision;
+	}
+
+	/**
+	 * 查找
+	 *
+	 * @param root 根节点，可为 null
+	 * @param hash key 的 hash，与 String#hashCode 相同
+	 * @param key  key
+	 * @return value
+	 */
+	static Object get(HashArrayMappedTrie root, int hash, String key) {
+		HashArrayMappedTrie node = root;
+		int shift = 0;
+		while (node != null) {
+			Object[] array = node.array;
+			if (node.collision) {
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.equals(array[i])) {
+						return array[i + 1];
+					}
+				}
+				return null;
+			}
+			int bit = 1 << ((hash >>> shift) & MASK);
+			int bitmap = node.bitmap;
+			if ((bitmap & bit) == 0) {
+				return null;
+			}
+			int index = Integer.bitCount(bitmap & (bit - 1)) << 1;
+			Object k = array[index];
+			if (k == null) {
+				node = (HashArrayMappedTrie) array[index + 1];
+				shift += BITS;
+			} else if (k.hashCode() == hash && key.equals(k)) {
+				return array[index + 1];
+			} else {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 按 topic 层级查找，不依赖 LevelKey 的 equals
+	 *
+	 * @param root 根节点，可为 null
+	 * @param key  层级 key
+	 * @return value
+	 */
+	static Object get(HashArrayMappedTrie root, MqttTopicView.LevelKey key) {
+		HashArrayMappedTrie node = root;
+		int hash = key.hashCode();
+		int shift = 0;
+		while (node != null) {
+			Object[] array = node.array;
+			if (node.collision) {
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.matches((String) array[i])) {
+						return array[i + 1];
+					}
+				}
+				return null;
+			}
+			int bit = 1 << ((hash >>> shift) & MASK);
+			int bitmap = node.bitmap;
+			if ((bitmap & bit) == 0) {
+				return null;
+			}
+			int index = Integer.bitCount(bitmap & (bit - 1)) << 1;
+			Object k = array[index];
+			if (k == null) {
+				node = (HashArrayMappedTrie) array[index + 1];
+				shift += BITS;
+			} else if (k.hashCode() == hash && key.matches((String) k)) {
+				return array[index + 1];
+			} else {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 写入
+	 *
+	 * @param edit  当前批次
+	 * @param root  根节点，可为 null
+	 * @param key   key
+	 * @param value value
+	 * @return 新的根节点
+	 */
+	static HashArrayMappedTrie put(Object edit, HashArrayMappedTrie root, String key, Object value) {
+		if (root == null) {
+			root = new HashArrayMappedTrie(edit, 0, new Object[0], false);
+		}
+		return root.put(edit, 0, key.hashCode(), key, value);
+	}
+
+	/**
+	 * 删除
+	 *
+	 * @param edit 当前批次
+	 * @param root 根节点，可为 null
+	 * @param key  key
+	 * @return 新的根节点，为空时为 null
+	 */
+	static HashArrayMappedTrie remove(Object edit, HashArrayMappedTrie root, String key) {
+		if (root == null) {
+			return null;
+		}
+		return root.remove(edit, 0, key.hashCode(), key);
+	}
+
+	/**
+	 * 遍历
+	 *
+	 * @param root    根节点，可为 null
+	 * @param visitor 访问者
+	 */
+	static void forEach(HashArrayMappedTrie root, Visitor visitor) {
+		if (root == null) {
+			return;
+		}
+		Object[] array = root.array;
+		for (int i = 0; i < array.length; i += 2) {
+			Object k = array[i];
+			if (k == null) {
+				forEach((HashArrayMappedTrie) array[i + 1], visitor);
+			} else {
+				visitor.visit((String) k, array[i + 1]);
+			}
+		}
+	}
+
+	private HashArrayMappedTrie editable(Object edit) {
+		if (this.edit == edit) {
+			return this;
+		}
+		return new HashArrayMappedTrie(edit, bitmap, array.clone(), collision);
+	}
+
+	private HashArrayMappedTrie put(Object edit, int shift, int hash, String key, Object value) {
+		if (collision) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i])) {
+					if (array[i + 1] == value) {
+						return this;
+					}
+					HashArrayMappedTrie node = editable(edit);
+					node.array[i + 1] = value;
+					return node;
+				}
+			}
+			HashArrayMappedTrie node = editable(edit);
+			node.array = append(node.array, key, value);
+			return node;
+		}
+		int bit = 1 << ((hash >>> shift) & MASK);
+		int index = Integer.bitCount(bitmap & (bit - 1)) << 1;
+		if ((bitmap & bit) == 0) {
+			HashArrayMappedTrie node = editable(edit);
+			Object[] newArray = new Object[array.length + 2];
+			System.arraycopy(array, 0, newArray, 0, index);
+			newArray[index] = key;
+			newArray[index + 1] = value;
+			System.arraycopy(array, index, newArray, index + 2, array.length - index);
+			node.array = newArray;
+			node.bitmap = bitmap | bit;
+			return node;
+		}
+		Object k = array[index];
+		Object v = array[index + 1];
+		Object newValue;
+		if (k == null) {
+			HashArrayMappedTrie child = (HashArrayMappedTrie) v;
+			newValue = child.put(edit, shift + BITS, hash, key, value);
+			if (newValue == child) {
+				return this;
+			}
+		} else if (key.equals(k)) {
+			if (v == value) {
+				return this;
+			}
+			newValue = value;
+		} else {
+			// 同一槽位的两个 key 下沉到下一层
+			newValue = createNode(edit, shift + BITS, (String) k, v, hash, key, value);
+		}
+		HashArrayMappedTrie node = editable(edit);
+		if (k != null && !key.equals(k)) {
+			node.array[index] = null;
+		}
+		node.array[index + 1] = newValue;
+		return node;
+	}
+
+	private static HashArrayMappedTrie createNode(Object edit, int shift, String key1, Object value1,
+												  int hash2, String key2, Object value2) {
+		int hash1 = key1.hashCode();
+		if (hash1 == hash2 || shift > MAX_SHIFT) {
+			return new HashArrayMappedTrie(edit, 0, new Object[]{key1, value1, key2, value2}, true);
+		}
+		HashArrayMappedTrie node = new HashArrayMappedTrie(edit, 0, new Object[0], false);
+		return node.put(edit, shift, hash1, key1, value1).put(edit, shift, hash2, key2, value2);
+	}
+
+	private HashArrayMappedTrie remove(Object edit, int shift, int hash, String key) {
+		if (collision) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i])) {
+					if (array.length == 2) {
+						return null;
+					}
+					HashArrayMappedTrie node = editable(edit);
+					node.array = removePair(node.array, i);
+					return node;
+				}
+			}
+			return this;
+		}
+		int bit = 1 << ((hash >>> shift) & MASK);
+		if ((bitmap & bit) == 0) {
+			return this;
+		}
+		int index = Integer.bitCount(bitmap & (bit - 1)) << 1;
+		Object k = array[index];
+		if (k == null) {
+			HashArrayMappedTrie child = (HashArrayMappedTrie) array[index + 1];
+			HashArrayMappedTrie newChild = child.remove(edit, shift + BITS, hash, key);
+			if (newChild == child) {
+				return this;
+			}
+			if (newChild != null) {
+				HashArrayMappedTrie node = editable(edit);
+				node.array[index + 1] = newChild;
+				return node;
+			}
+		} else if (!key.equals(k)) {
+			return this;
+		}
+		if (bitmap == bit) {
+			return null;
+		}
+		HashArrayMappedTrie node = editable(edit);
+		node.array = removePair(node.array, index);
+		node.bitmap = bitmap ^ bit;
+		return node;
+	}
+
+	private static Object[] append(Object[] array, Object key, Object value) {
+		Object[] newArray = Arrays.copyOf(array, array.length + 2);
+		newArray[array.length] = key;
+		newArray[array.length + 1] = value;
+		return newArray;
+	}
+
+	private static Object[] removePair(Object[] array, int index) {
+		Object[] newArray = new Object[array.length - 2];
+		System.arraycopy(array, 0, newArray, 0, index);
+		System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+		return newArray;
+	}
+
+	/**
+	 * 遍历访问者
+	 */
+	@FunctionalInterface
+	interface Visitor {
+
+		/**
+		 * 访问
+		 *
+		 * @param key   key
+		 * @param value value
+		 */
+		void visit(String key, Object value);
+	}
+
+}
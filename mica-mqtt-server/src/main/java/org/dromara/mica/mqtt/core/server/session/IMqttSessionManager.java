@@ -16,6 +16,7 @@
 
 package org.dromara.mica.mqtt.core.server.session;
 
+import org.dromara.mica.mqtt.codec.MqttTopicView;
 import org.dromara.mica.mqtt.core.common.MqttPendingPublish;
 import org.dromara.mica.mqtt.core.common.MqttPendingQos2Publish;
 import org.dromara.mica.mqtt.core.common.TopicFilter;
@@ -59,6 +60,30 @@ public interface IMqttSessionManager {
 	 */
 	void removeSubscribe(String topicFilter, String clientId);
 
+	/**
+	 * 批量添加同一客户端的订阅，集群同步、多 topic 订阅时使用，实现可以合并路径遍历
+	 *
+	 * @param clientId      客户端 Id
+	 * @param subscriptions 订阅列表，取 topicFilter、mqttQoS、noLocal
+	 */
+	default void addSubscribes(String clientId, List<Subscribe> subscriptions) {
+		for (Subscribe subscribe : subscriptions) {
+			this.addSubscribe(new TopicFilter(subscribe.getTopicFilter()), clientId, subscribe.getMqttQoS(), subscribe.isNoLocal());
+		}
+	}
+
+	/**
+	 * 批量删除同一客户端的订阅
+	 *
+	 * @param clientId     客户端 Id
+	 * @param topicFilters topicFilter 列表
+	 */
+	default void removeSubscribes(String clientId, List<String> topicFilters) {
+		for (String topicFilter : topicFilters) {
+			this.removeSubscribe(topicFilter, clientId);
+		}
+	}
+
 	/**
 	 * 查找订阅 qos 信息
 	 *
@@ -76,6 +101,71 @@ public interface IMqttSessionManager {
 	 */
 	List<Subscribe> searchSubscribe(String topicName);
 
+	/**
+	 * 查找订阅信息，使用已切分好的 topic 层级视图，避免重复切分
+	 *
+	 * @param topicName topicName
+	 * @param topicView topic 层级视图，为 null 时自行切分
+	 * @return 订阅存储列表
+	 */
+	default List<Subscribe> searchSubscribe(String topicName, MqttTopicView topicView) {
+		return searchSubscribe(topicName);
+	}
+
+	/**
+	 * 遍历匹配 topic 的订阅者，订阅者直接回调给 visitor，不创建订阅列表
+	 *
+	 * @param fromClientId 发布者 clientId，服务端 api 发布时为 null，用于共享订阅按发布者选择
+	 * @param topicName    topicName
+	 * @param topicView    topic 层级视图，为 null 时自行切分
+	 * @param visitor      访问者
+	 * @return 订阅者数量
+	 */
+	default int forEachSubscriber(String fromClientId, String topicName, MqttTopicView topicView, SubscriberVisitor visitor) {
+		List<Subscribe> subscribeList = searchSubscribe(topicName, topicView);
+		if (subscribeList == null || subscribeList.isEmpty()) {
+			return 0;
+		}
+		int size = subscribeList.size();
+		visitor.begin(size);
+		for (Subscribe subscribe : subscribeList) {
+			visitor.accept(subscribe.getClientId(), subscribe.getMqttQoS(), subscribe.isNoLocal());
+		}
+		return size;
+	}
+
+	/**
+	 * 遍历匹配 topic 的订阅者，订阅者直接回调给 visitor，不创建订阅列表
+	 *
+	 * @param topicName topicName
+	 * @param topicView topic 层级视图，为 null 时自行切分
+	 * @param visitor   访问者
+	 * @return 订阅者数量
+	 */
+	default int forEachSubscriber(String topicName, MqttTopicView topicView, SubscriberVisitor visitor) {
+		return forEachSubscriber(null, topicName, topicView, visitor);
+	}
+
+	/**
+	 * 遍历匹配 topic 的订阅者，订阅者直接回调给 visitor，不创建订阅列表
+	 *
+	 * @param topicName topicName
+	 * @param visitor   访问者
+	 * @return 订阅者数量
+	 */
+	default int forEachSubscriber(String topicName, SubscriberVisitor visitor) {
+		return forEachSubscriber(null, topicName, null, visitor);
+	}
+
+	/**
+	 * 共享订阅分组策略和统计，不支持时为 null
+	 *
+	 * @return SharedSubscriptionGroups
+	 */
+	default SharedSubscriptionGroups getSharedSubscriptionGroups() {
+		return null;
+	}
+
 	/**
 	 * 获取设备订阅
 	 *
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+/**
+ * 共享订阅（$share、$queue）选择策略，每条消息从分组的候选订阅者中选出一个
+ * <p>
+ * 每个分组使用独立的策略实例（见 {@link SharedSubscriptionGroups}），可以在实例中保存分组状态（如轮询计数），
+ * 多个线程会并发调用，实现需要线程安全。
+ *
+ * @author L.cm
+ */
+@FunctionalInterface
+public interface ISharedSubscriptionStrategy {
+
+	/**
+	 * 选择订阅者，只在候选者多于一个时调用
+	 *
+	 * @param candidates 候选订阅者，线程内复用，不能在调用结束后保留
+	 * @return 选中的候选者下标，范围 [0, candidates.size())
+	 */
+	int select(SharedCandidates candidates);
+
+}
@@ -16,6 +16,7 @@
 
 package org.dromara.mica.mqtt.core.server.session;
 
+import org.dromara.mica.mqtt.codec.MqttTopicView;
 import org.dromara.mica.mqtt.core.common.MqttPendingPublish;
 import org.dromara.mica.mqtt.core.common.MqttPendingQos2Publish;
 import org.dromara.mica.mqtt.core.common.TopicFilter;
@@ -40,7 +41,7 @@ public class InMemoryMqttSessionManager implements IMqttSessionManager {
 	/**
 	 * 订阅存储，支持共享订阅
 	 */
-	private final TrieTopicManager topicManager = new TrieTopicManager();
+	private final TrieTopicManager topicManager;
 	/**
 	 * qos1 消息过程存储 clientId: {msgId: Object}
 	 */
@@ -50,6 +51,38 @@ public class InMemoryMqttSessionManager implements IMqttSessionManager {
 	 */
 	private final ConcurrentMap<String, ConcurrentMap<Integer, MqttPendingQos2Publish>> pendingQos2PublishStore = new ConcurrentHashMap<>();
 
+	public InMemoryMqttSessionManager() {
+		this(0);
+	}
+
+	/**
+	 * 创建内存 session 管理
+	 *
+	 * @param topicMatchCacheSize 热点 topic 匹配结果缓存大小，0 为不开启
+	 */
+	public InMemoryMqttSessionManager(int topicMatchCacheSize) {
+		this(topicMatchCacheSize, false);
+	}
+
+	/**
+	 * 创建内存 session 管理
+	 *
+	 * @param topicMatchCacheSize     热点 topic 匹配结果缓存大小，0 为不开启
+	 * @param compactSubscriptionStore 是否使用紧凑订阅存储
+	 */
+	public InMemoryMqttSessionManager(int topicMatchCacheSize, boolean compactSubscriptionStore) {
+		this.topicManager = new TrieTopicManager(topicMatchCacheSize, compactSubscriptionStore);
+	}
+
+	/**
+	 * 订阅存储，可获取匹配结果缓存命中率等指标
+	 *
+	 * @return TrieTopicManager
+	 */
+	public TrieTopicManager getTopicManager() {
+		return topicManager;
+	}
+
 	@Override
 	public void addSubscribe(TopicFilter topicFilter, String clientId, int mqttQoS, boolean noLocal) {
 		topicManager.addSubscribe(topicFilter, clientId, (short) mqttQoS, noLocal);
@@ -64,6 +97,16 @@ public class InMemoryMqttSessionManager implements IMqttSessionManager {
 		topicManager.removeSubscribe(clientId);
 	}
 
+	@Override
+	public void addSubscribes(String clientId, List<Subscribe> subscriptions) {
+		topicManager.addSubscribes(clientId, subscriptions);
+	}
+
+	@Override
+	public void removeSubscribes(String clientId, List<String> topicFilters) {
+		topicManager.removeSubscribes(clientId, topicFilters);
+	}
+
 	@Override
 	public Byte searchSubscribe(String topicName, String clientId) {
 		return topicManager.searchSubscribe(topicName, clientId);
@@ -74,6 +117,21 @@ public class InMemoryMqttSessionManager implements IMqttSessionManager {
 		return topicManager.searchSubscribe(topicName);
 	}
 
+	@Override
+	public List<Subscribe> searchSubscribe(String topicName, MqttTopicView topicView) {
+		return topicManager.searchSubscribe(topicName, topicView);
+	}
+
+	@Override
+	public int forEachSubscriber(String fromClientId, String topicName, MqttTopicView topicView, SubscriberVisitor visitor) {
+		return topicManager.forEachSubscriber(fromClientId, topicName, topicView, visitor);
+	}
+
+	@Override
+	public SharedSubscriptionGroups getSharedSubscriptionGroups() {
+		return topicManager.getSharedGroups();
+	}
+
 	@Override
 	public List<Subscribe> getSubscriptions(String clientId) {
 		return topicManager.getSubscriptions(clientId);
@@ -136,7 +194,7 @@ public class InMemoryMqttSessionManager implements IMqttSessionManager {
 		return pendingQos2PublishStore.containsKey(clientId)
 			|| pendingPublishStore.containsKey(clientId)
 			|| messageIdStore.containsKey(clientId)
-			|| !topicManager.getSubscriptions(clientId).isEmpty();
+			|| !getSubscriptions(clientId).isEmpty();
 	}
 
 	@Override
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 默认订阅存储：{clientId: encoded_byte}
+ * <p>
+ * 合并 qos 和 noLocal 到一个 byte，byte 值 0-7 使用 JVM Byte 缓存池，无额外对象创建。
+ *
+ * @author L.cm
+ */
+final class MapSubscribers implements Subscribers {
+	private final Map<String, Byte> subscriptions;
+
+	MapSubscribers(int initialCapacity) {
+		this.subscriptions = new ConcurrentHashMap<>(initialCapacity);
+	}
+
+	@Override
+	public void add(String clientId, int handle, byte mqttQoS, boolean noLocal) {
+		Byte existingEncoded = subscriptions.get(clientId);
+		if (existingEncoded == null) {
+			subscriptions.put(clientId, SubscribeData.of(mqttQoS, noLocal).encoded);
+		} else {
+			subscriptions.put(clientId, Subscribers.merge(existingEncoded, mqttQoS, noLocal));
+		}
+	}
+
+	@Override
+	public void remove(String clientId, int handle) {
+		subscriptions.remove(clientId);
+	}
+
+	@Override
+	public int get(String clientId, int handle) {
+		Byte encoded = subscriptions.get(clientId);
+		return encoded == null ? -1 : encoded;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return subscriptions.isEmpty();
+	}
+
+	@Override
+	public void forEach(SubscriberConsumer consumer) {
+		for (Map.Entry<String, Byte> entry : subscriptions.entrySet()) {
+			consumer.accept(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return subscriptions.toString();
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * topic 匹配结果收集，线程内复用，合并去重时不创建对象
+ * <p>
+ * 普通订阅、$queue 和每个 $share 分组分别收集到开放寻址表中，同一 client 的多条匹配订阅在表内合并；
+ * 遍历时按首次匹配的顺序回调。遍历回调中再次匹配（重入）时使用新的实例。
+ *
+ * @author L.cm
+ */
+final class MatchCollector {
+	private static final ThreadLocal<MatchCollector> COLLECTOR = ThreadLocal.withInitial(MatchCollector::new);
+	/**
+	 * 普通订阅，共享订阅选中的 client 也合并到这里
+	 */
+	final Table subscribers = new Table();
+	/**
+	 * $queue 共享订阅候选
+	 */
+	final Table queue = new Table();
+	private String[] groupNames = new String[4];
+	private Table[] groups = new Table[4];
+	private int groupCount;
+	private final Candidates candidates = new Candidates();
+	private boolean inUse;
+
+	/**
+	 * 获取当前线程的收集器，使用完需调用 {@link #release()}
+	 *
+	 * @return MatchCollector
+	 */
+	static MatchCollector acquire() {
+		MatchCollector collector = COLLECTOR.get();
+		if (collector.inUse) {
+			collector = new MatchCollector();
+		}
+		collector.inUse = true;
+		return collector;
+	}
+
+	/**
+	 * 清空并归还
+	 */
+	void release() {
+		subscribers.clear();
+		queue.clear();
+		for (int i = 0; i < groupCount; i++) {
+			groups[i].clear();
+			groupNames[i] = null;
+		}
+		groupCount = 0;
+		candidates.reset(null, null, null, null, null, 0);
+		inUse = false;
+	}
+
+	/**
+	 * 获取 $share 分组的候选表，匹配的分组通常很少，线性查找
+	 *
+	 * @param groupName 分组名
+	 * @return 候选表
+	 */
+	Table group(String groupName) {
+		for (int i = 0; i < groupCount; i++) {
+			if (groupNames[i].equals(groupName)) {
+				return groups[i];
+			}
+		}
+		if (groupCount == groupNames.length) {
+			groupNames = Arrays.copyOf(groupNames, groupCount << 1);
+			groups = Arrays.copyOf(groups, groupCount << 1);
+		}
+		Table table = groups[groupCount];
+		if (table == null) {
+			table = new Table();
+			groups[groupCount] = table;
+		}
+		groupNames[groupCount++] = groupName;
+		return table;
+	}
+
+	int groupCount() {
+		return groupCount;
+	}
+
+	Table groupAt(int index) {
+		return groups[index];
+	}
+
+	String groupNameAt(int index) {
+		return groupNames[index];
+	}
+
+	/**
+	 * 共享订阅：$queue 和每个 $share 分组按分组策略选一个 client，合并到普通订阅
+	 *
+	 * @param sharedGroups      共享订阅分组
+	 * @param topicName         topicName
+	 * @param publisherClientId 发布者 clientId
+	 */
+	void selectShared(SharedSubscriptionGroups sharedGroups, String topicName, String publisherClientId) {
+		select(sharedGroups, SharedSubscriptionGroups.QUEUE_GROUP, queue, topicName, publisherClientId);
+		for (int i = 0; i < groupCount; i++) {
+			select(sharedGroups, groupNames[i], groups[i], topicName, publisherClientId);
+		}
+	}
+
+	private void select(SharedSubscriptionGroups sharedGroups, String groupName, Table table,
+						String topicName, String publisherClientId) {
+		int size = table.size;
+		if (size == 0) {
+			return;
+		}
+		int index = sharedGroups.select(candidates.reset(sharedGroups, groupName, topicName, publisherClientId, table, size));
+		subscribers.accept(table.keyAt(index), table.valueAt(index));
+	}
+
+	/**
+	 * 共享订阅：从缓存的候选集中按分组策略选一个 client，合并到普通订阅
+	 *
+	 * @param sharedGroups      共享订阅分组
+	 * @param groupName         分组名
+	 * @param topicName         topicName
+	 * @param publisherClientId 发布者 clientId
+	 * @param clientIds         候选 clientId
+	 * @param encoded           候选订阅数据
+	 */
+	void selectShared(SharedSubscriptionGroups sharedGroups, String groupName, String topicName, String publisherClientId,
+					  String[] clientIds, byte[] encoded) {
+		candidates.reset(sharedGroups, groupName, topicName, publisherClientId, null, clientIds.length).clientIds = clientIds;
+		int index = sharedGroups.select(candidates);
+		subscribers.accept(clientIds[index], encoded[index]);
+	}
+
+	/**
+	 * 遍历普通订阅（含已选中的共享订阅）
+	 *
+	 * @param visitor 访问者
+	 * @return 订阅者数量
+	 */
+	int visit(SubscriberVisitor visitor) {
+		Table table = this.subscribers;
+		int size = table.size;
+		if (size == 0) {
+			return 0;
+		}
+		visitor.begin(size);
+		for (int i = 0; i < size; i++) {
+			SubscribeData data = SubscribeData.decode(table.valueAt(i));
+			visitor.accept(table.keyAt(i), data.qos, data.noLocal);
+		}
+		return size;
+	}
+
+	/**
+	 * 转换为订阅列表
+	 *
+	 * @return 订阅列表
+	 */
+	List<Subscribe> toList() {
+		Table table = this.subscribers;
+		int size = table.size;
+		List<Subscribe> subscribeList = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			SubscribeData data = SubscribeData.decode(table.valueAt(i));
+			subscribeList.add(new Subscribe(table.keyAt(i), data.qos, data.noLocal));
+		}
+		return subscribeList;
+	}
+
+	/**
+	 * 合并同一 client 的多条匹配订阅：qos 取较大值，noLocal 取或
+	 *
+	 * @param existing 已有的编码订阅数据
+	 * @param encoded  编码订阅数据
+	 * @return 合并后的编码订阅数据
+	 */
+	static byte merge(byte existing, byte encoded) {
+		return (byte) (Math.max(existing & 0x03, encoded & 0x03) | ((existing | encoded) & 0x04));
+	}
+
+	/**
+	 * clientId -> encoded_byte 开放寻址表，记录插入顺序
+	 */
+	static final class Table implements Subscribers.SubscriberConsumer {
+		private static final int INITIAL_CAPACITY = 16;
+		/**
+		 * 超过该容量时清空后不再保留，避免偶发的大扇出长期占用内存
+		 */
+		private static final int MAX_RETAINED_CAPACITY = 1 << 13;
+		private String[] keys = new String[INITIAL_CAPACITY];
+		private byte[] values = new byte[INITIAL_CAPACITY];
+		/**
+		 * 按插入顺序记录使用的槽位
+		 */
+		private int[] slots = new int[INITIAL_CAPACITY >> 1];
+		private int size;
+
+		@Override
+		public void accept(String clientId, byte encoded) {
+			if (size >= keys.length >> 1) {
+				resize();
+			}
+			int mask = keys.length - 1;
+			int index = hash(clientId) & mask;
+			for (;;) {
+				String key = keys[index];
+				if (key == null) {
+					keys[index] = clientId;
+					values[index] = encoded;
+					slots[size++] = index;
+					return;
+				}
+				if (key.equals(clientId)) {
+					values[index] = merge(values[index], encoded);
+					return;
+				}
+				index = (index + 1) & mask;
+			}
+		}
+
+		/**
+		 * 获取订阅
+		 *
+		 * @param clientId 客户端 id
+		 * @return 编码后的订阅数据，未匹配时为 -1
+		 */
+		int get(String clientId) {
+			int mask = keys.length - 1;
+			int index = hash(clientId) & mask;
+			for (;;) {
+				String key = keys[index];
+				if (key == null) {
+					return -1;
+				}
+				if (key.equals(clientId)) {
+					return values[index];
+				}
+				index = (index + 1) & mask;
+			}
+		}
+
+		int size() {
+			return size;
+		}
+
+		String keyAt(int index) {
+			return keys[slots[index]];
+		}
+
+		byte valueAt(int index) {
+			return values[slots[index]];
+		}
+
+		private void resize() {
+			String[] oldKeys = keys;
+			byte[] oldValues = values;
+			int[] oldSlots = slots;
+			int capacity = oldKeys.length << 1;
+			keys = new String[capacity];
+			values = new byte[capacity];
+			slots = new int[capacity >> 1];
+			int mask = capacity - 1;
+			for (int i = 0; i < size; i++) {
+				int oldIndex = oldSlots[i];
+				String key = oldKeys[oldIndex];
+				int index = hash(key) & mask;
+				while (keys[index] != null) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+				values[index] = oldValues[oldIndex];
+				slots[i] = index;
+			}
+		}
+
+		private void clear() {
+			if (keys.length > MAX_RETAINED_CAPACITY) {
+				keys = new String[INITIAL_CAPACITY];
+				values = new byte[INITIAL_CAPACITY];
+				slots = new int[INITIAL_CAPACITY >> 1];
+			} else {
+				for (int i = 0; i < size; i++) {
+					keys[slots[i]] = null;
+				}
+			}
+			size = 0;
+		}
+
+		private static int hash(String key) {
+			int h = key.hashCode();
+			return h ^ (h >>> 16);
+		}
+	}
+
+	/**
+	 * 共享订阅候选者视图，指向候选表或缓存的候选数组
+	 */
+	private static final class Candidates implements SharedCandidates {
+		private SharedSubscriptionGroups sharedGroups;
+		private String groupName;
+		private String topicName;
+		private String publisherClientId;
+		private Table table;
+		private String[] clientIds;
+		private int size;
+
+		private Candidates reset(SharedSubscriptionGroups sharedGroups, String groupName, String topicName,
+								 String publisherClientId, Table table, int size) {
+			this.sharedGroups = sharedGroups;
+			this.groupName = groupName;
+			this.topicName = topicName;
+			this.publisherClientId = publisherClientId;
+			this.table = table;
+			this.clientIds = null;
+			this.size = size;
+			return this;
+		}
+
+		@Override
+		public String getGroupName() {
+			return groupName;
+		}
+
+		@Override
+		public String getTopicName() {
+			return topicName;
+		}
+
+		@Override
+		public String getPublisherClientId() {
+			return publisherClientId;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public String getClientId(int index) {
+			return table == null ? clientIds[index] : table.keyAt(index);
+		}
+
+		@Override
+		public int getLoad(int index) {
+			return sharedGroups.getLoad(getClientId(index));
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+/**
+ * 共享订阅分组本次消息的候选订阅者（只读）
+ *
+ * @author L.cm
+ */
+public interface SharedCandidates {
+
+	/**
+	 * 分组名，$queue 为 {@link SharedSubscriptionGroups#QUEUE_GROUP}
+	 *
+	 * @return 分组名
+	 */
+	String getGroupName();
+
+	/**
+	 * 发布的 topic
+	 *
+	 * @return topic
+	 */
+	String getTopicName();
+
+	/**
+	 * 发布者 clientId，服务端 api 发布时为 null
+	 *
+	 * @return clientId
+	 */
+	String getPublisherClientId();
+
+	/**
+	 * 候选者数量
+	 *
+	 * @return 数量
+	 */
+	int size();
+
+	/**
+	 * 候选者 clientId
+	 *
+	 * @param index 下标
+	 * @return clientId
+	 */
+	String getClientId(int index);
+
+	/**
+	 * 候选者的负载（出站队列深度），越小越空闲，未连接时为 {@link Integer#MAX_VALUE}
+	 *
+	 * @param index 下标
+	 * @return 负载
+	 */
+	int getLoad(int index);
+
+}
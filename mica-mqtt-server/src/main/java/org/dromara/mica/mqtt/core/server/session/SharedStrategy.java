@@ -16,28 +16,107 @@
 
 package org.dromara.mica.mqtt.core.server.session;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 /**
- * 共享订阅均衡策略
+ * 共享订阅均衡策略，每次 {@link #get()} 创建一个分组的策略实例
  *
  * @author L.cm
  */
-public enum SharedStrategy {
+public enum SharedStrategy implements Supplier<ISharedSubscriptionStrategy> {
 
 	/**
 	 * 在所有订阅者中随机选择
 	 */
-	random,
+	random {
+		@Override
+		public ISharedSubscriptionStrategy get() {
+			return candidates -> ThreadLocalRandom.current().nextInt(candidates.size());
+		}
+	},
 	/**
 	 * 按照订阅顺序
 	 */
-	round_robin,
+	round_robin {
+		@Override
+		public ISharedSubscriptionStrategy get() {
+			AtomicInteger counter = new AtomicInteger();
+			return candidates -> Math.floorMod(counter.getAndIncrement(), candidates.size());
+		}
+	},
+	/**
+	 * 一直发往上次选取的订阅者，该订阅者离开分组后重新随机选取
+	 */
+	sticky {
+		@Override
+		public ISharedSubscriptionStrategy get() {
+			AtomicReference<String> selected = new AtomicReference<>();
+			return candidates -> {
+				String clientId = selected.get();
+				int size = candidates.size();
+				if (clientId != null) {
+					for (int i = 0; i < size; i++) {
+						if (clientId.equals(candidates.getClientId(i))) {
+							return i;
+						}
+					}
+				}
+				int index = ThreadLocalRandom.current().nextInt(size);
+				selected.compareAndSet(clientId, candidates.getClientId(index));
+				return index;
+			};
+		}
+	},
+	/**
+	 * 按照发布者 ClientID 的哈希值，同一发布者的消息发往同一订阅者，服务端 api 发布时按 topic
+	 */
+	hash {
+		@Override
+		public ISharedSubscriptionStrategy get() {
+			return candidates -> {
+				String key = candidates.getPublisherClientId();
+				if (key == null) {
+					key = candidates.getTopicName();
+				}
+				return Math.floorMod(key.hashCode(), candidates.size());
+			};
+		}
+	},
 	/**
-	 * 一直发往上次选取的订阅者
+	 * 按照 topic 的哈希值，同一 topic 的消息发往同一订阅者
 	 */
-	sticky,
+	hash_topic {
+		@Override
+		public ISharedSubscriptionStrategy get() {
+			return candidates -> Math.floorMod(candidates.getTopicName().hashCode(), candidates.size());
+		}
+	},
 	/**
-	 * 按照发布者 ClientID 的哈希值
+	 * 选择出站队列最短的订阅者，消费慢的订阅者少分配消息，负载相同时轮询
 	 */
-	hash;
+	least_queued {
+		@Override
+		public ISharedSubscriptionStrategy get() {
+			AtomicInteger counter = new AtomicInteger();
+			return candidates -> {
+				int size = candidates.size();
+				int start = Math.floorMod(counter.getAndIncrement(), size);
+				int selected = start;
+				int minLoad = candidates.getLoad(start);
+				for (int i = 1; i < size && minLoad > 0; i++) {
+					int index = start + i < size ? start + i : start + i - size;
+					int load = candidates.getLoad(index);
+					if (load < minLoad) {
+						selected = index;
+						minLoad = load;
+					}
+				}
+				return selected;
+			};
+		}
+	};
 
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * 共享订阅分组：每个分组独立的选择策略和统计
+ * <p>
+ * 分组首次投递时按配置创建策略实例，未单独配置的分组使用默认策略（默认随机）。
+ * $share 分组的最后一个订阅移除后（取消订阅或客户端断开），分组的策略和统计一并移除，避免客户端随意使用的分组名长期占用内存。
+ * 负载函数由服务端设置为客户端出站队列深度，供 {@link SharedStrategy#least_queued} 等负载感知策略使用。
+ *
+ * @author L.cm
+ */
+public class SharedSubscriptionGroups {
+	/**
+	 * $queue 无分组共享订阅的分组名
+	 */
+	public static final String QUEUE_GROUP = "$queue";
+	private final Map<String, Supplier<? extends ISharedSubscriptionStrategy>> groupStrategies = new ConcurrentHashMap<>();
+	private final Map<String, SharedGroup> groups = new ConcurrentHashMap<>();
+	/**
+	 * $share 分组名 -> 订阅存储数（同一分组名可用于多个 topicFilter），由 topic 索引在创建、移除分组存储时维护
+	 */
+	private final Map<String, Integer> groupRefs = new ConcurrentHashMap<>();
+	private volatile Supplier<? extends ISharedSubscriptionStrategy> defaultStrategy = SharedStrategy.random;
+	private volatile ToIntFunction<String> loadFunction = clientId -> 0;
+
+	/**
+	 * 设置默认策略，已创建的分组重新创建策略
+	 *
+	 * @param strategy 策略，如 {@link SharedStrategy}
+	 * @return SharedSubscriptionGroups
+	 */
+	public SharedSubscriptionGroups setDefaultStrategy(Supplier<? extends ISharedSubscriptionStrategy> strategy) {
+		this.defaultStrategy = Objects.requireNonNull(strategy, "shared subscription strategy is null.");
+		this.groups.clear();
+		return this;
+	}
+
+	/**
+	 * 设置分组的策略，已创建的分组重新创建策略
+	 *
+	 * @param groupName 分组名，$queue 为 {@link #QUEUE_GROUP}
+	 * @param strategy  策略，如 {@link SharedStrategy}
+	 * @return SharedSubscriptionGroups
+	 */
+	public SharedSubscriptionGroups setStrategy(String groupName, Supplier<? extends ISharedSubscriptionStrategy> strategy) {
+		Objects.requireNonNull(groupName, "shared subscription groupName is null.");
+		this.groupStrategies.put(groupName, Objects.requireNonNull(strategy, "shared subscription strategy is null."));
+		this.groups.remove(groupName);
+		return this;
+	}
+
+	/**
+	 * 设置负载函数：clientId -> 负载（出站队列深度），越小越空闲
+	 *
+	 * @param loadFunction 负载函数
+	 * @return SharedSubscriptionGroups
+	 */
+	public SharedSubscriptionGroups setLoadFunction(ToIntFunction<String> loadFunction) {
+		this.loadFunction = Objects.requireNonNull(loadFunction, "shared subscription loadFunction is null.");
+		return this;
+	}
+
+	/**
+	 * 获取客户端负载
+	 *
+	 * @param clientId clientId
+	 * @return 负载
+	 */
+	public int getLoad(String clientId) {
+		return loadFunction.applyAsInt(clientId);
+	}
+
+	/**
+	 * 选择订阅者
+	 *
+	 * @param candidates 候选订阅者，至少有一个
+	 * @return 选中的候选者下标
+	 */
+	int select(SharedCandidates candidates) {
+		String groupName = candidates.getGroupName();
+		SharedGroup group = groups.get(groupName);
+		if (group == null) {
+			group = getOrCreateGroup(groupName);
+		}
+		int size = candidates.size();
+		int index = size == 1 ? 0 : group.strategy.select(candidates);
+		group.selectCount.increment();
+		group.candidateCount = size;
+		return index;
+	}
+
+	private SharedGroup getOrCreateGroup(String groupName) {
+		if (QUEUE_GROUP.equals(groupName)) {
+			return groups.computeIfAbsent(groupName, this::newGroup);
+		}
+		// 与 releaseGroup 在同一 key 的 compute 中互斥，分组移除后不会再被创建
+		SharedGroup[] created = new SharedGroup[1];
+		groupRefs.computeIfPresent(groupName, (key, refs) -> {
+			created[0] = groups.computeIfAbsent(key, this::newGroup);
+			return refs;
+		});
+		// 分组的订阅已全部移除（如使用了移除前的匹配结果），不再保存分组状态
+		return created[0] == null ? newGroup(groupName) : created[0];
+	}
+
+	private SharedGroup newGroup(String groupName) {
+		Supplier<? extends ISharedSubscriptionStrategy> supplier = groupStrategies.getOrDefault(groupName, defaultStrategy);
+		ISharedSubscriptionStrategy strategy = supplier.get();
+		String strategyName = supplier instanceof SharedStrategy ? ((SharedStrategy) supplier).name() : strategy.getClass().getName();
+		return new SharedGroup(groupName, strategyName, strategy);
+	}
+
+	/**
+	 * 获取分组统计
+	 *
+	 * @param groupName 分组名
+	 * @return 分组，未投递过消息时为 null
+	 */
+	public SharedGroup getGroup(String groupName) {
+		return groups.get(groupName);
+	}
+
+	/**
+	 * 获取所有分组统计
+	 *
+	 * @return 分组列表
+	 */
+	public Collection<SharedGroup> getGroups() {
+		return Collections.unmodifiableCollection(groups.values());
+	}
+
+	/**
+	 * 移除分组状态和统计，分组再次投递时重新创建
+	 *
+	 * @param groupName 分组名
+	 */
+	public void removeGroup(String groupName) {
+		groups.remove(groupName);
+	}
+
+	/**
+	 * topic 索引创建了分组的订阅存储
+	 *
+	 * @param groupName $share 分组名
+	 */
+	void retainGroup(String groupName) {
+		groupRefs.merge(groupName, 1, Integer::sum);
+	}
+
+	/**
+	 * topic 索引移除了分组的订阅存储，分组已无订阅时移除分组的策略和统计
+	 *
+	 * @param groupName $share 分组名
+	 */
+	void releaseGroup(String groupName) {
+		groupRefs.computeIfPresent(groupName, (key, refs) -> {
+			if (refs > 1) {
+				return refs - 1;
+			}
+			removeGroup(key);
+			return null;
+		});
+	}
+
+	/**
+	 * topic 索引已清空，移除所有 $share 分组
+	 */
+	void clearGroups() {
+		groupRefs.keySet().forEach(this::releaseAll);
+	}
+
+	private void releaseAll(String groupName) {
+		groupRefs.computeIfPresent(groupName, (key, refs) -> {
+			removeGroup(key);
+			return null;
+		});
+	}
+
+	/**
+	 * 共享订阅分组的策略和统计
+	 */
+	public static final class SharedGroup {
+		private final String name;
+		private final String strategyName;
+		private final ISharedSubscriptionStrategy strategy;
+		private final LongAdder selectCount = new LongAdder();
+		private volatile int candidateCount;
+
+		private SharedGroup(String name, String strategyName, ISharedSubscriptionStrategy strategy) {
+			this.name = name;
+			this.strategyName = strategyName;
+			this.strategy = strategy;
+		}
+
+		/**
+		 * 分组名
+		 *
+		 * @return 分组名
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * 策略名
+		 *
+		 * @return 策略名
+		 */
+		public String getStrategyName() {
+			return strategyName;
+		}
+
+		/**
+		 * 投递（选择）次数
+		 *
+		 * @return 次数
+		 */
+		public long getSelectCount() {
+			return selectCount.sum();
+		}
+
+		/**
+		 * 最近一次投递的候选者数量
+		 *
+		 * @return 候选者数量
+		 */
+		public int getCandidateCount() {
+			return candidateCount;
+		}
+
+		@Override
+		public String toString() {
+			return "SharedGroup{" +
+				"name='" + name + '\'' +
+				", strategy=" + strategyName +
+				", selectCount=" + selectCount.sum() +
+				", candidateCount=" + candidateCount +
+				'}';
+		}
+	}
+
+}
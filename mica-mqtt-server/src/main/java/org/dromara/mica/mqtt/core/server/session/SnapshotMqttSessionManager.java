@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+import org.dromara.mica.mqtt.codec.MqttTopicView;
+import org.dromara.mica.mqtt.core.common.TopicFilter;
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
+
+import java.util.List;
+
+/**
+ * 内存 session 管理，订阅使用快照索引 {@link SnapshotTopicIndex}
+ * <p>
+ * 适合订阅变更少、消息发布多的场景：topic 匹配只读不可变快照，订阅变更在一致性窗口内批量发布。
+ * <pre>
+ * MqttServer.create()
+ *     .sessionManager(new SnapshotMqttSessionManager(100))
+ * </pre>
+ *
+ * @author L.cm
+ */
+public class SnapshotMqttSessionManager extends InMemoryMqttSessionManager {
+	private final SnapshotTopicIndex topicIndex;
+
+	public SnapshotMqttSessionManager() {
+		this(0);
+	}
+
+	/**
+	 * 创建快照 session 管理
+	 *
+	 * @param publishIntervalMillis 一致性窗口（毫秒），订阅变更最迟在该时长后对 topic 匹配可见，0 为立即可见
+	 */
+	public SnapshotMqttSessionManager(long publishIntervalMillis) {
+		this.topicIndex = new SnapshotTopicIndex(publishIntervalMillis);
+	}
+
+	/**
+	 * 快照订阅索引，可立即发布或获取快照版本等指标
+	 *
+	 * @return SnapshotTopicIndex
+	 */
+	public SnapshotTopicIndex getTopicIndex() {
+		return topicIndex;
+	}
+
+	@Override
+	public void addSubscribe(TopicFilter topicFilter, String clientId, int mqttQoS, boolean noLocal) {
+		topicIndex.addSubscribe(topicFilter, clientId, mqttQoS, noLocal);
+	}
+
+	@Override
+	public void removeSubscribe(String topicFilter, String clientId) {
+		topicIndex.removeSubscribe(topicFilter, clientId);
+	}
+
+	@Override
+	public void removeSubscribe(String clientId) {
+		topicIndex.removeSubscribe(clientId);
+	}
+
+	@Override
+	public void addSubscribes(String clientId, List<Subscribe> subscriptions) {
+		topicIndex.addSubscribes(clientId, subscriptions);
+	}
+
+	@Override
+	public void removeSubscribes(String clientId, List<String> topicFilters) {
+		topicIndex.removeSubscribes(clientId, topicFilters);
+	}
+
+	@Override
+	public Byte searchSubscribe(String topicName, String clientId) {
+		return topicIndex.searchSubscribe(topicName, clientId);
+	}
+
+	@Override
+	public List<Subscribe> searchSubscribe(String topicName) {
+		return topicIndex.searchSubscribe(topicName);
+	}
+
+	@Override
+	public List<Subscribe> searchSubscribe(String topicName, MqttTopicView topicView) {
+		return topicIndex.searchSubscribe(topicName, topicView);
+	}
+
+	@Override
+	public int forEachSubscriber(String fromClientId, String topicName, MqttTopicView topicView, SubscriberVisitor visitor) {
+		return topicIndex.forEachSubscriber(fromClientId, topicName, topicView, visitor);
+	}
+
+	@Override
+	public SharedSubscriptionGroups getSharedSubscriptionGroups() {
+		return topicIndex.getSharedGroups();
+	}
+
+	@Override
+	public List<Subscribe> getSubscriptions(String clientId) {
+		return topicIndex.getSubscriptions(clientId);
+	}
+
+	@Override
+	public void clean() {
+		topicIndex.clear();
+		super.clean();
+	}
+
+}
@@ -0,0 +1,775 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+import org.dromara.mica.mqtt.codec.MqttCodecUtil;
+import org.dromara.mica.mqtt.codec.MqttTopicView;
+import org.dromara.mica.mqtt.core.common.TopicFilter;
+import org.dromara.mica.mqtt.core.common.TopicFilterType;
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
+import org.dromara.mica.mqtt.core.util.TopicUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 快照订阅索引（RCU）：适合订阅变更少、topic 匹配多的场景
+ * <p>
+ * 订阅变更在写锁内作用到不可变的数组前缀树（{@link HashArrayMappedTrie}）上，按批次发布为新的快照：
+ * <ul>
+ *   <li>同一批次内新建的节点原地修改，批次间路径复制，已发布的快照不会再被修改</li>
+ *   <li>发布即一次 volatile 写，匹配时只读一次快照引用，逐层查找无锁、无 CAS、无 volatile 读</li>
+ *   <li>一致性窗口 publishIntervalMillis：为 0 时每次变更立即发布；大于 0 时首个变更后延迟该时长发布，
+ *   期间的变更合并到同一个快照，也可调用 {@link #publish()} 立即发布</li>
+ * </ul>
+ * 客户端订阅列表（{@link #getSubscriptions(String)}）直接读写锁内的反向索引，不受一致性窗口影响。
+ *
+ * @author L.cm
+ */
+public class SnapshotTopicIndex {
+	private static final ThreadLocal<MqttTopicView> TOPIC_VIEW = ThreadLocal.withInitial(MqttTopicView::new);
+	private static final ThreadLocal<MqttTopicView.LevelKey> LEVEL_KEY = ThreadLocal.withInitial(MqttTopicView.LevelKey::new);
+	/**
+	 * 一致性窗口，毫秒
+	 */
+	private final long publishIntervalMillis;
+	/**
+	 * 共享订阅分组策略和统计
+	 */
+	private final SharedSubscriptionGroups sharedGroups;
+	/**
+	 * 当前发布的快照，读线程唯一的 volatile 读
+	 */
+	private volatile Snapshot snapshot = new Snapshot(null, null, null, null, 0);
+	/**
+	 * 以下为写状态，由 this 锁保护
+	 */
+	private Object edit = new Object();
+	private HashArrayMappedTrie exact;
+	private Node wildcardRoot;
+	private Node queueRoot;
+	/**
+	 * $share 各分组共用的前缀树，叶子节点按分组存储订阅
+	 */
+	private Node shareRoot;
+	/**
+	 * 客户端反向索引 clientId: {topicFilter: encoded}
+	 */
+	private final Map<String, Map<String, Byte>> clientSubscriptions = new HashMap<>();
+	private long version;
+	private int pendingChanges;
+	private boolean publishScheduled;
+	private final LongAdder publishCount = new LongAdder();
+
+	public SnapshotTopicIndex() {
+		this(0);
+	}
+
+	/**
+	 * 创建快照订阅索引
+	 *
+	 * @param publishIntervalMillis 一致性窗口（毫秒），订阅变更最迟在该时长后对匹配可见，0 为立即可见
+	 */
+	public SnapshotTopicIndex(long publishIntervalMillis) {
+		this(publishIntervalMillis, new SharedSubscriptionGroups());
+	}
+
+	/**
+	 * 创建快照订阅索引
+	 *
+	 * @param publishIntervalMillis 一致性窗口（毫秒），订阅变更最迟在该时长后对匹配可见，0 为立即可见
+	 * @param sharedGroups          共享订阅分组策略
+	 */
+	public SnapshotTopicIndex(long publishIntervalMillis, SharedSubscriptionGroups sharedGroups) {
+		if (publishIntervalMillis < 0) {
+			throw new IllegalArgumentException("snapshot publishIntervalMillis must be greater than or equal to zero.");
+		}
+		this.publishIntervalMillis = publishIntervalMillis;
+		this.sharedGroups = Objects.requireNonNull(sharedGroups, "sharedGroups is null.");
+	}
+
+	/**
+	 * 前缀树节点，edit 为当前批次时可原地修改
+	 */
+	private static final class Node {
+		private final Object edit;
+		private Leaf leaf;
+		/**
+		 * $share 前缀树叶子的分组订阅 {group: Leaf}
+		 */
+		private HashArrayMappedTrie groups;
+		private HashArrayMappedTrie children;
+		/**
+		 * + 子节点
+		 */
+		private Node one;
+		/**
+		 * # 子节点
+		 */
+		private Node more;
+
+		private Node(Object edit) {
+			this.edit = edit;
+		}
+
+		private Node(Object edit, Node node) {
+			this.edit = edit;
+			this.leaf = node.leaf;
+			this.groups = node.groups;
+			this.children = node.children;
+			this.one = node.one;
+			this.more = node.more;
+		}
+
+		private boolean isEmpty() {
+			return leaf == null && groups == null && children == null && one == null && more == null;
+		}
+	}
+
+	/**
+	 * 不可变的订阅者列表，按 clientId 排序
+	 */
+	private static final class Leaf {
+		private final String[] clientIds;
+		private final byte[] encoded;
+
+		private Leaf(String[] clientIds, byte[] encoded) {
+			this.clientIds = clientIds;
+			this.encoded = encoded;
+		}
+
+		private static Leaf put(Leaf leaf, String clientId, byte encoded) {
+			if (leaf == null) {
+				return new Leaf(new String[]{clientId}, new byte[]{encoded});
+			}
+			int index = Arrays.binarySearch(leaf.clientIds, clientId);
+			if (index >= 0) {
+				if (leaf.encoded[index] == encoded) {
+					return leaf;
+				}
+				byte[] newEncoded = leaf.encoded.clone();
+				newEncoded[index] = encoded;
+				return new Leaf(leaf.clientIds, newEncoded);
+			}
+			index = -index - 1;
+			int length = leaf.clientIds.length;
+			String[] newClientIds = new String[length + 1];
+			byte[] newEncoded = new byte[length + 1];
+			System.arraycopy(leaf.clientIds, 0, newClientIds, 0, index);
+			System.arraycopy(leaf.encoded, 0, newEncoded, 0, index);
+			newClientIds[index] = clientId;
+			newEncoded[index] = encoded;
+			System.arraycopy(leaf.clientIds, index, newClientIds, index + 1, length - index);
+			System.arraycopy(leaf.encoded, index, newEncoded, index + 1, length - index);
+			return new Leaf(newClientIds, newEncoded);
+		}
+
+		private static Leaf remove(Leaf leaf, String clientId) {
+			if (leaf == null) {
+				return null;
+			}
+			int index = Arrays.binarySearch(leaf.clientIds, clientId);
+			if (index < 0) {
+				return leaf;
+			}
+			int length = leaf.clientIds.length;
+			if (length == 1) {
+				return null;
+			}
+			String[] newClientIds = new String[length - 1];
+			byte[] newEncoded = new byte[length - 1];
+			System.arraycopy(leaf.clientIds, 0, newClientIds, 0, index);
+			System.arraycopy(leaf.encoded, 0, newEncoded, 0, index);
+			System.arraycopy(leaf.clientIds, index + 1, newClientIds, index, length - index - 1);
+			System.arraycopy(leaf.encoded, index + 1, newEncoded, index, length - index - 1);
+			return new Leaf(newClientIds, newEncoded);
+		}
+
+		private void mergeTo(MatchCollector.Table subscribers) {
+			String[] clientIds = this.clientIds;
+			byte[] encoded = this.encoded;
+			for (int i = 0; i < clientIds.length; i++) {
+				subscribers.accept(clientIds[i], encoded[i]);
+			}
+		}
+	}
+
+	/**
+	 * 发布的快照，创建后不再修改
+	 */
+	private static final class Snapshot {
+		private final HashArrayMappedTrie exact;
+		private final Node wildcardRoot;
+		private final Node queueRoot;
+		private final Node shareRoot;
+		private final long version;
+
+		private Snapshot(HashArrayMappedTrie exact, Node wildcardRoot, Node queueRoot, Node shareRoot, long version) {
+			this.exact = exact;
+			this.wildcardRoot = wildcardRoot;
+			this.queueRoot = queueRoot;
+			this.shareRoot = shareRoot;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * 添加订阅
+	 *
+	 * @param topicFilter topicFilter
+	 * @param clientId    clientId
+	 * @param mqttQoS     mqttQoS
+	 */
+	public void addSubscribe(String topicFilter, String clientId, int mqttQoS) {
+		addSubscribe(new TopicFilter(topicFilter), clientId, mqttQoS, false);
+	}
+
+	/**
+	 * 添加订阅
+	 *
+	 * @param topicFilter topicFilter
+	 * @param clientId    clientId
+	 * @param mqttQoS     mqttQoS
+	 * @param noLocal     MQTT 5.0 No Local 标志
+	 */
+	public synchronized void addSubscribe(TopicFilter topicFilter, String clientId, int mqttQoS, boolean noLocal) {
+		addSubscription(topicFilter, clientId, mqttQoS, noLocal);
+		changed();
+	}
+
+	/**
+	 * 批量添加同一客户端的订阅，整批只加一次锁、只记一次变更，一致性窗口为 0 时也只发布一个快照
+	 *
+	 * @param clientId      clientId
+	 * @param subscriptions 订阅列表
+	 */
+	public synchronized void addSubscribes(String clientId, List<Subscribe> subscriptions) {
+		if (subscriptions.isEmpty()) {
+			return;
+		}
+		for (Subscribe subscribe : subscriptions) {
+			addSubscription(new TopicFilter(subscribe.getTopicFilter()), clientId, subscribe.getMqttQoS(), subscribe.isNoLocal());
+		}
+		changed();
+	}
+
+	private void addSubscription(TopicFilter topicFilter, String clientId, int mqttQoS, boolean noLocal) {
+		String topic = topicFilter.getTopic();
+		Map<String, Byte> filters = clientSubscriptions.computeIfAbsent(clientId, key -> new LinkedHashMap<>(4));
+		Byte existing = filters.get(topic);
+		// 与 TrieTopicManager 一致：同一 client 重复订阅同一 filter 时合并 qos 与 noLocal
+		byte encoded = existing == null ? SubscribeData.of((byte) mqttQoS, noLocal).encoded
+			: Subscribers.merge(existing, (byte) mqttQoS, noLocal);
+		filters.put(topic, encoded);
+		TopicFilterType topicFilterType = topicFilter.getType();
+		if (isExactTopic(topicFilterType, topic)) {
+			Leaf leaf = (Leaf) HashArrayMappedTrie.get(exact, topic.hashCode(), topic);
+			exact = HashArrayMappedTrie.put(edit, exact, topic, Leaf.put(leaf, clientId, encoded));
+		} else if (TopicFilterType.QUEUE == topicFilterType) {
+			String[] parts = TopicUtil.getTopicParts(topic.substring(TopicFilterType.SHARE_QUEUE_PREFIX.length()));
+			queueRoot = addPath(queueRoot, parts, 0, null, clientId, encoded);
+		} else if (TopicFilterType.SHARE == topicFilterType) {
+			String groupName = TopicFilterType.getShareGroupName(topic);
+			int prefixLen = TopicFilterType.SHARE_GROUP_PREFIX.length() + groupName.length() + 1;
+			String[] parts = TopicUtil.getTopicParts(topic.substring(prefixLen));
+			shareRoot = addPath(shareRoot, parts, 0, groupName, clientId, encoded);
+		} else {
+			wildcardRoot = addPath(wildcardRoot, TopicUtil.getTopicParts(topic), 0, null, clientId, encoded);
+		}
+	}
+
+	/**
+	 * 移除订阅
+	 *
+	 * @param topicFilter topicFilter
+	 * @param clientId    clientId
+	 */
+	public synchronized void removeSubscribe(String topicFilter, String clientId) {
+		Map<String, Byte> filters = clientSubscriptions.get(clientId);
+		if (filters == null || filters.remove(topicFilter) == null) {
+			return;
+		}
+		if (filters.isEmpty()) {
+			clientSubscriptions.remove(clientId);
+		}
+		removeSubscription(topicFilter, clientId);
+		changed();
+	}
+
+	/**
+	 * 批量移除同一客户端的订阅
+	 *
+	 * @param clientId     clientId
+	 * @param topicFilters topicFilter 列表
+	 */
+	public synchronized void removeSubscribes(String clientId, List<String> topicFilters) {
+		Map<String, Byte> filters = clientSubscriptions.get(clientId);
+		if (filters == null) {
+			return;
+		}
+		boolean removed = false;
+		for (String topicFilter : topicFilters) {
+			if (filters.remove(topicFilter) != null) {
+				removeSubscription(topicFilter, clientId);
+				removed = true;
+			}
+		}
+		if (filters.isEmpty()) {
+			clientSubscriptions.remove(clientId);
+		}
+		if (removed) {
+			changed();
+		}
+	}
+
+	/**
+	 * 根据 clientId 删除客户端的所有订阅
+	 *
+	 * @param clientId clientId
+	 */
+	public synchronized void removeSubscribe(String clientId) {
+		Map<String, Byte> filters = clientSubscriptions.remove(clientId);
+		if (filters == null) {
+			return;
+		}
+		for (String topicFilter : filters.keySet()) {
+			removeSubscription(topicFilter, clientId);
+		}
+		changed();
+	}
+
+	private void removeSubscription(String topicFilter, String clientId) {
+		TopicFilterType topicFilterType = TopicFilterType.getType(topicFilter);
+		if (isExactTopic(topicFilterType, topicFilter)) {
+			Leaf leaf = Leaf.remove((Leaf) HashArrayMappedTrie.get(exact, topicFilter.hashCode(), topicFilter), clientId);
+			exact = leaf == null ? HashArrayMappedTrie.remove(edit, exact, topicFilter)
+				: HashArrayMappedTrie.put(edit, exact, topicFilter, leaf);
+		} else if (TopicFilterType.QUEUE == topicFilterType) {
+			String[] parts = TopicUtil.getTopicParts(topicFilter.substring(TopicFilterType.SHARE_QUEUE_PREFIX.length()));
+			queueRoot = removePath(queueRoot, parts, 0, null, clientId);
+		} else if (TopicFilterType.SHARE == topicFilterType) {
+			String groupName = TopicFilterType.getShareGroupName(topicFilter);
+			int prefixLen = TopicFilterType.SHARE_GROUP_PREFIX.length() + groupName.length() + 1;
+			String[] parts = TopicUtil.getTopicParts(topicFilter.substring(prefixLen));
+			shareRoot = removePath(shareRoot, parts, 0, groupName, clientId);
+		} else {
+			wildcardRoot = removePath(wildcardRoot, TopicUtil.getTopicParts(topicFilter), 0, null, clientId);
+		}
+	}
+
+	private Node editable(Node node) {
+		if (node == null) {
+			return new Node(edit);
+		}
+		return node.edit == edit ? node : new Node(edit, node);
+	}
+
+	private Node addPath(Node node, String[] parts, int index, String groupName, String clientId, byte encoded) {
+		Node newNode = editable(node);
+		if (index == parts.length) {
+			if (groupName == null) {
+				newNode.leaf = Leaf.put(newNode.leaf, clientId, encoded);
+			} else {
+				Leaf group = (Leaf) HashArrayMappedTrie.get(newNode.groups, groupName.hashCode(), groupName);
+				if (group == null) {
+					sharedGroups.retainGroup(groupName);
+				}
+				newNode.groups = HashArrayMappedTrie.put(edit, newNode.groups, groupName, Leaf.put(group, clientId, encoded));
+			}
+			return newNode;
+		}
+		String part = parts[index];
+		if (TopicUtil.TOPIC_WILDCARDS_MORE.equals(part)) {
+			newNode.more = addPath(newNode.more, parts, index + 1, groupName, clientId, encoded);
+		} else if (TopicUtil.TOPIC_WILDCARDS_ONE.equals(part)) {
+			newNode.one = addPath(newNode.one, parts, index + 1, groupName, clientId, encoded);
+		} else {
+			Node child = (Node) HashArrayMappedTrie.get(newNode.children, part.hashCode(), part);
+			Node newChild = addPath(child, parts, index + 1, groupName, clientId, encoded);
+			if (newChild != child) {
+				newNode.children = HashArrayMappedTrie.put(edit, newNode.children, part, newChild);
+			}
+		}
+		return newNode;
+	}
+
+	/**
+	 * 删除路径上的订阅，空节点直接丢弃
+	 *
+	 * @return 新节点，为空时为 null
+	 */
+	private Node removePath(Node node, String[] parts, int index, String groupName, String clientId) {
+		if (node == null) {
+			return null;
+		}
+		Node newNode = editable(node);
+		if (index == parts.length) {
+			if (groupName == null) {
+				newNode.leaf = Leaf.remove(newNode.leaf, clientId);
+			} else {
+				Leaf oldGroup = (Leaf) HashArrayMappedTrie.get(newNode.groups, groupName.hashCode(), groupName);
+				Leaf group = Leaf.remove(oldGroup, clientId);
+				if (group == null) {
+					newNode.groups = HashArrayMappedTrie.remove(edit, newNode.groups, groupName);
+					if (oldGroup != null) {
+						sharedGroups.releaseGroup(groupName);
+					}
+				} else {
+					newNode.groups = HashArrayMappedTrie.put(edit, newNode.groups, groupName, group);
+				}
+			}
+		} else {
+			String part = parts[index];
+			if (TopicUtil.TOPIC_WILDCARDS_MORE.equals(part)) {
+				newNode.more = removePath(newNode.more, parts, index + 1, groupName, clientId);
+			} else if (TopicUtil.TOPIC_WILDCARDS_ONE.equals(part)) {
+				newNode.one = removePath(newNode.one, parts, index + 1, groupName, clientId);
+			} else {
+				Node child = (Node) HashArrayMappedTrie.get(newNode.children, part.hashCode(), part);
+				Node newChild = removePath(child, parts, index + 1, groupName, clientId);
+				if (newChild == null) {
+					newNode.children = HashArrayMappedTrie.remove(edit, newNode.children, part);
+				} else if (newChild != child) {
+					newNode.children = HashArrayMappedTrie.put(edit, newNode.children, part, newChild);
+				}
+			}
+		}
+		return newNode.isEmpty() ? null : newNode;
+	}
+
+	private static boolean isExactTopic(TopicFilterType topicFilterType, String topicFilter) {
+		return TopicFilterType.NONE == topicFilterType && !MqttCodecUtil.isTopicFilter(topicFilter);
+	}
+
+	/**
+	 * 记录变更，按一致性窗口发布
+	 */
+	private void changed() {
+		pendingChanges++;
+		if (publishIntervalMillis == 0) {
+			publish();
+		} else if (!publishScheduled) {
+			publishScheduled = true;
+			Publisher.EXECUTOR.schedule(this::scheduledPublish, publishIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private synchronized void scheduledPublish() {
+		publishScheduled = false;
+		publish();
+	}
+
+	/**
+	 * 立即发布未发布的变更
+	 */
+	public synchronized void publish() {
+		if (pendingChanges == 0) {
+			return;
+		}
+		snapshot = new Snapshot(exact, wildcardRoot, queueRoot, shareRoot, ++version);
+		// 更换批次，已发布的节点之后只做路径复制
+		edit = new Object();
+		pendingChanges = 0;
+		publishCount.increment();
+	}
+
+	/**
+	 * 获取客户端所有订阅
+	 *
+	 * @param clientId clientId
+	 * @return 订阅集合
+	 */
+	public synchronized List<Subscribe> getSubscriptions(String clientId) {
+		Map<String, Byte> filters = clientSubscriptions.get(clientId);
+		if (filters == null) {
+			return new ArrayList<>();
+		}
+		List<Subscribe> subscribeList = new ArrayList<>(filters.size());
+		filters.forEach((topicFilter, encoded) -> {
+			SubscribeData data = SubscribeData.decode(encoded);
+			subscribeList.add(new Subscribe(topicFilter, clientId, data.qos, data.noLocal));
+		});
+		return subscribeList;
+	}
+
+	/**
+	 * 查找订阅 qos 信息
+	 *
+	 * @param topicName topicName
+	 * @param clientId  客户端 Id
+	 * @return qos，未订阅时为 null
+	 */
+	public Byte searchSubscribe(String topicName, String clientId) {
+		Snapshot current = this.snapshot;
+		MqttTopicView topicView = TOPIC_VIEW.get().reset(topicName);
+		MqttTopicView.LevelKey levelKey = LEVEL_KEY.get();
+		MatchCollector collector = MatchCollector.acquire();
+		try {
+			MatchCollector.Table subscribers = collector.subscribers;
+			mergeExactSubscriptions(current, topicName, subscribers);
+			searchSubscribeRecursively(current.wildcardRoot, subscribers, null, topicView, levelKey, 0);
+			int encoded = subscribers.get(clientId);
+			if (encoded >= 0) {
+				return SubscribeData.decode((byte) encoded).qos;
+			}
+			// 与 TrieTopicManager 一致：依次查找 $queue 与 $share 组，命中即返回
+			searchSubscribeRecursively(current.queueRoot, subscribers, null, topicView, levelKey, 0);
+			encoded = subscribers.get(clientId);
+			if (encoded >= 0) {
+				return SubscribeData.decode((byte) encoded).qos;
+			}
+			searchSubscribeRecursively(current.shareRoot, null, collector, topicView, levelKey, 0);
+			for (int i = 0; i < collector.groupCount(); i++) {
+				int groupEncoded = collector.groupAt(i).get(clientId);
+				if (groupEncoded >= 0) {
+					encoded = encoded < 0 ? groupEncoded : MatchCollector.merge((byte) encoded, (byte) groupEncoded);
+				}
+			}
+			return encoded < 0 ? null : SubscribeData.decode((byte) encoded).qos;
+		} finally {
+			collector.release();
+		}
+	}
+
+	/**
+	 * 查找订阅信息
+	 *
+	 * @param topicName topicName
+	 * @return 订阅存储列表
+	 */
+	public List<Subscribe> searchSubscribe(String topicName) {
+		return searchSubscribe(topicName, (MqttTopicView) null);
+	}
+
+	/**
+	 * 查找订阅信息
+	 *
+	 * @param topicName topicName
+	 * @param topicView topic 层级视图（只读），为 null 时自行切分
+	 * @return 订阅存储列表
+	 */
+	public List<Subscribe> searchSubscribe(String topicName, MqttTopicView topicView) {
+		MatchCollector collector = MatchCollector.acquire();
+		try {
+			collect(null, topicName, topicView, collector);
+			return collector.toList();
+		} finally {
+			collector.release();
+		}
+	}
+
+	/**
+	 * 遍历匹配的订阅者，不创建订阅列表
+	 *
+	 * @param fromClientId 发布者 clientId，服务端 api 发布时为 null，用于共享订阅按发布者选择
+	 * @param topicName    topicName
+	 * @param topicView    topic 层级视图（只读），为 null 时自行切分
+	 * @param visitor      访问者
+	 * @return 订阅者数量
+	 */
+	public int forEachSubscriber(String fromClientId, String topicName, MqttTopicView topicView, SubscriberVisitor visitor) {
+		MatchCollector collector = MatchCollector.acquire();
+		try {
+			collect(fromClientId, topicName, topicView, collector);
+			return collector.visit(visitor);
+		} finally {
+			collector.release();
+		}
+	}
+
+	/**
+	 * 在当前快照上匹配，$queue 与各 $share 组每条消息按分组策略选一个 client
+	 */
+	private void collect(String fromClientId, String topicName, MqttTopicView topicView, MatchCollector collector) {
+		// 整个匹配过程只读取这一次快照
+		Snapshot current = this.snapshot;
+		if (topicView == null) {
+			topicView = TOPIC_VIEW.get().reset(topicName);
+		}
+		MqttTopicView.LevelKey levelKey = LEVEL_KEY.get();
+		mergeExactSubscriptions(current, topicName, collector.subscribers);
+		searchSubscribeRecursively(current.wildcardRoot, collector.subscribers, null, topicView, levelKey, 0);
+		searchSubscribeRecursively(current.queueRoot, collector.queue, null, topicView, levelKey, 0);
+		searchSubscribeRecursively(current.shareRoot, null, collector, topicView, levelKey, 0);
+		collector.selectShared(sharedGroups, topicName, fromClientId);
+	}
+
+	private static void mergeExactSubscriptions(Snapshot current, String topicName, MatchCollector.Table subscribers) {
+		Leaf leaf = (Leaf) HashArrayMappedTrie.get(current.exact, topicName.hashCode(), topicName);
+		if (leaf != null) {
+			leaf.mergeTo(subscribers);
+		}
+	}
+
+	/**
+	 * 合并节点上的订阅：普通前缀树合并到 subscribers，$share 前缀树按分组合并到 collector
+	 */
+	private static void mergeNode(Node node, MatchCollector.Table subscribers, MatchCollector collector) {
+		if (node.leaf != null) {
+			node.leaf.mergeTo(subscribers);
+		}
+		if (node.groups != null && collector != null) {
+			HashArrayMappedTrie.forEach(node.groups, (groupName, group) -> ((Leaf) group).mergeTo(collector.group(groupName)));
+		}
+	}
+
+	private static void searchSubscribeRecursively(Node node, MatchCollector.Table subscribers, MatchCollector collector,
+												   MqttTopicView topicView, MqttTopicView.LevelKey levelKey, int index) {
+		int levels = topicView.levels();
+		if (node == null || index >= levels) {
+			return;
+		}
+		// # 匹配当前层级及后续所有层级
+		Node nodeMore = node.more;
+		if (nodeMore != null) {
+			mergeNode(nodeMore, subscribers, collector);
+		}
+		int topicPartLen = levels - 1;
+		// + 匹配当前层级任意一个 part
+		Node nodeOne = node.one;
+		if (nodeOne != null) {
+			if (index == topicPartLen) {
+				mergeNode(nodeOne, subscribers, collector);
+			} else {
+				searchSubscribeRecursively(nodeOne, subscribers, collector, topicView, levelKey, index + 1);
+			}
+		}
+		if (node.children == null) {
+			return;
+		}
+		Node nodePart = (Node) HashArrayMappedTrie.get(node.children, levelKey.set(topicView, index));
+		if (nodePart != null) {
+			if (index == topicPartLen) {
+				mergeNode(nodePart, subscribers, collector);
+				// filter "a/b/#" 匹配 topic "a/b"
+				Node nodePartMore = nodePart.more;
+				if (nodePartMore != null) {
+					mergeNode(nodePartMore, subscribers, collector);
+				}
+			} else {
+				searchSubscribeRecursively(nodePart, subscribers, collector, topicView, levelKey, index + 1);
+			}
+		}
+	}
+
+	/**
+	 * 清理，立即发布空快照
+	 */
+	public synchronized void clear() {
+		edit = new Object();
+		exact = null;
+		wildcardRoot = null;
+		queueRoot = null;
+		shareRoot = null;
+		clientSubscriptions.clear();
+		sharedGroups.clearGroups();
+		pendingChanges++;
+		publish();
+	}
+
+	/**
+	 * 共享订阅分组策略和统计
+	 *
+	 * @return SharedSubscriptionGroups
+	 */
+	public SharedSubscriptionGroups getSharedGroups() {
+		return sharedGroups;
+	}
+
+	/**
+	 * 当前快照版本，每次发布加 1
+	 *
+	 * @return 快照版本
+	 */
+	public long getSnapshotVersion() {
+		return snapshot.version;
+	}
+
+	/**
+	 * 快照发布次数
+	 *
+	 * @return 发布次数
+	 */
+	public long getPublishCount() {
+		return publishCount.sum();
+	}
+
+	/**
+	 * 尚未发布的订阅变更数
+	 *
+	 * @return 变更数
+	 */
+	public synchronized int getPendingChangeCount() {
+		return pendingChanges;
+	}
+
+	/**
+	 * 一致性窗口，毫秒
+	 *
+	 * @return 一致性窗口
+	 */
+	public long getPublishIntervalMillis() {
+		return publishIntervalMillis;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SnapshotTopicIndex{" +
+			"version=" + snapshot.version +
+			", clients=" + clientSubscriptions.size() +
+			", shareGroups=" + countShareGroups(shareRoot) +
+			", pendingChanges=" + pendingChanges +
+			'}';
+	}
+
+	/**
+	 * 统计 $share 前缀树中的分组订阅数（同一分组订阅多个 topicFilter 时分别计数），分组的订阅全部取消后回收
+	 *
+	 * @param node 节点
+	 * @return 分组订阅数
+	 */
+	private static int countShareGroups(Node node) {
+		if (node == null) {
+			return 0;
+		}
+		int[] count = {0};
+		HashArrayMappedTrie.forEach(node.groups, (groupName, group) -> count[0]++);
+		HashArrayMappedTrie.forEach(node.children, (part, child) -> count[0] += countShareGroups((Node) child));
+		return count[0] + countShareGroups(node.one) + countShareGroups(node.more);
+	}
+
+	/**
+	 * 定时发布线程，所有索引共享一个守护线程
+	 */
+	private static final class Publisher {
+		private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "mqtt-topic-snapshot-publisher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+/**
+ * topic 匹配结果访问者，匹配到的订阅者直接回调，不创建订阅列表
+ * <p>
+ * 同一 client 的多条匹配订阅已合并（qos 取较大值，noLocal 取或），共享订阅每组已选出一个 client。
+ *
+ * @author L.cm
+ */
+@FunctionalInterface
+public interface SubscriberVisitor {
+
+	/**
+	 * 开始遍历，只在有订阅者时调用一次
+	 * <p>
+	 * maxSize 是 accept 次数的上限，不是实际次数：No Local、集群节点过滤等在 accept 中进行，
+	 * 实际回调可能更少，只可用于预分配、是否并行等估算，不要用于统计。
+	 *
+	 * @param maxSize 订阅者数量上限
+	 */
+	default void begin(int maxSize) {
+	}
+
+	/**
+	 * 访问订阅者
+	 *
+	 * @param clientId 客户端 id
+	 * @param mqttQoS  订阅 qos
+	 * @param noLocal  MQTT 5.0 No Local 标志
+	 */
+	void accept(String clientId, int mqttQoS, boolean noLocal);
+
+}
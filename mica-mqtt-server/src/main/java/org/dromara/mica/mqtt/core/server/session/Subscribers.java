@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+/**
+ * 订阅叶子（同一 topicFilter）上的 client 集合 {clientId: encoded_byte}
+ * <p>
+ * 编码格式同 {@link SubscribeData}，写操作由 TrieTopicManager 在该 client 的反向索引 compute 中执行，读操作无锁。
+ *
+ * @author L.cm
+ */
+interface Subscribers {
+
+	/**
+	 * 添加订阅，同一 client 重复订阅时取较大 QoS，noLocal 取或
+	 *
+	 * @param clientId 客户端 id
+	 * @param handle   clientId 的 int 句柄，未开启紧凑存储时为 -1
+	 * @param mqttQoS  qos
+	 * @param noLocal  MQTT 5.0 No Local 标志
+	 */
+	void add(String clientId, int handle, byte mqttQoS, boolean noLocal);
+
+	/**
+	 * 移除订阅
+	 *
+	 * @param clientId 客户端 id
+	 * @param handle   clientId 的 int 句柄，未开启紧凑存储时为 -1
+	 */
+	void remove(String clientId, int handle);
+
+	/**
+	 * 获取订阅
+	 *
+	 * @param clientId 客户端 id
+	 * @param handle   clientId 的 int 句柄，未开启紧凑存储时为 -1
+	 * @return 编码后的订阅数据，未订阅时为 -1
+	 */
+	int get(String clientId, int handle);
+
+	/**
+	 * 是否为空
+	 *
+	 * @return 是否为空
+	 */
+	boolean isEmpty();
+
+	/**
+	 * 遍历订阅
+	 *
+	 * @param consumer SubscriberConsumer
+	 */
+	void forEach(SubscriberConsumer consumer);
+
+	/**
+	 * 合并同一 client 的重复订阅
+	 *
+	 * @param existingEncoded 已有的编码订阅数据
+	 * @param mqttQoS         qos
+	 * @param noLocal         MQTT 5.0 No Local 标志
+	 * @return 合并后的编码订阅数据
+	 */
+	static byte merge(byte existingEncoded, byte mqttQoS, boolean noLocal) {
+		SubscribeData existing = SubscribeData.decode(existingEncoded);
+		byte maxQos = TrieTopicManager.MAX_QOS.apply(existing.qos, mqttQoS);
+		return SubscribeData.of(maxQos, existing.noLocal || noLocal).encoded;
+	}
+
+	/**
+	 * 订阅遍历
+	 */
+	@FunctionalInterface
+	interface SubscriberConsumer {
+
+		/**
+		 * 遍历订阅
+		 *
+		 * @param clientId 客户端 id
+		 * @param encoded  编码后的订阅数据
+		 */
+		void accept(String clientId, byte encoded);
+	}
+
+}
@@ -18,19 +18,25 @@ package org.dromara.mica.mqtt.core.server.session;
 
 import net.dreamlu.mica.net.utils.hutool.CollUtil;
 import org.dromara.mica.mqtt.codec.MqttCodecUtil;
+import org.dromara.mica.mqtt.codec.MqttTopicView;
 import org.dromara.mica.mqtt.core.common.TopicFilter;
 import org.dromara.mica.mqtt.core.common.TopicFilterType;
 import org.dromara.mica.mqtt.core.server.model.Subscribe;
 import org.dromara.mica.mqtt.core.util.TopicUtil;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BinaryOperator;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 /**
  * 混合订阅管理：非通配 topic 使用 Map 直存，通配 topic 与共享订阅使用前缀树。
@@ -50,45 +56,153 @@ public class TrieTopicManager {
 	 * 共享订阅叶子：同组同 topic 可挂载大量 client
 	 */
 	private static final int SHARE_SUBSCRIPTIONS_CAPACITY = 16;
+	/**
+	 * 客户端反向索引：单个 client 通常只订阅少量 topic
+	 */
+	private static final int CLIENT_FILTERS_CAPACITY = 2;
+	/**
+	 * 客户端订阅数超过该值时建立 topicFilter 下标索引，较少时线性查找更省内存
+	 */
+	private static final int CLIENT_FILTERS_INDEX_THRESHOLD = 16;
 	/**
 	 * 较大的 qos
 	 */
 	public static final BinaryOperator<Byte> MAX_QOS = (a, b) -> (a > b) ? a : b;
+	/**
+	 * 发布热路径复用的 topic 视图和层级 key，匹配时不切分子串
+	 */
+	private static final ThreadLocal<MqttTopicView> TOPIC_VIEW = ThreadLocal.withInitial(MqttTopicView::new);
+	private static final ThreadLocal<MqttTopicView.LevelKey> LEVEL_KEY = ThreadLocal.withInitial(MqttTopicView.LevelKey::new);
 	/**
 	 * 非通配普通订阅：topicFilter -> {clientId: encoded_byte}
 	 * 生产环境精确 topic 占绝大多数，Map 直存避免前缀树每层 Node 的双 Map 开销
 	 */
-	private final Map<String, Map<String, Byte>> exactSubscriptions = new ConcurrentHashMap<>();
+	private final Map<String, Subscribers> exactSubscriptions = new ConcurrentHashMap<>();
 	/**
 	 * 含 + / # 的普通订阅前缀树（exactSubscriptions 放不下的才进这里）
 	 */
 	private final Node wildcardRoot = Node.getRoot();
 	/**
-	 * $share/{group}/ 分组共享订阅，每组独立一棵前缀树
+	 * $share/{group}/ 分组共享订阅，所有分组共用一棵前缀树（按去掉分组前缀的 topicFilter 建树），
+	 * 叶子节点存储 {group: subscriptions}，匹配耗时只与命中的分组数有关
 	 */
-	private final Map<String, Node> share = new ConcurrentHashMap<>();
+	private final Node share = Node.getShareNode();
 	/**
 	 * $queue/ 无分组共享订阅前缀树
 	 */
 	private final Node queue = Node.getRoot();
+	/**
+	 * 客户端反向索引：clientId -> {topicFilter: 该订阅所在的 subscriptions}
+	 * 断开连接清理和查询客户端订阅只访问该 client 自己的订阅，无需扫描 exactMap 和整棵前缀树
+	 */
+	private final Map<String, ClientFilters> clientSubscriptions = new ConcurrentHashMap<>();
+	/**
+	 * 紧凑存储的 clientId 句柄，为 null 时使用 Map 存储
+	 */
+	private final ClientIdRegistry clientIdRegistry;
+	/**
+	 * 共享订阅分组策略和统计
+	 */
+	private final SharedSubscriptionGroups sharedGroups;
+	private final Function<String, Node> wildcardNodeFactory;
+	private final Function<String, Node> queueNodeFactory;
+	private final Function<String, Node> shareNodeFactory = k -> newShareNode();
+	/**
+	 * 前缀树节点数（不含固定的根节点），以及已回收的空节点数
+	 */
+	private final LongAdder trieNodeCount = new LongAdder();
+	private final LongAdder reclaimedTrieNodeCount = new LongAdder();
+	/**
+	 * 热点 topic 匹配结果缓存（直接映射，按 topicName hash 定位槽位），为 null 时不开启
+	 */
+	private final AtomicReferenceArray<MatchResult> matchCache;
+	/**
+	 * 槽位版本：精确订阅只能匹配同名 topic，变更时只让该 topic 所在槽位失效
+	 */
+	private final AtomicLongArray matchCacheVersions;
+	/**
+	 * 全局代数：通配、共享订阅变更时递增，所有缓存失效
+	 */
+	private final AtomicLong matchCacheGeneration = new AtomicLong();
+	private final LongAdder matchCacheHitCount = new LongAdder();
+	private final LongAdder matchCacheMissCount = new LongAdder();
+
+	public TrieTopicManager() {
+		this(0);
+	}
+
+	/**
+	 * 创建订阅管理
+	 *
+	 * @param matchCacheSize 热点 topic 匹配结果缓存大小，向上取 2 的幂次，0 为不开启
+	 */
+	public TrieTopicManager(int matchCacheSize) {
+		this(matchCacheSize, false);
+	}
+
+	/**
+	 * 创建订阅管理
+	 *
+	 * @param matchCacheSize 热点 topic 匹配结果缓存大小，向上取 2 的幂次，0 为不开启
+	 * @param compactStorage 是否使用紧凑订阅存储：clientId 转为 int 句柄，订阅叶子使用 int 数组，适合海量订阅
+	 */
+	public TrieTopicManager(int matchCacheSize, boolean compactStorage) {
+		this(matchCacheSize, compactStorage, new SharedSubscriptionGroups());
+	}
+
+	/**
+	 * 创建订阅管理
+	 *
+	 * @param matchCacheSize 热点 topic 匹配结果缓存大小，向上取 2 的幂次，0 为不开启
+	 * @param compactStorage 是否使用紧凑订阅存储：clientId 转为 int 句柄，订阅叶子使用 int 数组，适合海量订阅
+	 * @param sharedGroups   共享订阅分组策略
+	 */
+	public TrieTopicManager(int matchCacheSize, boolean compactStorage, SharedSubscriptionGroups sharedGroups) {
+		this.sharedGroups = Objects.requireNonNull(sharedGroups, "sharedGroups is null.");
+		if (compactStorage) {
+			this.clientIdRegistry = new ClientIdRegistry();
+			this.wildcardNodeFactory = k -> newNode(new CompactSubscribers(clientIdRegistry));
+			this.queueNodeFactory = wildcardNodeFactory;
+		} else {
+			this.clientIdRegistry = null;
+			this.wildcardNodeFactory = k -> newNode(new MapSubscribers(WILDCARD_SUBSCRIPTIONS_CAPACITY));
+			this.queueNodeFactory = k -> newNode(new MapSubscribers(SHARE_SUBSCRIPTIONS_CAPACITY));
+		}
+		if (matchCacheSize < 0) {
+			throw new IllegalArgumentException("matchCacheSize must be greater than or equal to zero.");
+		}
+		if (matchCacheSize > 0) {
+			int size = matchCacheSize == 1 ? 1 : Integer.highestOneBit(matchCacheSize - 1) << 1;
+			this.matchCache = new AtomicReferenceArray<>(size);
+			this.matchCacheVersions = new AtomicLongArray(size);
+		} else {
+			this.matchCache = null;
+			this.matchCacheVersions = null;
+		}
+	}
 
 	private static class Node {
 		/**
 		 * 订阅的数据存储 {clientId: encoded_byte}
 		 * 编码格式: bit 0-1: qos (0-2), bit 2: noLocal (0-1)
-		 * 优化说明：
-		 * 1. 合并 qos 和 noLocal 到一个 byte，节省 50% 的 Map Entry 对象
-		 * 2. byte 值 0-7 使用 JVM Byte 缓存池，无额外对象创建
-		 * 3. 单次 Map 查找代替双次查找，性能提升约 50%
 		 */
-		private final Map<String, Byte> subscriptions;
+		private final Subscribers subscriptions;
+		/**
+		 * $share 前缀树节点的分组订阅 {group: subscriptions}，其他前缀树为 null
+		 */
+		private final Map<String, Subscribers> groups;
 		/**
 		 * 子节点，key 即为该层 topic 片段（与原 part 字段相同信息）
 		 */
 		private final Map<String, Node> children;
+		/**
+		 * 已从前缀树摘除，在节点锁内读写
+		 */
+		private boolean removed;
 
-		private Node(Map<String, Byte> subscriptions, Map<String, Node> children) {
+		private Node(Subscribers subscriptions, Map<String, Subscribers> groups, Map<String, Node> children) {
 			this.subscriptions = subscriptions;
+			this.groups = groups;
 			this.children = children;
 		}
 
@@ -99,43 +213,56 @@ public class TrieTopicManager {
 		 */
 		protected static Node getRoot() {
 			// 根节点只作路由入口，不挂载 subscriptions
-			return new Node(null, new ConcurrentHashMap<>(CHILDREN_CAPACITY));
+			return new Node(null, null, new ConcurrentHashMap<>(CHILDREN_CAPACITY));
 		}
 
 		/**
-		 * 通配订阅前缀树节点（+ / #）
+		 * 通配订阅、$queue / $share 共享订阅前缀树节点
 		 */
-		protected static Node getWildcardNode() {
-			return new Node(new ConcurrentHashMap<>(WILDCARD_SUBSCRIPTIONS_CAPACITY), new ConcurrentHashMap<>(CHILDREN_CAPACITY));
+		protected static Node getNode(Subscribers subscriptions) {
+			return new Node(subscriptions, null, new ConcurrentHashMap<>(CHILDREN_CAPACITY));
 		}
 
 		/**
-		 * $queue / $share 共享订阅前缀树节点
+		 * $share 分组共享订阅前缀树节点，分组 Map 只在节点锁内修改
 		 */
 		protected static Node getShareNode() {
-			return new Node(new ConcurrentHashMap<>(SHARE_SUBSCRIPTIONS_CAPACITY), new ConcurrentHashMap<>(CHILDREN_CAPACITY));
+			return new Node(null, new ConcurrentHashMap<>(CHILDREN_CAPACITY), new ConcurrentHashMap<>(CHILDREN_CAPACITY));
 		}
 
 		/**
-		 * 通配树：逐层创建子节点
+		 * 逐层创建子节点，与空节点回收互斥
+		 *
+		 * @return 子节点，当前节点已被回收时为 null
 		 */
-		protected Node addChildIfAbsent(String nodePart) {
+		protected synchronized Node addChildIfAbsent(String nodePart, Function<String, Node> nodeFactory) {
 			assert children != null;
-			return CollUtil.computeIfAbsent(this.children, nodePart, k -> getWildcardNode());
+			if (removed) {
+				return null;
+			}
+			return CollUtil.computeIfAbsent(this.children, nodePart, nodeFactory);
 		}
 
 		/**
-		 * 共享订阅树：逐层创建子节点（叶子 subscriptions 预留更大容量）
+		 * 是否为空节点（无订阅且无子节点）
 		 */
-		protected Node addShareChildIfAbsent(String nodePart) {
-			assert children != null;
-			return CollUtil.computeIfAbsent(this.children, nodePart, k -> getShareNode());
+		protected boolean isEmpty() {
+			return (subscriptions == null || subscriptions.isEmpty())
+				&& (groups == null || groups.isEmpty()) && children.isEmpty();
 		}
 
 		protected Node findNodeByPart(String nodePart) {
 			assert children != null;
 			return children.get(nodePart);
 		}
+
+		/**
+		 * 按 topic 层级查找子节点，不创建子串
+		 */
+		protected Node findNodeByLevel(MqttTopicView.LevelKey levelKey) {
+			assert children != null;
+			return children.get(levelKey);
+		}
 	}
 
 	/**
@@ -158,77 +285,212 @@ public class TrieTopicManager {
 	 * @param noLocal     MQTT 5.0 No Local 标志
 	 */
 	public void addSubscribe(TopicFilter topicFilter, String clientId, int mqttQoS, boolean noLocal) {
-		String topic = topicFilter.getTopic();
-		TopicFilterType topicFilterType = topicFilter.getType();
-		if (TopicFilterType.NONE == topicFilterType) {
-			// 普通订阅按是否含通配符分流：精确 -> Map，通配 -> 前缀树
-			if (MqttCodecUtil.isTopicFilter(topic)) {
-				addTrieSubscribe(wildcardRoot, topic, clientId, (byte) mqttQoS, noLocal, false);
-			} else {
-				addExactSubscribe(topic, clientId, (byte) mqttQoS, noLocal);
+		// 同一 client 的订阅变更在反向索引的 compute 中串行执行，保证索引与订阅存储一致
+		clientSubscriptions.compute(clientId, (key, client) -> {
+			if (client == null) {
+				// 紧凑存储：每个 client 首次订阅时分配一次句柄
+				client = new ClientFilters(clientIdRegistry == null ? -1 : clientIdRegistry.register(clientId));
 			}
-		} else if (TopicFilterType.QUEUE == topicFilterType) {
+			Subscribers subscriptions = addSubscription(topicFilter.getTopic(), topicFilter.getType(), clientId, client.handle, (byte) mqttQoS, noLocal, null);
+			client.put(topicFilter.getTopic(), subscriptions);
+			if (invalidateExactMatchCache(topicFilter.getType(), topicFilter.getTopic())) {
+				invalidateAllMatchCache();
+			}
+			return client;
+		});
+	}
+
+	/**
+	 * 批量添加同一客户端的订阅
+	 * <p>
+	 * 整批在反向索引的一次 compute 中完成；topicFilter 排序后相邻的 filter 前缀相同，前缀树写入时从上一个 filter 的公共前缀节点继续，
+	 * 减少逐层查找和节点加锁；通配、共享订阅整批只让匹配结果缓存失效一次。
+	 *
+	 * @param clientId      clientId
+	 * @param subscriptions 订阅列表
+	 */
+	public void addSubscribes(String clientId, List<Subscribe> subscriptions) {
+		if (subscriptions.isEmpty()) {
+			return;
+		}
+		// 稳定排序，同一 filter 出现多次时仍按原顺序写入
+		Subscribe[] sorted = subscriptions.toArray(new Subscribe[0]);
+		Arrays.sort(sorted, Comparator.comparing(Subscribe::getTopicFilter));
+		clientSubscriptions.compute(clientId, (key, client) -> {
+			if (client == null) {
+				client = new ClientFilters(clientIdRegistry == null ? -1 : clientIdRegistry.register(clientId));
+			}
+			TriePath path = new TriePath();
+			boolean trieChanged = false;
+			for (Subscribe subscribe : sorted) {
+				String topicFilter = subscribe.getTopicFilter();
+				TopicFilterType topicFilterType = TopicFilterType.getType(topicFilter);
+				Subscribers stored = addSubscription(topicFilter, topicFilterType, clientId, client.handle, (byte) subscribe.getMqttQoS(), subscribe.isNoLocal(), path);
+				client.put(topicFilter, stored);
+				trieChanged |= invalidateExactMatchCache(topicFilterType, topicFilter);
+			}
+			if (trieChanged) {
+				invalidateAllMatchCache();
+			}
+			return client;
+		});
+	}
+
+	/**
+	 * 写入订阅
+	 *
+	 * @param path 批量写入时复用的前缀树路径，单个写入为 null
+	 * @return 订阅所在的存储 {clientId: encoded_byte}
+	 */
+	private Subscribers addSubscription(String topic, TopicFilterType topicFilterType, String clientId, int handle, byte mqttQoS, boolean noLocal, TriePath path) {
+		if (isExactTopic(topicFilterType, topic)) {
+			// key 为完整 topicFilter，发布时 topicName 可直接 O(1) 命中，与空 Map 回收在 compute 中互斥
+			return exactSubscriptions.compute(topic, (key, subscriptions) -> {
+				if (subscriptions == null) {
+					subscriptions = newExactSubscribers();
+				}
+				subscriptions.add(clientId, handle, mqttQoS, noLocal);
+				return subscriptions;
+			});
+		}
+		String groupName = TopicFilterType.SHARE == topicFilterType ? TopicFilterType.getShareGroupName(topic) : null;
+		for (;;) {
+			Node leaf = getOrCreateTrieNode(topic, topicFilterType, groupName, path);
+			if (leaf != null) {
+				synchronized (leaf) {
+					if (!leaf.removed) {
+						Subscribers subscriptions = groupName == null ? leaf.subscriptions
+							: leaf.groups.computeIfAbsent(groupName, this::newGroupSubscribers);
+						assert subscriptions != null;
+						subscriptions.add(clientId, handle, mqttQoS, noLocal);
+						return subscriptions;
+					}
+				}
+			}
+			// 路径上的节点刚被回收，重新从根节点创建
+			if (path != null) {
+				path.clear();
+			}
+		}
+	}
+
+	/**
+	 * 获取或创建 topicFilter 对应的前缀树叶子节点
+	 *
+	 * @param topic           topicFilter
+	 * @param topicFilterType topicFilter 类型
+	 * @param groupName       $share 分组名，其他类型为 null
+	 * @param path            复用的前缀树路径，可为 null
+	 * @return 叶子节点，路径上的节点被并发回收时为 null
+	 */
+	private Node getOrCreateTrieNode(String topic, TopicFilterType topicFilterType, String groupName, TriePath path) {
+		if (TopicFilterType.QUEUE == topicFilterType) {
 			// 共享订阅（含精确后缀）统一走前缀树，便于组内随机负载均衡
 			int prefixLen = TopicFilterType.SHARE_QUEUE_PREFIX.length();
 			// 去掉 $queue/ 前缀后再写入前缀树
-			addTrieSubscribe(queue, topic.substring(prefixLen), clientId, (byte) mqttQoS, noLocal, true);
+			return addTrieNode(queue, topic.substring(prefixLen), queueNodeFactory, path);
 		} else if (TopicFilterType.SHARE == topicFilterType) {
-			int prefixLen = TopicFilterType.SHARE_GROUP_PREFIX.length();
-			String groupName = TopicFilterType.getShareGroupName(topic);
-			Node groupNode = share.computeIfAbsent(groupName, k -> Node.getRoot());
-			// 去掉 $share/{group}/ 前缀后再写入该组的前缀树
-			prefixLen = prefixLen + groupName.length() + 1;
-			addTrieSubscribe(groupNode, topic.substring(prefixLen), clientId, (byte) mqttQoS, noLocal, true);
+			// 去掉 $share/{group}/ 前缀后写入共用的前缀树，分组存储在叶子节点
+			int prefixLen = TopicFilterType.SHARE_GROUP_PREFIX.length() + groupName.length() + 1;
+			return addTrieNode(share, topic.substring(prefixLen), shareNodeFactory, path);
 		}
+		// 普通订阅按是否含通配符分流：精确 -> Map，通配 -> 前缀树
+		return addTrieNode(wildcardRoot, topic, wildcardNodeFactory, path);
 	}
 
-	/**
-	 * 添加非通配订阅
-	 */
-	private void addExactSubscribe(String topicFilter, String clientId, byte mqttQoS, boolean noLocal) {
-		// key 为完整 topicFilter，发布时 topicName 可直接 O(1) 命中
-		Map<String, Byte> subscriptions = CollUtil.computeIfAbsent(this.exactSubscriptions, topicFilter, k -> new ConcurrentHashMap<>(CHILDREN_CAPACITY));
-		putSubscription(subscriptions, clientId, mqttQoS, noLocal);
+	private Subscribers newExactSubscribers() {
+		return clientIdRegistry == null ? new MapSubscribers(CHILDREN_CAPACITY) : new CompactSubscribers(clientIdRegistry);
 	}
 
-	private static void addTrieSubscribe(Node node, String topicFilter, String clientId, byte mqttQoS, boolean noLocal, boolean shareTree) {
-		Node prev = node;
-		// 按 / 层级拆分为 part 数组，如 "/a/b" -> ["/", "a", "b"]
-		String[] topicParts = TopicUtil.getTopicParts(topicFilter);
-		int partLength = topicParts.length - 1;
-		for (int i = 0; i < topicParts.length; i++) {
-			// 逐层创建或查找子节点，+ / # 也作为普通 part 存储
-			prev = shareTree ? prev.addShareChildIfAbsent(topicParts[i]) : prev.addChildIfAbsent(topicParts[i]);
-			boolean isEnd = i == partLength;
-			if (isEnd) {
-				assert prev.subscriptions != null;
-				putSubscription(prev.subscriptions, clientId, mqttQoS, noLocal);
+	private Subscribers newGroupSubscribers(String groupName) {
+		sharedGroups.retainGroup(groupName);
+		return newShareSubscribers();
+	}
+
+	private Subscribers newShareSubscribers() {
+		return clientIdRegistry == null ? new MapSubscribers(SHARE_SUBSCRIPTIONS_CAPACITY) : new CompactSubscribers(clientIdRegistry);
+	}
+
+	private Node newNode(Subscribers subscriptions) {
+		trieNodeCount.increment();
+		return Node.getNode(subscriptions);
+	}
+
+	private Node newShareNode() {
+		trieNodeCount.increment();
+		return Node.getShareNode();
+	}
+
+	private static Node addTrieNode(Node node, String topicFilter, Function<String, Node> nodeFactory, TriePath path) {
+		// 按 / 层级拆分为 part 数组，如 "/a/b" -> ["/", "a", "b"]，逐层创建或查找子节点，+ / # 也作为普通 part 存储
+		String[] parts = TopicUtil.getTopicParts(topicFilter);
+		if (path == null) {
+			Node prev = node;
+			for (String part : parts) {
+				prev = prev.addChildIfAbsent(part, nodeFactory);
+				if (prev == null) {
+					return null;
+				}
+			}
+			return prev;
+		}
+		// 从与上一个 filter 的公共前缀处继续，缓存的节点被回收时 addChildIfAbsent 返回 null，由调用方从根节点重试
+		int depth = path.commonDepth(node, parts);
+		Node prev = depth == 0 ? node : path.nodes[depth - 1];
+		path.reset(node, parts);
+		for (int i = depth; i < parts.length; i++) {
+			prev = prev.addChildIfAbsent(parts[i], nodeFactory);
+			if (prev == null) {
+				path.clear();
+				return null;
 			}
+			path.nodes[i] = prev;
 		}
+		return prev;
 	}
 
-	private static void putSubscription(Map<String, Byte> subscriptions, String clientId, byte mqttQoS, boolean noLocal) {
-		SubscribeData data = SubscribeData.of(mqttQoS, noLocal);
-		Byte existingEncoded = subscriptions.get(clientId);
-		if (existingEncoded == null) {
-			subscriptions.put(clientId, data.encoded);
-		} else {
-			// 同一 client 重复订阅同一 topic 时，取较大 QoS，noLocal 取或
-			SubscribeData existing = SubscribeData.decode(existingEncoded);
-			byte maxQos = MAX_QOS.apply(existing.qos, mqttQoS);
-			boolean mergedNoLocal = existing.noLocal || noLocal;
-			subscriptions.put(clientId, SubscribeData.of(maxQos, mergedNoLocal).encoded);
+	/**
+	 * 批量写入时上一个 filter 的前缀树路径
+	 */
+	private static final class TriePath {
+		private Node root;
+		private String[] parts;
+		private Node[] nodes = new Node[8];
+
+		/**
+		 * 与上一个 filter 在同一棵树上的公共层级数
+		 */
+		private int commonDepth(Node root, String[] parts) {
+			if (this.root != root) {
+				return 0;
+			}
+			int max = Math.min(this.parts.length, parts.length);
+			int depth = 0;
+			while (depth < max && this.parts[depth].equals(parts[depth])) {
+				depth++;
+			}
+			return depth;
+		}
+
+		private void reset(Node root, String[] parts) {
+			this.root = root;
+			this.parts = parts;
+			if (nodes.length < parts.length) {
+				nodes = Arrays.copyOf(nodes, parts.length);
+			}
+		}
+
+		private void clear() {
+			this.root = null;
+			this.parts = null;
 		}
 	}
 
 	/**
-	 * 移除订阅
-	 *
-	 * @param topicFilter topicFilter
-	 * @param clientId    clientId
+	 * 是否为精确订阅（非共享且不含通配符），只能匹配同名 topic
 	 */
-	public void removeSubscribe(String topicFilter, String clientId) {
-		removeSubscribe(new TopicFilter(topicFilter), clientId);
+	private static boolean isExactTopic(TopicFilterType topicFilterType, String topicFilter) {
+		return TopicFilterType.NONE == topicFilterType && !MqttCodecUtil.isTopicFilter(topicFilter);
 	}
 
 	/**
@@ -237,63 +499,47 @@ public class TrieTopicManager {
 	 * @param topicFilter topicFilter
 	 * @param clientId    clientId
 	 */
-	private void removeSubscribe(TopicFilter topicFilter, String clientId) {
-		String topic = topicFilter.getTopic();
-		TopicFilterType topicFilterType = topicFilter.getType();
-		if (TopicFilterType.NONE == topicFilterType) {
-			if (MqttCodecUtil.isTopicFilter(topic)) {
-				removeSubscribe(wildcardRoot, topic, clientId);
-			} else {
-				removeExactSubscribe(topic, clientId);
+	public void removeSubscribe(String topicFilter, String clientId) {
+		clientSubscriptions.computeIfPresent(clientId, (key, client) -> {
+			Subscribers subscriptions = client.remove(topicFilter);
+			if (subscriptions != null && removeSubscription(topicFilter, clientId, client.handle, subscriptions)) {
+				invalidateAllMatchCache();
 			}
-		} else if (TopicFilterType.QUEUE == topicFilterType) {
-			int prefixLen = TopicFilterType.SHARE_QUEUE_PREFIX.length();
-			removeSubscribe(queue, topic.substring(prefixLen), clientId);
-		} else if (TopicFilterType.SHARE == topicFilterType) {
-			int prefixLen = TopicFilterType.SHARE_GROUP_PREFIX.length();
-			String groupName = TopicFilterType.getShareGroupName(topic);
-			Node groupNode = share.computeIfAbsent(groupName, k -> Node.getRoot());
-			prefixLen = prefixLen + groupName.length() + 1;
-			removeSubscribe(groupNode, topic.substring(prefixLen), clientId);
-		}
+			if (client.size == 0) {
+				releaseHandle(client);
+				return null;
+			}
+			return client;
+		});
 	}
 
 	/**
-	 * 移除订阅
+	 * 批量移除同一客户端的订阅，整批在反向索引的一次 compute 中完成，通配、共享订阅整批只让匹配结果缓存失效一次
 	 *
-	 * @param topicFilter topicFilter
-	 * @param clientId    clientId
+	 * @param clientId     clientId
+	 * @param topicFilters topicFilter 列表
 	 */
-	private void removeExactSubscribe(String topicFilter, String clientId) {
-		Map<String, Byte> subscriptions = exactSubscriptions.get(topicFilter);
-		if (subscriptions == null) {
+	public void removeSubscribes(String clientId, List<String> topicFilters) {
+		if (topicFilters.isEmpty()) {
 			return;
 		}
-		subscriptions.remove(clientId);
-		if (subscriptions.isEmpty()) {
-			// remove(key, value) 避免并发下误删新写入的同名 topic
-			exactSubscriptions.remove(topicFilter, subscriptions);
-		}
-	}
-
-	private static void removeSubscribe(Node node, String topicFilter, String clientId) {
-		Node prev = node;
-		String[] topicParts = TopicUtil.getTopicParts(topicFilter);
-		// 沿 part 路径定位到叶子节点
-		for (String part : topicParts) {
-			Node nodePart = prev.findNodeByPart(part);
-			if (nodePart != null) {
-				prev = nodePart;
-			} else {
-				prev = null;
-				break;
+		clientSubscriptions.computeIfPresent(clientId, (key, client) -> {
+			boolean trieChanged = false;
+			for (String topicFilter : topicFilters) {
+				Subscribers subscriptions = client.remove(topicFilter);
+				if (subscriptions != null) {
+					trieChanged |= removeSubscription(topicFilter, clientId, client.handle, subscriptions);
+				}
 			}
-		}
-		if (prev != null) {
-			assert prev.subscriptions != null;
-			prev.subscriptions.remove(clientId);
-			// 注意：此处不回收空节点，避免并发订阅时误删仍在使用的路径
-		}
+			if (trieChanged) {
+				invalidateAllMatchCache();
+			}
+			if (client.size == 0) {
+				releaseHandle(client);
+				return null;
+			}
+			return client;
+		});
 	}
 
 	/**
@@ -302,126 +548,234 @@ public class TrieTopicManager {
 	 * @param clientId clientId
 	 */
 	public void removeSubscribe(String clientId) {
-		// 精确订阅无反向索引，断开连接时扫描 exactMap（冷路径，可接受）
-		exactSubscriptions.entrySet().removeIf(entry -> {
-			entry.getValue().remove(clientId);
-			return entry.getValue().isEmpty();
+		// 通过反向索引直接定位该 client 的订阅，耗时只与该 client 的订阅数有关
+		clientSubscriptions.computeIfPresent(clientId, (key, client) -> {
+			boolean trieChanged = false;
+			for (int i = 0; i < client.size; i++) {
+				trieChanged |= removeSubscription(client.topicFilters[i], clientId, client.handle, client.subscriptions[i]);
+			}
+			if (trieChanged) {
+				invalidateAllMatchCache();
+			}
+			releaseHandle(client);
+			return null;
 		});
-		removeSubscribe(wildcardRoot, clientId);
-		removeSubscribe(queue, clientId);
-		for (Node node : share.values()) {
-			removeSubscribe(node, clientId);
+	}
+
+	private void releaseHandle(ClientFilters client) {
+		if (clientIdRegistry != null) {
+			clientIdRegistry.release(client.handle);
 		}
 	}
 
 	/**
-	 * 根据 clientId 删除客户端的所以订阅
+	 * 从订阅存储中移除 client，并回收变空的精确订阅 Map 和前缀树节点
 	 *
-	 * @param clientId clientId
+	 * @param topicFilter   topicFilter
+	 * @param clientId      clientId
+	 * @param handle        clientId 句柄
+	 * @param subscriptions 订阅存储
+	 * @return 是否为通配、共享订阅，需由调用方让全部匹配结果缓存失效
 	 */
-	private static void removeSubscribe(Node node, String clientId) {
-		assert node.children != null;
-		// 断开连接时遍历整棵子树，清除该 client 在所有节点的订阅
-		for (Node child : node.children.values()) {
-			removeSubscribeRecursively(child, clientId);
+	private boolean removeSubscription(String topicFilter, String clientId, int handle, Subscribers subscriptions) {
+		TopicFilterType topicFilterType = TopicFilterType.getType(topicFilter);
+		if (isExactTopic(topicFilterType, topicFilter)) {
+			exactSubscriptions.computeIfPresent(topicFilter, (key, value) -> {
+				value.remove(clientId, handle);
+				return value.isEmpty() ? null : value;
+			});
+		} else {
+			subscriptions.remove(clientId, handle);
+			if (subscriptions.isEmpty()) {
+				reclaimTrieNodes(topicFilterType, topicFilter, subscriptions);
+			}
 		}
+		return invalidateExactMatchCache(topicFilterType, topicFilter);
 	}
 
 	/**
-	 * 递归删除订阅
+	 * 从叶子向上回收 topicFilter 路径上的空节点
 	 *
-	 * @param child    child
-	 * @param clientId clientId
+	 * @param topicFilterType topicFilter 类型
+	 * @param topicFilter     topicFilter
+	 * @param subscriptions   已变空的订阅存储，$share 时从叶子节点移除该分组
 	 */
-	private static void removeSubscribeRecursively(Node child, String clientId) {
-		if (child.subscriptions != null) {
-			child.subscriptions.remove(clientId);
+	private void reclaimTrieNodes(TopicFilterType topicFilterType, String topicFilter, Subscribers subscriptions) {
+		Node root;
+		String groupName = null;
+		String path;
+		if (TopicFilterType.QUEUE == topicFilterType) {
+			root = queue;
+			path = topicFilter.substring(TopicFilterType.SHARE_QUEUE_PREFIX.length());
+		} else if (TopicFilterType.SHARE == topicFilterType) {
+			groupName = TopicFilterType.getShareGroupName(topicFilter);
+			root = share;
+			path = topicFilter.substring(TopicFilterType.SHARE_GROUP_PREFIX.length() + groupName.length() + 1);
+		} else {
+			root = wildcardRoot;
+			path = topicFilter;
 		}
-		assert child.children != null;
-		for (Node node : child.children.values()) {
-			removeSubscribeRecursively(node, clientId);
+		String[] topicParts = TopicUtil.getTopicParts(path);
+		Node[] nodes = new Node[topicParts.length + 1];
+		nodes[0] = root;
+		for (int i = 0; i < topicParts.length; i++) {
+			Node child = nodes[i].findNodeByPart(topicParts[i]);
+			if (child == null) {
+				return;
+			}
+			nodes[i + 1] = child;
+		}
+		if (groupName != null) {
+			Node leaf = nodes[topicParts.length];
+			// 与订阅在同一节点锁内，确认为空才移除该分组
+			synchronized (leaf) {
+				if (subscriptions.isEmpty() && leaf.groups.remove(groupName, subscriptions)) {
+					sharedGroups.releaseGroup(groupName);
+				}
+			}
+		}
+		for (int i = topicParts.length; i > 0; i--) {
+			if (!tryReclaim(nodes[i - 1].children, topicParts[i - 1], nodes[i])) {
+				return;
+			}
 		}
 	}
 
 	/**
-	 * 获取客户端所以订阅
+	 * 回收空节点：在节点锁内确认为空并标记，并发订阅在该节点锁内看到标记后会从根节点重试
 	 *
-	 * @param clientId clientId
-	 * @return 订阅集合
+	 * @param parent 父节点的 children
+	 * @param part   节点的 key
+	 * @param node   节点
+	 * @return 是否已回收
 	 */
-	public List<Subscribe> getSubscriptions(String clientId) {
-		List<Subscribe> subscribeList = new ArrayList<>();
-		// 精确订阅：遍历 exactMap，key 即 topicFilter，无需前缀树拼接
-		for (Map.Entry<String, Map<String, Byte>> entry : exactSubscriptions.entrySet()) {
-			Byte encoded = entry.getValue().get(clientId);
-			if (encoded != null) {
-				SubscribeData data = SubscribeData.decode(encoded);
-				subscribeList.add(new Subscribe(entry.getKey(), clientId, data.qos, data.noLocal));
+	private boolean tryReclaim(Map<String, Node> parent, String part, Node node) {
+		synchronized (node) {
+			if (node.removed) {
+				return true;
+			}
+			if (!node.isEmpty()) {
+				return false;
 			}
+			node.removed = true;
 		}
-		subscribeList.addAll(getSubscriptions(wildcardRoot, null, clientId));
-		subscribeList.addAll(getSubscriptions(queue, TopicFilterType.SHARE_QUEUE_PREFIX, clientId));
-		for (Map.Entry<String, Node> entry : share.entrySet()) {
-			// 还原 $share/{group}/ 前缀，拼接完整 topicFilter
-			String prefix = TopicFilterType.SHARE_GROUP_PREFIX + entry.getKey() + TopicUtil.TOPIC_LAYER;
-			subscribeList.addAll(getSubscriptions(entry.getValue(), prefix, clientId));
+		if (parent.remove(part, node)) {
+			trieNodeCount.decrement();
+			reclaimedTrieNodeCount.increment();
 		}
-		// 通配与共享路径可能产生重复，去重后返回
-		return subscribeList.stream().distinct().collect(Collectors.toList());
+		return true;
 	}
 
 	/**
-	 * 获取客户端所以订阅
+	 * 整理前缀树：回收所有空节点（如并发订阅导致未能及时回收的分支），不阻塞并发订阅和匹配，
+	 * 可通过 MqttServer#schedule 定时执行
 	 *
-	 * @param clientId clientId
-	 * @return 订阅集合
+	 * @return 本次回收的节点数（含整理期间取消订阅回收的节点）
 	 */
-	private static List<Subscribe> getSubscriptions(Node node, String prefix, String clientId) {
-		List<Subscribe> subscribeList = new ArrayList<>();
+	public long compact() {
+		long reclaimed = reclaimedTrieNodeCount.sum();
+		compactChildren(wildcardRoot);
+		compactChildren(queue);
+		compactChildren(share);
+		return reclaimedTrieNodeCount.sum() - reclaimed;
+	}
+
+	private void compactChildren(Node node) {
 		for (Map.Entry<String, Node> entry : node.children.entrySet()) {
-			String childPart = entry.getKey();
-			// prefix 为 null 表示普通通配树根，首层 part 即为 topic 起始片段
-			String topicPrefix = prefix == null ? childPart : prefix + childPart;
-			getSubscribeRecursively(subscribeList, entry.getValue(), topicPrefix, clientId);
+			Node child = entry.getValue();
+			compactChildren(child);
+			tryReclaim(node.children, entry.getKey(), child);
 		}
-		return subscribeList;
 	}
 
 	/**
-	 * 递归获取订阅
+	 * 前缀树节点数
 	 *
-	 * @param child    child
-	 * @param clientId clientId
+	 * @return 节点数
 	 */
-	private static void getSubscribeRecursively(List<Subscribe> subscribeList, Node child, String childPart, String clientId) {
-		if (child.subscriptions != null) {
-			Byte encoded = child.subscriptions.get(clientId);
-			if (encoded != null) {
-				SubscribeData data = SubscribeData.decode(encoded);
-				// childPart 为递归拼接的 topicFilter，存储时未冗余保存完整字符串
-				subscribeList.add(new Subscribe(childPart, clientId, data.qos, data.noLocal));
-			}
+	public long getTrieNodeCount() {
+		return trieNodeCount.sum();
+	}
+
+	/**
+	 * 已回收的前缀树空节点数
+	 *
+	 * @return 回收数
+	 */
+	public long getReclaimedTrieNodeCount() {
+		return reclaimedTrieNodeCount.sum();
+	}
+
+	/**
+	 * 统计当前的前缀树空节点数（无订阅且无子节点，可回收），需遍历整棵树
+	 *
+	 * @return 空节点数
+	 */
+	public long getEmptyTrieNodeCount() {
+		return countEmptyNodes(wildcardRoot) + countEmptyNodes(queue) + countEmptyNodes(share);
+	}
+
+	private static long countEmptyNodes(Node node) {
+		long count = 0;
+		for (Node child : node.children.values()) {
+			count += countEmptyNodes(child) + (child.isEmpty() ? 1 : 0);
+		}
+		return count;
+	}
+
+	/**
+	 * 订阅变更后让匹配结果缓存失效，需在订阅存储修改之后调用：精确订阅只让该 topic 所在槽位失效，
+	 * 通配、共享订阅由调用方调用 invalidateAllMatchCache，批量变更时整批只调用一次
+	 *
+	 * @param topicFilterType topicFilter 类型
+	 * @param topicFilter     topicFilter
+	 * @return 是否为通配、共享订阅
+	 */
+	private boolean invalidateExactMatchCache(TopicFilterType topicFilterType, String topicFilter) {
+		if (!isExactTopic(topicFilterType, topicFilter)) {
+			return true;
 		}
-		assert child.children != null;
-		for (Map.Entry<String, Node> entry : child.children.entrySet()) {
-			String nodePartStr = entry.getKey();
-			// 处理 leading/trailing / 等边界，避免拼接出错误 topic
-			String topicPrefix = isNotNeedAppendTopicLayer(childPart, nodePartStr) ?
-				childPart + nodePartStr : childPart + MqttCodecUtil.TOPIC_LAYER + nodePartStr;
-			getSubscribeRecursively(subscribeList, entry.getValue(), topicPrefix, clientId);
+		if (matchCache != null) {
+			matchCacheVersions.incrementAndGet(matchCacheIndex(topicFilter));
 		}
+		return false;
 	}
 
 	/**
-	 * 判断是否需要添加层级
+	 * 通配、共享订阅变更后递增全局代数，所有缓存失效
+	 */
+	private void invalidateAllMatchCache() {
+		if (matchCache != null) {
+			matchCacheGeneration.incrementAndGet();
+		}
+	}
+
+	private int matchCacheIndex(String topicName) {
+		int h = topicName.hashCode();
+		return (h ^ (h >>> 16)) & (matchCache.length() - 1);
+	}
+
+	/**
+	 * 获取客户端所以订阅
 	 *
-	 * @param prefix prefix
-	 * @param suffix suffix
-	 * @return 是否需要添加层级
+	 * @param clientId clientId
+	 * @return 订阅集合
 	 */
-	private static boolean isNotNeedAppendTopicLayer(String prefix, String suffix) {
-		// 如 prefix="/" 或 suffix="/" 时，相邻层级本身已含 /，无需再插入分隔符
-		return TopicUtil.TOPIC_LAYER.equals(prefix) || prefix.endsWith("//") || TopicUtil.TOPIC_LAYER.equals(suffix);
+	public List<Subscribe> getSubscriptions(String clientId) {
+		List<Subscribe> subscribeList = new ArrayList<>();
+		// 在 compute 中读取，与该 client 的订阅变更串行
+		clientSubscriptions.computeIfPresent(clientId, (key, client) -> {
+			// 反向索引中为订阅时的完整 topicFilter，无需前缀树拼接
+			for (int i = 0; i < client.size; i++) {
+				int encoded = client.subscriptions[i].get(clientId, client.handle);
+				if (encoded >= 0) {
+					SubscribeData data = SubscribeData.decode((byte) encoded);
+					subscribeList.add(new Subscribe(client.topicFilters[i], clientId, data.qos, data.noLocal));
+				}
+			}
+			return client;
+		});
+		return subscribeList;
 	}
 
 	/**
@@ -432,26 +786,35 @@ public class TrieTopicManager {
 	 * @return 订阅存储列表
 	 */
 	public Byte searchSubscribe(String topicName, String clientId) {
-		String[] topicParts = TopicUtil.getTopicParts(topicName);
-		Map<String, SubscribeData> subscribeMap = new HashMap<>(32);
-		// 发布热路径：先 O(1) 查精确订阅，再递归匹配通配与共享
-		mergeExactSubscriptions(topicName, subscribeMap);
-		searchSubscribeRecursively(wildcardRoot, subscribeMap, topicParts, 0);
-		SubscribeData data = subscribeMap.get(clientId);
-		if (data != null) {
-			return data.qos;
-		}
-		// 依次查找 $queue 与各 $share 组，命中即返回（用于 PUBACK QoS 确认）
-		searchSubscribeRecursively(queue, subscribeMap, topicParts, 0);
-		data = subscribeMap.get(clientId);
-		if (data != null) {
-			return data.qos;
-		}
-		for (Node node : share.values()) {
-			searchSubscribeRecursively(node, subscribeMap, topicParts, 0);
+		MqttTopicView topicView = TOPIC_VIEW.get().reset(topicName);
+		MqttTopicView.LevelKey levelKey = LEVEL_KEY.get();
+		MatchCollector collector = MatchCollector.acquire();
+		try {
+			MatchCollector.Table subscribers = collector.subscribers;
+			// 发布热路径：先 O(1) 查精确订阅，再递归匹配通配与共享
+			mergeExactSubscriptions(topicName, subscribers);
+			searchSubscribeRecursively(wildcardRoot, subscribers, null, topicView, levelKey, 0);
+			int encoded = subscribers.get(clientId);
+			if (encoded >= 0) {
+				return SubscribeData.decode((byte) encoded).qos;
+			}
+			// 依次查找 $queue 与 $share 组，命中即返回（用于 PUBACK QoS 确认）
+			searchSubscribeRecursively(queue, subscribers, null, topicView, levelKey, 0);
+			encoded = subscribers.get(clientId);
+			if (encoded >= 0) {
+				return SubscribeData.decode((byte) encoded).qos;
+			}
+			searchSubscribeRecursively(share, null, collector, topicView, levelKey, 0);
+			for (int i = 0; i < collector.groupCount(); i++) {
+				int groupEncoded = collector.groupAt(i).get(clientId);
+				if (groupEncoded >= 0) {
+					encoded = encoded < 0 ? groupEncoded : MatchCollector.merge((byte) encoded, (byte) groupEncoded);
+				}
+			}
+			return encoded < 0 ? null : SubscribeData.decode((byte) encoded).qos;
+		} finally {
+			collector.release();
 		}
-		data = subscribeMap.get(clientId);
-		return data != null ? data.qos : null;
 	}
 
 	/**
@@ -461,106 +824,184 @@ public class TrieTopicManager {
 	 * @return 订阅存储列表
 	 */
 	public List<Subscribe> searchSubscribe(String topicName) {
-		String[] topicParts = TopicUtil.getTopicParts(topicName);
-		Map<String, SubscribeData> subscribeMap = new HashMap<>(32);
-		mergeExactSubscriptions(topicName, subscribeMap);
-		searchSubscribeRecursively(wildcardRoot, subscribeMap, topicParts, 0);
-		// $queue 共享：组内多 client 随机选一个
-		Map<String, SubscribeData> queueSubscribeMap = new HashMap<>(8);
-		searchSubscribeRecursively(queue, queueSubscribeMap, topicParts, 0);
-		if (!queueSubscribeMap.isEmpty()) {
-			randomStrategy(subscribeMap, queueSubscribeMap);
-		}
-		// 分组订阅：每组独立随机选一个 client
-		for (Node node : share.values()) {
-			Map<String, SubscribeData> shareSubscribeMap = new HashMap<>(8);
-			searchSubscribeRecursively(node, shareSubscribeMap, topicParts, 0);
-			if (!shareSubscribeMap.isEmpty()) {
-				randomStrategy(subscribeMap, shareSubscribeMap);
-			}
+		return searchSubscribe(topicName, (MqttTopicView) null);
+	}
+
+	/**
+	 * 查找订阅信息
+	 *
+	 * @param topicName topicName
+	 * @param topicView topic 层级视图（只读），为 null 时自行切分
+	 * @return 订阅存储列表
+	 */
+	public List<Subscribe> searchSubscribe(String topicName, MqttTopicView topicView) {
+		if (topicView == null) {
+			topicView = TOPIC_VIEW.get().reset(topicName);
+		}
+		if (matchCache != null) {
+			return getMatchResult(topicName, topicView).toSubscribeList(sharedGroups, null);
+		}
+		MatchCollector collector = MatchCollector.acquire();
+		try {
+			collect(topicName, topicView, collector);
+			// 共享订阅：$queue 和命中的每个分组按分组策略选一个 client
+			collector.selectShared(sharedGroups, topicName, null);
+			return collector.toList();
+		} finally {
+			collector.release();
 		}
-		List<Subscribe> subscribeList = new ArrayList<>();
-		subscribeMap.forEach((clientId, data) -> subscribeList.add(new Subscribe(clientId, data.qos, data.noLocal)));
-		subscribeMap.clear();
-		return subscribeList;
+	}
+
+	/**
+	 * 遍历匹配的订阅者，不创建订阅列表
+	 *
+	 * @param topicName topicName
+	 * @param visitor   访问者
+	 * @return 订阅者数量
+	 */
+	public int forEachSubscriber(String topicName, SubscriberVisitor visitor) {
+		return forEachSubscriber(null, topicName, null, visitor);
+	}
+
+	/**
+	 * 遍历匹配的订阅者，不创建订阅列表
+	 *
+	 * @param fromClientId 发布者 clientId，服务端 api 发布时为 null，用于共享订阅按发布者选择
+	 * @param topicName    topicName
+	 * @param topicView    topic 层级视图（只读），为 null 时自行切分
+	 * @param visitor      访问者
+	 * @return 订阅者数量
+	 */
+	public int forEachSubscriber(String fromClientId, String topicName, MqttTopicView topicView, SubscriberVisitor visitor) {
+		if (topicView == null) {
+			topicView = TOPIC_VIEW.get().reset(topicName);
+		}
+		if (matchCache != null) {
+			return getMatchResult(topicName, topicView).forEach(sharedGroups, fromClientId, visitor);
+		}
+		MatchCollector collector = MatchCollector.acquire();
+		try {
+			collect(topicName, topicView, collector);
+			collector.selectShared(sharedGroups, topicName, fromClientId);
+			return collector.visit(visitor);
+		} finally {
+			collector.release();
+		}
+	}
+
+	/**
+	 * 收集匹配的订阅：普通订阅合并去重，共享订阅按 $queue 与分组收集候选
+	 *
+	 * @param topicName topicName
+	 * @param topicView topic 层级视图
+	 * @param collector 收集器
+	 */
+	private void collect(String topicName, MqttTopicView topicView, MatchCollector collector) {
+		MqttTopicView.LevelKey levelKey = LEVEL_KEY.get();
+		mergeExactSubscriptions(topicName, collector.subscribers);
+		searchSubscribeRecursively(wildcardRoot, collector.subscribers, null, topicView, levelKey, 0);
+		searchSubscribeRecursively(queue, collector.queue, null, topicView, levelKey, 0);
+		// 分组订阅：只遍历一次共用前缀树
+		searchSubscribeRecursively(share, null, collector, topicView, levelKey, 0);
+	}
+
+	/**
+	 * 从缓存获取匹配结果，未命中或已失效时重新匹配
+	 *
+	 * @param topicName topicName
+	 * @param topicView topic 层级视图
+	 * @return 匹配结果
+	 */
+	private MatchResult getMatchResult(String topicName, MqttTopicView topicView) {
+		int index = matchCacheIndex(topicName);
+		// 先读版本再匹配，匹配期间若有订阅变更，版本已递增，写入的结果下次即失效
+		long generation = matchCacheGeneration.get();
+		long version = matchCacheVersions.get(index);
+		MatchResult result = matchCache.get(index);
+		if (result != null && result.generation == generation && result.version == version
+			&& result.topicName.equals(topicName)) {
+			matchCacheHitCount.increment();
+			return result;
+		}
+		matchCacheMissCount.increment();
+		MatchCollector collector = MatchCollector.acquire();
+		try {
+			collect(topicName, topicView, collector);
+			// 共享订阅只缓存候选集，每条消息投递时再按分组策略选择
+			result = new MatchResult(topicName, generation, version, collector);
+		} finally {
+			collector.release();
+		}
+		matchCache.set(index, result);
+		return result;
 	}
 
 	/**
 	 * 合并精确订阅到结果集（topicName 与 topicFilter 完全一致时才命中）
 	 *
-	 * @param topicName    发布的 topic，不含通配符
-	 * @param subscribeMap 待合并的结果集
+	 * @param topicName   发布的 topic，不含通配符
+	 * @param subscribers 待合并的结果集
 	 */
-	private void mergeExactSubscriptions(String topicName, Map<String, SubscribeData> subscribeMap) {
-		Map<String, Byte> subscriptions = exactSubscriptions.get(topicName);
+	private void mergeExactSubscriptions(String topicName, MatchCollector.Table subscribers) {
+		Subscribers subscriptions = exactSubscriptions.get(topicName);
 		if (subscriptions == null || subscriptions.isEmpty()) {
 			return;
 		}
-		for (Map.Entry<String, Byte> entry : subscriptions.entrySet()) {
-			SubscribeData data = SubscribeData.decode(entry.getValue());
-			subscribeMap.merge(entry.getKey(), data, TrieTopicManager::mergeSubscribeData);
-		}
+		subscriptions.forEach(subscribers);
 	}
 
 	/**
-	 * 合并同一 client 的多条匹配订阅（如同时命中精确 topic 与通配 filter）
+	 * 合并节点上的订阅：普通前缀树合并到 subscribers，$share 前缀树按分组合并到 collector
 	 */
-	private static SubscribeData mergeSubscribeData(SubscribeData old, SubscribeData val) {
-		byte maxQos = MAX_QOS.apply(old.qos, val.qos);
-		boolean mergedNoLocal = old.noLocal || val.noLocal;
-		return SubscribeData.of(maxQos, mergedNoLocal);
+	private static void mergeNode(Node node, MatchCollector.Table subscribers, MatchCollector collector) {
+		if (node.subscriptions != null) {
+			node.subscriptions.forEach(subscribers);
+		} else if (node.groups != null && collector != null) {
+			for (Map.Entry<String, Subscribers> entry : node.groups.entrySet()) {
+				Subscribers subscriptions = entry.getValue();
+				if (!subscriptions.isEmpty()) {
+					subscriptions.forEach(collector.group(entry.getKey()));
+				}
+			}
+		}
 	}
 
-	private static void searchSubscribeRecursively(Node node, Map<String, SubscribeData> subscribeMap, String[] topicParts, int index) {
-		if (index >= topicParts.length) {
+	private static void searchSubscribeRecursively(Node node, MatchCollector.Table subscribers, MatchCollector collector,
+												   MqttTopicView topicView, MqttTopicView.LevelKey levelKey, int index) {
+		int levels = topicView.levels();
+		if (index >= levels) {
 			return;
 		}
 		// # 匹配当前层级及后续所有层级，无需继续向下递归
 		Node nodeMore = node.findNodeByPart(TopicUtil.TOPIC_WILDCARDS_MORE);
-		if (nodeMore != null && nodeMore.subscriptions != null) {
-			for (Map.Entry<String, Byte> entry : nodeMore.subscriptions.entrySet()) {
-				SubscribeData data = SubscribeData.decode(entry.getValue());
-				subscribeMap.merge(entry.getKey(), data, TrieTopicManager::mergeSubscribeData);
-			}
+		if (nodeMore != null) {
+			mergeNode(nodeMore, subscribers, collector);
 		}
-		int topicPartLen = topicParts.length - 1;
+		int topicPartLen = levels - 1;
 		// + 匹配当前层级任意一个 part
 		Node nodeOne = node.findNodeByPart(TopicUtil.TOPIC_WILDCARDS_ONE);
 		if (nodeOne != null) {
 			if (index == topicPartLen) {
 				// + 在 filter 末尾：匹配 topic 的最后一个 part
-				if (nodeOne.subscriptions != null) {
-					for (Map.Entry<String, Byte> entry : nodeOne.subscriptions.entrySet()) {
-						SubscribeData data = SubscribeData.decode(entry.getValue());
-						subscribeMap.merge(entry.getKey(), data, TrieTopicManager::mergeSubscribeData);
-					}
-				}
+				mergeNode(nodeOne, subscribers, collector);
 			} else {
 				// + 在中间：跳过当前 part，继续匹配下一层
-				searchSubscribeRecursively(nodeOne, subscribeMap, topicParts, index + 1);
+				searchSubscribeRecursively(nodeOne, subscribers, collector, topicView, levelKey, index + 1);
 			}
 		}
-		String topicPart = topicParts[index];
-		Node nodePart = node.findNodeByPart(topicPart);
+		// 层级 key 在递归前使用，可复用
+		Node nodePart = node.findNodeByLevel(levelKey.set(topicView, index));
 		if (nodePart != null) {
 			if (index == topicPartLen) {
 				// 精确 part 匹配到 topic 末尾，收集该节点上的订阅
-				if (nodePart.subscriptions != null) {
-					for (Map.Entry<String, Byte> entry : nodePart.subscriptions.entrySet()) {
-						SubscribeData data = SubscribeData.decode(entry.getValue());
-						subscribeMap.merge(entry.getKey(), data, TrieTopicManager::mergeSubscribeData);
-					}
-				}
+				mergeNode(nodePart, subscribers, collector);
 				// 同时检查末尾 # 子节点，如 filter "a/b/#" 匹配 topic "a/b"
 				Node nodePartMore = nodePart.findNodeByPart(TopicUtil.TOPIC_WILDCARDS_MORE);
-				if (nodePartMore != null && nodePartMore.subscriptions != null) {
-					for (Map.Entry<String, Byte> entry : nodePartMore.subscriptions.entrySet()) {
-						SubscribeData data = SubscribeData.decode(entry.getValue());
-						subscribeMap.merge(entry.getKey(), data, TrieTopicManager::mergeSubscribeData);
-					}
+				if (nodePartMore != null) {
+					mergeNode(nodePartMore, subscribers, collector);
 				}
 			} else {
-				searchSubscribeRecursively(nodePart, subscribeMap, topicParts, index + 1);
+				searchSubscribeRecursively(nodePart, subscribers, collector, topicView, levelKey, index + 1);
 			}
 		}
 	}
@@ -572,7 +1013,53 @@ public class TrieTopicManager {
 		exactSubscriptions.clear();
 		wildcardRoot.children.clear();
 		queue.children.clear();
-		share.clear();
+		share.children.clear();
+		share.groups.clear();
+		sharedGroups.clearGroups();
+		clientSubscriptions.clear();
+		trieNodeCount.reset();
+		if (clientIdRegistry != null) {
+			clientIdRegistry.clear();
+		}
+		matchCacheGeneration.incrementAndGet();
+	}
+
+	/**
+	 * 共享订阅分组策略和统计
+	 *
+	 * @return SharedSubscriptionGroups
+	 */
+	public SharedSubscriptionGroups getSharedGroups() {
+		return sharedGroups;
+	}
+
+	/**
+	 * 匹配结果缓存命中次数
+	 *
+	 * @return 命中次数
+	 */
+	public long getMatchCacheHitCount() {
+		return matchCacheHitCount.sum();
+	}
+
+	/**
+	 * 匹配结果缓存未命中次数
+	 *
+	 * @return 未命中次数
+	 */
+	public long getMatchCacheMissCount() {
+		return matchCacheMissCount.sum();
+	}
+
+	/**
+	 * 匹配结果缓存命中率
+	 *
+	 * @return 命中率，未开启或未查询时为 0
+	 */
+	public double getMatchCacheHitRatio() {
+		long hits = matchCacheHitCount.sum();
+		long total = hits + matchCacheMissCount.sum();
+		return total == 0 ? 0 : (double) hits / total;
 	}
 
 	@Override
@@ -582,23 +1069,261 @@ public class TrieTopicManager {
 			", wildcardRoot=" + wildcardRoot +
 			", share=" + share +
 			", queue=" + queue +
+			", clients=" + clientSubscriptions.size() +
 			'}';
 	}
 
 	/**
-	 * 负载均衡策略：随机方式
-	 *
-	 * @param subscribeMap       订阅的 map
-	 * @param randomSubscribeMap 分组订阅的 map
+	 * topic 匹配结果快照（不可变）：普通订阅已合并，共享订阅保留每组的候选 client
+	 */
+	private static final class MatchResult {
+		private final String topicName;
+		private final long generation;
+		private final long version;
+		private final String[] clientIds;
+		private final byte[] encoded;
+		private final String[] groupNames;
+		private final String[][] groupClientIds;
+		private final byte[][] groupEncoded;
+
+		private MatchResult(String topicName, long generation, long version, MatchCollector collector) {
+			this.topicName = topicName;
+			this.generation = generation;
+			this.version = version;
+			MatchCollector.Table subscribers = collector.subscribers;
+			this.clientIds = new String[subscribers.size()];
+			this.encoded = new byte[subscribers.size()];
+			fill(subscribers, clientIds, encoded);
+			// $queue 与 $share 分组的候选集
+			int queueSize = collector.queue.size() > 0 ? 1 : 0;
+			int groupSize = queueSize + collector.groupCount();
+			this.groupNames = new String[groupSize];
+			this.groupClientIds = new String[groupSize][];
+			this.groupEncoded = new byte[groupSize][];
+			for (int i = 0; i < groupSize; i++) {
+				MatchCollector.Table group = i < queueSize ? collector.queue : collector.groupAt(i - queueSize);
+				groupNames[i] = i < queueSize ? SharedSubscriptionGroups.QUEUE_GROUP : collector.groupNameAt(i - queueSize);
+				groupClientIds[i] = new String[group.size()];
+				groupEncoded[i] = new byte[group.size()];
+				fill(group, groupClientIds[i], groupEncoded[i]);
+			}
+		}
+
+		private static void fill(MatchCollector.Table table, String[] clientIds, byte[] encoded) {
+			for (int i = 0; i < clientIds.length; i++) {
+				clientIds[i] = table.keyAt(i);
+				encoded[i] = table.valueAt(i);
+			}
+		}
+
+		/**
+		 * 生成本条消息的订阅列表，共享订阅每组按分组策略选择一个 client
+		 *
+		 * @param sharedGroups 共享订阅分组
+		 * @param fromClientId 发布者 clientId
+		 * @return 订阅列表
+		 */
+		private List<Subscribe> toSubscribeList(SharedSubscriptionGroups sharedGroups, String fromClientId) {
+			if (groupClientIds.length == 0) {
+				List<Subscribe> subscribeList = new ArrayList<>(clientIds.length);
+				for (int i = 0; i < clientIds.length; i++) {
+					SubscribeData data = SubscribeData.decode(encoded[i]);
+					subscribeList.add(new Subscribe(clientIds[i], data.qos, data.noLocal));
+				}
+				return subscribeList;
+			}
+			MatchCollector collector = select(sharedGroups, fromClientId);
+			try {
+				return collector.toList();
+			} finally {
+				collector.release();
+			}
+		}
+
+		/**
+		 * 遍历本条消息的订阅者，共享订阅每组按分组策略选择一个 client
+		 *
+		 * @param sharedGroups 共享订阅分组
+		 * @param fromClientId 发布者 clientId
+		 * @param visitor      访问者
+		 * @return 订阅者数量
+		 */
+		private int forEach(SharedSubscriptionGroups sharedGroups, String fromClientId, SubscriberVisitor visitor) {
+			if (groupClientIds.length == 0) {
+				int size = clientIds.length;
+				if (size > 0) {
+					visitor.begin(size);
+					for (int i = 0; i < size; i++) {
+						SubscribeData data = SubscribeData.decode(encoded[i]);
+						visitor.accept(clientIds[i], data.qos, data.noLocal);
+					}
+				}
+				return size;
+			}
+			MatchCollector collector = select(sharedGroups, fromClientId);
+			try {
+				return collector.visit(visitor);
+			} finally {
+				collector.release();
+			}
+		}
+
+		/**
+		 * 被选中的共享订阅 client 可能同时有普通订阅，在收集器中合并取较大 QoS
+		 */
+		private MatchCollector select(SharedSubscriptionGroups sharedGroups, String fromClientId) {
+			MatchCollector collector = MatchCollector.acquire();
+			MatchCollector.Table subscribers = collector.subscribers;
+			for (int i = 0; i < clientIds.length; i++) {
+				subscribers.accept(clientIds[i], encoded[i]);
+			}
+			for (int i = 0; i < groupClientIds.length; i++) {
+				collector.selectShared(sharedGroups, groupNames[i], topicName, fromClientId, groupClientIds[i], groupEncoded[i]);
+			}
+			return collector;
+		}
+	}
+
+	/**
+	 * 客户端反向索引项：该 client 的 topicFilter 及订阅所在的 subscriptions，只在 clientSubscriptions 的 compute 中访问
+	 * 使用并列数组代替 Map，每个订阅只占两个数组槽位；订阅数超过 CLIENT_FILTERS_INDEX_THRESHOLD 时
+	 * 再建立开放寻址的下标索引，避免订阅很多的 client 批量订阅、取消订阅时逐个线性查找
 	 */
-	private static void randomStrategy(Map<String, SubscribeData> subscribeMap, Map<String, SubscribeData> randomSubscribeMap) {
-		String[] keys = randomSubscribeMap.keySet().toArray(new String[0]);
-		int keyLength = keys.length;
-		// 共享订阅语义：同一组内每条消息只投递给一个 client
-		String key = keyLength > 1 ? keys[ThreadLocalRandom.current().nextInt(keyLength)] : keys[0];
-		SubscribeData data = randomSubscribeMap.get(key);
-		// 若该 client 同时有普通订阅，merge 取较大 QoS
-		subscribeMap.merge(key, data, TrieTopicManager::mergeSubscribeData);
+	private static final class ClientFilters {
+		private final int handle;
+		private String[] topicFilters = new String[CLIENT_FILTERS_CAPACITY];
+		private Subscribers[] subscriptions = new Subscribers[CLIENT_FILTERS_CAPACITY];
+		private int size;
+		/**
+		 * topicFilter hash 槽位 -> 下标 + 1，0 为空槽位，线性探测，容量为数组长度的 2 倍；订阅数较少时为 null
+		 */
+		private int[] index;
+
+		private ClientFilters(int handle) {
+			this.handle = handle;
+		}
+
+		private void put(String topicFilter, Subscribers subscribers) {
+			int slot = -1;
+			if (index == null) {
+				int i = scan(topicFilter);
+				if (i >= 0) {
+					subscriptions[i] = subscribers;
+					return;
+				}
+			} else {
+				slot = slot(topicFilter);
+				int i = index[slot] - 1;
+				if (i >= 0) {
+					subscriptions[i] = subscribers;
+					return;
+				}
+			}
+			if (size == topicFilters.length) {
+				int capacity = size << 1;
+				topicFilters = Arrays.copyOf(topicFilters, capacity);
+				subscriptions = Arrays.copyOf(subscriptions, capacity);
+				// 扩容后按新容量重建索引
+				slot = -1;
+				index = null;
+			}
+			topicFilters[size] = topicFilter;
+			subscriptions[size] = subscribers;
+			size++;
+			if (slot >= 0) {
+				index[slot] = size;
+			} else if (size > CLIENT_FILTERS_INDEX_THRESHOLD) {
+				rebuildIndex();
+			}
+		}
+
+		private Subscribers remove(String topicFilter) {
+			int i;
+			if (index == null) {
+				i = scan(topicFilter);
+				if (i < 0) {
+					return null;
+				}
+			} else {
+				int slot = slot(topicFilter);
+				i = index[slot] - 1;
+				if (i < 0) {
+					return null;
+				}
+				deleteSlot(slot);
+			}
+			Subscribers removed = subscriptions[i];
+			// 末尾元素移到删除位置，顺序无关
+			int last = --size;
+			if (i != last && index != null) {
+				index[slot(topicFilters[last])] = i + 1;
+			}
+			topicFilters[i] = topicFilters[last];
+			subscriptions[i] = subscriptions[last];
+			topicFilters[last] = null;
+			subscriptions[last] = null;
+			if (index != null && size <= CLIENT_FILTERS_INDEX_THRESHOLD >> 1) {
+				index = null;
+			}
+			return removed;
+		}
+
+		private int scan(String topicFilter) {
+			int hash = topicFilter.hashCode();
+			for (int i = 0; i < size; i++) {
+				String filter = topicFilters[i];
+				if (filter.hashCode() == hash && filter.equals(topicFilter)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * 查找 topicFilter 所在的槽位，不存在时返回探测到的空槽位
+		 */
+		private int slot(String topicFilter) {
+			int hash = topicFilter.hashCode();
+			int mask = index.length - 1;
+			for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+				int i = index[slot] - 1;
+				if (i < 0) {
+					return slot;
+				}
+				String filter = topicFilters[i];
+				if (filter.hashCode() == hash && filter.equals(topicFilter)) {
+					return slot;
+				}
+			}
+		}
+
+		/**
+		 * 删除槽位，后续探测链上的元素前移填补空位，不使用删除标记
+		 */
+		private void deleteSlot(int slot) {
+			int mask = index.length - 1;
+			int hole = slot;
+			for (int j = (slot + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+				int home = spread(topicFilters[index[j] - 1].hashCode()) & mask;
+				// 空位在该元素的探测路径上时前移
+				if (((j - home) & mask) >= ((j - hole) & mask)) {
+					index[hole] = index[j];
+					hole = j;
+				}
+			}
+			index[hole] = 0;
+		}
+
+		private void rebuildIndex() {
+			index = new int[topicFilters.length << 1];
+			for (int i = 0; i < size; i++) {
+				index[slot(topicFilters[i])] = i + 1;
+			}
+		}
+
+		private static int spread(int hash) {
+			return hash ^ (hash >>> 16);
+		}
 	}
 
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * 保留消息堆外 payload 的 slab 池
+ * <ul>
+ *   <li>按 {@link #SLAB_SIZE} 整块申请堆外内存（slab），再按 2 的幂大小分级切分成块，每个级别一个空闲链表</li>
+ *   <li>条目覆盖、删除、过期、淘汰、清空时块立即归还空闲链表，下次写入复用，不依赖 GC 回收 DirectByteBuffer</li>
+ *   <li>slab 数量有上限，达到上限且没有空闲块时返回 null，由调用方改存堆内，堆外内存总量不会超过 {@link #getCapacity()}</li>
+ *   <li>slab 申请后不再释放，生命周期与存储相同</li>
+ * </ul>
+ * 申请和归还加锁，块内读取由调用方保证。
+ *
+ * @author L.cm
+ */
+final class DirectSlabPool {
+	/**
+	 * slab 大小，超过该大小的 payload 不使用堆外存储
+	 */
+	static final int SLAB_SIZE = 1024 * 1024;
+	/**
+	 * 最小块大小
+	 */
+	private static final int MIN_BLOCK_SIZE = 64;
+	private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BLOCK_SIZE);
+	private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(SLAB_SIZE) - MIN_SHIFT + 1;
+	/**
+	 * slab 数量上限，小于等于 0 为不限制
+	 */
+	private final int maxSlabs;
+	/**
+	 * 各级别的空闲块
+	 */
+	private final ArrayDeque<ByteBuffer>[] freeBlocks;
+	/**
+	 * 各级别正在切分的 slab 及切分位置
+	 */
+	private final ByteBuffer[] currentSlabs = new ByteBuffer[CLASS_COUNT];
+	private final int[] slabOffsets = new int[CLASS_COUNT];
+	private int slabCount;
+	private long usedBytes;
+
+	/**
+	 * 创建 slab 池
+	 *
+	 * @param maxBytes 堆外内存上限（字节），0 为不限制；每个级别至少可以有一个 slab，实际上限按 slab 向上取整
+	 */
+	@SuppressWarnings("unchecked")
+	DirectSlabPool(long maxBytes) {
+		if (maxBytes > 0) {
+			long slabs = (maxBytes + SLAB_SIZE - 1) / SLAB_SIZE + CLASS_COUNT;
+			this.maxSlabs = (int) Math.min(Integer.MAX_VALUE, slabs);
+		} else {
+			this.maxSlabs = 0;
+		}
+		this.freeBlocks = new ArrayDeque[CLASS_COUNT];
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			this.freeBlocks[i] = new ArrayDeque<>();
+		}
+	}
+
+	/**
+	 * payload 占用的块大小
+	 *
+	 * @param length payload 长度
+	 * @return 块大小，超过 {@link #SLAB_SIZE} 时为 -1
+	 */
+	static int blockSize(int length) {
+		if (length > SLAB_SIZE) {
+			return -1;
+		}
+		return MIN_BLOCK_SIZE << sizeClass(length);
+	}
+
+	private static int sizeClass(int length) {
+		if (length <= MIN_BLOCK_SIZE) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(length - 1) - MIN_SHIFT;
+	}
+
+	/**
+	 * 申请块，position 为 0，limit 为 length
+	 *
+	 * @param length payload 长度
+	 * @return 块，超过 slab 大小或 slab 数量达到上限时为 null
+	 */
+	synchronized ByteBuffer allocate(int length) {
+		if (length <= 0 || length > SLAB_SIZE) {
+			return null;
+		}
+		int sizeClass = sizeClass(length);
+		int blockSize = MIN_BLOCK_SIZE << sizeClass;
+		ByteBuffer block = freeBlocks[sizeClass].poll();
+		if (block == null) {
+			block = carve(sizeClass, blockSize);
+			if (block == null) {
+				return null;
+			}
+		}
+		usedBytes += blockSize;
+		block.clear();
+		block.limit(length);
+		return block;
+	}
+
+	private ByteBuffer carve(int sizeClass, int blockSize) {
+		ByteBuffer slab = currentSlabs[sizeClass];
+		if (slab == null || slabOffsets[sizeClass] + blockSize > SLAB_SIZE) {
+			if (maxSlabs > 0 && slabCount >= maxSlabs) {
+				return null;
+			}
+			slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+			slabCount++;
+			currentSlabs[sizeClass] = slab;
+			slabOffsets[sizeClass] = 0;
+		}
+		int offset = slabOffsets[sizeClass];
+		ByteBuffer view = slab.duplicate();
+		view.position(offset);
+		view.limit(offset + blockSize);
+		slabOffsets[sizeClass] = offset + blockSize;
+		return view.slice();
+	}
+
+	/**
+	 * 归还块，归还后块可能立即被复用
+	 *
+	 * @param block allocate 申请的块
+	 */
+	synchronized void free(ByteBuffer block) {
+		int blockSize = block.capacity();
+		usedBytes -= blockSize;
+		freeBlocks[sizeClass(blockSize)].add(block);
+	}
+
+	/**
+	 * 已申请的堆外内存（字节），即 slab 总大小
+	 *
+	 * @return 已申请的堆外内存
+	 */
+	synchronized long getAllocatedBytes() {
+		return (long) slabCount * SLAB_SIZE;
+	}
+
+	/**
+	 * 正在使用的块总大小（字节）
+	 *
+	 * @return 正在使用的块总大小
+	 */
+	synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * 堆外内存上限（字节），0 为不限制
+	 *
+	 * @return 堆外内存上限
+	 */
+	long getCapacity() {
+		return (long) maxSlabs * SLAB_SIZE;
+	}
+}
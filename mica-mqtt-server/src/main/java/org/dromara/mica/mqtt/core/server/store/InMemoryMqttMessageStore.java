@@ -17,16 +17,13 @@
 package org.dromara.mica.mqtt.core.server.store;
 
 
-import net.dreamlu.mica.net.utils.cache.TimedCache;
 import org.dromara.mica.mqtt.core.server.model.Message;
-import org.dromara.mica.mqtt.core.util.TopicUtil;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 
 /**
  * message store
@@ -39,18 +36,24 @@ public class InMemoryMqttMessageStore implements IMqttMessageStore {
 	 */
 	private final ConcurrentMap<String, Message> willStore = new ConcurrentHashMap<>();
 	/**
-	 * 保持消息 topic: Message
-	 * 带有有效期的保持消息 topic: Message
+	 * 保留消息，普通和带有效期的保留消息在同一个存储中
 	 */
-	private final ConcurrentMap<String, Message> retainStore = new ConcurrentHashMap<>();
+	private final RetainMessageStore retainStore;
+
+	public InMemoryMqttMessageStore() {
+		this(0L, RetainEvictionPolicy.LRU, false);
+	}
+
 	/**
-	 * 带有有效期的保持消息 topic: Message
+	 * 创建内存消息存储
+	 *
+	 * @param retainMaxBytes       保留消息内存预算（字节），0 为不限制
+	 * @param retainEvictionPolicy 保留消息超出预算时的淘汰策略
+	 * @param retainOffHeap        保留消息 payload 是否存放在堆外
 	 */
-	private final TimedCache<String, Message> timedRetainStore = new TimedCache<>(
-		TimeUnit.HOURS.toMillis(2),   // 默认 2 小时缓存
-		TimeUnit.SECONDS.toMillis(1), // 定时 1s 清理一次缓存
-		new ConcurrentHashMap<>()
-	);
+	public InMemoryMqttMessageStore(long retainMaxBytes, RetainEvictionPolicy retainEvictionPolicy, boolean retainOffHeap) {
+		this.retainStore = new RetainMessageStore(retainMaxBytes, retainEvictionPolicy, retainOffHeap);
+	}
 
 	@Override
 	public boolean addWillMessage(String clientId, Message message) {
@@ -71,43 +74,35 @@ public class InMemoryMqttMessageStore implements IMqttMessageStore {
 
 	@Override
 	public boolean addRetainMessage(String topic, int timeout, Message message) {
-		if (timeout <= 0) {
-			retainStore.put(topic, message);
-		} else {
-			timedRetainStore.put(topic, message, TimeUnit.SECONDS.toMillis(timeout));
-		}
-		return true;
+		return retainStore.put(topic, timeout, message);
 	}
 
 	@Override
 	public boolean clearRetainMessage(String topic) {
 		retainStore.remove(topic);
-		timedRetainStore.remove(topic);
 		return true;
 	}
 
 	@Override
 	public List<Message> getRetainMessage(String topicFilter) {
 		List<Message> retainMessageList = new ArrayList<>();
-		for (String topic : retainStore.keySet()) {
-			if (TopicUtil.match(topicFilter, topic)) {
-				retainMessageList.add(retainStore.get(topic));
-			}
-		}
-		for (String topic : timedRetainStore.keySet()) {
-			if (TopicUtil.match(topicFilter, topic)) {
-				retainMessageList.add(timedRetainStore.get(topic));
-			}
-		}
+		retainStore.match(topicFilter, retainMessageList);
 		return retainMessageList;
 	}
 
+	/**
+	 * 保留消息存储，用于获取内存占用、淘汰数等指标
+	 *
+	 * @return RetainMessageStore
+	 */
+	public RetainMessageStore getRetainStore() {
+		return retainStore;
+	}
+
 	@Override
 	public void clean() throws IOException {
 		this.willStore.clear();
 		this.retainStore.clear();
-		this.timedRetainStore.clear();
-		this.timedRetainStore.close();
 	}
 
 }
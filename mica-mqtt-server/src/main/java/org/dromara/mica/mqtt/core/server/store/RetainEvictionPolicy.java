@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.store;
+
+/**
+ * 保留消息超出内存预算时的淘汰策略，均为 CLOCK 近似实现，读取时只更新条目上的访问标记，不加锁
+ *
+ * @author L.cm
+ */
+public enum RetainEvictionPolicy {
+
+	/**
+	 * 最近最少使用：CLOCK（二次机会），读取时置访问位，淘汰指针经过时清除，未再被读取的条目被淘汰
+	 */
+	LRU(1),
+	/**
+	 * 最不经常使用：GCLOCK，读取时访问计数加一（上限 15），淘汰指针经过时减一，计数为 0 的条目被淘汰
+	 */
+	LFU(15);
+
+	/**
+	 * 访问计数上限
+	 */
+	final int maxReference;
+
+	RetainEvictionPolicy(int maxReference) {
+		this.maxReference = maxReference;
+	}
+
+}
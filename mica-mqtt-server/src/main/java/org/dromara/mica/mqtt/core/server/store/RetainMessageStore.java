@@ -0,0 +1,581 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.store;
+
+import org.dromara.mica.mqtt.codec.properties.MqttProperties;
+import org.dromara.mica.mqtt.core.server.enums.MessageType;
+import org.dromara.mica.mqtt.core.server.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 保留消息存储，支持内存预算
+ * <ul>
+ *   <li>紧凑存储：只保留下发需要的字段，查找时再组装 {@link Message}</li>
+ *   <li>内存预算：按 payload、topic、堆外缓冲区和固定开销估算占用，写入前先估算，超出 maxBytes 时按 {@link RetainEvictionPolicy} 淘汰，单条超出预算的消息直接拒绝，不分配堆外内存</li>
+ *   <li>堆外存储：payload 可存放在堆外，减少海量保留消息对 GC 的压力，读取时拷贝。堆外内存由 {@link DirectSlabPool} 按 slab 申请、分块复用，
+ *   覆盖、删除、过期、淘汰、清空时块立即归还，不依赖 GC；slab 申请后不释放，数量随 maxBytes 封顶，达到上限时 payload 改存堆内</li>
+ *   <li>有效期：带有效期的保留消息与普通保留消息在同一个存储和 topic 索引中，过期时间记录在按秒分桶的时间轮中，
+ *   写入或定时调用 {@link #expire()} 时只访问到期的桶，读取时跳过已过期的消息</li>
+ * </ul>
+ * 写入在锁内串行，读取不加锁。
+ *
+ * @author L.cm
+ */
+public final class RetainMessageStore {
+	private static final Logger logger = LoggerFactory.getLogger(RetainMessageStore.class);
+	/**
+	 * 每条保留消息的固定开销估算：条目、Map 节点、topic 索引叶子节点等
+	 */
+	private static final int ENTRY_OVERHEAD = 128;
+	/**
+	 * MQTT5 properties 的开销估算
+	 */
+	private static final int PROPERTIES_OVERHEAD = 64;
+	/**
+	 * 每个堆外 payload 的额外开销估算：块对应的 ByteBuffer 视图对象
+	 */
+	private static final int DIRECT_BLOCK_OVERHEAD = 64;
+	/**
+	 * 淘汰队列中已删除的条目超过该数量且超过一半时整理队列
+	 */
+	private static final int COMPACT_THRESHOLD = 1024;
+	private final long maxBytes;
+	private final RetainEvictionPolicy evictionPolicy;
+	private final boolean offHeap;
+	/**
+	 * 堆外 payload 的 slab 池，堆内存储时为 null
+	 */
+	private final DirectSlabPool slabPool;
+	private final ConcurrentMap<String, RetainEntry> entries = new ConcurrentHashMap<>();
+	private final RetainTopicIndex topicIndex = new RetainTopicIndex();
+	/**
+	 * CLOCK 淘汰队列，不限制内存时为 null
+	 */
+	private final ArrayDeque<RetainEntry> clock;
+	/**
+	 * 带有效期保留消息的过期时间轮
+	 */
+	private final ExpiryWheel expiryWheel = new ExpiryWheel();
+	private volatile long bytes;
+	private int staleCount;
+	private final LongAdder evictionCount = new LongAdder();
+	private final LongAdder expiredCount = new LongAdder();
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/**
+	 * 创建保留消息存储
+	 *
+	 * @param maxBytes       内存预算（字节），0 为不限制
+	 * @param evictionPolicy 超出预算时的淘汰策略
+	 * @param offHeap        payload 是否存放在堆外，堆外内存按 slab 申请后不释放，上限约为 maxBytes 加上每个块级别一个 slab
+	 */
+	public RetainMessageStore(long maxBytes, RetainEvictionPolicy evictionPolicy, boolean offHeap) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("retain maxBytes must be greater than or equal to zero.");
+		}
+		if (evictionPolicy == null) {
+			throw new IllegalArgumentException("retain evictionPolicy is null.");
+		}
+		this.maxBytes = maxBytes;
+		this.evictionPolicy = evictionPolicy;
+		this.offHeap = offHeap;
+		this.slabPool = offHeap ? new DirectSlabPool(maxBytes) : null;
+		this.clock = maxBytes > 0 ? new ArrayDeque<>() : null;
+	}
+
+	/**
+	 * 存储保留消息，同一 topic 覆盖
+	 *
+	 * @param topic   topic
+	 * @param timeout 有效期（秒），小于等于 0 为永久
+	 * @param message message
+	 * @return 是否存储，单条超出内存预算时为 false
+	 */
+	public boolean put(String topic, int timeout, Message message) {
+		long now = System.currentTimeMillis();
+		long expireAt = timeout > 0 ? now + TimeUnit.SECONDS.toMillis(timeout) : 0L;
+		// 先估算占用，超出预算时不再分配堆外内存
+		long size = sizeOf(topic, message, offHeap);
+		if (maxBytes > 0 && size > maxBytes) {
+			rejectedCount.increment();
+			logger.warn("Retain message topic:{} size:{} exceeds retain maxBytes:{}, rejected.", topic, size, maxBytes);
+			return false;
+		}
+		RetainEntry entry = new RetainEntry(topic, message, expireAt, allocate(message), size);
+		synchronized (this) {
+			expire(now);
+			RetainEntry old = entries.put(topic, entry);
+			if (old == null) {
+				topicIndex.add(topic);
+			} else {
+				release(old);
+			}
+			bytes += entry.size;
+			if (expireAt > 0) {
+				expiryWheel.add(entry, now);
+			}
+			if (clock != null) {
+				clock.add(entry);
+				evict();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 删除保留消息
+	 *
+	 * @param topic topic
+	 */
+	public void remove(String topic) {
+		synchronized (this) {
+			RetainEntry entry = entries.remove(topic);
+			if (entry != null) {
+				topicIndex.remove(topic);
+				release(entry);
+			}
+		}
+	}
+
+	/**
+	 * 查找 topicFilter 匹配的保留消息
+	 *
+	 * @param topicFilter topicFilter
+	 * @param messages    匹配的保留消息
+	 */
+	public void match(String topicFilter, List<Message> messages) {
+		long now = System.currentTimeMillis();
+		topicIndex.match(topicFilter, topic -> {
+			RetainEntry entry = entries.get(topic);
+			if (entry != null && !entry.isExpired(now)) {
+				Message message = entry.toMessage();
+				// 并发删除，堆外块已归还
+				if (message != null) {
+					entry.touch(evictionPolicy.maxReference);
+					messages.add(message);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 清理已过期的保留消息，写入时自动执行，也可通过 MqttServer#schedule 定时执行，开销与到期的消息数成正比
+	 */
+	public synchronized void expire() {
+		expire(System.currentTimeMillis());
+	}
+
+	private void expire(long now) {
+		expiryWheel.advance(now, entry -> {
+			if (entries.remove(entry.topic, entry)) {
+				topicIndex.remove(entry.topic);
+				release(entry);
+				expiredCount.increment();
+			}
+		});
+	}
+
+	/**
+	 * 估算保留消息的内存占用
+	 *
+	 * @param topic   topic
+	 * @param message message
+	 * @param offHeap payload 是否存放在堆外
+	 * @return 内存占用（字节）
+	 */
+	private static long sizeOf(String topic, Message message, boolean offHeap) {
+		byte[] payload = message.getPayload();
+		int payloadLength = payload == null ? 0 : payload.length;
+		long size = ENTRY_OVERHEAD + 2L * topic.length();
+		int blockSize = offHeap && payloadLength > 0 ? DirectSlabPool.blockSize(payloadLength) : -1;
+		if (blockSize > 0) {
+			size += blockSize + DIRECT_BLOCK_OVERHEAD;
+		} else {
+			size += payloadLength;
+		}
+		if (message.getProperties() != null) {
+			size += PROPERTIES_OVERHEAD;
+		}
+		return size;
+	}
+
+	/**
+	 * CLOCK 淘汰，直到内存占用回到预算内
+	 */
+	private void evict() {
+		while (bytes > maxBytes) {
+			RetainEntry entry = clock.poll();
+			if (entry == null) {
+				return;
+			}
+			if (entry.removed) {
+				staleCount--;
+				continue;
+			}
+			if (entry.reference > 0) {
+				// 二次机会：降低访问计数后放回队尾
+				entry.reference--;
+				clock.add(entry);
+				continue;
+			}
+			entries.remove(entry.topic, entry);
+			topicIndex.remove(entry.topic);
+			expiryWheel.remove(entry);
+			bytes -= entry.size;
+			entry.removed = true;
+			freePayload(entry);
+			evictionCount.increment();
+		}
+		// 覆盖、删除后留在队列中的条目过多时整理
+		if (staleCount > COMPACT_THRESHOLD && staleCount > clock.size() / 2) {
+			clock.removeIf(entry -> entry.removed);
+			staleCount = 0;
+		}
+	}
+
+	private void release(RetainEntry entry) {
+		entry.removed = true;
+		freePayload(entry);
+		expiryWheel.remove(entry);
+		bytes -= entry.size;
+		if (clock != null) {
+			staleCount++;
+		}
+	}
+
+	/**
+	 * 申请堆外块并写入 payload
+	 *
+	 * @param message message
+	 * @return 堆外块，堆内存储、payload 为空或 slab 池已满时为 null
+	 */
+	private ByteBuffer allocate(Message message) {
+		byte[] payload = message.getPayload();
+		if (slabPool == null || payload == null || payload.length == 0) {
+			return null;
+		}
+		ByteBuffer block = slabPool.allocate(payload.length);
+		if (block != null) {
+			block.put(payload);
+			block.flip();
+		}
+		return block;
+	}
+
+	/**
+	 * 归还堆外块，在条目的锁内标记删除，保证正在读取的线程不会读到复用后的块
+	 *
+	 * @param entry 已删除的条目
+	 */
+	private void freePayload(RetainEntry entry) {
+		ByteBuffer block = entry.directPayload;
+		if (block != null) {
+			synchronized (entry) {
+				entry.removed = true;
+			}
+			slabPool.free(block);
+		}
+	}
+
+	/**
+	 * 清空
+	 */
+	public synchronized void clear() {
+		for (RetainEntry entry : entries.values()) {
+			entry.removed = true;
+			freePayload(entry);
+		}
+		entries.clear();
+		topicIndex.clear();
+		expiryWheel.clear();
+		if (clock != null) {
+			clock.clear();
+		}
+		staleCount = 0;
+		bytes = 0;
+	}
+
+	/**
+	 * 内存预算（字节），0 为不限制
+	 *
+	 * @return 内存预算
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * 估算的内存占用（字节），含堆外 payload
+	 *
+	 * @return 内存占用
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * 已申请的堆外内存（字节），堆内存储时为 0
+	 *
+	 * @return 已申请的堆外内存
+	 */
+	public long getOffHeapBytes() {
+		return slabPool == null ? 0L : slabPool.getAllocatedBytes();
+	}
+
+	/**
+	 * 保留消息数（含已过期尚未清理的）
+	 *
+	 * @return 保留消息数
+	 */
+	public int getCount() {
+		return entries.size();
+	}
+
+	/**
+	 * 因超出内存预算被淘汰的保留消息数
+	 *
+	 * @return 淘汰数
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	/**
+	 * 过期清理的保留消息数
+	 *
+	 * @return 过期数
+	 */
+	public long getExpiredCount() {
+		return expiredCount.sum();
+	}
+
+	/**
+	 * 等待过期的带有效期保留消息数
+	 *
+	 * @return 带有效期保留消息数
+	 */
+	public int getTimedCount() {
+		return expiryWheel.size;
+	}
+
+	/**
+	 * 单条超出内存预算被拒绝的保留消息数
+	 *
+	 * @return 拒绝数
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * 紧凑存储的保留消息
+	 */
+	private static final class RetainEntry {
+		private final String topic;
+		private final byte qos;
+		private final boolean retain;
+		private final boolean dup;
+		private final String fromClientId;
+		private final String fromUsername;
+		private final String node;
+		private final long timestamp;
+		private final MqttProperties properties;
+		/**
+		 * 堆内 payload，堆外存储时为 null
+		 */
+		private final byte[] payload;
+		/**
+		 * 堆外 payload，来自 slab 池，删除后归还复用；堆内存储时为 null
+		 */
+		private final ByteBuffer directPayload;
+		private final long expireAt;
+		private final long size;
+		/**
+		 * 访问计数，读取时无锁更新，并发丢失更新不影响正确性
+		 */
+		private volatile int reference;
+		/**
+		 * 是否已删除，在存储的锁内写入；堆外条目同时持有条目的锁，读取堆外 payload 时在条目的锁内检查
+		 */
+		private boolean removed;
+		/**
+		 * 时间轮中的到期刻度和桶内链表，不在时间轮中时 wheelBucket 为 -1
+		 */
+		private long expireTick;
+		private int wheelBucket = -1;
+		private RetainEntry wheelPrev;
+		private RetainEntry wheelNext;
+
+		private RetainEntry(String topic, Message message, long expireAt, ByteBuffer directPayload, long size) {
+			this.topic = topic;
+			this.qos = (byte) message.getQos();
+			this.retain = message.isRetain();
+			this.dup = message.isDup();
+			this.fromClientId = message.getFromClientId();
+			this.fromUsername = message.getFromUsername();
+			this.node = message.getNode();
+			this.timestamp = message.getTimestamp();
+			this.properties = message.getProperties();
+			this.payload = directPayload == null ? message.getPayload() : null;
+			this.directPayload = directPayload;
+			this.expireAt = expireAt;
+			this.size = size;
+		}
+
+		private boolean isExpired(long now) {
+			return expireAt > 0 && expireAt <= now;
+		}
+
+		private void touch(int maxReference) {
+			int current = reference;
+			if (current < maxReference) {
+				reference = current + 1;
+			}
+		}
+
+		/**
+		 * 组装消息
+		 *
+		 * @return 消息，堆外 payload 已归还时为 null
+		 */
+		private Message toMessage() {
+			byte[] messagePayload = payload;
+			if (directPayload != null) {
+				synchronized (this) {
+					if (removed) {
+						return null;
+					}
+					messagePayload = new byte[directPayload.remaining()];
+					directPayload.duplicate().get(messagePayload);
+				}
+			}
+			Message message = new Message();
+			message.setTopic(topic);
+			message.setQos(qos);
+			message.setRetain(retain);
+			message.setDup(dup);
+			message.setFromClientId(fromClientId);
+			message.setFromUsername(fromUsername);
+			message.setNode(node);
+			message.setTimestamp(timestamp);
+			message.setMessageType(MessageType.DOWN_STREAM);
+			message.setProperties(properties);
+			message.setPayload(messagePayload);
+			return message;
+		}
+	}
+
+	/**
+	 * 哈希时间轮：按秒分桶，桶内为侵入式双向链表，添加、删除 O(1)；
+	 * 推进时只访问经过的桶，桶内未到期的（过期时间超过一圈）条目留在原桶，总开销与到期条目数成正比。
+	 * 所有操作在 RetainMessageStore 的锁内执行。
+	 */
+	private static final class ExpiryWheel {
+		private static final long TICK_MILLIS = 1000L;
+		private static final int WHEEL_SIZE = 512;
+		private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+		private final RetainEntry[] buckets = new RetainEntry[WHEEL_SIZE];
+		/**
+		 * 已处理到的刻度，-1 为未开始
+		 */
+		private long currentTick = -1;
+		private int size;
+
+		private void add(RetainEntry entry, long now) {
+			if (currentTick < 0) {
+				currentTick = now / TICK_MILLIS;
+			}
+			// 向上取整，刻度到达时 expireAt 一定已过
+			long tick = Math.max((entry.expireAt + TICK_MILLIS - 1) / TICK_MILLIS, currentTick + 1);
+			int bucket = (int) (tick & WHEEL_MASK);
+			RetainEntry head = buckets[bucket];
+			entry.expireTick = tick;
+			entry.wheelBucket = bucket;
+			entry.wheelPrev = null;
+			entry.wheelNext = head;
+			if (head != null) {
+				head.wheelPrev = entry;
+			}
+			buckets[bucket] = entry;
+			size++;
+		}
+
+		private void remove(RetainEntry entry) {
+			int bucket = entry.wheelBucket;
+			if (bucket < 0) {
+				return;
+			}
+			RetainEntry prev = entry.wheelPrev;
+			RetainEntry next = entry.wheelNext;
+			if (prev == null) {
+				buckets[bucket] = next;
+			} else {
+				prev.wheelNext = next;
+			}
+			if (next != null) {
+				next.wheelPrev = prev;
+			}
+			entry.wheelBucket = -1;
+			entry.wheelPrev = null;
+			entry.wheelNext = null;
+			size--;
+		}
+
+		/**
+		 * 推进到 now，到期的条目移出时间轮后回调
+		 */
+		private void advance(long now, Consumer<RetainEntry> expired) {
+			long nowTick = now / TICK_MILLIS;
+			if (currentTick < 0 || nowTick <= currentTick || size == 0) {
+				currentTick = Math.max(currentTick, nowTick);
+				return;
+			}
+			// 超过一圈未推进时每个桶只需访问一次
+			long ticks = Math.min(nowTick - currentTick, WHEEL_SIZE);
+			for (long i = 1; i <= ticks; i++) {
+				int bucket = (int) ((currentTick + i) & WHEEL_MASK);
+				RetainEntry entry = buckets[bucket];
+				while (entry != null) {
+					RetainEntry next = entry.wheelNext;
+					if (entry.expireTick <= nowTick) {
+						remove(entry);
+						expired.accept(entry);
+					}
+					entry = next;
+				}
+			}
+			currentTick = nowTick;
+		}
+
+		private void clear() {
+			Arrays.fill(buckets, null);
+			size = 0;
+		}
+	}
+
+}
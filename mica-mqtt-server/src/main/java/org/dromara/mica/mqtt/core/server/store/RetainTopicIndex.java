@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.store;
+
+import org.dromara.mica.mqtt.codec.MqttCodecUtil;
+import org.dromara.mica.mqtt.core.util.TopicUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 保留消息 topic 索引，按 / 层级组织为前缀树
+ * <p>
+ * 订阅时按 topicFilter 层级在前缀树中查找：普通层级直接定位子节点，+ 遍历当前层所有子节点，# 收集整棵子树，
+ * 只访问可能匹配的分支，耗时与匹配的 topic 数相关，而不是与保留消息总数相关。层级按 {@link TopicUtil#getTopicParts(String)} 切分，
+ * 与订阅前缀树一致，+ 可以匹配空层级。
+ * <p>
+ * 并发：节点的子节点在节点锁内创建，回收空节点时在节点锁内标记，写入时看到标记后从根节点重试，与 TrieTopicManager 相同。
+ *
+ * @author L.cm
+ */
+public final class RetainTopicIndex {
+	private final Node root = new Node();
+
+	/**
+	 * 添加 topic
+	 *
+	 * @param topic topic
+	 */
+	public void add(String topic) {
+		String[] parts = TopicUtil.getTopicParts(topic);
+		for (;;) {
+			Node node = root;
+			for (String part : parts) {
+				node = node.addChildIfAbsent(part);
+				if (node == null) {
+					break;
+				}
+			}
+			if (node != null) {
+				synchronized (node) {
+					if (!node.removed) {
+						node.topic = topic;
+						return;
+					}
+				}
+			}
+			// 路径上的节点刚被回收，重新从根节点创建
+		}
+	}
+
+	/**
+	 * 移除 topic，并回收路径上的空节点
+	 *
+	 * @param topic topic
+	 */
+	public void remove(String topic) {
+		String[] parts = TopicUtil.getTopicParts(topic);
+		Node[] nodes = new Node[parts.length + 1];
+		nodes[0] = root;
+		for (int i = 0; i < parts.length; i++) {
+			Node child = nodes[i].getChild(parts[i]);
+			if (child == null) {
+				return;
+			}
+			nodes[i + 1] = child;
+		}
+		Node leaf = nodes[parts.length];
+		synchronized (leaf) {
+			if (!topic.equals(leaf.topic)) {
+				return;
+			}
+			leaf.topic = null;
+		}
+		for (int i = parts.length; i > 0; i--) {
+			if (!nodes[i - 1].tryReclaim(parts[i - 1], nodes[i])) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 查找 topicFilter 匹配的 topic
+	 *
+	 * @param topicFilter topicFilter
+	 * @param consumer    匹配的 topic
+	 */
+	public void match(String topicFilter, Consumer<String> consumer) {
+		if (!MqttCodecUtil.isTopicFilter(topicFilter)) {
+			// 精确 topic 只能匹配同名 topic
+			Node node = root;
+			for (String part : TopicUtil.getTopicParts(topicFilter)) {
+				node = node.getChild(part);
+				if (node == null) {
+					return;
+				}
+			}
+			String topic = node.topic;
+			if (topic != null) {
+				consumer.accept(topic);
+			}
+			return;
+		}
+		match(root, TopicUtil.getTopicParts(topicFilter), 0, consumer);
+	}
+
+	private static void match(Node node, String[] filterParts, int index, Consumer<String> consumer) {
+		if (index == filterParts.length) {
+			String topic = node.topic;
+			if (topic != null) {
+				consumer.accept(topic);
+			}
+			return;
+		}
+		String part = filterParts[index];
+		if (TopicUtil.TOPIC_WILDCARDS_MORE.equals(part)) {
+			// # 同时匹配父级，如 a/# 匹配 a；与订阅前缀树一致，+/# 不匹配父级
+			if (index == 0 || !TopicUtil.TOPIC_WILDCARDS_ONE.equals(filterParts[index - 1])) {
+				String topic = node.topic;
+				if (topic != null) {
+					consumer.accept(topic);
+				}
+			}
+			collectChildren(node, consumer);
+			return;
+		}
+		Map<String, Node> children = node.children;
+		if (children == null) {
+			return;
+		}
+		if (TopicUtil.TOPIC_WILDCARDS_ONE.equals(part)) {
+			for (Node child : children.values()) {
+				match(child, filterParts, index + 1, consumer);
+			}
+		} else {
+			Node child = children.get(part);
+			if (child != null) {
+				match(child, filterParts, index + 1, consumer);
+			}
+		}
+	}
+
+	private static void collectChildren(Node node, Consumer<String> consumer) {
+		Map<String, Node> children = node.children;
+		if (children == null) {
+			return;
+		}
+		for (Node child : children.values()) {
+			String topic = child.topic;
+			if (topic != null) {
+				consumer.accept(topic);
+			}
+			collectChildren(child, consumer);
+		}
+	}
+
+	/**
+	 * 清空索引
+	 */
+	public void clear() {
+		root.clearChildren();
+	}
+
+	private static final class Node {
+		/**
+		 * 子节点，叶子节点不创建，节省海量 topic 时的内存
+		 */
+		private volatile Map<String, Node> children;
+		/**
+		 * 该节点对应的保留消息 topic，没有保留消息时为 null
+		 */
+		private volatile String topic;
+		/**
+		 * 已被回收
+		 */
+		private boolean removed;
+
+		private synchronized Node addChildIfAbsent(String part) {
+			if (removed) {
+				return null;
+			}
+			Map<String, Node> childMap = children;
+			if (childMap == null) {
+				childMap = new ConcurrentHashMap<>(4);
+				children = childMap;
+			}
+			Node child = childMap.get(part);
+			if (child == null) {
+				child = new Node();
+				childMap.put(part, child);
+			}
+			return child;
+		}
+
+		private Node getChild(String part) {
+			Map<String, Node> childMap = children;
+			return childMap == null ? null : childMap.get(part);
+		}
+
+		/**
+		 * 回收空的子节点：在子节点锁内确认为空并标记
+		 *
+		 * @return 是否已回收
+		 */
+		private boolean tryReclaim(String part, Node child) {
+			synchronized (child) {
+				if (child.removed) {
+					return true;
+				}
+				Map<String, Node> childMap = child.children;
+				if (child.topic != null || (childMap != null && !childMap.isEmpty())) {
+					return false;
+				}
+				child.removed = true;
+			}
+			children.remove(part, child);
+			return true;
+		}
+
+		private synchronized void clearChildren() {
+			children = null;
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.support;
+
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
+
+import java.util.List;
+
+/**
+ * 合并发送的 ack 报文，多个报文编码到同一个 buffer 中一次写出，固定头取第一个报文的固定头
+ *
+ * @author L.cm
+ */
+public final class MqttAckBatchMessage extends MqttMessage {
+	private final List<MqttMessage> messages;
+
+	public MqttAckBatchMessage(List<MqttMessage> messages) {
+		super(messages.get(0).fixedHeader());
+		this.messages = messages;
+	}
+
+	/**
+	 * 合并的报文，按发送顺序
+	 *
+	 * @return 报文列表
+	 */
+	public List<MqttMessage> getMessages() {
+		return messages;
+	}
+
+	@Override
+	public String toString() {
+		return "MqttAckBatchMessage[size=" + messages.size() + ", messages=" + messages + ']';
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.support;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import net.dreamlu.mica.net.core.Tio;
+import net.dreamlu.mica.net.utils.timer.TimerTask;
+import net.dreamlu.mica.net.utils.timer.TimerTaskService;
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接级 ack 合并发送（PUBACK、PUBREC、PUBCOMP、PINGRESP）
+ * <p>
+ * 客户端流水线发送大量 QoS1/QoS2 消息时，同一次读取解码出的多个报文产生的 ack 先暂存，合并成一次写出：
+ * <ul>
+ *   <li>本次读取的数据解码完（最后一个报文处理完成，或剩余半包）时刷出</li>
+ *   <li>暂存数量达到 maxBatchSize 时立即刷出</li>
+ *   <li>兜底：首个 ack 暂存后 lingerMillis 由定时任务刷出（精度受 taskService 时间轮刻度影响）</li>
+ * </ul>
+ * 所有 ack 在同一个有序列表中，保证按收到报文的顺序回复。
+ *
+ * @author L.cm
+ */
+public class MqttAckCoalescer {
+	private static final Logger logger = LoggerFactory.getLogger(MqttAckCoalescer.class);
+	private static final String ACK_BATCH_KEY = "MQTT_ACK_BATCH_KEY";
+	private final TimerTaskService taskService;
+	private final int maxBatchSize;
+	private final long lingerMillis;
+	private final LongAdder flushCount = new LongAdder();
+	private final LongAdder frameCount = new LongAdder();
+	private final LongAccumulator maxFramesPerFlush = new LongAccumulator(Math::max, 0);
+
+	public MqttAckCoalescer(TimerTaskService taskService, int maxBatchSize, long lingerMillis) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("ack coalesce maxBatchSize must be greater than zero.");
+		}
+		if (lingerMillis < 1) {
+			throw new IllegalArgumentException("ack coalesce lingerMillis must be greater than zero.");
+		}
+		this.taskService = taskService;
+		this.maxBatchSize = maxBatchSize;
+		this.lingerMillis = lingerMillis;
+	}
+
+	/**
+	 * 暂存 ack，等待合并发送
+	 *
+	 * @param context ChannelContext
+	 * @param message ack 报文
+	 * @return 是否成功，未达到 maxBatchSize 时暂存即返回 true，不代表最终写出成功，写出结果在刷出时记录日志
+	 */
+	public boolean send(ChannelContext context, MqttMessage message) {
+		AckBatch batch = context.computeIfAbsent(ACK_BATCH_KEY, key -> new AckBatch());
+		boolean schedule = false;
+		synchronized (batch) {
+			batch.messages.add(message);
+			if (batch.messages.size() >= maxBatchSize) {
+				return write(context, batch);
+			}
+			if (!batch.scheduled) {
+				batch.scheduled = true;
+				schedule = true;
+			}
+		}
+		if (schedule) {
+			taskService.addTask(systemTimer -> new TimerTask(lingerMillis) {
+				@Override
+				public void run() {
+					try {
+						flush(context);
+					} catch (Throwable e) {
+						logger.error("Mqtt ack coalesce flush error", e);
+					}
+				}
+			});
+		}
+		return true;
+	}
+
+	/**
+	 * 标记本次读取数据解码出的最后一个报文，该报文处理完成后刷出
+	 *
+	 * @param context ChannelContext
+	 * @param message 最后一个报文
+	 */
+	public void markEndOfRead(ChannelContext context, MqttMessage message) {
+		AckBatch batch = context.computeIfAbsent(ACK_BATCH_KEY, key -> new AckBatch());
+		batch.endOfRead = message;
+	}
+
+	/**
+	 * 报文处理完成，如果是本次读取的最后一个报文则刷出
+	 *
+	 * @param context ChannelContext
+	 * @param message 处理完成的报文
+	 */
+	public void afterHandled(ChannelContext context, MqttMessage message) {
+		AckBatch batch = context.get(ACK_BATCH_KEY);
+		if (batch != null && batch.endOfRead == message) {
+			batch.endOfRead = null;
+			flush(context);
+		}
+	}
+
+	/**
+	 * 刷出暂存的 ack
+	 *
+	 * @param context ChannelContext
+	 */
+	public void flush(ChannelContext context) {
+		AckBatch batch = context.get(ACK_BATCH_KEY);
+		if (batch == null) {
+			return;
+		}
+		synchronized (batch) {
+			if (!batch.messages.isEmpty()) {
+				write(context, batch);
+			}
+		}
+	}
+
+	/**
+	 * 在锁内发送，保证多个线程刷出时的顺序
+	 */
+	private boolean write(ChannelContext context, AckBatch batch) {
+		List<MqttMessage> messages = batch.messages;
+		int size = messages.size();
+		batch.messages = new ArrayList<>(Math.min(size, maxBatchSize));
+		batch.scheduled = false;
+		flushCount.increment();
+		frameCount.add(size);
+		maxFramesPerFlush.accumulate(size);
+		if (context.isClosed()) {
+			return false;
+		}
+		boolean result = doSend(context, size == 1 ? messages.get(0) : new MqttAckBatchMessage(messages));
+		logger.debug("Mqtt ack coalesce flush clientId:{} size:{} result:{}", context.getBsId(), size, result);
+		return result;
+	}
+
+	/**
+	 * 写出 ack 报文
+	 *
+	 * @param context ChannelContext
+	 * @param message 单个 ack 报文或合并的 MqttAckBatchMessage
+	 * @return 是否成功
+	 */
+	protected boolean doSend(ChannelContext context, MqttMessage message) {
+		return Tio.send(context, message);
+	}
+
+	/**
+	 * 刷出次数
+	 *
+	 * @return 刷出次数
+	 */
+	public long getFlushCount() {
+		return flushCount.sum();
+	}
+
+	/**
+	 * 刷出的 ack 报文总数
+	 *
+	 * @return 报文总数
+	 */
+	public long getFrameCount() {
+		return frameCount.sum();
+	}
+
+	/**
+	 * 平均每次刷出的 ack 报文数
+	 *
+	 * @return 平均报文数
+	 */
+	public double getAverageFramesPerFlush() {
+		long flushes = flushCount.sum();
+		return flushes == 0 ? 0 : (double) frameCount.sum() / flushes;
+	}
+
+	/**
+	 * 单次刷出的最大 ack 报文数
+	 *
+	 * @return 最大报文数
+	 */
+	public long getMaxFramesPerFlush() {
+		return maxFramesPerFlush.get();
+	}
+
+	private static final class AckBatch {
+		private List<MqttMessage> messages = new ArrayList<>();
+		private volatile MqttMessage endOfRead;
+		private boolean scheduled;
+	}
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 大扇出消息并行转发
+ * <p>
+ * 订阅者数量达到 threshold 的消息，按 clientId 的 hash 分到 parallelism 条串行通道（每条一个线程）并行发送：
+ * <ul>
+ *   <li>同一订阅者总是在同一通道发送，通道内按提交顺序执行，保证单个订阅者收到消息的顺序</li>
+ *   <li>未达到阈值的消息在当前线程发送；订阅者所在通道还有未完成的任务时，排到该通道之后发送，避免超车</li>
+ *   <li>每条通道的队列最多 queueCapacity 个任务，慢订阅者导致通道积压时，新任务在当前线程发送（反压发布方），
+ *   此时该通道订阅者的消息顺序不再保证，次数见 {@link #getOverflowCount()}</li>
+ * </ul>
+ *
+ * @author L.cm
+ */
+public class MqttFanOutExecutor {
+	private static final Logger logger = LoggerFactory.getLogger(MqttFanOutExecutor.class);
+	/**
+	 * 默认每条通道的队列容量
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+	private final int threshold;
+	private final Lane[] lanes;
+	private final LongAdder fanOutCount = new LongAdder();
+	private final LongAdder fanOutSubscriberCount = new LongAdder();
+	private final LongAdder deferredCount = new LongAdder();
+	private final LongAdder overflowCount = new LongAdder();
+
+	public MqttFanOutExecutor(int threshold, int parallelism) {
+		this(threshold, parallelism, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	public MqttFanOutExecutor(int threshold, int parallelism, int queueCapacity) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("fanOut threshold must be greater than zero.");
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("fanOut parallelism must be greater than zero.");
+		}
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("fanOut queueCapacity must be greater than zero.");
+		}
+		this.threshold = threshold;
+		this.lanes = new Lane[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			lanes[i] = new Lane("mqtt-fan-out-" + i, queueCapacity);
+		}
+	}
+
+	/**
+	 * 是否需要并行转发
+	 *
+	 * @param subscriberCount 订阅者数量
+	 * @return 是否并行转发
+	 */
+	public boolean isFanOut(int subscriberCount) {
+		return subscriberCount >= threshold;
+	}
+
+	/**
+	 * 订阅者所在的通道
+	 *
+	 * @param clientId clientId
+	 * @return 通道下标
+	 */
+	public int laneOf(String clientId) {
+		int h = clientId.hashCode();
+		return Math.floorMod(h ^ (h >>> 16), lanes.length);
+	}
+
+	/**
+	 * 通道数
+	 *
+	 * @return 通道数
+	 */
+	public int getParallelism() {
+		return lanes.length;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * 通道是否还有未完成的任务
+	 *
+	 * @param lane 通道下标
+	 * @return 是否有未完成的任务
+	 */
+	public boolean isBusy(int lane) {
+		return lanes[lane].pending.get() > 0;
+	}
+
+	/**
+	 * 记录一次并行转发
+	 *
+	 * @param subscriberCount 订阅者数量
+	 */
+	public void onFanOut(int subscriberCount) {
+		fanOutCount.increment();
+		fanOutSubscriberCount.add(subscriberCount);
+	}
+
+	/**
+	 * 提交到通道执行，通道内按提交顺序串行执行，通道队列已满时在当前线程执行
+	 *
+	 * @param lane     通道下标
+	 * @param task     任务
+	 * @param deferred 是否为排到繁忙通道之后的普通转发
+	 */
+	public void execute(int lane, Runnable task, boolean deferred) {
+		if (deferred) {
+			deferredCount.increment();
+		}
+		Lane target = lanes[lane];
+		target.pending.incrementAndGet();
+		Runnable laneTask = () -> {
+			try {
+				task.run();
+			} catch (Throwable e) {
+				logger.error("Mqtt fan-out task error", e);
+			} finally {
+				target.pending.decrementAndGet();
+			}
+		};
+		try {
+			target.executor.execute(laneTask);
+		} catch (RejectedExecutionException e) {
+			if (target.executor.isShutdown()) {
+				target.pending.decrementAndGet();
+				logger.error("Mqtt fan-out lane:{} rejected task, executor may be shutdown.", lane);
+				return;
+			}
+			// 通道积压，在当前线程发送，不再无限排队
+			overflowCount.increment();
+			logger.debug("Mqtt fan-out lane:{} queue is full, run task in current thread.", lane);
+			laneTask.run();
+		}
+	}
+
+	/**
+	 * 并行转发的消息数
+	 *
+	 * @return 消息数
+	 */
+	public long getFanOutCount() {
+		return fanOutCount.sum();
+	}
+
+	/**
+	 * 并行转发的订阅者总数
+	 *
+	 * @return 订阅者总数
+	 */
+	public long getFanOutSubscriberCount() {
+		return fanOutSubscriberCount.sum();
+	}
+
+	/**
+	 * 因通道繁忙排队发送的普通转发数
+	 *
+	 * @return 排队数
+	 */
+	public long getDeferredCount() {
+		return deferredCount.sum();
+	}
+
+	/**
+	 * 因通道队列已满在当前线程发送的任务数
+	 *
+	 * @return 任务数
+	 */
+	public long getOverflowCount() {
+		return overflowCount.sum();
+	}
+
+	/**
+	 * 所有通道未完成的任务数
+	 *
+	 * @return 任务数
+	 */
+	public int getPendingTaskCount() {
+		int pending = 0;
+		for (Lane lane : lanes) {
+			pending += lane.pending.get();
+		}
+		return pending;
+	}
+
+	/**
+	 * 停止，等待已提交的任务完成
+	 *
+	 * @param timeoutSec 超时（秒）
+	 * @return 是否在超时前完成
+	 */
+	public boolean shutdown(long timeoutSec) {
+		for (Lane lane : lanes) {
+			lane.executor.shutdown();
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSec);
+		boolean result = true;
+		for (Lane lane : lanes) {
+			try {
+				long remaining = deadline - System.nanoTime();
+				if (!lane.executor.awaitTermination(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+					lane.executor.shutdownNow();
+					result = false;
+				}
+			} catch (InterruptedException e) {
+				lane.executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return result;
+	}
+
+	private static final class Lane {
+		private final ThreadPoolExecutor executor;
+		private final AtomicInteger pending = new AtomicInteger();
+
+		private Lane(String threadName, int queueCapacity) {
+			this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+				Thread thread = new Thread(r, threadName);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.support;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import net.dreamlu.mica.net.core.Tio;
+import net.dreamlu.mica.net.utils.timer.TimerTask;
+import net.dreamlu.mica.net.utils.timer.TimerTaskService;
+import org.dromara.mica.mqtt.codec.MqttQoS;
+import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
+import org.dromara.mica.mqtt.core.common.MqttPendingPublish;
+import org.dromara.mica.mqtt.core.server.model.Message;
+import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订阅时的保留消息分批下发
+ * <p>
+ * 通配符订阅可能匹配海量保留消息，一次全部写出会塞满连接的发送队列，QoS1/QoS2 还会同时创建大量重发定时器。
+ * 保留消息先放入连接级队列，按批发送：
+ * <ul>
+ *   <li>每批最多 batchSize 条，发完一批后重新提交到业务线程池，避免长时间占用线程</li>
+ *   <li>连接发送队列达到 maxSendQueueSize 时暂停，intervalMillis 后重试（精度受 taskService 时间轮刻度影响）</li>
+ *   <li>QoS1/QoS2 在途数不超过客户端 Receive Maximum 和 maxInflight，收到 PUBACK、PUBCOMP 后继续发送，
+ *   重发定时器只在发送时创建，数量同样受在途数限制</li>
+ *   <li>连接断开时取消，丢弃未发送的保留消息</li>
+ * </ul>
+ * 每批在连接级锁内选出并登记在途，锁外写出；在途按本次下发创建的 {@link MqttPendingPublish} 记录，
+ * 普通消息复用同一 packetId 时不会误释放保留消息的在途数。
+ *
+ * @author L.cm
+ */
+public class MqttRetainDeliverer {
+	private static final Logger logger = LoggerFactory.getLogger(MqttRetainDeliverer.class);
+	private static final String RETAIN_DELIVERY_KEY = "MQTT_RETAIN_DELIVERY_KEY";
+	private static final String RECEIVE_MAXIMUM_KEY = "MQTT_RECEIVE_MAXIMUM_KEY";
+	private final IMqttSessionManager sessionManager;
+	private final TimerTaskService taskService;
+	private final Executor executor;
+	private final int batchSize;
+	private final int maxInflight;
+	private final int maxSendQueueSize;
+	private final long intervalMillis;
+	private final LongAdder deliveredCount = new LongAdder();
+	private final LongAdder pausedCount = new LongAdder();
+	private final LongAdder cancelledCount = new LongAdder();
+
+	public MqttRetainDeliverer(IMqttSessionManager sessionManager, TimerTaskService taskService, Executor executor,
+							   int batchSize, int maxInflight, int maxSendQueueSize, long intervalMillis) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("retain deliver batchSize must be greater than zero.");
+		}
+		if (maxInflight < 1) {
+			throw new IllegalArgumentException("retain deliver maxInflight must be greater than zero.");
+		}
+		if (maxSendQueueSize < 1) {
+			throw new IllegalArgumentException("retain deliver maxSendQueueSize must be greater than zero.");
+		}
+		if (intervalMillis < 1) {
+			throw new IllegalArgumentException("retain deliver intervalMillis must be greater than zero.");
+		}
+		this.sessionManager = sessionManager;
+		this.taskService = taskService;
+		this.executor = executor;
+		this.batchSize = batchSize;
+		this.maxInflight = maxInflight;
+		this.maxSendQueueSize = maxSendQueueSize;
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * 记录客户端 CONNECT 中的 Receive Maximum（mqtt 5.0）
+	 *
+	 * @param context        ChannelContext
+	 * @param receiveMaximum Receive Maximum
+	 */
+	public static void setReceiveMaximum(ChannelContext context, int receiveMaximum) {
+		context.set(RECEIVE_MAXIMUM_KEY, receiveMaximum);
+	}
+
+	/**
+	 * 下发订阅匹配到的保留消息，按订阅顺序排队
+	 *
+	 * @param context  ChannelContext
+	 * @param messages 保留消息
+	 */
+	public void deliver(ChannelContext context, List<Message> messages) {
+		if (messages == null || messages.isEmpty() || context.isClosed()) {
+			return;
+		}
+		RetainDelivery delivery = context.computeIfAbsent(RETAIN_DELIVERY_KEY, key -> new RetainDelivery(inflightLimit(context)));
+		long sequence;
+		synchronized (delivery) {
+			if (delivery.cancelled) {
+				return;
+			}
+			delivery.add(messages);
+			if (delivery.running) {
+				return;
+			}
+			delivery.running = true;
+			sequence = ++delivery.sequence;
+		}
+		pump(context, delivery, sequence);
+	}
+
+	/**
+	 * 收到 PUBACK、PUBCOMP，释放保留消息的在途数
+	 *
+	 * @param context        ChannelContext
+	 * @param pendingPublish 已完成的在途消息，不是保留消息下发创建的忽略
+	 */
+	public void onAck(ChannelContext context, MqttPendingPublish pendingPublish) {
+		RetainDelivery delivery = context.get(RETAIN_DELIVERY_KEY);
+		if (delivery == null) {
+			return;
+		}
+		long sequence;
+		synchronized (delivery) {
+			if (!delivery.inflight.remove(pendingPublish) || !delivery.waitingAck) {
+				return;
+			}
+			delivery.waitingAck = false;
+			sequence = ++delivery.sequence;
+		}
+		executor.execute(() -> pump(context, delivery, sequence));
+	}
+
+	/**
+	 * 连接断开，取消未完成的下发
+	 *
+	 * @param context ChannelContext
+	 */
+	public void cancel(ChannelContext context) {
+		RetainDelivery delivery = context.get(RETAIN_DELIVERY_KEY);
+		if (delivery == null) {
+			return;
+		}
+		synchronized (delivery) {
+			delivery.cancelled = true;
+			delivery.sequence++;
+			int remaining = delivery.clear();
+			if (remaining > 0) {
+				cancelledCount.add(remaining);
+				logger.info("Retain deliver cancelled clientId:{} remaining:{}", context.getBsId(), remaining);
+			}
+		}
+	}
+
+	private int inflightLimit(ChannelContext context) {
+		Integer receiveMaximum = context.get(RECEIVE_MAXIMUM_KEY);
+		if (receiveMaximum == null || receiveMaximum < 1) {
+			return maxInflight;
+		}
+		return Math.min(receiveMaximum, maxInflight);
+	}
+
+	/**
+	 * 发送一批，sequence 不一致说明已有新的发送任务或已取消
+	 */
+	private void pump(ChannelContext context, RetainDelivery delivery, long sequence) {
+		String clientId = context.getBsId();
+		RetainSend[] sends;
+		int count = 0;
+		boolean resubmit;
+		try {
+			synchronized (delivery) {
+				if (delivery.sequence != sequence) {
+					return;
+				}
+				delivery.waitingAck = false;
+				if (delivery.cancelled || context.isClosed()) {
+					delivery.running = false;
+					return;
+				}
+				if (delivery.sending) {
+					// 上一批还在锁外写出，写完后再继续，保证顺序
+					delivery.wakeup = true;
+					return;
+				}
+				if (getSendQueueSize(context) >= maxSendQueueSize) {
+					pause(context, delivery, false);
+					return;
+				}
+				sends = new RetainSend[batchSize];
+				resubmit = true;
+				while (count < batchSize) {
+					Message message = delivery.peek();
+					if (message == null) {
+						delivery.running = false;
+						resubmit = false;
+						break;
+					}
+					if (message.getQos() > 0 && !delivery.hasInflightCapacity(sessionManager, clientId)) {
+						pause(context, delivery, true);
+						resubmit = false;
+						break;
+					}
+					delivery.poll();
+					sends[count++] = prepare(clientId, delivery, message);
+				}
+				delivery.sending = count > 0;
+			}
+		} catch (Throwable e) {
+			logger.error("Mqtt retain deliver error clientId:{}", clientId, e);
+			synchronized (delivery) {
+				delivery.running = false;
+			}
+			return;
+		}
+		if (count == 0) {
+			return;
+		}
+		try {
+			for (int i = 0; i < count; i++) {
+				send(context, clientId, sends[i]);
+			}
+		} catch (Throwable e) {
+			logger.error("Mqtt retain deliver error clientId:{}", clientId, e);
+			synchronized (delivery) {
+				delivery.sending = false;
+				delivery.wakeup = false;
+				delivery.running = false;
+			}
+			return;
+		}
+		long next;
+		synchronized (delivery) {
+			delivery.sending = false;
+			if (delivery.wakeup) {
+				delivery.wakeup = false;
+				resubmit = true;
+			}
+			if (!resubmit || delivery.cancelled) {
+				return;
+			}
+			// 一批发完，重新提交，让出业务线程
+			next = ++delivery.sequence;
+		}
+		executor.execute(() -> pump(context, delivery, next));
+	}
+
+	/**
+	 * 暂停，intervalMillis 后重试；等待 ack 时 ack 也会唤醒，定时重试兜底（如在途消息被 session 清理）
+	 */
+	private void pause(ChannelContext context, RetainDelivery delivery, boolean waitingAck) {
+		pausedCount.increment();
+		delivery.waitingAck = waitingAck;
+		long next = ++delivery.sequence;
+		taskService.addTask(systemTimer -> new TimerTask(intervalMillis) {
+			@Override
+			public void run() {
+				try {
+					executor.execute(() -> pump(context, delivery, next));
+				} catch (Throwable e) {
+					logger.error("Mqtt retain deliver schedule error clientId:{}", context.getBsId(), e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 在锁内创建报文，QoS1/QoS2 登记在途
+	 */
+	private RetainSend prepare(String clientId, RetainDelivery delivery, Message retainMessage) {
+		MqttQoS mqttQoS = MqttQoS.valueOf(retainMessage.getQos());
+		boolean isHighLevelQoS = MqttQoS.QOS1 == mqttQoS || MqttQoS.QOS2 == mqttQoS;
+		int messageId = isHighLevelQoS ? sessionManager.getPacketId(clientId) : -1;
+		MqttPublishMessage publishMessage = MqttPublishMessage.builder()
+			.topicName(retainMessage.getTopic())
+			.payload(retainMessage.getPayload())
+			.qos(mqttQoS)
+			.retained(true)
+			.messageId(messageId)
+			.properties(retainMessage.getProperties())
+			.build();
+		MqttPendingPublish pendingPublish = null;
+		if (isHighLevelQoS) {
+			pendingPublish = new MqttPendingPublish(publishMessage, mqttQoS);
+			sessionManager.addPendingPublish(clientId, messageId, pendingPublish);
+			delivery.inflight.add(pendingPublish);
+		}
+		return new RetainSend(publishMessage, pendingPublish);
+	}
+
+	private void send(ChannelContext context, String clientId, RetainSend retainSend) {
+		MqttPublishMessage publishMessage = retainSend.publishMessage;
+		if (retainSend.pendingPublish != null) {
+			retainSend.pendingPublish.startPublishRetransmissionTimer(taskService, context);
+		}
+		boolean result = doSend(context, publishMessage);
+		deliveredCount.increment();
+		logger.debug("Subscribe - RetainMessage send clientId:{} topic:{} qos:{} messageId:{} result:{}",
+			clientId, publishMessage.variableHeader().topicName(), publishMessage.fixedHeader().qosLevel(),
+			publishMessage.variableHeader().packetId(), result);
+	}
+
+	/**
+	 * 连接发送队列中待发送的报文数
+	 *
+	 * @param context ChannelContext
+	 * @return 待发送数
+	 */
+	protected int getSendQueueSize(ChannelContext context) {
+		return context.getSendQueueSize();
+	}
+
+	/**
+	 * 写出保留消息
+	 *
+	 * @param context        ChannelContext
+	 * @param publishMessage MqttPublishMessage
+	 * @return 是否加入发送队列
+	 */
+	protected boolean doSend(ChannelContext context, MqttPublishMessage publishMessage) {
+		return Tio.send(context, publishMessage);
+	}
+
+	/**
+	 * 已发送的保留消息数
+	 *
+	 * @return 发送数
+	 */
+	public long getDeliveredCount() {
+		return deliveredCount.sum();
+	}
+
+	/**
+	 * 因发送队列积压或在途数达到上限暂停的次数
+	 *
+	 * @return 暂停次数
+	 */
+	public long getPausedCount() {
+		return pausedCount.sum();
+	}
+
+	/**
+	 * 连接断开时丢弃的保留消息数
+	 *
+	 * @return 丢弃数
+	 */
+	public long getCancelledCount() {
+		return cancelledCount.sum();
+	}
+
+	/**
+	 * 锁内选出、锁外写出的保留消息
+	 */
+	private static final class RetainSend {
+		private final MqttPublishMessage publishMessage;
+		/**
+		 * QoS0 为 null
+		 */
+		private final MqttPendingPublish pendingPublish;
+
+		private RetainSend(MqttPublishMessage publishMessage, MqttPendingPublish pendingPublish) {
+			this.publishMessage = publishMessage;
+			this.pendingPublish = pendingPublish;
+		}
+	}
+
+	/**
+	 * 连接级下发状态，所有字段在锁内访问
+	 */
+	private static final class RetainDelivery {
+		private final int inflightLimit;
+		/**
+		 * 每次订阅匹配到的保留消息列表，按游标读取，不再拷贝
+		 */
+		private final ArrayDeque<List<Message>> batches = new ArrayDeque<>();
+		private int cursor;
+		/**
+		 * 保留消息下发创建的在途消息，按实例比较（MqttPendingPublish 的 equals 比较的是报文内容）
+		 */
+		private final Set<MqttPendingPublish> inflight = Collections.newSetFromMap(new IdentityHashMap<>());
+		private long sequence;
+		private boolean running;
+		private boolean waitingAck;
+		private boolean cancelled;
+		/**
+		 * 已选出的一批正在锁外写出
+		 */
+		private boolean sending;
+		/**
+		 * 写出期间有 ack 或定时重试，写完后继续
+		 */
+		private boolean wakeup;
+
+		private RetainDelivery(int inflightLimit) {
+			this.inflightLimit = inflightLimit;
+		}
+
+		private void add(List<Message> messages) {
+			batches.add(messages);
+		}
+
+		private Message peek() {
+			List<Message> messages;
+			while ((messages = batches.peek()) != null) {
+				if (cursor < messages.size()) {
+					return messages.get(cursor);
+				}
+				batches.poll();
+				cursor = 0;
+			}
+			return null;
+		}
+
+		private void poll() {
+			cursor++;
+		}
+
+		/**
+		 * 在途数达到上限时，清理已不在 session 中的在途消息（ack 已处理或 session 已清理）后再判断
+		 */
+		private boolean hasInflightCapacity(IMqttSessionManager sessionManager, String clientId) {
+			if (inflight.size() < inflightLimit) {
+				return true;
+			}
+			Iterator<MqttPendingPublish> iterator = inflight.iterator();
+			while (iterator.hasNext()) {
+				MqttPendingPublish pendingPublish = iterator.next();
+				int packetId = pendingPublish.getMessage().variableHeader().packetId();
+				// 同一 packetId 已被其他消息复用时也说明该在途消息已完成
+				if (sessionManager.getPendingPublish(clientId, packetId) != pendingPublish) {
+					iterator.remove();
+				}
+			}
+			return inflight.size() < inflightLimit;
+		}
+
+		private int clear() {
+			int remaining = 0;
+			for (List<Message> messages : batches) {
+				remaining += messages.size();
+			}
+			remaining -= batches.isEmpty() ? 0 : cursor;
+			batches.clear();
+			cursor = 0;
+			inflight.clear();
+			running = false;
+			return remaining;
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.session;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 紧凑订阅存储测试
+ *
+ * @author L.cm
+ */
+class CompactSubscribersTest {
+
+	@Test
+	void testAddRemove() {
+		ClientIdRegistry registry = new ClientIdRegistry();
+		CompactSubscribers subscribers = new CompactSubscribers(registry);
+		int handle1 = registry.register("client1");
+		int handle2 = registry.register("client2");
+		subscribers.add("client2", handle2, (byte) 0, false);
+		subscribers.add("client1", handle1, (byte) 1, false);
+		subscribers.add("client1", handle1, (byte) 0, true);
+		Assertions.assertEquals(SubscribeData.of((byte) 1, true).encoded, subscribers.get("client1", handle1));
+		Assertions.assertEquals(Arrays.asList("client1", "client2"), visit(subscribers, null));
+		subscribers.remove("client1", handle1);
+		subscribers.remove("client2", handle2);
+		Assertions.assertTrue(subscribers.isEmpty());
+		Assertions.assertEquals(-1, subscribers.get("client1", handle1));
+	}
+
+	@Test
+	void testReusedHandleDuringForEach() {
+		ClientIdRegistry registry = new ClientIdRegistry();
+		CompactSubscribers subscribers = new CompactSubscribers(registry);
+		CompactSubscribers other = new CompactSubscribers(registry);
+		int handle1 = registry.register("client1");
+		int handle2 = registry.register("client2");
+		subscribers.add("client1", handle1, (byte) 0, false);
+		subscribers.add("client2", handle2, (byte) 0, false);
+		// 遍历中 client2 取消最后一个订阅，句柄被订阅其他 topic 的 client3 复用，不能把消息发给 client3
+		List<String> visited = visit(subscribers, () -> {
+			subscribers.remove("client2", handle2);
+			registry.release(handle2);
+			int handle3 = registry.register("client3");
+			Assertions.assertEquals(handle2, handle3);
+			other.add("client3", handle3, (byte) 1, false);
+		});
+		Assertions.assertEquals(Arrays.asList("client1"), visited);
+		// 复用句柄的 client 订阅了同一 topic 时，按当前订阅数据遍历
+		int handle4 = registry.register("client4");
+		subscribers.add("client4", handle4, (byte) 0, false);
+		visited = visit(subscribers, () -> {
+			subscribers.remove("client4", handle4);
+			registry.release(handle4);
+			int handle5 = registry.register("client5");
+			Assertions.assertEquals(handle4, handle5);
+			subscribers.add("client5", handle5, (byte) 2, false);
+		});
+		Assertions.assertEquals(Arrays.asList("client1", "client5"), visited);
+	}
+
+	/**
+	 * 遍历订阅，访问第一个订阅后执行 action
+	 */
+	private static List<String> visit(CompactSubscribers subscribers, Runnable action) {
+		List<String> clientIds = new ArrayList<>();
+		subscribers.forEach((clientId, encoded) -> {
+			clientIds.add(clientId);
+			if (action != null && clientIds.size() == 1) {
+				action.run();
+			}
+		});
+		return clientIds;
+	}
+
+}
@@ -0,0 +1,170 @@
+package org.dromara.mica.mqtt.core.server.test;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import net.dreamlu.mica.net.utils.timer.DefaultTimerTaskService;
+import net.dreamlu.mica.net.utils.timer.TimerTaskService;
+import org.dromara.mica.mqtt.codec.message.MqttMessage;
+import org.dromara.mica.mqtt.codec.message.MqttPubAckMessage;
+import org.dromara.mica.mqtt.codec.message.header.MqttMessageIdVariableHeader;
+import org.dromara.mica.mqtt.core.server.support.MqttAckBatchMessage;
+import org.dromara.mica.mqtt.core.server.support.MqttAckCoalescer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ack 合并发送测试
+ *
+ * @author L.cm
+ */
+class MqttAckCoalescerTest {
+	private TimerTaskService taskService;
+
+	@BeforeEach
+	void setUp() {
+		taskService = new DefaultTimerTaskService(10L, 60);
+		taskService.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		taskService.stop();
+	}
+
+	@Test
+	void testConfig() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MqttAckCoalescer(taskService, 0, 10));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MqttAckCoalescer(taskService, 10, 0));
+	}
+
+	@Test
+	void testFlushAtEndOfRead() {
+		RecordingCoalescer coalescer = new RecordingCoalescer(taskService, 100, 60_000);
+		ChannelContext context = MqttTestContext.create("client1");
+		MqttMessage first = pubAck(1);
+		MqttMessage last = pubAck(2);
+		// 同一次读取解码出 2 个报文，第二个是最后一个
+		coalescer.markEndOfRead(context, last);
+		Assertions.assertTrue(coalescer.send(context, first));
+		coalescer.afterHandled(context, first);
+		Assertions.assertTrue(coalescer.writes.isEmpty());
+		Assertions.assertTrue(coalescer.send(context, pubAck(3)));
+		coalescer.afterHandled(context, last);
+		Assertions.assertEquals(1, coalescer.writes.size());
+		Assertions.assertEquals(Arrays.asList(1, 3), packetIds(coalescer.writes.get(0)));
+		// 已刷出，再次处理完成不会重复写出
+		coalescer.afterHandled(context, last);
+		Assertions.assertEquals(1, coalescer.writes.size());
+		Assertions.assertEquals(1, coalescer.getFlushCount());
+		Assertions.assertEquals(2, coalescer.getFrameCount());
+	}
+
+	@Test
+	void testFlushAtMaxBatchSize() {
+		RecordingCoalescer coalescer = new RecordingCoalescer(taskService, 3, 60_000);
+		ChannelContext context = MqttTestContext.create("client1");
+		for (int i = 1; i <= 7; i++) {
+			Assertions.assertTrue(coalescer.send(context, pubAck(i)));
+		}
+		Assertions.assertEquals(2, coalescer.writes.size());
+		Assertions.assertEquals(Arrays.asList(1, 2, 3), packetIds(coalescer.writes.get(0)));
+		Assertions.assertEquals(Arrays.asList(4, 5, 6), packetIds(coalescer.writes.get(1)));
+		coalescer.flush(context);
+		Assertions.assertEquals(3, coalescer.writes.size());
+		// 只剩一个时直接写出原报文
+		Assertions.assertFalse(coalescer.writes.get(2) instanceof MqttAckBatchMessage);
+		Assertions.assertEquals(Collections.singletonList(7), packetIds(coalescer.writes.get(2)));
+		Assertions.assertEquals(3, coalescer.getMaxFramesPerFlush());
+	}
+
+	@Test
+	void testFlushOnLinger() throws InterruptedException {
+		RecordingCoalescer coalescer = new RecordingCoalescer(taskService, 100, 20);
+		ChannelContext context = MqttTestContext.create("client1");
+		coalescer.send(context, pubAck(1));
+		coalescer.send(context, pubAck(2));
+		Assertions.assertTrue(coalescer.writes.isEmpty());
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (coalescer.writes.isEmpty() && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(5);
+		}
+		Assertions.assertEquals(1, coalescer.writes.size());
+		Assertions.assertEquals(Arrays.asList(1, 2), packetIds(coalescer.writes.get(0)));
+	}
+
+	@Test
+	void testOrderAcrossThreads() throws InterruptedException {
+		RecordingCoalescer coalescer = new RecordingCoalescer(taskService, 8, 60_000);
+		ChannelContext context = MqttTestContext.create("client1");
+		int count = 10_000;
+		Thread flusher = new Thread(() -> {
+			for (int i = 0; i < count; i++) {
+				coalescer.flush(context);
+			}
+		});
+		flusher.start();
+		for (int i = 1; i <= count; i++) {
+			coalescer.send(context, pubAck(i));
+		}
+		flusher.join();
+		coalescer.flush(context);
+		List<Integer> packetIds = new ArrayList<>();
+		for (MqttMessage message : coalescer.writes) {
+			packetIds.addAll(packetIds(message));
+		}
+		Assertions.assertEquals(count, packetIds.size());
+		for (int i = 0; i < count; i++) {
+			Assertions.assertEquals(i + 1, packetIds.get(i));
+		}
+	}
+
+	@Test
+	void testClosed() {
+		RecordingCoalescer coalescer = new RecordingCoalescer(taskService, 2, 60_000);
+		ChannelContext context = MqttTestContext.create("client1");
+		coalescer.send(context, pubAck(1));
+		context.setClosed(true);
+		Assertions.assertFalse(coalescer.send(context, pubAck(2)));
+		Assertions.assertTrue(coalescer.writes.isEmpty());
+	}
+
+	private static MqttMessage pubAck(int packetId) {
+		return MqttPubAckMessage.builder().packetId(packetId).build();
+	}
+
+	private static List<Integer> packetIds(MqttMessage message) {
+		List<MqttMessage> messages = message instanceof MqttAckBatchMessage ?
+			((MqttAckBatchMessage) message).getMessages() : Collections.singletonList(message);
+		List<Integer> packetIds = new ArrayList<>(messages.size());
+		for (MqttMessage ack : messages) {
+			packetIds.add(((MqttMessageIdVariableHeader) ack.variableHeader()).messageId());
+		}
+		return packetIds;
+	}
+
+	/**
+	 * 记录写出的报文，不经过网络
+	 */
+	private static final class RecordingCoalescer extends MqttAckCoalescer {
+		private final List<MqttMessage> writes = new CopyOnWriteArrayList<>();
+
+		private RecordingCoalescer(TimerTaskService taskService, int maxBatchSize, long lingerMillis) {
+			super(taskService, maxBatchSize, lingerMillis);
+		}
+
+		@Override
+		protected boolean doSend(ChannelContext context, MqttMessage message) {
+			writes.add(message);
+			return true;
+		}
+	}
+
+}
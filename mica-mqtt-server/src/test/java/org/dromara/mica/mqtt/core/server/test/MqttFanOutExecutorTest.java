@@ -0,0 +1,110 @@
+package org.dromara.mica.mqtt.core.server.test;
+
+import org.dromara.mica.mqtt.core.server.support.MqttFanOutExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大扇出并行转发测试
+ *
+ * @author L.cm
+ */
+class MqttFanOutExecutorTest {
+
+	@Test
+	void testConfig() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MqttFanOutExecutor(0, 4));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MqttFanOutExecutor(100, 0));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MqttFanOutExecutor(100, 4, 0));
+		MqttFanOutExecutor executor = new MqttFanOutExecutor(100, 4);
+		Assertions.assertFalse(executor.isFanOut(99));
+		Assertions.assertTrue(executor.isFanOut(100));
+		for (int i = 0; i < 1000; i++) {
+			String clientId = "client" + i;
+			int lane = executor.laneOf(clientId);
+			Assertions.assertTrue(lane >= 0 && lane < 4);
+			Assertions.assertEquals(lane, executor.laneOf(clientId));
+		}
+		Assertions.assertTrue(executor.shutdown(1));
+	}
+
+	@Test
+	void testSubscriberOrder() throws InterruptedException {
+		MqttFanOutExecutor executor = new MqttFanOutExecutor(10, 4);
+		int clients = 200;
+		int messages = 50;
+		Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+		// 阻塞通道 0，后续提交到通道 0 的任务排队
+		CountDownLatch blocker = new CountDownLatch(1);
+		executor.execute(0, () -> {
+			try {
+				blocker.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, false);
+		Assertions.assertTrue(executor.isBusy(0));
+		for (int m = 0; m < messages; m++) {
+			int message = m;
+			for (int c = 0; c < clients; c++) {
+				String clientId = "client" + c;
+				executor.execute(executor.laneOf(clientId), () -> received.computeIfAbsent(clientId, k -> new ArrayList<>()).add(message), m % 2 == 1);
+			}
+			executor.onFanOut(clients);
+		}
+		blocker.countDown();
+		Assertions.assertTrue(executor.shutdown(10));
+		Assertions.assertEquals(0, executor.getPendingTaskCount());
+		Assertions.assertEquals(clients, received.size());
+		for (List<Integer> list : received.values()) {
+			Assertions.assertEquals(messages, list.size());
+			for (int i = 0; i < messages; i++) {
+				Assertions.assertEquals(i, list.get(i));
+			}
+		}
+		Assertions.assertEquals(messages, executor.getFanOutCount());
+		Assertions.assertEquals((long) messages * clients, executor.getFanOutSubscriberCount());
+		Assertions.assertEquals((long) messages / 2 * clients, executor.getDeferredCount());
+		// 停止后提交的任务被拒绝，不计入未完成任务
+		executor.execute(0, () -> Assertions.fail(), false);
+		Assertions.assertFalse(executor.isBusy(0));
+	}
+
+	@Test
+	void testQueueCapacity() throws InterruptedException {
+		MqttFanOutExecutor executor = new MqttFanOutExecutor(10, 1, 2);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch blocker = new CountDownLatch(1);
+		executor.execute(0, () -> {
+			started.countDown();
+			try {
+				blocker.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, false);
+		Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+		List<Thread> threads = new CopyOnWriteArrayList<>();
+		// 通道线程阻塞，队列容量 2，第 3 个任务在当前线程执行
+		for (int i = 0; i < 3; i++) {
+			executor.execute(0, () -> threads.add(Thread.currentThread()), false);
+		}
+		Assertions.assertEquals(1, executor.getOverflowCount());
+		Assertions.assertEquals(Collections.singletonList(Thread.currentThread()), threads);
+		Assertions.assertEquals(3, executor.getPendingTaskCount());
+		blocker.countDown();
+		Assertions.assertTrue(executor.shutdown(10));
+		Assertions.assertEquals(3, threads.size());
+		Assertions.assertEquals(0, executor.getPendingTaskCount());
+	}
+
+}
@@ -0,0 +1,282 @@
+package org.dromara.mica.mqtt.core.server.test;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import net.dreamlu.mica.net.utils.timer.DefaultTimerTaskService;
+import net.dreamlu.mica.net.utils.timer.TimerTaskService;
+import org.dromara.mica.mqtt.codec.MqttQoS;
+import org.dromara.mica.mqtt.codec.message.MqttPublishMessage;
+import org.dromara.mica.mqtt.core.common.MqttPendingPublish;
+import org.dromara.mica.mqtt.core.server.model.Message;
+import org.dromara.mica.mqtt.core.server.session.IMqttSessionManager;
+import org.dromara.mica.mqtt.core.server.session.InMemoryMqttSessionManager;
+import org.dromara.mica.mqtt.core.server.support.MqttRetainDeliverer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保留消息分批下发测试
+ *
+ * @author L.cm
+ */
+class MqttRetainDelivererTest {
+	private TimerTaskService taskService;
+	private IMqttSessionManager sessionManager;
+	/**
+	 * 业务线程池任务，由测试手动执行，便于观察每一批
+	 */
+	private BlockingQueue<Runnable> tasks;
+	private Executor executor;
+
+	@BeforeEach
+	void setUp() {
+		taskService = new DefaultTimerTaskService(10L, 60);
+		taskService.start();
+		sessionManager = new InMemoryMqttSessionManager();
+		tasks = new LinkedBlockingQueue<>();
+		executor = tasks::add;
+	}
+
+	@AfterEach
+	void tearDown() {
+		taskService.stop();
+	}
+
+	@Test
+	void testConfig() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MqttRetainDeliverer(sessionManager, taskService, executor, 0, 10, 10, 10));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MqttRetainDeliverer(sessionManager, taskService, executor, 10, 0, 10, 10));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MqttRetainDeliverer(sessionManager, taskService, executor, 10, 10, 0, 10));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MqttRetainDeliverer(sessionManager, taskService, executor, 10, 10, 10, 0));
+	}
+
+	@Test
+	void testBatchSize() {
+		RecordingDeliverer deliverer = new RecordingDeliverer(3, 10, 10, 60_000);
+		ChannelContext context = MqttTestContext.create("client1");
+		deliverer.deliver(context, messages("a", 5, 0));
+		deliverer.deliver(context, messages("b", 2, 0));
+		// 第一批在订阅线程直接发送，之后每批重新提交到业务线程池
+		Assertions.assertEquals(3, deliverer.writes.size());
+		Assertions.assertEquals(1, tasks.size());
+		runTask();
+		Assertions.assertEquals(6, deliverer.writes.size());
+		runTask();
+		Assertions.assertEquals(7, deliverer.writes.size());
+		Assertions.assertTrue(tasks.isEmpty());
+		// 按订阅顺序下发
+		Assertions.assertEquals("a/0", deliverer.writes.get(0).variableHeader().topicName());
+		Assertions.assertEquals("a/4", deliverer.writes.get(4).variableHeader().topicName());
+		Assertions.assertEquals("b/1", deliverer.writes.get(6).variableHeader().topicName());
+		Assertions.assertTrue(deliverer.writes.get(0).fixedHeader().isRetain());
+		Assertions.assertEquals(7, deliverer.getDeliveredCount());
+		Assertions.assertEquals(0, deliverer.getPausedCount());
+		// 下发完成后再次订阅，重新开始
+		deliverer.deliver(context, messages("c", 1, 0));
+		Assertions.assertEquals(8, deliverer.writes.size());
+	}
+
+	@Test
+	void testPauseOnSendQueue() throws InterruptedException {
+		RecordingDeliverer deliverer = new RecordingDeliverer(100, 10, 10, 20);
+		ChannelContext context = MqttTestContext.create("client1");
+		deliverer.sendQueueSize = 10;
+		deliverer.deliver(context, messages("a", 5, 0));
+		Assertions.assertTrue(deliverer.writes.isEmpty());
+		Assertions.assertEquals(1, deliverer.getPausedCount());
+		// 发送队列仍然积压，定时重试后继续暂停
+		runScheduledTask();
+		Assertions.assertTrue(deliverer.writes.isEmpty());
+		Assertions.assertEquals(2, deliverer.getPausedCount());
+		// 发送队列回落后继续下发
+		deliverer.sendQueueSize = 9;
+		runScheduledTask();
+		Assertions.assertEquals(5, deliverer.writes.size());
+		Assertions.assertEquals(2, deliverer.getPausedCount());
+	}
+
+	@Test
+	void testReceiveMaximum() {
+		RecordingDeliverer deliverer = new RecordingDeliverer(100, 10, 10, 60_000);
+		ChannelContext context = MqttTestContext.create("client1");
+		MqttRetainDeliverer.setReceiveMaximum(context, 2);
+		deliverer.deliver(context, messages("a", 5, 1));
+		// 在途数受 Receive Maximum 限制
+		Assertions.assertEquals(2, deliverer.writes.size());
+		Assertions.assertEquals(1, deliverer.getPausedCount());
+		Assertions.assertTrue(tasks.isEmpty());
+		// 不是保留消息下发创建的在途消息不唤醒
+		deliverer.onAck(context, new MqttPendingPublish(deliverer.writes.get(0), MqttQoS.QOS1));
+		Assertions.assertTrue(tasks.isEmpty());
+		// 收到 ack 后继续发送
+		ack(deliverer, context, 0);
+		Assertions.assertEquals(1, tasks.size());
+		runTask();
+		Assertions.assertEquals(3, deliverer.writes.size());
+		Assertions.assertEquals(2, deliverer.getPausedCount());
+		// 两个 ack 只唤醒一次
+		ack(deliverer, context, 1);
+		ack(deliverer, context, 2);
+		Assertions.assertEquals(1, tasks.size());
+		runTask();
+		Assertions.assertEquals(5, deliverer.writes.size());
+		Assertions.assertTrue(tasks.isEmpty());
+		for (MqttPublishMessage publishMessage : deliverer.writes) {
+			Assertions.assertTrue(publishMessage.variableHeader().packetId() > 0);
+		}
+	}
+
+	@Test
+	void testPacketIdReuse() {
+		RecordingDeliverer deliverer = new RecordingDeliverer(100, 10, 10, 60_000);
+		ChannelContext context = MqttTestContext.create("client1");
+		MqttRetainDeliverer.setReceiveMaximum(context, 1);
+		deliverer.deliver(context, messages("a", 2, 1));
+		Assertions.assertEquals(1, deliverer.writes.size());
+		MqttPublishMessage retained = deliverer.writes.get(0);
+		int packetId = retained.variableHeader().packetId();
+		MqttPendingPublish retainedPending = sessionManager.getPendingPublish("client1", packetId);
+		Assertions.assertNotNull(retainedPending);
+		// 普通消息使用了同一 packetId（且报文内容相同），完成时不释放保留消息的在途数
+		MqttPendingPublish normalPending = new MqttPendingPublish(retained, MqttQoS.QOS1);
+		Assertions.assertEquals(retainedPending, normalPending);
+		deliverer.onAck(context, normalPending);
+		Assertions.assertTrue(tasks.isEmpty());
+		Assertions.assertEquals(1, deliverer.writes.size());
+		// 保留消息自身的 ack 释放在途数
+		sessionManager.removePendingPublish("client1", packetId);
+		deliverer.onAck(context, retainedPending);
+		runTask();
+		Assertions.assertEquals(2, deliverer.writes.size());
+	}
+
+	@Test
+	void testSendOutsideLock() throws InterruptedException {
+		RecordingDeliverer deliverer = new RecordingDeliverer(2, 10, 10, 60_000);
+		ChannelContext context = MqttTestContext.create("client1");
+		CountDownLatch sending = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		deliverer.blocker = () -> {
+			sending.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		Thread subscriber = new Thread(() -> deliverer.deliver(context, messages("a", 3, 0)));
+		subscriber.start();
+		Assertions.assertTrue(sending.await(5, TimeUnit.SECONDS));
+		// 写出时不持有连接级锁，写出期间新的订阅不会被阻塞，排在本批之后下发
+		deliverer.deliver(context, messages("b", 1, 0));
+		deliverer.blocker = null;
+		release.countDown();
+		subscriber.join(5000);
+		while (!tasks.isEmpty()) {
+			runTask();
+		}
+		Assertions.assertEquals(Arrays.asList("a/0", "a/1", "a/2", "b/0"), topics(deliverer));
+		deliverer.cancel(context);
+		Assertions.assertEquals(0, deliverer.getCancelledCount());
+	}
+
+	@Test
+	void testCancel() {
+		RecordingDeliverer deliverer = new RecordingDeliverer(2, 10, 10, 60_000);
+		ChannelContext context = MqttTestContext.create("client1");
+		deliverer.deliver(context, messages("a", 3, 0));
+		deliverer.deliver(context, messages("b", 2, 0));
+		Assertions.assertEquals(2, deliverer.writes.size());
+		deliverer.cancel(context);
+		Assertions.assertEquals(3, deliverer.getCancelledCount());
+		// 已提交的批次不再发送，取消后的订阅也不再下发
+		runTask();
+		deliverer.deliver(context, messages("c", 2, 0));
+		Assertions.assertEquals(2, deliverer.writes.size());
+		Assertions.assertTrue(tasks.isEmpty());
+	}
+
+	private void ack(RecordingDeliverer deliverer, ChannelContext context, int index) {
+		int packetId = deliverer.writes.get(index).variableHeader().packetId();
+		MqttPendingPublish pendingPublish = sessionManager.getPendingPublish(context.getBsId(), packetId);
+		sessionManager.removePendingPublish(context.getBsId(), packetId);
+		deliverer.onAck(context, pendingPublish);
+	}
+
+	private static List<String> topics(RecordingDeliverer deliverer) {
+		List<String> topics = new ArrayList<>();
+		for (MqttPublishMessage publishMessage : deliverer.writes) {
+			topics.add(publishMessage.variableHeader().topicName());
+		}
+		return topics;
+	}
+
+	private void runTask() {
+		Runnable task = tasks.poll();
+		Assertions.assertNotNull(task);
+		task.run();
+	}
+
+	private void runScheduledTask() throws InterruptedException {
+		Runnable task = tasks.poll(5, TimeUnit.SECONDS);
+		Assertions.assertNotNull(task);
+		task.run();
+	}
+
+	private static List<Message> messages(String prefix, int count, int qos) {
+		List<Message> messages = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Message message = new Message();
+			message.setTopic(prefix + '/' + i);
+			message.setQos(qos);
+			message.setRetain(true);
+			message.setPayload(("payload-" + i).getBytes(StandardCharsets.UTF_8));
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	/**
+	 * 记录写出的报文，发送队列大小由测试控制
+	 */
+	private final class RecordingDeliverer extends MqttRetainDeliverer {
+		private final List<MqttPublishMessage> writes = new CopyOnWriteArrayList<>();
+		private volatile int sendQueueSize;
+		/**
+		 * 写出时执行，用于模拟慢写出
+		 */
+		private volatile Runnable blocker;
+
+		private RecordingDeliverer(int batchSize, int maxInflight, int maxSendQueueSize, long intervalMillis) {
+			super(sessionManager, taskService, executor, batchSize, maxInflight, maxSendQueueSize, intervalMillis);
+		}
+
+		@Override
+		protected int getSendQueueSize(ChannelContext context) {
+			return sendQueueSize;
+		}
+
+		@Override
+		protected boolean doSend(ChannelContext context, MqttPublishMessage publishMessage) {
+			Runnable blocker = this.blocker;
+			if (blocker != null) {
+				blocker.run();
+			}
+			writes.add(publishMessage);
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019-2029, Dreamlu 卢春梦 (596392912@qq.com & dreamlu.net).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.mica.mqtt.core.server.test;
+
+import net.dreamlu.mica.net.core.ChannelContext;
+import net.dreamlu.mica.net.core.TioConfig;
+import net.dreamlu.mica.net.core.exception.TioDecodeException;
+import net.dreamlu.mica.net.core.intf.Packet;
+import net.dreamlu.mica.net.server.DefaultTioServerListener;
+import net.dreamlu.mica.net.server.ServerChannelContext;
+import net.dreamlu.mica.net.server.TioServerConfig;
+import net.dreamlu.mica.net.server.intf.TioServerHandler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 测试用的虚拟连接，不建立网络连接
+ *
+ * @author L.cm
+ */
+final class MqttTestContext {
+
+	private MqttTestContext() {
+	}
+
+	/**
+	 * 绑定 clientId 的虚拟连接
+	 *
+	 * @param clientId clientId
+	 * @return ChannelContext
+	 */
+	static ChannelContext create(String clientId) {
+		TioServerConfig serverConfig = new TioServerConfig("mica-mqtt-server-test", new NoopHandler(), new DefaultTioServerListener());
+		ServerChannelContext context = new ServerChannelContext(serverConfig);
+		context.setBsId(clientId);
+		return context;
+	}
+
+	/**
+	 * 虚拟连接不处理收发
+	 */
+	private static final class NoopHandler implements TioServerHandler {
+
+		@Override
+		public Packet decode(ByteBuffer buffer, int limit, int position, int readableLength, ChannelContext context) throws TioDecodeException {
+			return null;
+		}
+
+		@Override
+		public ByteBuffer encode(Packet packet, TioConfig tioConfig, ChannelContext context) {
+			return null;
+		}
+
+		@Override
+		public void handler(Packet packet, ChannelContext context) {
+			// 不处理报文
+		}
+	}
+
+}
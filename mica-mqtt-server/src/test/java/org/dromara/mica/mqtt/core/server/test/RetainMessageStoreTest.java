@@ -0,0 +1,229 @@
+package org.dromara.mica.mqtt.core.server.test;
+
+import org.dromara.mica.mqtt.core.server.model.Message;
+import org.dromara.mica.mqtt.core.server.store.InMemoryMqttMessageStore;
+import org.dromara.mica.mqtt.core.server.store.RetainEvictionPolicy;
+import org.dromara.mica.mqtt.core.server.store.RetainMessageStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 保留消息存储内存预算测试
+ *
+ * @author L.cm
+ */
+class RetainMessageStoreTest {
+	/**
+	 * topic 3 个字符、payload 10 字节的估算占用
+	 */
+	private static final long ENTRY_SIZE = 128 + 2 * 3 + 10;
+
+	private static Message message(String topic, String payload) {
+		Message message = new Message();
+		message.setTopic(topic);
+		message.setQos(1);
+		message.setRetain(true);
+		message.setFromClientId("client");
+		message.setPayload(payload.getBytes(StandardCharsets.UTF_8));
+		return message;
+	}
+
+	private static List<Message> match(RetainMessageStore store, String topicFilter) {
+		List<Message> messages = new ArrayList<>();
+		store.match(topicFilter, messages);
+		return messages;
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	private static void put(RetainMessageStore store, int i) {
+		String topic = "t/" + i;
+		store.put(topic, 0, message(topic, "payload-00"));
+	}
+
+	@Test
+	void testLru() {
+		RetainMessageStore store = new RetainMessageStore(3 * ENTRY_SIZE, RetainEvictionPolicy.LRU, false);
+		put(store, 0);
+		put(store, 1);
+		put(store, 2);
+		Assertions.assertEquals(3 * ENTRY_SIZE, store.getBytes());
+		// 访问 t/0 后写入 t/3，淘汰最久未访问的 t/1
+		Assertions.assertEquals(1, match(store, "t/0").size());
+		put(store, 3);
+		Assertions.assertEquals(3, store.getCount());
+		Assertions.assertEquals(1, store.getEvictionCount());
+		Assertions.assertTrue(match(store, "t/1").isEmpty());
+		Assertions.assertEquals(3, match(store, "t/+").size());
+		Assertions.assertEquals(3 * ENTRY_SIZE, store.getBytes());
+	}
+
+	@Test
+	void testLfu() {
+		RetainMessageStore store = new RetainMessageStore(3 * ENTRY_SIZE, RetainEvictionPolicy.LFU, false);
+		put(store, 0);
+		put(store, 1);
+		put(store, 2);
+		for (int i = 0; i < 5; i++) {
+			match(store, "t/0");
+		}
+		// 持续写入新 topic，高频访问的 t/0 保留
+		for (int i = 3; i < 8; i++) {
+			put(store, i);
+		}
+		Assertions.assertEquals(3, store.getCount());
+		Assertions.assertEquals(5, store.getEvictionCount());
+		Assertions.assertEquals(1, match(store, "t/0").size());
+		Assertions.assertEquals(1, match(store, "t/7").size());
+	}
+
+	@Test
+	void testRejectAndOverwrite() {
+		RetainMessageStore store = new RetainMessageStore(2 * ENTRY_SIZE, RetainEvictionPolicy.LRU, false);
+		Assertions.assertFalse(store.put("t/0", 0, message("t/0", new String(new byte[512]))));
+		Assertions.assertEquals(1, store.getRejectedCount());
+		Assertions.assertEquals(0, store.getBytes());
+		// 同一 topic 覆盖，不重复计算占用
+		put(store, 0);
+		store.put("t/0", 0, message("t/0", "payload-01"));
+		Assertions.assertEquals(1, store.getCount());
+		Assertions.assertEquals(ENTRY_SIZE, store.getBytes());
+		Assertions.assertEquals("payload-01", new String(match(store, "t/0").get(0).getPayload(), StandardCharsets.UTF_8));
+		store.remove("t/0");
+		Assertions.assertEquals(0, store.getBytes());
+		Assertions.assertTrue(match(store, "#").isEmpty());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new RetainMessageStore(-1, RetainEvictionPolicy.LRU, false));
+	}
+
+	@Test
+	void testOffHeap() {
+		RetainMessageStore store = new RetainMessageStore(0, RetainEvictionPolicy.LRU, true);
+		store.put("t/0", 0, message("t/0", "payload-00"));
+		Message message = match(store, "t/0").get(0);
+		Assertions.assertEquals("payload-00", new String(message.getPayload(), StandardCharsets.UTF_8));
+		Assertions.assertEquals("t/0", message.getTopic());
+		Assertions.assertEquals(1, message.getQos());
+		Assertions.assertEquals("client", message.getFromClientId());
+		// 每次读取拷贝，修改不影响存储
+		message.getPayload()[0] = 'x';
+		Assertions.assertEquals("payload-00", new String(match(store, "t/0").get(0).getPayload(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testOffHeapBudget() {
+		// 堆外 payload 按块大小和块视图对象开销计算，堆内刚好放得下的消息在堆外被拒绝
+		RetainMessageStore heap = new RetainMessageStore(ENTRY_SIZE, RetainEvictionPolicy.LRU, false);
+		Assertions.assertTrue(heap.put("t/0", 0, message("t/0", "payload-00")));
+		RetainMessageStore offHeap = new RetainMessageStore(ENTRY_SIZE, RetainEvictionPolicy.LRU, true);
+		Assertions.assertFalse(offHeap.put("t/0", 0, message("t/0", "payload-00")));
+		Assertions.assertEquals(1, offHeap.getRejectedCount());
+		Assertions.assertEquals(0, offHeap.getBytes());
+		RetainMessageStore store = new RetainMessageStore(0, RetainEvictionPolicy.LRU, true);
+		store.put("t/0", 0, message("t/0", "payload-00"));
+		Assertions.assertTrue(store.getBytes() > ENTRY_SIZE);
+		// 空 payload 不分配堆外内存
+		store.put("t/0", 0, message("t/0", ""));
+		Assertions.assertEquals(128 + 2 * 3, store.getBytes());
+	}
+
+	@Test
+	void testOffHeapReuse() {
+		RetainMessageStore store = new RetainMessageStore(10 * 1024, RetainEvictionPolicy.LRU, true);
+		// 覆盖、删除、淘汰后堆外块归还复用，只申请一个 slab
+		for (int i = 0; i < 100_000; i++) {
+			String topic = "t/" + (i % 100);
+			store.put(topic, 0, message(topic, "payload-" + i));
+			if (i % 7 == 0) {
+				store.remove(topic);
+			}
+		}
+		Assertions.assertEquals(1024 * 1024, store.getOffHeapBytes());
+		Assertions.assertTrue(store.getEvictionCount() > 0);
+		store.clear();
+		for (int i = 0; i < 100; i++) {
+			store.put("t/" + i, 0, message("t/" + i, "payload-" + i));
+		}
+		Assertions.assertEquals(1024 * 1024, store.getOffHeapBytes());
+		for (Message message : match(store, "t/#")) {
+			Assertions.assertEquals("payload-" + message.getTopic().substring(2), new String(message.getPayload(), StandardCharsets.UTF_8));
+		}
+		Assertions.assertEquals(0, new RetainMessageStore(0, RetainEvictionPolicy.LRU, false).getOffHeapBytes());
+	}
+
+	@Test
+	void testOffHeapConcurrentRead() throws InterruptedException {
+		RetainMessageStore store = new RetainMessageStore(0, RetainEvictionPolicy.LRU, true);
+		store.put("t/0", 0, message("t/0", repeat('a', 32 * 1024)));
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicInteger corrupted = new AtomicInteger();
+		Thread reader = new Thread(() -> {
+			while (running.get()) {
+				for (Message message : match(store, "t/0")) {
+					byte[] payload = message.getPayload();
+					for (byte b : payload) {
+						if (b != payload[0]) {
+							corrupted.incrementAndGet();
+							break;
+						}
+					}
+				}
+			}
+		});
+		reader.start();
+		// 覆盖后旧块立即被新消息复用，读取不会读到一半新一半旧的 payload
+		for (int i = 0; i < 20_000; i++) {
+			store.put("t/0", 0, message("t/0", repeat((char) ('a' + i % 26), 32 * 1024)));
+		}
+		running.set(false);
+		reader.join();
+		Assertions.assertEquals(0, corrupted.get());
+	}
+
+	@Test
+	void testExpire() throws InterruptedException {
+		RetainMessageStore store = new RetainMessageStore(0, RetainEvictionPolicy.LRU, false);
+		for (int i = 0; i < 1000; i++) {
+			String topic = "t/" + i;
+			store.put(topic, i % 2 == 0 ? 1 : 0, message(topic, "payload-00"));
+		}
+		// 覆盖为永久保留消息，移出时间轮
+		store.put("t/0", 0, message("t/0", "payload-01"));
+		Assertions.assertEquals(499, store.getTimedCount());
+		Assertions.assertEquals(1000, match(store, "t/+").size());
+		Thread.sleep(2100);
+		// 已过期未清理的不返回
+		Assertions.assertEquals(501, match(store, "t/#").size());
+		store.expire();
+		Assertions.assertEquals(499, store.getExpiredCount());
+		Assertions.assertEquals(0, store.getTimedCount());
+		Assertions.assertEquals(501, store.getCount());
+		long bytes = ENTRY_SIZE;
+		for (int i = 1; i < 1000; i += 2) {
+			bytes += 128 + 2 * ("t/" + i).length() + 10;
+		}
+		Assertions.assertEquals(bytes, store.getBytes());
+	}
+
+	@Test
+	void testMessageStore() {
+		InMemoryMqttMessageStore messageStore = new InMemoryMqttMessageStore(2 * ENTRY_SIZE, RetainEvictionPolicy.LRU, false);
+		for (int i = 0; i < 4; i++) {
+			String topic = "t/" + i;
+			messageStore.addRetainMessage(topic, i % 2 == 0 ? 0 : 60, message(topic, "payload-00"));
+		}
+		Assertions.assertEquals(2, messageStore.getRetainMessage("t/#").size());
+		Assertions.assertEquals(2, messageStore.getRetainStore().getEvictionCount());
+	}
+
+}
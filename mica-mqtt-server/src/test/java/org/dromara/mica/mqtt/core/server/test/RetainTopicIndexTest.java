@@ -0,0 +1,127 @@
+package org.dromara.mica.mqtt.core.server.test;
+
+import org.dromara.mica.mqtt.core.server.model.Message;
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
+import org.dromara.mica.mqtt.core.server.session.TrieTopicManager;
+import org.dromara.mica.mqtt.core.server.store.InMemoryMqttMessageStore;
+import org.dromara.mica.mqtt.core.server.store.RetainTopicIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 保留消息 topic 索引测试
+ *
+ * @author L.cm
+ */
+class RetainTopicIndexTest {
+
+	private static Set<String> match(RetainTopicIndex topicIndex, String topicFilter) {
+		Set<String> topics = new TreeSet<>();
+		topicIndex.match(topicFilter, topics::add);
+		return topics;
+	}
+
+	@Test
+	void testMatch() {
+		RetainTopicIndex topicIndex = new RetainTopicIndex();
+		topicIndex.add("/iot/test");
+		topicIndex.add("/iot/test/");
+		topicIndex.add("/iot/test/123");
+		topicIndex.add("devices/1/state");
+		topicIndex.add("devices/2/state");
+		topicIndex.add("devices/2/config");
+		Assertions.assertEquals("[devices/1/state, devices/2/state]", match(topicIndex, "devices/+/state").toString());
+		Assertions.assertEquals("[/iot/test, /iot/test/, /iot/test/123]", match(topicIndex, "/iot/test/#").toString());
+		Assertions.assertEquals("[devices/2/config]", match(topicIndex, "devices/2/config").toString());
+		Assertions.assertTrue(match(topicIndex, "devices/3/state").isEmpty());
+		Assertions.assertTrue(match(topicIndex, "devices/+").isEmpty());
+		Assertions.assertEquals(6, match(topicIndex, "#").size());
+		// + 匹配空层级，与订阅前缀树一致
+		Assertions.assertEquals("[/iot/test/, /iot/test/123]", match(topicIndex, "/iot/test/+").toString());
+		Assertions.assertEquals("[/iot/test]", match(topicIndex, "+/iot/test").toString());
+
+		topicIndex.remove("devices/2/state");
+		topicIndex.remove("devices/2/config");
+		Assertions.assertEquals("[devices/1/state]", match(topicIndex, "devices/#").toString());
+		// 回收后可再次写入
+		topicIndex.add("devices/2/state");
+		Assertions.assertEquals("[devices/1/state, devices/2/state]", match(topicIndex, "devices/+/state").toString());
+	}
+
+	@Test
+	void testSameAsTrieTopicManager() {
+		// 保留消息与实时发布的匹配规则一致：filter 能收到某 topic 的发布，就能收到该 topic 的保留消息
+		String[] levels = {"a", "b", "", "$SYS"};
+		String[] filterLevels = {"a", "b", "", "+"};
+		Random random = new Random(1);
+		List<String> topics = new ArrayList<>();
+		RetainTopicIndex topicIndex = new RetainTopicIndex();
+		for (int i = 0; i < 300; i++) {
+			String topic = randomTopic(random, levels);
+			if (!topics.contains(topic)) {
+				topics.add(topic);
+			}
+			topicIndex.add(topic);
+		}
+		for (int i = 0; i < 100; i++) {
+			topicIndex.remove(topics.remove(random.nextInt(topics.size())));
+		}
+		TrieTopicManager topicManager = new TrieTopicManager();
+		Set<String> topicFilters = new TreeSet<>();
+		for (int i = 0; i < 500; i++) {
+			String topicFilter = randomTopic(random, filterLevels);
+			if (random.nextBoolean()) {
+				topicFilter = topicFilter.isEmpty() ? "#" : topicFilter + "/#";
+			}
+			topicFilters.add(topicFilter);
+			// clientId 即 topicFilter
+			topicManager.addSubscribe(topicFilter, topicFilter, 0);
+		}
+		Map<String, Set<String>> expected = new HashMap<>();
+		for (String topic : topics) {
+			for (Subscribe subscribe : topicManager.searchSubscribe(topic)) {
+				expected.computeIfAbsent(subscribe.getClientId(), key -> new TreeSet<>()).add(topic);
+			}
+		}
+		for (String topicFilter : topicFilters) {
+			Assertions.assertEquals(expected.getOrDefault(topicFilter, Collections.emptySet()), match(topicIndex, topicFilter), topicFilter);
+		}
+	}
+
+	private static String randomTopic(Random random, String[] levels) {
+		StringBuilder builder = new StringBuilder();
+		int count = random.nextInt(4) + 1;
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				builder.append('/');
+			}
+			builder.append(levels[random.nextInt(levels.length)]);
+		}
+		return builder.toString();
+	}
+
+	@Test
+	void testMessageStore() {
+		InMemoryMqttMessageStore messageStore = new InMemoryMqttMessageStore();
+		for (int i = 0; i < 10; i++) {
+			Message message = new Message();
+			message.setTopic("devices/" + i + "/state");
+			messageStore.addRetainMessage(message.getTopic(), 0, message);
+		}
+		Assertions.assertEquals(10, messageStore.getRetainMessage("devices/+/state").size());
+		Assertions.assertEquals(1, messageStore.getRetainMessage("devices/1/state").size());
+		messageStore.clearRetainMessage("devices/1/state");
+		Assertions.assertEquals(9, messageStore.getRetainMessage("devices/#").size());
+		Assertions.assertTrue(messageStore.getRetainMessage("devices/1/state").isEmpty());
+	}
+
+}
@@ -0,0 +1,193 @@
+package org.dromara.mica.mqtt.core.server.test;
+
+import org.dromara.mica.mqtt.core.server.session.SharedStrategy;
+import org.dromara.mica.mqtt.core.server.session.SharedSubscriptionGroups;
+import org.dromara.mica.mqtt.core.server.session.SnapshotTopicIndex;
+import org.dromara.mica.mqtt.core.server.session.TrieTopicManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 共享订阅策略测试
+ *
+ * @author L.cm
+ */
+class SharedStrategyTest {
+
+	private static TrieTopicManager newTopicManager(SharedSubscriptionGroups sharedGroups, int matchCacheSize) {
+		TrieTopicManager topicManager = new TrieTopicManager(matchCacheSize, false, sharedGroups);
+		for (int i = 1; i <= 3; i++) {
+			topicManager.addSubscribe("$share/g1/sensor/+", "c" + i, 1);
+			topicManager.addSubscribe("$queue/sensor/+", "q" + i, 1);
+		}
+		return topicManager;
+	}
+
+	private static String selectOne(TrieTopicManager topicManager, String fromClientId, String topic, String prefix) {
+		String[] selected = new String[1];
+		topicManager.forEachSubscriber(fromClientId, topic, null, (clientId, mqttQoS, noLocal) -> {
+			if (clientId.startsWith(prefix)) {
+				Assertions.assertNull(selected[0]);
+				selected[0] = clientId;
+			}
+		});
+		Assertions.assertNotNull(selected[0]);
+		return selected[0];
+	}
+
+	@Test
+	void testRoundRobin() {
+		for (int matchCacheSize : new int[]{0, 16}) {
+			SharedSubscriptionGroups sharedGroups = new SharedSubscriptionGroups().setDefaultStrategy(SharedStrategy.round_robin);
+			TrieTopicManager topicManager = newTopicManager(sharedGroups, matchCacheSize);
+			Map<String, Integer> counts = new HashMap<>();
+			for (int i = 0; i < 300; i++) {
+				counts.merge(selectOne(topicManager, "pub", "sensor/1", "c"), 1, Integer::sum);
+			}
+			Assertions.assertEquals(3, counts.size());
+			counts.values().forEach(count -> Assertions.assertEquals(100, count));
+			SharedSubscriptionGroups.SharedGroup group = sharedGroups.getGroup("g1");
+			Assertions.assertEquals("round_robin", group.getStrategyName());
+			Assertions.assertEquals(300, group.getSelectCount());
+			Assertions.assertEquals(3, group.getCandidateCount());
+			Assertions.assertEquals(300, sharedGroups.getGroup(SharedSubscriptionGroups.QUEUE_GROUP).getSelectCount());
+		}
+	}
+
+	@Test
+	void testHash() {
+		SharedSubscriptionGroups sharedGroups = new SharedSubscriptionGroups()
+			.setStrategy("g1", SharedStrategy.hash)
+			.setStrategy(SharedSubscriptionGroups.QUEUE_GROUP, SharedStrategy.hash_topic);
+		TrieTopicManager topicManager = newTopicManager(sharedGroups, 0);
+		Set<String> selected = new HashSet<>();
+		for (int i = 0; i < 100; i++) {
+			Assertions.assertEquals(selectOne(topicManager, "pub1", "sensor/" + i, "c"), selectOne(topicManager, "pub1", "sensor/" + (i + 1), "c"));
+			Assertions.assertEquals(selectOne(topicManager, "pub" + i, "sensor/1", "q"), selectOne(topicManager, "other", "sensor/1", "q"));
+			selected.add(selectOne(topicManager, "pub" + i, "sensor/1", "c"));
+		}
+		Assertions.assertTrue(selected.size() > 1);
+		Assertions.assertEquals("hash", sharedGroups.getGroup("g1").getStrategyName());
+		Assertions.assertEquals("hash_topic", sharedGroups.getGroup(SharedSubscriptionGroups.QUEUE_GROUP).getStrategyName());
+	}
+
+	@Test
+	void testSticky() {
+		SharedSubscriptionGroups sharedGroups = new SharedSubscriptionGroups().setDefaultStrategy(SharedStrategy.sticky);
+		TrieTopicManager topicManager = newTopicManager(sharedGroups, 0);
+		String first = selectOne(topicManager, "pub", "sensor/1", "c");
+		for (int i = 0; i < 100; i++) {
+			Assertions.assertEquals(first, selectOne(topicManager, "pub", "sensor/" + i, "c"));
+		}
+		// 订阅者离开分组后重新选取并保持
+		topicManager.removeSubscribe("$share/g1/sensor/+", first);
+		String second = selectOne(topicManager, "pub", "sensor/1", "c");
+		Assertions.assertNotEquals(first, second);
+		for (int i = 0; i < 100; i++) {
+			Assertions.assertEquals(second, selectOne(topicManager, "pub", "sensor/" + i, "c"));
+		}
+	}
+
+	@Test
+	void testLeastQueued() {
+		Map<String, Integer> loads = new HashMap<>();
+		loads.put("c1", 5);
+		loads.put("c2", 1);
+		loads.put("c3", 3);
+		SharedSubscriptionGroups sharedGroups = new SharedSubscriptionGroups()
+			.setDefaultStrategy(SharedStrategy.least_queued)
+			.setLoadFunction(clientId -> loads.getOrDefault(clientId, Integer.MAX_VALUE));
+		TrieTopicManager topicManager = newTopicManager(sharedGroups, 16);
+		for (int i = 0; i < 10; i++) {
+			Assertions.assertEquals("c2", selectOne(topicManager, "pub", "sensor/1", "c"));
+		}
+		// 负载相同时轮询
+		loads.put("c1", 0);
+		loads.put("c2", 0);
+		loads.put("c3", 0);
+		Set<String> selected = new HashSet<>();
+		for (int i = 0; i < 3; i++) {
+			selected.add(selectOne(topicManager, "pub", "sensor/1", "c"));
+		}
+		Assertions.assertEquals(3, selected.size());
+		// 未连接的订阅者（负载 Integer.MAX_VALUE）不会被选中
+		loads.put("c1", 10);
+		loads.remove("c2");
+		loads.put("c3", 20);
+		for (int i = 0; i < 10; i++) {
+			Assertions.assertEquals("c1", selectOne(topicManager, "pub", "sensor/1", "c"));
+		}
+	}
+
+	@Test
+	void testCustomStrategy() {
+		SharedSubscriptionGroups sharedGroups = new SharedSubscriptionGroups()
+			.setStrategy("g1", () -> candidates -> candidates.size() - 1);
+		TrieTopicManager topicManager = newTopicManager(sharedGroups, 0);
+		String selected = selectOne(topicManager, null, "sensor/1", "c");
+		Assertions.assertEquals(selected, selectOne(topicManager, null, "sensor/2", "c"));
+		Assertions.assertEquals(1, topicManager.searchSubscribe("sensor/1").stream().filter(s -> s.getClientId().startsWith("c")).count());
+		Assertions.assertEquals(2, sharedGroups.getGroups().size());
+		Assertions.assertEquals("random", sharedGroups.getGroup(SharedSubscriptionGroups.QUEUE_GROUP).getStrategyName());
+	}
+
+	@Test
+	void testRemoveGroupWithLastSubscriber() {
+		for (int matchCacheSize : new int[]{0, 16}) {
+			SharedSubscriptionGroups sharedGroups = new SharedSubscriptionGroups().setDefaultStrategy(SharedStrategy.round_robin);
+			TrieTopicManager topicManager = new TrieTopicManager(matchCacheSize, false, sharedGroups);
+			topicManager.addSubscribe("$share/g1/sensor/+", "c1", 1);
+			topicManager.addSubscribe("$share/g1/sensor/+", "c2", 1);
+			// 同一分组名用于另一个 topicFilter
+			topicManager.addSubscribe("$share/g1/alarm/#", "c3", 1);
+			topicManager.addSubscribe("$share/g2/sensor/+", "d4", 1);
+			selectOne(topicManager, null, "sensor/1", "c");
+			selectOne(topicManager, null, "alarm/1", "c");
+			Assertions.assertEquals(2, sharedGroups.getGroups().size());
+			// 取消订阅
+			topicManager.removeSubscribe("$share/g1/sensor/+", "c1");
+			topicManager.removeSubscribe("$share/g1/sensor/+", "c2");
+			Assertions.assertNotNull(sharedGroups.getGroup("g1"));
+			Assertions.assertTrue(topicManager.searchSubscribe("sensor/1").stream().noneMatch(s -> "c1".equals(s.getClientId())));
+			// 客户端断开，分组最后一个订阅移除
+			topicManager.removeSubscribe("c3");
+			Assertions.assertNull(sharedGroups.getGroup("g1"));
+			Assertions.assertNotNull(sharedGroups.getGroup("g2"));
+			topicManager.removeSubscribes("d4", Collections.singletonList("$share/g2/sensor/+"));
+			Assertions.assertNull(sharedGroups.getGroup("g2"));
+			// 没有订阅的分组投递不保存状态
+			Assertions.assertTrue(topicManager.searchSubscribe("sensor/1").isEmpty());
+			Assertions.assertTrue(sharedGroups.getGroups().isEmpty());
+			// 重新订阅后重新创建
+			topicManager.addSubscribe("$share/g1/sensor/+", "c1", 1);
+			selectOne(topicManager, null, "sensor/1", "c");
+			Assertions.assertEquals(1, sharedGroups.getGroup("g1").getSelectCount());
+			topicManager.clear();
+			Assertions.assertTrue(sharedGroups.getGroups().isEmpty());
+		}
+	}
+
+	@Test
+	void testSnapshotRemoveGroupWithLastSubscriber() {
+		SharedSubscriptionGroups sharedGroups = new SharedSubscriptionGroups();
+		SnapshotTopicIndex topicIndex = new SnapshotTopicIndex(0, sharedGroups);
+		topicIndex.addSubscribe("$share/g1/sensor/+", "c1", 1);
+		topicIndex.addSubscribe("$share/g1/alarm/#", "c2", 1);
+		Assertions.assertEquals(1, topicIndex.searchSubscribe("sensor/1").size());
+		Assertions.assertEquals(1, topicIndex.searchSubscribe("alarm/1").size());
+		Assertions.assertNotNull(sharedGroups.getGroup("g1"));
+		topicIndex.removeSubscribe("$share/g1/sensor/+", "c1");
+		Assertions.assertNotNull(sharedGroups.getGroup("g1"));
+		topicIndex.removeSubscribe("c2");
+		Assertions.assertNull(sharedGroups.getGroup("g1"));
+		Assertions.assertTrue(topicIndex.searchSubscribe("alarm/1").isEmpty());
+		Assertions.assertTrue(sharedGroups.getGroups().isEmpty());
+	}
+
+}
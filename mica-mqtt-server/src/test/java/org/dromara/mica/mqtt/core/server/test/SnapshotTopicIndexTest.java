@@ -0,0 +1,169 @@
+package org.dromara.mica.mqtt.core.server.test;
+
+import org.dromara.mica.mqtt.core.server.model.Subscribe;
+import org.dromara.mica.mqtt.core.server.session.SnapshotMqttSessionManager;
+import org.dromara.mica.mqtt.core.server.session.SnapshotTopicIndex;
+import org.dromara.mica.mqtt.core.server.session.TrieTopicManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * SnapshotTopicIndex 测试
+ *
+ * @author L.cm
+ */
+class SnapshotTopicIndexTest {
+
+	private static Map<String, Integer> toMap(List<Subscribe> subscribeList) {
+		Map<String, Integer> map = new TreeMap<>();
+		for (Subscribe subscribe : subscribeList) {
+			map.put(subscribe.getClientId(), subscribe.getMqttQoS());
+		}
+		return map;
+	}
+
+	@Test
+	void testMatch() {
+		SnapshotTopicIndex topicIndex = new SnapshotTopicIndex();
+		topicIndex.addSubscribe("/iot/test/#", "c1", 0);
+		topicIndex.addSubscribe("/iot/+/123", "c2", 1);
+		topicIndex.addSubscribe("/iot/test/123", "c3", 2);
+		topicIndex.addSubscribe("+", "c4", 0);
+		topicIndex.addSubscribe("#", "c5", 0);
+		Assertions.assertEquals("{c1=0, c2=1, c3=2, c5=0}", toMap(topicIndex.searchSubscribe("/iot/test/123")).toString());
+		Assertions.assertEquals("{c1=0, c5=0}", toMap(topicIndex.searchSubscribe("/iot/test")).toString());
+		Assertions.assertEquals("{c4=0, c5=0}", toMap(topicIndex.searchSubscribe("iot")).toString());
+		Assertions.assertEquals((byte) 2, topicIndex.searchSubscribe("/iot/test/123", "c3"));
+		Assertions.assertNull(topicIndex.searchSubscribe("/iot/abc/456", "c3"));
+		// 同一 client 重复订阅合并 qos
+		topicIndex.addSubscribe("/iot/test/123", "c3", 1);
+		Assertions.assertEquals((byte) 2, topicIndex.searchSubscribe("/iot/test/123", "c3"));
+		topicIndex.removeSubscribe("/iot/test/#", "c1");
+		topicIndex.removeSubscribe("c5");
+		Assertions.assertEquals("{c2=1, c3=2}", toMap(topicIndex.searchSubscribe("/iot/test/123")).toString());
+		Assertions.assertTrue(topicIndex.getSubscriptions("c5").isEmpty());
+	}
+
+	@Test
+	void testShare() {
+		SnapshotTopicIndex topicIndex = new SnapshotTopicIndex();
+		topicIndex.addSubscribe("$share/g1/iot/+", "s1", 1);
+		topicIndex.addSubscribe("$share/g1/iot/+", "s2", 1);
+		topicIndex.addSubscribe("$share/g2/iot/#", "s3", 0);
+		topicIndex.addSubscribe("$queue/iot/1", "q1", 0);
+		for (int i = 0; i < 20; i++) {
+			Map<String, Integer> map = toMap(topicIndex.searchSubscribe("iot/1"));
+			// 每组一个
+			Assertions.assertEquals(3, map.size());
+			Assertions.assertTrue(map.containsKey("s1") ^ map.containsKey("s2"));
+			Assertions.assertTrue(map.containsKey("s3") && map.containsKey("q1"));
+		}
+		Assertions.assertTrue(topicIndex.toString().contains("shareGroups=2"));
+		topicIndex.removeSubscribe("$share/g2/iot/#", "s3");
+		topicIndex.removeSubscribe("q1");
+		Assertions.assertEquals(1, topicIndex.searchSubscribe("iot/2").size());
+		// 分组的订阅全部取消后回收
+		Assertions.assertTrue(topicIndex.toString().contains("shareGroups=1"));
+		topicIndex.removeSubscribe("s1");
+		topicIndex.removeSubscribe("s2");
+		Assertions.assertTrue(topicIndex.toString().contains("shareGroups=0"));
+	}
+
+	@Test
+	void testConsistencyWindow() throws InterruptedException {
+		SnapshotTopicIndex topicIndex = new SnapshotTopicIndex(60_000);
+		topicIndex.addSubscribe("a/b", "c1", 1);
+		topicIndex.addSubscribe("a/+", "c2", 1);
+		// 窗口内：反向索引立即可见，匹配仍为旧快照
+		Assertions.assertEquals(1, topicIndex.getSubscriptions("c1").size());
+		Assertions.assertTrue(topicIndex.searchSubscribe("a/b").isEmpty());
+		Assertions.assertEquals(2, topicIndex.getPendingChangeCount());
+		topicIndex.publish();
+		Assertions.assertEquals(2, topicIndex.searchSubscribe("a/b").size());
+		Assertions.assertEquals(1, topicIndex.getSnapshotVersion());
+		Assertions.assertEquals(0, topicIndex.getPendingChangeCount());
+
+		SnapshotTopicIndex timedIndex = new SnapshotTopicIndex(10);
+		timedIndex.addSubscribe("a/b", "c1", 1);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (timedIndex.searchSubscribe("a/b").isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		Assertions.assertEquals(1, timedIndex.searchSubscribe("a/b").size());
+		Assertions.assertEquals(1, timedIndex.getPublishCount());
+	}
+
+	@Test
+	void testSnapshotIsolation() {
+		SnapshotTopicIndex topicIndex = new SnapshotTopicIndex(60_000);
+		for (int i = 0; i < 100; i++) {
+			topicIndex.addSubscribe("dev/" + i + "/+", "c" + i, 0);
+		}
+		topicIndex.publish();
+		// 已发布快照中的节点不会被后续批次修改
+		topicIndex.removeSubscribe("c1");
+		topicIndex.addSubscribe("dev/1/+", "x", 0);
+		Assertions.assertEquals("{c1=0}", toMap(topicIndex.searchSubscribe("dev/1/data")).toString());
+		topicIndex.publish();
+		Assertions.assertEquals("{x=0}", toMap(topicIndex.searchSubscribe("dev/1/data")).toString());
+	}
+
+	@Test
+	void testSameAsTrieTopicManager() {
+		String[] filters = {"#", "+", "a/#", "a/+", "a/b", "+/b", "a/+/c", "a/b/c", "/a", "/+", "a//c", "Aa/BB", "BB/Aa", "$share/g/a/+", "$share/h/a/+", "$share/h/#", "$queue/a/#"};
+		String[] topics = {"a", "a/b", "a/b/c", "/a", "a//c", "Aa/BB", "BB/Aa", "b", "a/x/c"};
+		Random random = new Random(1);
+		TrieTopicManager topicManager = new TrieTopicManager();
+		SnapshotTopicIndex topicIndex = new SnapshotTopicIndex();
+		for (int i = 0; i < 5000; i++) {
+			String filter = filters[random.nextInt(filters.length)];
+			String clientId = "c" + random.nextInt(50);
+			if (random.nextInt(3) == 0) {
+				topicManager.removeSubscribe(filter, clientId);
+				topicIndex.removeSubscribe(filter, clientId);
+			} else {
+				int qos = random.nextInt(3);
+				topicManager.addSubscribe(filter, clientId, qos);
+				topicIndex.addSubscribe(filter, clientId, qos);
+			}
+			String topic = topics[random.nextInt(topics.length)];
+			// 共享订阅为随机选择，逐个 client 比较 qos
+			for (int j = 0; j < 50; j++) {
+				Assertions.assertEquals(topicManager.searchSubscribe(topic, "c" + j), topicIndex.searchSubscribe(topic, "c" + j));
+			}
+			Assertions.assertEquals(topicManager.getSubscriptions(clientId).size(), topicIndex.getSubscriptions(clientId).size());
+		}
+	}
+
+	@Test
+	void testBatchSubscribes() {
+		SnapshotTopicIndex topicIndex = new SnapshotTopicIndex();
+		topicIndex.addSubscribes("c1", Arrays.asList(new Subscribe("a/+", "c1", 1),
+			new Subscribe("a/b", "c1", 2), new Subscribe("$share/g/a/#", "c1", 0)));
+		// 整批只发布一个快照
+		Assertions.assertEquals(1, topicIndex.getPublishCount());
+		Assertions.assertEquals(3, topicIndex.getSubscriptions("c1").size());
+		Assertions.assertEquals((byte) 2, topicIndex.searchSubscribe("a/b", "c1"));
+		topicIndex.removeSubscribes("c1", Arrays.asList("a/+", "a/b", "x/y"));
+		Assertions.assertEquals(2, topicIndex.getPublishCount());
+		Assertions.assertEquals("{c1=0}", toMap(topicIndex.searchSubscribe("a/c")).toString());
+	}
+
+	@Test
+	void testSessionManager() {
+		SnapshotMqttSessionManager sessionManager = new SnapshotMqttSessionManager();
+		sessionManager.addSubscribe("a/+", "c1", 1);
+		Assertions.assertTrue(sessionManager.hasSession("c1"));
+		Assertions.assertEquals(1, sessionManager.searchSubscribe("a/b").size());
+		sessionManager.remove("c1");
+		Assertions.assertFalse(sessionManager.hasSession("c1"));
+		Assertions.assertTrue(sessionManager.searchSubscribe("a/b").isEmpty());
+	}
+
+}
@@ -6,7 +6,6 @@ import org.openjdk.jol.info.GraphLayout;
 
 import java.lang.reflect.Field;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * TrieTopicManager 深度内存分析工具
@@ -69,31 +68,15 @@ public class TrieTopicManagerDeepAnalysis {
 
         Field shareField = TrieTopicManager.class.getDeclaredField("share");
         shareField.setAccessible(true);
-        Object shareMap = shareField.get(topicManager);
+        Object shareNode = shareField.get(topicManager);
 
-        if (shareMap instanceof ConcurrentHashMap) {
-            ConcurrentHashMap<?, ?> shareGroups = (ConcurrentHashMap<?, ?>) shareMap;
-            System.out.println("Share 分组数量: " + shareGroups.size());
+        if (shareNode != null) {
+            System.out.println("Share 前缀树内存占用: " +
+                              GraphLayout.parseInstance(shareNode).totalSize() + " bytes");
 
-            long totalShareSize = 0;
-            int totalChildren = 0;
-
-            for (Map.Entry<?, ?> entry : shareGroups.entrySet()) {
-                String groupName = entry.getKey().toString();
-                Object groupNode = entry.getValue();
-
-                long groupSize = GraphLayout.parseInstance(groupNode).totalSize();
-                totalShareSize += groupSize;
-
-                System.out.println("  分组 '" + groupName + "': " + groupSize + " bytes");
-
-                // 分析每个分组的子节点
-                int childrenCount = analyzeNodeChildren(groupNode, "share." + groupName);
-                totalChildren += childrenCount;
-            }
-
-            System.out.println("Share 分组总内存占用: " + totalShareSize + " bytes");
-            System.out.println("Share 分组总子节点数: " + totalChildren);
+            // 所有分组共用一棵前缀树，分组存储在叶子节点
+            int totalChildren = analyzeNodeChildren(shareNode, "share");
+            System.out.println("Share 前缀树总子节点数: " + totalChildren);
         }
     }
 
@@ -1,12 +1,22 @@
 package org.dromara.mica.mqtt.core.server.test;
 
+import org.dromara.mica.mqtt.core.common.TopicFilter;
 import org.dromara.mica.mqtt.core.server.model.Subscribe;
+import org.dromara.mica.mqtt.core.server.session.SubscriberVisitor;
 import org.dromara.mica.mqtt.core.server.session.TrieTopicManager;
 import org.dromara.mica.mqtt.core.util.TopicUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
 
 /**
@@ -175,4 +185,324 @@ class TrieTopicManagerTest {
 		Assertions.assertTrue(subscriptions.isEmpty());
 	}
 
+	@Test
+	void testClientIndex() {
+		TrieTopicManager topicManager = new TrieTopicManager();
+		topicManager.addSubscribe("/test/123", "client1", 0);
+		topicManager.addSubscribe("/test/123", "client1", 2);
+		topicManager.addSubscribe("/test/+", "client1", 1);
+		topicManager.addSubscribe("$share/group1//test/#", "client1", 1);
+		topicManager.addSubscribe("/test/123", "client2", 0);
+		List<Subscribe> subscriptions = topicManager.getSubscriptions("client1");
+		Assertions.assertEquals(3, subscriptions.size());
+		Assertions.assertTrue(subscriptions.stream().anyMatch(s -> "/test/123".equals(s.getTopicFilter()) && s.getMqttQoS() == 2));
+		Assertions.assertTrue(subscriptions.contains(new Subscribe("$share/group1//test/#", "client1", 1)));
+
+		topicManager.removeSubscribe("/test/+", "client1");
+		Assertions.assertEquals(2, topicManager.getSubscriptions("client1").size());
+		topicManager.removeSubscribe("client1");
+		Assertions.assertTrue(topicManager.getSubscriptions("client1").isEmpty());
+		List<Subscribe> subscribeList = topicManager.searchSubscribe("/test/123");
+		Assertions.assertEquals(1, subscribeList.size());
+		Assertions.assertEquals("client2", subscribeList.get(0).getClientId());
+		// 重新订阅
+		topicManager.addSubscribe("/test/+", "client1", 1);
+		Assertions.assertEquals(2, topicManager.searchSubscribe("/test/123").size());
+	}
+
+	@Test
+	void testClientIndexManyFilters() {
+		TrieTopicManager topicManager = new TrieTopicManager(0, true);
+		// 订阅数超过阈值后建立下标索引，随机增删与 Map 对照
+		Map<String, Integer> expected = new HashMap<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 20000; i++) {
+			int n = random.nextInt(200);
+			String topicFilter = n % 3 == 0 ? "/test/" + n + "/+" : "/test/" + n;
+			if (random.nextInt(3) == 0) {
+				topicManager.removeSubscribe(topicFilter, "client1");
+				expected.remove(topicFilter);
+			} else {
+				int qos = random.nextInt(3);
+				topicManager.addSubscribe(topicFilter, "client1", qos);
+				expected.merge(topicFilter, qos, Math::max);
+			}
+		}
+		Map<String, Integer> actual = new HashMap<>();
+		for (Subscribe subscribe : topicManager.getSubscriptions("client1")) {
+			Assertions.assertNull(actual.put(subscribe.getTopicFilter(), subscribe.getMqttQoS()));
+		}
+		Assertions.assertEquals(expected, actual);
+		for (String topicFilter : expected.keySet()) {
+			topicManager.removeSubscribe(topicFilter, "client1");
+			Assertions.assertTrue(topicManager.getSubscriptions("client1").stream().noneMatch(s -> topicFilter.equals(s.getTopicFilter())));
+		}
+		Assertions.assertTrue(topicManager.getSubscriptions("client1").isEmpty());
+		Assertions.assertEquals(0, topicManager.getTrieNodeCount());
+	}
+
+	@Test
+	void testMatchCache() {
+		TrieTopicManager topicManager = new TrieTopicManager(16);
+		topicManager.addSubscribe("/test/123", "client1", 1);
+		Assertions.assertEquals(1, topicManager.searchSubscribe("/test/123").size());
+		Assertions.assertEquals(1, topicManager.searchSubscribe("/test/123").size());
+		Assertions.assertEquals(1, topicManager.getMatchCacheHitCount());
+		Assertions.assertEquals(1, topicManager.getMatchCacheMissCount());
+		Assertions.assertEquals(0.5D, topicManager.getMatchCacheHitRatio());
+		// 精确订阅、通配订阅变更后失效
+		topicManager.addSubscribe("/test/123", "client2", 0);
+		Assertions.assertEquals(2, topicManager.searchSubscribe("/test/123").size());
+		topicManager.addSubscribe("/test/+", "client3", 0);
+		Assertions.assertEquals(3, topicManager.searchSubscribe("/test/123").size());
+		topicManager.removeSubscribe("client2");
+		Assertions.assertEquals(2, topicManager.searchSubscribe("/test/123").size());
+		// 共享订阅每条消息重新随机选择
+		topicManager.addSubscribe("$share/group1//test/#", "client4", 0);
+		topicManager.addSubscribe("$share/group1//test/#", "client5", 0);
+		Set<String> selected = new HashSet<>();
+		for (int i = 0; i < 100; i++) {
+			List<Subscribe> subscribeList = topicManager.searchSubscribe("/test/123");
+			Assertions.assertEquals(3, subscribeList.size());
+			subscribeList.forEach(subscribe -> selected.add(subscribe.getClientId()));
+		}
+		Assertions.assertTrue(selected.contains("client4"));
+		Assertions.assertTrue(selected.contains("client5"));
+		topicManager.clear();
+		Assertions.assertTrue(topicManager.searchSubscribe("/test/123").isEmpty());
+	}
+
+	@Test
+	void testCompactStorage() {
+		TrieTopicManager topicManager = new TrieTopicManager(0, true);
+		Assertions.assertTrue(match(topicManager, "/iot/+/test", "/iot/abc/test"));
+		Assertions.assertTrue(match(topicManager, "/iot/test/#", "/iot/test"));
+		Assertions.assertTrue(match(topicManager, "$share/test//123", "/123"));
+		topicManager.addSubscribe("/iot/abc/test", "client2", 1);
+		topicManager.addSubscribe("/iot/abc/test", "client2", 2);
+		topicManager.addSubscribe("/iot/+/test", "client3", 0);
+		List<Subscribe> subscribeList = topicManager.searchSubscribe("/iot/abc/test");
+		Assertions.assertEquals(3, subscribeList.size());
+		Assertions.assertTrue(subscribeList.stream().anyMatch(s -> "client2".equals(s.getClientId()) && s.getMqttQoS() == 2));
+		Assertions.assertEquals((byte) 2, topicManager.searchSubscribe("/iot/abc/test", "client2"));
+		Assertions.assertEquals(3, topicManager.getSubscriptions("client1").size());
+
+		// 句柄回收后复用，不影响其他 client
+		topicManager.removeSubscribe("client1");
+		topicManager.removeSubscribe("/iot/abc/test", "client2");
+		topicManager.addSubscribe("/iot/abc/test", "client4", 1);
+		subscribeList = topicManager.searchSubscribe("/iot/abc/test");
+		Assertions.assertEquals(2, subscribeList.size());
+		Assertions.assertTrue(subscribeList.stream().anyMatch(s -> "client3".equals(s.getClientId())));
+		Assertions.assertTrue(subscribeList.stream().anyMatch(s -> "client4".equals(s.getClientId())));
+		Assertions.assertTrue(topicManager.getSubscriptions("client1").isEmpty());
+		Assertions.assertTrue(topicManager.getSubscriptions("client2").isEmpty());
+	}
+
+	@Test
+	void testReclaimEmptyNodes() {
+		TrieTopicManager topicManager = new TrieTopicManager();
+		topicManager.addSubscribe("/device/+/data", "client1", 0);
+		for (int i = 0; i < 100; i++) {
+			topicManager.addSubscribe("/device/" + i + "/+/data", "device" + i, 0);
+			topicManager.addSubscribe("$share/group" + i + "/device/" + i + "/#", "device" + i, 0);
+		}
+		// $share 各分组共用前缀树：device 节点共用，每组只有 {i}、# 两个节点
+		Assertions.assertEquals(505, topicManager.getTrieNodeCount());
+		for (int i = 0; i < 100; i++) {
+			topicManager.removeSubscribe("device" + i);
+		}
+		// 只剩 /device/+/data 路径
+		Assertions.assertEquals(4, topicManager.getTrieNodeCount());
+		Assertions.assertEquals(501, topicManager.getReclaimedTrieNodeCount());
+		Assertions.assertEquals(0, topicManager.getEmptyTrieNodeCount());
+		Assertions.assertEquals(0, topicManager.compact());
+		Assertions.assertEquals(1, topicManager.searchSubscribe("/device/1/data").size());
+		topicManager.removeSubscribe("/device/+/data", "client1");
+		Assertions.assertEquals(0, topicManager.getTrieNodeCount());
+		// 回收后重新订阅
+		topicManager.addSubscribe("/device/+/data", "client1", 0);
+		Assertions.assertEquals(1, topicManager.searchSubscribe("/device/1/data").size());
+	}
+
+	@Test
+	void testShareGroupIndex() {
+		TrieTopicManager topicManager = new TrieTopicManager();
+		for (int i = 0; i < 3000; i++) {
+			topicManager.addSubscribe("$share/group" + i + "/device/" + i + "/+", "client" + i, 1);
+		}
+		// 不同分组订阅同一 topicFilter，共用叶子节点
+		topicManager.addSubscribe("$share/a/device/1/+", "a1", 0);
+		topicManager.addSubscribe("$share/a/device/1/+", "a2", 0);
+		topicManager.addSubscribe("$share/b/device/+/data", "b1", 2);
+		for (int i = 0; i < 20; i++) {
+			Set<String> clientIds = topicManager.searchSubscribe("device/1/data").stream()
+				.map(Subscribe::getClientId)
+				.collect(Collectors.toSet());
+			Assertions.assertEquals(3, clientIds.size());
+			Assertions.assertTrue(clientIds.contains("client1") && clientIds.contains("b1"));
+			Assertions.assertTrue(clientIds.contains("a1") ^ clientIds.contains("a2"));
+		}
+		Assertions.assertEquals((byte) 2, topicManager.searchSubscribe("device/2/data", "b1"));
+		Assertions.assertEquals((byte) 1, topicManager.searchSubscribe("device/2/data", "client2"));
+		Assertions.assertNull(topicManager.searchSubscribe("device/2/data", "client1"));
+		topicManager.removeSubscribe("$share/a/device/1/+", "a1");
+		topicManager.removeSubscribe("a2");
+		topicManager.removeSubscribe("$share/group1/device/1/+", "client1");
+		Assertions.assertEquals(1, topicManager.searchSubscribe("device/1/data").size());
+		for (int i = 0; i < 3000; i++) {
+			topicManager.removeSubscribe("client" + i);
+		}
+		topicManager.removeSubscribe("b1");
+		Assertions.assertEquals(0, topicManager.getTrieNodeCount());
+		Assertions.assertTrue(topicManager.searchSubscribe("device/1/data").isEmpty());
+	}
+
+	@Test
+	void testReclaimConcurrently() throws InterruptedException {
+		TrieTopicManager topicManager = new TrieTopicManager();
+		int threads = 4;
+		CountDownLatch latch = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			String clientId = "client" + t;
+			new Thread(() -> {
+				for (int i = 0; i < 2000; i++) {
+					String topicFilter = "/device/" + (i % 10) + "/+/data";
+					topicManager.addSubscribe(topicFilter, clientId, 0);
+					topicManager.removeSubscribe(topicFilter, clientId);
+				}
+				topicManager.addSubscribe("/device/1/+/data", clientId, 0);
+				latch.countDown();
+			}).start();
+		}
+		latch.await();
+		topicManager.compact();
+		Assertions.assertEquals(threads, topicManager.searchSubscribe("/device/1/abc/data").size());
+		Assertions.assertEquals(0, topicManager.getEmptyTrieNodeCount());
+	}
+
+	@Test
+	void testForEachSubscriber() {
+		for (TrieTopicManager topicManager : new TrieTopicManager[]{new TrieTopicManager(), new TrieTopicManager(16, true)}) {
+			// 同一客户端多个 filter 匹配，取最大 qos
+			topicManager.addSubscribe("sys/+/data", "c1", 0);
+			topicManager.addSubscribe("sys/#", "c1", 2);
+			topicManager.addSubscribe("sys/dev1/data", "c2", 1);
+			topicManager.addSubscribe(new TopicFilter("sys/dev1/data"), "c3", 1, true);
+			topicManager.addSubscribe("$share/g1/sys/+/data", "s1", 1);
+			topicManager.addSubscribe("$share/g1/sys/+/data", "s2", 1);
+			for (int i = 0; i < 2; i++) {
+				Map<String, Integer> qosMap = new HashMap<>();
+				Set<String> noLocalSet = new HashSet<>();
+				int[] begin = new int[1];
+				int count = topicManager.forEachSubscriber(null, "sys/dev1/data", null, new SubscriberVisitor() {
+					@Override
+					public void begin(int size) {
+						begin[0] = size;
+					}
+
+					@Override
+					public void accept(String clientId, int mqttQoS, boolean noLocal) {
+						Assertions.assertNull(qosMap.put(clientId, mqttQoS));
+						if (noLocal) {
+							noLocalSet.add(clientId);
+						}
+					}
+				});
+				Assertions.assertEquals(4, count);
+				Assertions.assertEquals(4, begin[0]);
+				Assertions.assertEquals(2, qosMap.get("c1"));
+				Assertions.assertEquals(1, qosMap.get("c2"));
+				Assertions.assertEquals(Collections.singleton("c3"), noLocalSet);
+				// 共享订阅每组只选一个
+				Assertions.assertTrue(qosMap.containsKey("s1") ^ qosMap.containsKey("s2"));
+				Assertions.assertEquals(count, topicManager.searchSubscribe("sys/dev1/data").size());
+			}
+			Assertions.assertEquals(0, topicManager.forEachSubscriber("/none", (clientId, mqttQoS, noLocal) -> Assertions.fail()));
+		}
+	}
+
+	@Test
+	void testForEachSubscriberReentrant() {
+		TrieTopicManager topicManager = new TrieTopicManager();
+		int size = 10000;
+		for (int i = 0; i < size; i++) {
+			topicManager.addSubscribe("/a/+", "a" + i, 0);
+		}
+		topicManager.addSubscribe("/b", "b1", 1);
+		Set<String> clientIds = new HashSet<>();
+		// 回调中再次匹配（如转发时触发的拦截器），内外层结果互不影响
+		int count = topicManager.forEachSubscriber("/a/1", (clientId, mqttQoS, noLocal) -> {
+			clientIds.add(clientId);
+			if (clientIds.size() == 1) {
+				List<String> inner = new ArrayList<>();
+				topicManager.forEachSubscriber("/b", (id, qos, nl) -> inner.add(id));
+				Assertions.assertEquals(Collections.singletonList("b1"), inner);
+			}
+		});
+		Assertions.assertEquals(size, count);
+		Assertions.assertEquals(size, clientIds.size());
+		// 大表回收后仍可正常使用
+		Assertions.assertEquals(1, topicManager.forEachSubscriber("/b", (clientId, mqttQoS, noLocal) -> {
+		}));
+	}
+
+	@Test
+	void testBatchSubscribes() {
+		List<Subscribe> subscriptions = new ArrayList<>();
+		subscriptions.add(new Subscribe("a/b/c/#", "c1", 0));
+		subscriptions.add(new Subscribe("a/b/+", "c1", 0));
+		subscriptions.add(new Subscribe("a/+/c", "c1", 1, true));
+		subscriptions.add(new Subscribe("$share/g2/a/b/c", "c1", 1));
+		subscriptions.add(new Subscribe("$share/g1/a/b/c", "c1", 0));
+		subscriptions.add(new Subscribe("$queue/a/b", "c1", 2));
+		subscriptions.add(new Subscribe("a/b/c", "c1", 2));
+		// 同一 filter 重复订阅按原顺序合并
+		subscriptions.add(new Subscribe("a/b/+", "c1", 2));
+		TrieTopicManager single = new TrieTopicManager();
+		for (Subscribe subscribe : subscriptions) {
+			single.addSubscribe(new TopicFilter(subscribe.getTopicFilter()), "c1", subscribe.getMqttQoS(), subscribe.isNoLocal());
+		}
+		TrieTopicManager batch = new TrieTopicManager();
+		batch.addSubscribe("x/y", "c2", 0);
+		batch.addSubscribes("c1", subscriptions);
+		Assertions.assertEquals(new HashSet<>(single.getSubscriptions("c1")), new HashSet<>(batch.getSubscriptions("c1")));
+		for (String topic : new String[]{"a/b/c", "a/b/d", "a/x/c", "a/b", "a/b/c/d"}) {
+			Assertions.assertEquals(new HashSet<>(single.searchSubscribe(topic)), new HashSet<>(batch.searchSubscribe(topic)), topic);
+		}
+		Assertions.assertEquals(single.getTrieNodeCount(), batch.getTrieNodeCount());
+		Assertions.assertEquals(Integer.valueOf(2), Integer.valueOf(batch.searchSubscribe("a/b/d", "c1")));
+
+		List<String> topicFilters = subscriptions.stream().map(Subscribe::getTopicFilter).collect(Collectors.toList());
+		batch.removeSubscribes("c1", topicFilters);
+		Assertions.assertTrue(batch.getSubscriptions("c1").isEmpty());
+		Assertions.assertTrue(batch.searchSubscribe("a/b/c").isEmpty());
+		Assertions.assertEquals(1, batch.searchSubscribe("x/y").size());
+		// 回收后再次批量订阅，缓存路径不会指向已回收的节点
+		batch.addSubscribes("c1", subscriptions);
+		Assertions.assertEquals(new HashSet<>(single.getSubscriptions("c1")), new HashSet<>(batch.getSubscriptions("c1")));
+	}
+
+	@Test
+	void testBatchSubscribesMatchCache() {
+		TrieTopicManager topicManager = new TrieTopicManager(16);
+		topicManager.addSubscribe("a/b", "c1", 0);
+		Assertions.assertEquals(1, topicManager.searchSubscribe("a/b").size());
+		Assertions.assertEquals(1, topicManager.searchSubscribe("a/b").size());
+		Assertions.assertEquals(1, topicManager.getMatchCacheHitCount());
+		// 批量变更后缓存失效
+		List<Subscribe> subscriptions = new ArrayList<>();
+		subscriptions.add(new Subscribe("a/+", "c2", 1));
+		subscriptions.add(new Subscribe("a/#", "c2", 0));
+		subscriptions.add(new Subscribe("a/b", "c2", 0));
+		topicManager.addSubscribes("c2", subscriptions);
+		Assertions.assertEquals(Integer.valueOf(1), Integer.valueOf(topicManager.searchSubscribe("a/b", "c2")));
+		Assertions.assertEquals(2, topicManager.searchSubscribe("a/b").size());
+		topicManager.removeSubscribes("c2", Collections.singletonList("a/+"));
+		Assertions.assertEquals(Integer.valueOf(0), Integer.valueOf(topicManager.searchSubscribe("a/b", "c2")));
+		Assertions.assertEquals(2, topicManager.searchSubscribe("a/b").size());
+		topicManager.removeSubscribe("c2");
+		Assertions.assertEquals(1, topicManager.searchSubscribe("a/b").size());
+	}
+
 }